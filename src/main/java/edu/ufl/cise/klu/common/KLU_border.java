@@ -0,0 +1,45 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.common;
+
+/**
+ * Bordered object - the factorization of [A B ; C D] built by klu_border from
+ * the Numeric object of A, with B n-by-m, C m-by-n and D m-by-m.
+ */
+public class KLU_border
+{
+
+	public int n;             /* A is n-by-n */
+	public int m;             /* # of rows and columns added to A */
+	public double[] W;        /* size n*m.  W = A\B, column-oriented */
+	public double[] Ct;       /* size n*m.  C', column-oriented */
+	public double[] S;        /* size m*m.  LU factors of the Schur complement
+	                           * D - C*W, leading dimension m */
+	public int[] Sp;          /* size m.  row pivots of S */
+	public double[] Sw;       /* size m.  workspace */
+	public double rcond;      /* min/max of abs (diag (U)) of S */
+
+}
@@ -24,6 +24,8 @@
 
 package edu.ufl.cise.klu.common;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * KLU control parameters and statistics.
  */
@@ -42,7 +44,9 @@ public class KLU_common
 
 	public int btf;                /* use BTF pre-ordering, or not */
 	public int ordering;           /* 0: AMD, 1: COLAMD, 2: user P and Q,
-                                    * 3: user function */
+                                    * 3: user function, 4: for each block, the
+                                    * cheaper of AMD and natural,
+                                    * 5: nested dissection */
 	public int scale;              /* row scaling: -1: none (and no error check),
                                     * 0: none, 1: sum, 2: max */
 
@@ -70,6 +74,79 @@ public class KLU_common
 	    *   Numeric object.  klu_refactor will not free it, but will leave the
 	    *   numerical values only partially defined.  This is the default. */
 
+	public ExecutorService executor;   /* thread pool used by the parallel
+	    * routines, or null to run everything serially (the default).  KLU
+	    * does not create or shut down the pool; it is owned by the caller. */
+	public int nthreads;       /* # of tasks a parallel step is split into */
+	public int par_minblock;   /* min. block size for a level-scheduled solve */
+	public int par_minlevel;   /* min. # of rows in a level to solve it in
+	    * parallel; smaller levels are solved serially */
+
+	public int tsolve_rows;    /* if TRUE, klu_tsolve builds a row-oriented copy
+	    * of L, U and Off on first use, keeps it with the Numeric object, and
+	    * solves A'x=b with it.  If FALSE (the default), klu_tsolve uses the
+	    * column-oriented factors directly. */
+
+	public int irstep;         /* max # of iterative refinement steps taken by
+	    * klu_solve_refine */
+	public double refine_tol;  /* klu_solve_refine stops once the componentwise
+	    * backward error is this small */
+
+	public int supernodal;     /* if TRUE, blocks of size super_minblock or more
+	    * are factorized by the supernodal variant of the kernel, which applies
+	    * the updates of groups of columns of L with the same pattern as dense
+	    * blocks.  FALSE by default. */
+	public int super_minblock; /* min. block size for the supernodal kernel */
+
+	public int update_maxrank; /* klu_update_add recommends refactorizing once the
+	    * rank of the low-rank update is larger than this */
+
+	public int krylov_maxit;   /* max # of iterations of klu_gmres and
+	    * klu_bicgstab */
+	public int krylov_restart; /* # of iterations between restarts of klu_gmres */
+	public double krylov_tol;  /* klu_gmres and klu_bicgstab stop once
+	    * norm (b-A*x) <= krylov_tol * norm (b) */
+	public int krylov_refactor_it; /* recommend refactorizing the
+	    * preconditioner once more iterations than this are needed */
+
+	public int static_pivot;   /* if TRUE, klu_factor takes the diagonal of
+	    * each block as the pivot whenever it is present (the row order is
+	    * fixed by the BTF matching, the fill-reducing ordering and the row
+	    * scaling), and klu_factor and klu_refactor replace pivots smaller
+	    * than sqrt (eps) * max (abs (A)) with +/- that value.  The L and U
+	    * pattern then depends on the pattern of A only, so klu_refactor can
+	    * be used for every later factorization.  Use klu_solve_refine to
+	    * recover the accuracy lost to the perturbations.  FALSE by default. */
+
+	public int ilu;            /* incomplete factorization of klu_ilu_factor:
+	    * 0: ILU(0), L+U restricted to the pattern of A,
+	    * 1: ILUT, with the drop tolerance and fill cap below */
+	public double ilu_droptol; /* ILUT drops entries of L and U smaller than
+	    * ilu_droptol times the norm of the column of A */
+	public double ilu_fill;    /* ILUT keeps at most ilu_fill times nnz (A (:,k))
+	    * entries in each of L (:,k) and U (:,k) */
+
+	public int dense_maxblock; /* klu_factor factorizes blocks of size 2 to
+	    * dense_maxblock (at most 8) as dense matrices with partial pivoting,
+	    * and keeps the explicit inverse of each for klu_solve.  0 (the
+	    * default) uses the sparse kernel for all blocks. */
+
+	public int merge_maxblock; /* if > 1, klu_analyze merges adjacent blocks of
+	    * the BTF form into blocks of size at most merge_maxblock, so that they
+	    * share one LU array and one kernel call.  Singletons are not merged.
+	    * 0 (the default) keeps the blocks found by BTF. */
+	public double merge_coupling; /* two adjacent blocks are merged only if
+	    * the # of off-diagonal entries coupling them is at most merge_coupling
+	    * times the size of the merged block */
+
+	public int nd_leafsize;    /* nested dissection (ordering 5) stops splitting
+	    * a block at subgraphs of this size, and orders them by minimum
+	    * degree */
+	public int nd_amd;         /* if TRUE (the default), a block ordered by
+	    * nested dissection is ordered by AMD instead if that predicts fewer
+	    * entries in L.  The block is then a single node of the separator
+	    * tree. */
+
 	/* ---------------------------------------------------------------------- */
 	/* statistics */
 	/* ---------------------------------------------------------------------- */
@@ -101,6 +178,26 @@ public class KLU_common
 	public double rgrowth;     /* reciprocal pivot rgrowth, from klu_rgrowth */
 	public double work;        /* actual work done in BTF, in klu_analyze */
 
+	public double berr;        /* componentwise backward error, from
+	    * klu_solve_refine (largest over all right-hand-sides) */
+	public double ferr;        /* estimated relative forward error, from
+	    * klu_solve_refine (largest over all right-hand-sides) */
+	public int nrefine;        /* largest # of refinement steps taken for any
+	    * right-hand-side, from klu_solve_refine */
+
+	public int npert;          /* # of pivots perturbed by static pivoting, in the
+	    * last klu_factor or klu_refactor */
+	public double pert;        /* size of the perturbation, sqrt (eps) times the
+	    * largest entry of the scaled matrix.  -1 if not computed. */
+
+	public int krylov_iter;        /* # of iterations taken by klu_gmres or
+	    * klu_bicgstab */
+	public double krylov_resid;    /* norm (b-A*x) / norm (b) on return from
+	    * klu_gmres or klu_bicgstab */
+	public int krylov_refactor;    /* TRUE if klu_gmres or klu_bicgstab did not
+	    * converge, or needed more than krylov_refactor_it iterations: the
+	    * Numeric object is too far from A to be a good preconditioner */
+
 	public long memusage;    /* current memory usage, in bytes */
 	public long mempeak;     /* peak memory usage, in bytes */
 
@@ -53,6 +53,8 @@ public class KLU_numeric
 
 	/* scale factors; can be NULL if no scaling */
 	public double[] Rs;       /* size n. Rs [i] is scale factor for row i */
+	public double[] Rsinv;    /* size n, 1 / Rs [i], or null if not computed.
+	                           * Computed by klu_permute_in */
 
 	/* permanent workspace for factorization and solve */
 	public int worksize; /* size (in bytes) of Work */
@@ -66,4 +68,83 @@ public class KLU_numeric
 	public double[] Offx;       /* size nzoff, numerical values */
 	public int nzoff;
 
+	/* row-oriented copy of L and U of the large blocks, and their level
+	 * schedules, for the parallel triangular solves.  Computed by klu_levels,
+	 * null if not computed.  Indexed by block; null for blocks that are
+	 * solved serially.  Row and column indices are relative to the block. */
+	public int[][] Lrp ;        /* size nk+1, row pointers of L */
+	public int[][] Lrj ;        /* column indices of L, excl. the unit diagonal */
+	public double[][] Lrx ;     /* values of L */
+	public int[][] Lrmap ;      /* Lrx [p] is LUbx [block] [Lrmap [p]] */
+	public int[][] Urp ;        /* size nk+1, row pointers of U */
+	public int[][] Urj ;        /* column indices of U, excl. the diagonal */
+	public double[][] Urx ;     /* values of U */
+	public int[][] Urmap ;      /* Urx [p] is LUbx [block] [Urmap [p]] */
+	public int[][] Llevp ;      /* level l of L is rows Llevi [Llevp [l] ...
+	                             * Llevp [l+1]-1] */
+	public int[][] Llevi ;      /* size nk, rows of L in level order */
+	public int[][] Ulevp ;      /* level pointers of U */
+	public int[][] Ulevi ;      /* size nk, rows of U in level order */
+	public int rows ;           /* TRUE if every block of size > 1 has its L and
+	                             * U in row form (computed by klu_rows) */
+
+	/* row-oriented copy of the off-diagonal part, and the dependency graph
+	 * of the blocks, for solving independent blocks in parallel.  Computed by
+	 * klu_dag, null if not computed.  Row i of Off holds its entries in the
+	 * order klu_solve applies them: by decreasing block, then by column. */
+	public int[] Offrp ;        /* size n+1, row pointers of Off */
+	public int[] Offrj ;        /* size nzoff, column indices of Off */
+	public double[] Offrx ;     /* size nzoff, values of Off */
+	public int[] Offrmap ;      /* Offrx [p] is Offx [Offrmap [p]] */
+	public int[] Bsp ;          /* size nblocks+1, the blocks that depend on
+	                             * block b are Bsi [Bsp [b] ... Bsp [b+1]-1] */
+	public int[] Bsi ;          /* successor lists */
+	public int[] Bnpred ;       /* size nblocks, # of blocks block b depends on */
+	public int nblevels ;       /* length of the longest path in the graph */
+
+	/* L and U of all blocks packed into separate compressed-column arrays
+	 * with integer row indices, for the solves.  Computed by klu_pack, null
+	 * if not computed.  Column k of L (excl. the unit diagonal) is in
+	 * Li, Lx [Lp [k] ... Lp [k+1]-1], and likewise for U (excl. the
+	 * diagonal).  Row indices are relative to the block.  Singletons have no
+	 * entries. */
+	public int[] Lp ;           /* size n+1, column pointers of L */
+	public int[] Li ;           /* row indices of L */
+	public double[] Lx ;        /* values of L */
+	public int[] Up ;           /* size n+1, column pointers of U */
+	public int[] Ui ;           /* row indices of U */
+	public double[] Ux ;        /* values of U */
+	public double[] Udinv ;     /* size n, Udinv [k] = 1 / Udiag [k] */
+
+	/* explicit inverses of the small blocks that klu_factor factorized as
+	 * dense matrices (see Common.dense_maxblock).  Dinv [b] is the nk-by-nk
+	 * inverse of L*U of block b in row-major order, or null if block b was
+	 * factorized by the sparse kernel.  null if no block is dense. */
+	public double[][] Dinv ;
+
+	/* supernodes of L and U, stored as dense panels.  Computed by
+	 * klu_supernodes, null if not computed.  A supernode of L is a run of
+	 * columns f..l whose diagonal block is dense and that share the rows S
+	 * below it; a supernode of U is a run of columns whose diagonal block is
+	 * dense and that share the rows T above it.  Panel s holds the ns-by-ns
+	 * diagonal block in column-major order, followed by the rows of S (or T)
+	 * in row-major order, ns values each.  Column and row indices are
+	 * relative to the block.  Singletons have no supernodes. */
+	public int[] Lsb ;          /* size nblocks+1, the supernodes of L in
+	                             * block b are Lsb [b] ... Lsb [b+1]-1 */
+	public int[] Lsk ;          /* first column of each supernode */
+	public int[] Lsn ;          /* # of columns of each supernode */
+	public int[] Lsip ;         /* the rows S of supernode s are
+	                             * Lsi [Lsip [s] ... Lsip [s+1]-1] */
+	public int[] Lsi ;          /* row indices */
+	public int[] Lsp ;          /* panel s starts at Lsx [Lsp [s]] */
+	public double[] Lsx ;       /* panel values, incl. the unit diagonal */
+	public int[] Usb ;          /* supernodes of U, as for L */
+	public int[] Usk ;
+	public int[] Usn ;
+	public int[] Usip ;
+	public int[] Usi ;
+	public int[] Usp ;
+	public double[] Usx ;       /* panel values, incl. the diagonal of U */
+
 }
@@ -51,6 +51,25 @@ public class KLU_symbolic
         Q,              /* size n */
         R;              /* size n+1, but only R [0..nblocks] is used */
 
+    /* runs of consecutive singleton blocks, computed by klu_analyze.  For a
+     * run of singletons from block f to block l > f, Srun [f] = l and
+     * Srun [l] = f, so a loop over the blocks in either direction finds the
+     * other end of the run at its first block.  Srun [b] = b for all other
+     * blocks.  null if not computed. */
+    public int[] Srun;
+
+    /* separator tree of nested dissection (ordering 5), in postorder, with
+     * one tree for each block of the BTF form (before any merging).  Node t
+     * owns columns Sep_start [t] to Sep_start [t+1]-1 of A (P,Q), a
+     * separator or a leaf, and its subtree covers columns Sep_first [t] to
+     * Sep_start [t+1]-1.  The subtrees of two children of the same node are
+     * independent, and can be factorized in parallel.  Sep_parent [t] is
+     * EMPTY for the root of a block.  null if not computed. */
+    public int nsep;            /* # of nodes */
+    public int[] Sep_start;     /* size 2n+1, but only [0..nsep] is used */
+    public int[] Sep_first;     /* size 2n, but only [0..nsep-1] is used */
+    public int[] Sep_parent;    /* size 2n, but only [0..nsep-1] is used */
+
     /* only computed if BTF preordering requested */
     public int structural_rank;   /* 0 to n-1 if the matrix is structurally rank
                         * deficient.  -1 if not computed.  n if the matrix has
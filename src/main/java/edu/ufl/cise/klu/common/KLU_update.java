@@ -0,0 +1,52 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.common;
+
+/**
+ * Update object - a low-rank change U*V' to the matrix A of a Numeric object,
+ * kept by klu_update_add so that klu_update_solve can solve with A + U*V'
+ * without refactorizing.
+ */
+public class KLU_update
+{
+
+	public int n;             /* A is n-by-n */
+	public int k;             /* rank of the update, # of columns of U and V */
+	public int kmax;          /* # of columns allocated */
+	public double[] U;        /* size n*kmax.  U, column-oriented */
+	public double[] V;        /* size n*kmax.  V, column-oriented */
+	public double[] W;        /* size n*kmax.  W = A\U */
+	public double[] S;        /* size kmax*kmax.  LU factors of the k-by-k
+	                           * capacitance matrix I + V'*W, leading
+	                           * dimension k */
+	public int[] Sp;          /* size kmax.  row pivots of S */
+	public double[] Sw;       /* size kmax.  workspace */
+	public double rcond;      /* min/max of abs (diag (U)) of S */
+	public int refactor;      /* TRUE if A + U*V' should be refactorized:
+	                           * k is larger than Common.update_maxrank, or S is
+	                           * singular or nearly so */
+
+}
@@ -28,6 +28,7 @@ import edu.ufl.cise.klu.common.KLU_common;
 
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
 import static edu.ufl.cise.klu.tdouble.Dklu_kernel.klu_kernel;
+import static edu.ufl.cise.klu.tdouble.Dklu_simd.klu_vsub4;
 
 /**
  * KLU: factorizes P*A into L*U, using the Gilbert-Peierls algorithm[1], with
@@ -100,6 +101,7 @@ public class Dklu extends Dklu_internal {
 	 * @param Lip size n, column pointers for L
 	 * @param Uip size n, column pointers for U
 	 * @param P row permutation, size n
+	 * @param hint if TRUE, P holds a preferred pivot order on input
 	 * @param lnz size of L
 	 * @param unz size of U
 	 * @param X size n double's, zero on output
@@ -118,7 +120,7 @@ public class Dklu extends Dklu_internal {
 			double[][] p_LU, int block,
 			double[] Udiag, int Udiag_offset, int[] Llen, int Llen_offset,
 			int[] Ulen, int Ulen_offset, int[] Lip, int Lip_offset,
-			int[] Uip, int Uip_offset, int P[], int[] lnz, int[] unz,
+			int[] Uip, int Uip_offset, int P[], int hint, int[] lnz, int[] unz,
 			double[] X, int[] Work, int k1, int[] PSinv, double[] Rs,
 			int[] Offp, int[] Offi, double[] Offx, KLU_common Common)
 	{
@@ -205,7 +207,7 @@ public class Dklu extends Dklu_internal {
 
 		/* with pruning, and non-recursive depth-first-search */
 		lusize = klu_kernel (n, Ap, Ai, Ax, Q, lusize,
-				Pinv, P, LU, Udiag, Udiag_offset, Llen, Llen_offset,
+				Pinv, P, hint, LU, Udiag, Udiag_offset, Llen, Llen_offset,
 				Ulen, Ulen_offset, Lip, Lip_offset, Uip, Uip_offset,
 				lnz, unz, X, Stack, Flag, Ap_pos, Lpend,
 				k1, PSinv, Rs, Offp, Offi, Offx, Common) ;
@@ -322,14 +324,8 @@ public class Dklu extends Dklu_internal {
 					{
 						i = (int) Li [Li_offset[0] + p] ;
 						lik = Lx [Lx_offset[0] + p] ;
-						//MULT_SUB (X [4*i], lik, x [0]) ;
-						X [X_offset + 4*i] -= lik * x [0] ;
-						//MULT_SUB (X [4*i + 1], lik, x [1]) ;
-						X [X_offset + 4*i + 1] -= lik * x [1] ;
-						//MULT_SUB (X [4*i + 2], lik, x [2]) ;
-						X [X_offset + 4*i + 2] -= lik * x [2] ;
-						//MULT_SUB (X [4*i + 3], lik, x [3]) ;
-						X [X_offset + 4*i + 3] -= lik * x [3] ;
+						//MULT_SUB (X [4*i..4*i+3], lik, x [0..3]) ;
+						klu_vsub4 (lik, x, 0, X, X_offset + 4*i) ;
 					}
 				}
 				break ;
@@ -429,9 +425,9 @@ public class Dklu extends Dklu_internal {
 					//DIV (x [2], X [3*k + 2], ukk) ;
 					x [2] = X [X_offset + 3*k + 2] / ukk ;
 
-					X [3*k    ] = x [0] ;
-					X [3*k + 1] = x [1] ;
-					X [3*k + 2] = x [2] ;
+					X [X_offset + 3*k    ] = x [0] ;
+					X [X_offset + 3*k + 1] = x [1] ;
+					X [X_offset + 3*k + 2] = x [2] ;
 					for (p = 0 ; p < len[0] ; p++)
 					{
 						i = (int) Ui [Ui_offset[0] + p] ;
@@ -473,14 +469,8 @@ public class Dklu extends Dklu_internal {
 						i = (int) Ui [Ui_offset[0] + p] ;
 						uik = Ux [Ux_offset[0] + p] ;
 
-						//MULT_SUB (X [4*i], uik, x [0]) ;
-						X [X_offset + 4*i] -= uik * x [0] ;
-						//MULT_SUB (X [4*i + 1], uik, x [1]) ;
-						X [X_offset + 4*i + 1] -= uik * x [1] ;
-						//MULT_SUB (X [4*i + 2], uik, x [2]) ;
-						X [X_offset + 4*i + 2] -= uik * x [2] ;
-						//MULT_SUB (X [4*i + 3], uik, x [3]) ;
-						X [X_offset + 4*i + 3] -= uik * x [3] ;
+						//MULT_SUB (X [4*i..4*i+3], uik, x [0..3]) ;
+						klu_vsub4 (uik, x, 0, X, X_offset + 4*i) ;
 					}
 				}
 
@@ -599,14 +589,8 @@ public class Dklu extends Dklu_internal {
 						{
 							lik = Lx [Lx_offset[0] + p] ;
 						}
-						//MULT_SUB (x [0], lik, X [4*i]) ;
-						x [0] -= lik * X [X_offset + 4*i] ;
-						//MULT_SUB (x [1], lik, X [4*i + 1]) ;
-						x [1] -= lik * X [X_offset + 4*i + 1] ;
-						//MULT_SUB (x [2], lik, X [4*i + 2]) ;
-						x [2] -= lik * X [X_offset + 4*i + 2] ;
-						//MULT_SUB (x [3], lik, X [4*i + 3]) ;
-						x [3] -= lik * X [X_offset + 4*i + 3] ;
+						//MULT_SUB (x [0..3], lik, X [4*i..4*i+3]) ;
+						klu_vsub4 (lik, X, X_offset + 4*i, x, 0) ;
 					}
 					X [X_offset + 4*k    ] = x [0] ;
 					X [X_offset + 4*k + 1] = x [1] ;
@@ -662,7 +646,7 @@ public class Dklu extends Dklu_internal {
 						}
 					}
 					{
-						ukk = Udiag [k] ;
+						ukk = Udiag [Udiag_offset + k] ;
 					}
 					//DIV (X [k], x [0], ukk) ;
 					X [X_offset + k] = x [0] / ukk ;
@@ -688,7 +672,7 @@ public class Dklu extends Dklu_internal {
 						x [1] -= uik * X [X_offset + 2*i + 1] ;
 					}
 					{
-						ukk = Udiag [k] ;
+						ukk = Udiag [Udiag_offset + k] ;
 					}
 					//DIV (X [2*k], x [0], ukk) ;
 					X [X_offset + 2*k] = x [0] / ukk ;
@@ -719,7 +703,7 @@ public class Dklu extends Dklu_internal {
 						x [2] -= uik * X [X_offset + 3*i + 2] ;
 					}
 					{
-						ukk = Udiag [k] ;
+						ukk = Udiag [Udiag_offset + k] ;
 					}
 					//DIV (X [3*k], x [0], ukk) ;
 					X [X_offset + 3*k] = x [0] / ukk ;
@@ -745,17 +729,11 @@ public class Dklu extends Dklu_internal {
 						{
 							uik = Ux [Ux_offset[0] + p] ;
 						}
-						//MULT_SUB (x [0], uik, X [4*i]) ;
-						x [0] -= uik * X [X_offset + 4*i] ;
-						//MULT_SUB (x [1], uik, X [4*i + 1]) ;
-						x [1] -= uik * X [X_offset + 4*i + 1] ;
-						//MULT_SUB (x [2], uik, X [4*i + 2]) ;
-						x [2] -= uik * X [X_offset + 4*i + 2] ;
-						//MULT_SUB (x [3], uik, X [4*i + 3]) ;
-						x [3] -= uik * X [X_offset + 4*i + 3] ;
+						//MULT_SUB (x [0..3], uik, X [4*i..4*i+3]) ;
+						klu_vsub4 (uik, X, X_offset + 4*i, x, 0) ;
 					}
 					{
-						ukk = Udiag [k] ;
+						ukk = Udiag [Udiag_offset + k] ;
 					}
 					//DIV (X [4*k], x [0], ukk) ;
 					X [X_offset + 4*k] = x [0] / ukk ;
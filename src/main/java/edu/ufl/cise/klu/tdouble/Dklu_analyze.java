@@ -24,13 +24,22 @@
 
 package edu.ufl.cise.klu.tdouble;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import edu.ufl.cise.klu.common.KLU_common;
 import edu.ufl.cise.klu.common.KLU_symbolic;
 
 import static edu.ufl.cise.klu.tdouble.Dklu_analyze_given.klu_analyze_given;
 import static edu.ufl.cise.klu.tdouble.Dklu_analyze_given.klu_alloc_symbolic;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid;
+import static edu.ufl.cise.klu.tdouble.Dklu_parallel.klu_invoke_all;
+import static edu.ufl.cise.klu.tdouble.Dklu_auto.klu_auto_order;
+import static edu.ufl.cise.klu.tdouble.Dklu_nd.klu_nd_append;
+import static edu.ufl.cise.klu.tdouble.Dklu_nd.klu_nd_order;
 
 import static edu.ufl.cise.amd.tdouble.Damd_order.amd_order;
 import static edu.ufl.cise.amd.tdouble.Damd.AMD_INFO;
@@ -53,12 +62,257 @@ import static edu.ufl.cise.btf.tdouble.Dbtf.BTF_UNFLIP;
  * Orders and analyzes a matrix.
  *
  * Order the matrix using BTF (or not), and then AMD, COLAMD, the natural
- * ordering, or the user-provided-function on the blocks.  Does not support
+ * ordering, the cheapest of these for each block, nested dissection, or the
+ * user-provided-function on the blocks.  Does not support
  * using a given ordering (use klu_analyze_given for that case).
  */
 public class Dklu_analyze extends Dklu_internal
 {
 
+	/* statistics returned by order_block */
+	protected static final int ORDER_LNZ = 0 ;    /* nnz (L) estimate, or EMPTY */
+	protected static final int ORDER_FLOPS = 1 ;  /* flop count, or EMPTY */
+	protected static final int ORDER_NZ = 2 ;     /* nnz in the block */
+	protected static final int ORDER_NZOFF = 3 ;  /* nnz above the block */
+	protected static final int ORDER_MEM = 4 ;    /* memory used by AMD */
+	protected static final int ORDER_SYM = 5 ;    /* symmetry from AMD */
+	protected static final int ORDER_NODES = 6 ;  /* # of separator tree nodes */
+	protected static final int ORDER_STATS = 7 ;
+
+	/**
+	 * Constructs the block from rows/columns k1 to k2-1 of the BTF form, C,
+	 * and orders it.
+	 *
+	 * @param k1 first row/column of the block
+	 * @param k2 last row/column of the block, plus one
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param Qbtf BTF col permutation
+	 * @param Pinv inverse of the BTF row permutation
+	 * @param ordering what ordering to use (0, 1, 3, 4, or 5)
+	 * @param Pblk size k2-k1, the ordering of the block on output
+	 * @param Cp size k2-k1+1
+	 * @param Ci size MAX (nnz (C)+1, Cilen)
+	 * @param Cilen size of Ci passed to COLAMD
+	 * @param Stats size ORDER_STATS, statistics of the block on output
+	 * @param Symbolic the separator tree of nested dissection is returned in
+	 * Sep_start, Sep_first and Sep_parent, from position 2*k1 on
+	 * @param Common
+	 * @return KLU_OK or < 0 if error
+	 */
+	protected static int order_block(int k1, int k2, int[] Ap, int[] Ai,
+			int[] Qbtf, int[] Pinv, int ordering, int[] Pblk, int[] Cp,
+			int[] Ci, int Cilen, double[] Stats, KLU_symbolic Symbolic,
+			KLU_common Common)
+	{
+		double[] amd_Info = new double[AMD_INFO] ;
+		double lnz1, flops1 ;
+		int nk, k, oldcol, pend, newcol, result, pc, p, newrow, nzoff, ok,
+			err = KLU_INVALID ;
+		int[] cstats = new int[COLAMD_STATS];
+
+		nk = k2 - k1 ;
+		Stats [ORDER_MEM] = 0 ;
+		Stats [ORDER_SYM] = EMPTY ;
+		Stats [ORDER_NODES] = 0 ;
+
+		/* ---------------------------------------------------------------------- */
+		/* construct the kth block, C */
+		/* ---------------------------------------------------------------------- */
+
+		nzoff = 0 ;
+		pc = 0 ;
+		for (k = k1 ; k < k2 ; k++)
+		{
+			newcol = k-k1 ;
+			Cp [newcol] = pc ;
+			oldcol = Qbtf [k] ;
+			pend = Ap [oldcol+1] ;
+			for (p = Ap [oldcol] ; p < pend ; p++)
+			{
+				newrow = Pinv [Ai [p]] ;
+				if (newrow < k1)
+				{
+					nzoff++ ;
+				}
+				else
+				{
+					/* (newrow, newcol) is an entry in the block */
+					ASSERT (newrow < k2) ;
+					newrow -= k1 ;
+					Ci [pc++] = newrow ;
+				}
+			}
+		}
+		Cp [nk] = pc ;
+		Stats [ORDER_NZ] = pc ;
+		Stats [ORDER_NZOFF] = nzoff ;
+		if (!NDEBUG) ASSERT (klu_valid (nk, Cp, Ci, null)) ;
+
+		/* ---------------------------------------------------------------------- */
+		/* order the block C */
+		/* ---------------------------------------------------------------------- */
+
+		if (nk <= 3)
+		{
+
+			/* ------------------------------------------------------------------ */
+			/* use natural ordering for tiny blocks (3-by-3 or less) */
+			/* ------------------------------------------------------------------ */
+
+			for (k = 0 ; k < nk ; k++)
+			{
+				Pblk [k] = k ;
+			}
+			lnz1 = nk * (nk + 1) / 2 ;
+			flops1 = nk * (nk - 1) / 2 + (nk-1)*nk*(2*nk-1) / 6 ;
+			ok = TRUE ;
+
+		}
+		else if (ordering == 0)
+		{
+
+			/* ------------------------------------------------------------------ */
+			/* order the block with AMD (C+C') */
+			/* ------------------------------------------------------------------ */
+
+			result = amd_order (nk, Cp, Ci, Pblk, null, amd_Info) ;
+			ok = (result >= AMD_OK) ? 1 : 0;
+			if (result == AMD_OUT_OF_MEMORY)
+			{
+				err = KLU_OUT_OF_MEMORY ;
+			}
+
+			/* memory usage in AMD, and symmetry of the block */
+			Stats [ORDER_MEM] = amd_Info [AMD_MEMORY] ;
+			Stats [ORDER_SYM] = amd_Info [AMD_SYMMETRY] ;
+
+			/* get the ordering statistics from AMD */
+			lnz1 = (int) (amd_Info [AMD_LNZ]) + nk ;
+			flops1 = 2 * amd_Info [AMD_NMULTSUBS_LU] + amd_Info [AMD_NDIV] ;
+
+		}
+		else if (ordering == 1)
+		{
+
+			/* ------------------------------------------------------------------ */
+			/* order the block with COLAMD (C) */
+			/* ------------------------------------------------------------------ */
+
+			/* order (and destroy) Ci, returning column permutation in Cp.
+			 * COLAMD "cannot" fail since the matrix has already been checked,
+			 * and Ci allocated. */
+
+			ok = colamd (nk, nk, Cilen, Ci, Cp, null, cstats) ;
+			lnz1 = EMPTY ;
+			flops1 = EMPTY ;
+
+			/* copy the permutation from Cp to Pblk */
+			for (k = 0 ; k < nk ; k++)
+			{
+				Pblk [k] = Cp [k] ;
+			}
+
+		}
+		else if (ordering == 4)
+		{
+
+			/* ------------------------------------------------------------------ */
+			/* order the block with the cheaper of AMD and natural */
+			/* ------------------------------------------------------------------ */
+
+			err = klu_auto_order (nk, Cp, Ci, Pblk, Stats) ;
+			ok = (err == KLU_OK) ? 1 : 0 ;
+			lnz1 = Stats [ORDER_LNZ] ;
+			flops1 = Stats [ORDER_FLOPS] ;
+
+		}
+		else if (ordering == 5)
+		{
+
+			/* ------------------------------------------------------------------ */
+			/* order the block by nested dissection */
+			/* ------------------------------------------------------------------ */
+
+			err = klu_nd_order (nk, Cp, Ci, Pblk, Common.nd_leafsize,
+				Common.nd_amd, Symbolic.Sep_start, Symbolic.Sep_first,
+				Symbolic.Sep_parent, 2*k1, Stats) ;
+			ok = (err == KLU_OK) ? 1 : 0 ;
+			lnz1 = Stats [ORDER_LNZ] ;
+			flops1 = Stats [ORDER_FLOPS] ;
+
+		}
+		else
+		{
+
+			/* ------------------------------------------------------------------ */
+			/* pass the block to the user-provided ordering function */
+			/* ------------------------------------------------------------------ */
+
+			lnz1 = Common.user_order.order(nk, Cp, Ci, Pblk, Common) ;
+			flops1 = EMPTY ;
+			ok = (lnz1 != 0) ? 1 : 0 ;
+		}
+
+		Stats [ORDER_LNZ] = lnz1 ;
+		Stats [ORDER_FLOPS] = flops1 ;
+		return ((ok == 1) ? KLU_OK : err) ;  /* ordering method failed */
+	}
+
+	/**
+	 * Adds the statistics of one ordered block to the running totals.  The
+	 * blocks must be added in order, so that the totals do not depend on how
+	 * the blocks were ordered.
+	 *
+	 * @param block the block
+	 * @param nk size of the block
+	 * @param ordering what ordering was used
+	 * @param Stats statistics of the block, from order_block
+	 * @param Totals size 5: nzoff, nnz (L), flop count, the largest nnz
+	 * of the blocks added so far and the # of separator tree nodes, updated
+	 * on output
+	 * @param Lnz size n, but only Lnz [0..nblocks-1] is used
+	 * @param Symbolic
+	 * @param Common
+	 */
+	protected static void add_block(int block, int nk, int ordering,
+			double[] Stats, double[] Totals, double[] Lnz,
+			KLU_symbolic Symbolic, KLU_common Common)
+	{
+		double lnz, lnz1, flops, flops1 ;
+
+		Totals [0] += Stats [ORDER_NZOFF] ;
+		Totals [3] = MAX (Totals [3], Stats [ORDER_NZ]) ;
+		if (nk > 3 && (ordering == 0 || ordering == 4))
+		{
+			/* account for memory usage in AMD */
+			Common.mempeak = MAX (Common.mempeak,
+				Common.memusage + (long) Stats [ORDER_MEM]) ;
+			if (Stats [ORDER_NZ] == Totals [3])
+			{
+				/* get the symmetry of the biggest block */
+				Symbolic.symmetry = Stats [ORDER_SYM] ;
+			}
+		}
+
+		/* keep track of nnz(L) and flops statistics */
+		lnz = Totals [1] ;
+		flops = Totals [2] ;
+		lnz1 = Stats [ORDER_LNZ] ;
+		flops1 = Stats [ORDER_FLOPS] ;
+		Lnz [block] = lnz1 ;
+		Totals [1] = (lnz == EMPTY || lnz1 == EMPTY) ? EMPTY : (lnz + lnz1) ;
+		Totals [2] = (flops == EMPTY || flops1 == EMPTY) ? EMPTY : (flops + flops1) ;
+
+		/* append the separator tree of the block, if any */
+		if (Symbolic.Sep_parent != null)
+		{
+			klu_nd_append (Symbolic.R [block], nk, (int) Stats [ORDER_NODES],
+				(int) Totals [4], Symbolic) ;
+			Totals [4] += MAX (1, Stats [ORDER_NODES]) ;
+		}
+	}
+
 	/**
 	 *
 	 * @param n A is n-by-n
@@ -68,7 +322,7 @@ public class Dklu_analyze extends Dklu_internal
 	 * @param Pbtf BTF row permutation
 	 * @param Qbtf BTF col permutation
 	 * @param R size n+1, but only Rbtf [0..nblocks] is used
-	 * @param ordering what ordering to use (0, 1, or 3 for this routine)
+	 * @param ordering what ordering to use (0, 1, 3, 4, or 5 for this routine)
 	 * @param P size n
 	 * @param Q size n
 	 * @param Lnz size n, but only Lnz [0..nblocks-1] is used
@@ -86,11 +340,9 @@ public class Dklu_analyze extends Dklu_internal
 			double[] Lnz, int[] Pblk, int[] Cp, int[] Ci, int Cilen,
 			int[] Pinv, KLU_symbolic Symbolic, KLU_common Common)
 	{
-		double[] amd_Info = new double[AMD_INFO] ;
-		double lnz, lnz1, flops, flops1 ;
-		int k1, k2, nk, k, block, oldcol, pend, newcol, result, pc, p, newrow,
-			maxnz, nzoff, ok, err = KLU_INVALID ;
-		int[] cstats = new int[COLAMD_STATS];
+		double[] Stats = new double [ORDER_STATS] ;
+		double[] Totals = new double [5] ;
+		int k1, k2, nk, k, block, status ;
 
 		/* ---------------------------------------------------------------------- */
 		/* initializations */
@@ -114,10 +366,6 @@ public class Dklu_analyze extends Dklu_internal
 		if (!NDEBUG) {
 			for (k = 0 ; k < n ; k++) ASSERT (Pinv [k] != EMPTY) ;
 		}
-		nzoff = 0 ;
-		lnz = 0 ;
-		maxnz = 0 ;
-		flops = 0 ;
 		Symbolic.symmetry = EMPTY ;        /* only computed by AMD */
 
 		/* ---------------------------------------------------------------------- */
@@ -137,160 +385,270 @@ public class Dklu_analyze extends Dklu_internal
 			PRINTF ("BLOCK %d, k1 %d k2-1 %d nk %d\n", block, k1, k2-1, nk) ;
 
 			/* ------------------------------------------------------------------ */
-			/* construct the kth block, C */
+			/* construct and order the block, and keep track of the statistics */
 			/* ------------------------------------------------------------------ */
 
-			Lnz [block] = EMPTY ;
-			pc = 0 ;
-			for (k = k1 ; k < k2 ; k++)
+			status = order_block (k1, k2, Ap, Ai, Qbtf, Pinv, ordering, Pblk,
+				Cp, Ci, Cilen, Stats, Symbolic, Common) ;
+			if (status != KLU_OK)
 			{
-				newcol = k-k1 ;
-				Cp [newcol] = pc ;
-				oldcol = Qbtf [k] ;
-				pend = Ap [oldcol+1] ;
-				for (p = Ap [oldcol] ; p < pend ; p++)
-				{
-					newrow = Pinv [Ai [p]] ;
-					if (newrow < k1)
-					{
-						nzoff++ ;
-					}
-					else
-					{
-						/* (newrow, newcol) is an entry in the block */
-						ASSERT (newrow < k2) ;
-						newrow -= k1 ;
-						Ci [pc++] = newrow ;
-					}
-				}
+				return (status) ;  /* ordering method failed */
 			}
-			Cp [nk] = pc ;
-			maxnz = MAX (maxnz, pc) ;
-			if (!NDEBUG) ASSERT (klu_valid (nk, Cp, Ci, null)) ;
+			add_block (block, nk, ordering, Stats, Totals, Lnz, Symbolic,
+				Common) ;
 
 			/* ------------------------------------------------------------------ */
-			/* order the block C */
+			/* combine the preordering with the BTF ordering */
 			/* ------------------------------------------------------------------ */
 
-			if (nk <= 3)
+			PRINTF ("Pblk, 1-based:\n") ;
+			for (k = 0 ; k < nk ; k++)
 			{
-
-				/* -------------------------------------------------------------- */
-				/* use natural ordering for tiny blocks (3-by-3 or less) */
-				/* -------------------------------------------------------------- */
-
-				for (k = 0 ; k < nk ; k++)
-				{
-					Pblk [k] = k ;
-				}
-				lnz1 = nk * (nk + 1) / 2 ;
-				flops1 = nk * (nk - 1) / 2 + (nk-1)*nk*(2*nk-1) / 6 ;
-				ok = TRUE ;
-
+				ASSERT (k + k1 < n) ;
+				ASSERT (Pblk [k] + k1 < n) ;
+				Q [k + k1] = Qbtf [Pblk [k] + k1] ;
 			}
-			else if (ordering == 0)
+			for (k = 0 ; k < nk ; k++)
 			{
+				ASSERT (k + k1 < n) ;
+				ASSERT (Pblk [k] + k1 < n) ;
+				P [k + k1] = Pbtf [Pblk [k] + k1] ;
+			}
+		}
 
-				/* -------------------------------------------------------------- */
-				/* order the block with AMD (C+C') */
-				/* -------------------------------------------------------------- */
+		return (finish_worker (n, Ap, Totals, Symbolic)) ;
+	}
 
-				result = amd_order (nk, Cp, Ci, Pblk, null, amd_Info) ;
-				ok = (result >= AMD_OK) ? 1 : 0;
-				if (result == AMD_OUT_OF_MEMORY)
-				{
-					err = KLU_OUT_OF_MEMORY ;
-				}
+	/**
+	 * Returns the totals of the ordering statistics in the Symbolic object.
+	 *
+	 * @param n A is n-by-n
+	 * @param Ap size n+1, column pointers
+	 * @param Totals from add_block
+	 * @param Symbolic
+	 * @return KLU_OK
+	 */
+	private static int finish_worker(int n, int[] Ap, double[] Totals,
+			KLU_symbolic Symbolic)
+	{
+		int nzoff = (int) Totals [0] ;
 
-				/* account for memory usage in AMD */
-				Common.mempeak = MAX (Common.mempeak,
-					Common.memusage + (long) amd_Info [AMD_MEMORY]) ;
+		PRINTF ("nzoff %d  Ap[n] %d\n", nzoff, Ap [n]) ;
+		ASSERT (nzoff >= 0 && nzoff <= Ap [n]) ;
 
-				/* get the ordering statistics from AMD */
-				lnz1 = (int) (amd_Info [AMD_LNZ]) + nk ;
-				flops1 = 2 * amd_Info [AMD_NMULTSUBS_LU] + amd_Info [AMD_NDIV] ;
-				if (pc == maxnz)
-				{
-					/* get the symmetry of the biggest block */
-					Symbolic.symmetry = amd_Info [AMD_SYMMETRY] ;
-				}
+		/* return estimates of # of nonzeros in L including diagonal */
+		Symbolic.lnz = Totals [1] ;         /* EMPTY if COLAMD used */
+		Symbolic.unz = Totals [1] ;
+		Symbolic.nzoff = nzoff ;
+		Symbolic.est_flops = Totals [2] ;   /* EMPTY if COLAMD or user-ordering used */
 
-			}
-			else if (ordering == 1)
-			{
+		if (Symbolic.Sep_parent != null)
+		{
+			/* the separator tree of nested dissection */
+			Symbolic.nsep = (int) Totals [4] ;
+			Symbolic.Sep_start [Symbolic.nsep] = n ;
+		}
+		return (KLU_OK) ;
+	}
 
-				/* -------------------------------------------------------------- */
-				/* order the block with COLAMD (C) */
-				/* -------------------------------------------------------------- */
+	/**
+	 * Counts the blocks that are ordered with AMD or COLAMD (larger than
+	 * 3-by-3), to decide if ordering them in parallel is worthwhile.
+	 *
+	 * @param nblocks # of blocks
+	 * @param R size nblocks+1, block boundaries
+	 * @return # of blocks larger than 3-by-3
+	 */
+	private static int count_large_blocks(int nblocks, int[] R)
+	{
+		int block, nlarge = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			if (R [block+1] - R [block] > 3)
+			{
+				nlarge++ ;
+			}
+		}
+		return (nlarge) ;
+	}
 
-				/* order (and destroy) Ci, returning column permutation in Cp.
-				 * COLAMD "cannot" fail since the matrix has already been checked,
-				 * and Ci allocated. */
+	/**
+	 * Parallel version of analyze_worker.  The blocks are split into
+	 * contiguous ranges with about the same # of entries, and the ranges are
+	 * ordered concurrently on Common.executor, each with its own workspace.
+	 * Each block writes its own part of P and Q.  The statistics of the
+	 * blocks are then added up in block order, so the result is the same as
+	 * that of analyze_worker.  Only the built-in orderings (0, 1, 4 and 5)
+	 * are used this way; the user ordering function need not be
+	 * thread-safe.
+	 *
+	 * @param n A is n-by-n
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param nblocks # of blocks
+	 * @param Pbtf BTF row permutation
+	 * @param Qbtf BTF col permutation
+	 * @param R size n+1, but only Rbtf [0..nblocks] is used
+	 * @param ordering what ordering to use (0, 1, 4, or 5)
+	 * @param P size n
+	 * @param Q size n
+	 * @param Lnz size n, but only Lnz [0..nblocks-1] is used
+	 * @param Pinv size n
+	 * @param Symbolic
+	 * @param Common
+	 * @return KLU_OK or < 0 if error
+	 */
+	public static int analyze_worker_parallel(int n, final int[] Ap,
+			final int[] Ai, int nblocks, final int[] Pbtf, final int[] Qbtf,
+			final int[] R, final int ordering, final int[] P, final int[] Q,
+			double[] Lnz, final int[] Pinv, final KLU_symbolic Symbolic,
+			final KLU_common Common)
+	{
+		final double[] Stats ;
+		final int[] Bstatus ;
+		double[] Totals = new double [5] ;
+		double[] Bstats = new double [ORDER_STATS] ;
+		List<Callable<Object>> tasks ;
+		int[] Cb, Bnz ;
+		int k1, k2, k, block, t, ntasks, bnz, maxnk, maxnz, Cilen ;
+		long nz, anz ;
 
-				ok = colamd (nk, nk, Cilen, Ci, Cp, null, cstats) ;
-				lnz1 = EMPTY ;
-				flops1 = EMPTY ;
+		/* ---------------------------------------------------------------------- */
+		/* initializations */
+		/* ---------------------------------------------------------------------- */
 
-				/* copy the permutation from Cp to Pblk */
-				for (k = 0 ; k < nk ; k++)
-				{
-					Pblk [k] = Cp [k] ;
-				}
+		for (k = 0 ; k < n ; k++)
+		{
+			ASSERT (Pbtf [k] >= 0 && Pbtf [k] < n) ;
+			Pinv [Pbtf [k]] = k ;
+		}
+		Symbolic.symmetry = EMPTY ;        /* only computed by AMD */
 
-			}
-			else
+		/* # of entries in the columns of each block (an upper bound on the
+		 * # of entries in the block itself) */
+		Bnz = klu_malloc_int (nblocks, Common) ;
+		Stats = klu_malloc_dbl (nblocks * ORDER_STATS, Common) ;
+		Bstatus = klu_malloc_int (nblocks, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (Common.status) ;
+		}
+		anz = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			bnz = 0 ;
+			for (k = R [block] ; k < R [block+1] ; k++)
 			{
-
-				/* -------------------------------------------------------------- */
-				/* pass the block to the user-provided ordering function */
-				/* -------------------------------------------------------------- */
-
-				lnz1 = Common.user_order.order(nk, Cp, Ci, Pblk, Common) ;
-				flops1 = EMPTY ;
-				ok = (lnz1 != 0) ? 1 : 0 ;
+				bnz += Ap [Qbtf [k] + 1] - Ap [Qbtf [k]] ;
 			}
+			Bnz [block] = bnz ;
+			anz += bnz ;
+		}
 
-			if (ok != 1)
+		/* ---------------------------------------------------------------------- */
+		/* split the blocks into ranges of about anz/ntasks entries */
+		/* ---------------------------------------------------------------------- */
+
+		ntasks = MAX (1, MIN (Common.nthreads, nblocks)) ;
+		Cb = new int [ntasks+1] ;
+		Cb [0] = 0 ;
+		block = 0 ;
+		nz = 0 ;
+		for (t = 1 ; t < ntasks ; t++)
+		{
+			while (block < nblocks && nz < (anz * t) / ntasks)
 			{
-				return (err) ;  /* ordering method failed */
+				nz += Bnz [block++] ;
 			}
+			Cb [t] = block ;
+		}
+		Cb [ntasks] = nblocks ;
 
-			/* ------------------------------------------------------------------ */
-			/* keep track of nnz(L) and flops statistics */
-			/* ------------------------------------------------------------------ */
-
-			Lnz [block] = lnz1 ;
-			lnz = (lnz == EMPTY || lnz1 == EMPTY) ? EMPTY : (lnz + lnz1) ;
-			flops = (flops == EMPTY || flops1 == EMPTY) ? EMPTY : (flops + flops1) ;
-
-			/* ------------------------------------------------------------------ */
-			/* combine the preordering with the BTF ordering */
-			/* ------------------------------------------------------------------ */
+		/* ---------------------------------------------------------------------- */
+		/* order each range of blocks, with its own workspace */
+		/* ---------------------------------------------------------------------- */
 
-			PRINTF ("Pblk, 1-based:\n") ;
-			for (k = 0 ; k < nk ; k++)
+		tasks = new ArrayList<Callable<Object>> (ntasks) ;
+		for (t = 0 ; t < ntasks ; t++)
+		{
+			final int b1 = Cb [t] ;
+			final int b2 = Cb [t+1] ;
+			if (b1 == b2)
 			{
-				ASSERT (k + k1 < n) ;
-				ASSERT (Pblk [k] + k1 < n) ;
-				Q [k + k1] = Qbtf [Pblk [k] + k1] ;
+				continue ;
 			}
-			for (k = 0 ; k < nk ; k++)
+			maxnk = 0 ;
+			maxnz = 0 ;
+			for (block = b1 ; block < b2 ; block++)
 			{
-				ASSERT (k + k1 < n) ;
-				ASSERT (Pblk [k] + k1 < n) ;
-				P [k + k1] = Pbtf [Pblk [k] + k1] ;
+				maxnk = MAX (maxnk, R [block+1] - R [block]) ;
+				maxnz = MAX (maxnz, Bnz [block]) ;
+			}
+			Cilen = (ordering == 1) ? COLAMD_recommended (maxnz, maxnk, maxnk)
+					: maxnz + 1 ;
+			final int Cilen2 = Cilen ;
+			final int[] Pblk = klu_malloc_int (maxnk, Common) ;
+			final int[] Cp = klu_malloc_int (maxnk + 1, Common) ;
+			final int[] Ci = klu_malloc_int (MAX (Cilen, maxnz + 1), Common) ;
+			if (Common.status < KLU_OK)
+			{
+				return (Common.status) ;
 			}
+			tasks.add (new Callable<Object> ()
+			{
+				public Object call()
+				{
+					double[] Bstats = new double [ORDER_STATS] ;
+					int block, k1, k2, k, status ;
+					for (block = b1 ; block < b2 ; block++)
+					{
+						k1 = R [block] ;
+						k2 = R [block+1] ;
+						status = order_block (k1, k2, Ap, Ai, Qbtf, Pinv,
+							ordering, Pblk, Cp, Ci, Cilen2, Bstats, Symbolic,
+							Common) ;
+						Bstatus [block] = status ;
+						if (status != KLU_OK)
+						{
+							break ;  /* ordering method failed */
+						}
+						System.arraycopy (Bstats, 0, Stats,
+							block * ORDER_STATS, ORDER_STATS) ;
+						for (k = 0 ; k < k2 - k1 ; k++)
+						{
+							Q [k + k1] = Qbtf [Pblk [k] + k1] ;
+							P [k + k1] = Pbtf [Pblk [k] + k1] ;
+						}
+					}
+					return (null) ;
+				}
+			}) ;
 		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			Bstatus [block] = KLU_INVALID ;  /* not ordered yet */
+		}
+		klu_invoke_all (Common.executor, tasks) ;
 
-		PRINTF ("nzoff %d  Ap[n] %d\n", nzoff, Ap [n]) ;
-		ASSERT (nzoff >= 0 && nzoff <= Ap [n]) ;
+		/* ---------------------------------------------------------------------- */
+		/* add up the statistics in block order */
+		/* ---------------------------------------------------------------------- */
 
-		/* return estimates of # of nonzeros in L including diagonal */
-		Symbolic.lnz = lnz ;           /* EMPTY if COLAMD used */
-		Symbolic.unz = lnz ;
-		Symbolic.nzoff = nzoff ;
-		Symbolic.est_flops = flops ;   /* EMPTY if COLAMD or user-ordering used */
-		return (KLU_OK) ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			if (Bstatus [block] != KLU_OK)
+			{
+				return (Bstatus [block]) ;  /* ordering method failed */
+			}
+			System.arraycopy (Stats, block * ORDER_STATS, Bstats, 0,
+				ORDER_STATS) ;
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			add_block (block, k2 - k1, ordering, Bstats, Totals, Lnz, Symbolic,
+				Common) ;
+		}
+
+		return (finish_worker (n, Ap, Totals, Symbolic)) ;
 	}
 
 	/**
@@ -334,9 +692,11 @@ public class Dklu_analyze extends Dklu_internal
 			/* COLAMD */
 			Cilen = COLAMD_recommended (nz, n, n) ;
 		}
-		else if (ordering == 0 || (ordering == 3 && Common.user_order != null))
+		else if (ordering == 0 || ordering == 4 || ordering == 5
+			|| (ordering == 3 && Common.user_order != null))
 		{
-			/* AMD or user ordering function */
+			/* AMD, automatic choice, nested dissection, or user ordering
+			 * function */
 			Cilen = nz+1 ;
 		}
 		else
@@ -457,6 +817,13 @@ public class Dklu_analyze extends Dklu_internal
 		Cp   = klu_malloc_int (maxblock + 1, Common) ;
 		Ci   = klu_malloc_int (MAX (Cilen, nz+1), Common) ;
 		Pinv = klu_malloc_int (n, Common) ;
+		if (ordering == 5)
+		{
+			/* separator tree: at most 2*nk-1 nodes for a block of size nk */
+			Symbolic.Sep_start = klu_malloc_int (2*n + 1, Common) ;
+			Symbolic.Sep_first = klu_malloc_int (2*n, Common) ;
+			Symbolic.Sep_parent = klu_malloc_int (2*n, Common) ;
+		}
 
 		/* ---------------------------------------------------------------------- */
 		/* order each block of the BTF ordering, and a fill-reducing ordering */
@@ -465,10 +832,26 @@ public class Dklu_analyze extends Dklu_internal
 		if (Common.status == KLU_OK)
 		{
 			PRINTF (("calling analyze_worker\n")) ;
-			Common.status = analyze_worker (n, Ap, Ai, nblocks, Pbtf, Qbtf, R,
-				ordering, P, Q, Lnz, Pblk, Cp, Ci, Cilen, Pinv, Symbolic, Common) ;
+			if (Common.executor != null && Common.nthreads > 1
+				&& (ordering == 0 || ordering == 1 || ordering == 4
+					|| ordering == 5)
+				&& count_large_blocks (nblocks, R) > 1)
+			{
+				Common.status = analyze_worker_parallel (n, Ap, Ai, nblocks,
+					Pbtf, Qbtf, R, ordering, P, Q, Lnz, Pinv, Symbolic, Common) ;
+			}
+			else
+			{
+				Common.status = analyze_worker (n, Ap, Ai, nblocks, Pbtf, Qbtf,
+					R, ordering, P, Q, Lnz, Pblk, Cp, Ci, Cilen, Pinv, Symbolic,
+					Common) ;
+			}
 			PRINTF ("analyze_worker done\n") ;
 		}
+		if (Common.status == KLU_OK)
+		{
+			klu_merge_blocks (n, Ap, Ai, Symbolic, Common) ;
+		}
 
 		/* ---------------------------------------------------------------------- */
 		/* free all workspace */
@@ -491,9 +874,186 @@ public class Dklu_analyze extends Dklu_internal
 			//klu_free_symbolic (Symbolic, Common) ;
 			Symbolic = null;
 		}
+		else
+		{
+			klu_singleton_runs (Symbolic, Common) ;
+		}
 		return (Symbolic) ;
 	}
 
+	/**
+	 * Merges adjacent small blocks of the BTF form, so that they share one LU
+	 * array, one kernel call and one pass of the solve loops.  Each block
+	 * keeps its own fill-reducing ordering, so the merged block is block upper
+	 * triangular.  No pivot can cross from one of its parts to another, so L
+	 * is unchanged, and the off-diagonal entries coupling the parts move into
+	 * U, together with the fill they cause there.
+	 *
+	 * Merging saves the fixed cost of a block and pays for the coupling
+	 * entries, which the depth-first search of the kernel has to follow.  A
+	 * block is therefore merged into the block before it only if neither is
+	 * a singleton (runs of singletons are handled by klu_singleton_runs), the
+	 * merged block has at most Common.merge_maxblock rows, and the two are
+	 * coupled by at most Common.merge_coupling times that many entries.
+	 * Does nothing if Common.merge_maxblock is less than 2.
+	 *
+	 * @param n A is n-by-n
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param Symbolic P, Q and R of the BTF form, modified on output
+	 * @param Common
+	 */
+	public static void klu_merge_blocks(int n, int[] Ap, int[] Ai,
+			KLU_symbolic Symbolic, KLU_common Common)
+	{
+		double[] Lnz, Lnz_old ;
+		int[] P, Q, R, R_old, Pinv ;
+		int nblocks, block, nb, k1, k2, nk, g1, k, p, pend, i, coupling,
+			maxblock, nzoff ;
+
+		nblocks = Symbolic.nblocks ;
+		if (Common.merge_maxblock < 2 || nblocks <= 1)
+		{
+			return ;
+		}
+		P = Symbolic.P ;
+		Q = Symbolic.Q ;
+		R = Symbolic.R ;
+		Lnz = Symbolic.Lnz ;
+
+		Pinv = klu_malloc_int (n, Common) ;
+		R_old = klu_malloc_int (nblocks+1, Common) ;
+		Lnz_old = klu_malloc_dbl (nblocks, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			/* out of memory: merging is optional, so keep the BTF blocks */
+			Common.status = KLU_OK ;
+			return ;
+		}
+		for (k = 0 ; k < n ; k++)
+		{
+			Pinv [P [k]] = k ;
+		}
+		for (block = 0 ; block <= nblocks ; block++)
+		{
+			R_old [block] = R [block] ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			Lnz_old [block] = Lnz [block] ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* merge each block into the one before it, or start a new block */
+		/* ---------------------------------------------------------------------- */
+
+		nzoff = Symbolic.nzoff ;
+		nb = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R_old [block] ;
+			k2 = R_old [block+1] ;
+			nk = k2 - k1 ;
+
+			/* the last new block is from rows/columns g1 to k1-1 */
+			g1 = (nb > 0) ? R [nb-1] : k1 ;
+			if (nb > 0 && k1 - g1 > 1 && nk > 1 &&
+				k2 - g1 <= Common.merge_maxblock)
+			{
+				/* count the entries of A (g1:k1-1, k1:k2-1) */
+				coupling = 0 ;
+				for (k = k1 ; k < k2 ; k++)
+				{
+					pend = Ap [Q [k] + 1] ;
+					for (p = Ap [Q [k]] ; p < pend ; p++)
+					{
+						i = Pinv [Ai [p]] ;
+						if (i >= g1 && i < k1)
+						{
+							coupling++ ;
+						}
+					}
+				}
+				if (coupling <= Common.merge_coupling * (k2 - g1))
+				{
+					/* merge: the coupling entries move into U */
+					PRINTF ("merge block %d into %d, coupling %d\n",
+						block, nb-1, coupling) ;
+					R [nb] = k2 ;
+					Lnz [nb-1] = (Lnz [nb-1] < 0 || Lnz_old [block] < 0) ?
+						EMPTY : Lnz [nb-1] + Lnz_old [block] ;
+					nzoff -= coupling ;
+					if (Symbolic.unz >= 0)
+					{
+						Symbolic.unz += coupling ;
+					}
+					continue ;
+				}
+			}
+
+			/* start a new block */
+			Lnz [nb] = Lnz_old [block] ;
+			R [nb+1] = k2 ;
+			nb++ ;
+		}
+
+		maxblock = 1 ;
+		for (block = 0 ; block < nb ; block++)
+		{
+			maxblock = MAX (maxblock, R [block+1] - R [block]) ;
+		}
+		Symbolic.nblocks = nb ;
+		Symbolic.maxblock = maxblock ;
+		Symbolic.nzoff = nzoff ;
+	}
+
+	/**
+	 * Finds the runs of consecutive singleton blocks.  The off-diagonal
+	 * entries in the columns of such a run form, with the singletons, one
+	 * upper triangular matrix, so klu_factor, klu_refactor, klu_solve and
+	 * klu_tsolve handle a whole run in a single loop over its columns
+	 * instead of block by block.
+	 *
+	 * @param Symbolic R and nblocks are used, Srun is computed
+	 * @param Common
+	 */
+	public static void klu_singleton_runs(KLU_symbolic Symbolic,
+			KLU_common Common)
+	{
+		int[] R, Srun ;
+		int nblocks, f, l ;
+
+		nblocks = Symbolic.nblocks ;
+		R = Symbolic.R ;
+		Srun = klu_malloc_int (nblocks, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			/* out of memory: the runs are optional, so carry on without */
+			Common.status = KLU_OK ;
+			Symbolic.Srun = null ;
+			return ;
+		}
+		for (f = 0 ; f < nblocks ; f++)
+		{
+			Srun [f] = f ;
+		}
+		for (f = 0 ; f < nblocks ; f = l+1)
+		{
+			/* find the last singleton block l of the run starting at f */
+			l = f ;
+			if (R [f+1] - R [f] == 1)
+			{
+				while (l+1 < nblocks && R [l+2] - R [l+1] == 1)
+				{
+					l++ ;
+				}
+			}
+			Srun [f] = l ;
+			Srun [l] = f ;
+		}
+		Symbolic.Srun = Srun ;
+	}
+
 	/**
 	 * Order the matrix with BTF (or not), then order each block with AMD,
 	 * COLAMD, a natural ordering, or with a user-provided ordering function.
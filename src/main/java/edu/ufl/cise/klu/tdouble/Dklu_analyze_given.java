@@ -27,6 +27,8 @@ package edu.ufl.cise.klu.tdouble;
 import edu.ufl.cise.klu.common.KLU_common;
 import edu.ufl.cise.klu.common.KLU_symbolic;
 
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_merge_blocks;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_singleton_runs;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
 
@@ -407,6 +409,9 @@ public class Dklu_analyze_given extends Dklu_internal
 		Symbolic.unz = EMPTY ;
 		Symbolic.nzoff = nzoff ;
 
+		klu_merge_blocks (n, Ap, Ai, Symbolic, Common) ;
+		klu_singleton_runs (Symbolic, Common) ;
+
 		return (Symbolic) ;
 	}
 
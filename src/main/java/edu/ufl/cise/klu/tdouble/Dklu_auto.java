@@ -0,0 +1,290 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.ORDER_FLOPS;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.ORDER_LNZ;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.ORDER_MEM;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.ORDER_SYM;
+
+import static edu.ufl.cise.amd.tdouble.Damd_order.amd_order;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_INFO;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_OK;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_OUT_OF_MEMORY;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_MEMORY;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_SYMMETRY;
+
+/**
+ * Automatic choice of the fill-reducing ordering of each block (ordering 4).
+ *
+ * The blocks of a circuit matrix can have very different structure: some
+ * are nearly symmetric meshes, for which AMD on A+A' works best, and some
+ * are nearly triangular, for which any reordering only adds fill.  For each
+ * block, klu_auto_order computes both orderings and counts the fill and the
+ * flops of an LU factorization without pivoting for each, with the
+ * symbolic factorization of klu_lu_count.  The cheaper one is kept.  The
+ * count of the second candidate is stopped as soon as it gets more
+ * expensive than the first, so a bad candidate costs little more than a
+ * good one.  The pivots of klu_factor will not all be on the diagonal, but
+ * with the diagonal preference of Common.tol most of them usually are.
+ *
+ * COLAMD is not a candidate: the COLAMDJ release that KLU depends on fails
+ * with an exception on many valid inputs, and ordering 1 is the way to use
+ * it where it works.
+ */
+public class Dklu_auto extends Dklu_internal {
+
+	/** a block is nearly triangular if at most this fraction of its
+	 * off-diagonal entries is on one side of the diagonal */
+	public static final double AUTO_TRIANGULAR = 0.05 ;
+
+	/* the candidate orderings */
+	private static final int AUTO_NATURAL = 0 ;
+	private static final int AUTO_AMD = 1 ;
+
+	/**
+	 * Symbolic LU factorization of C (Perm, Perm) without pivoting.  Counts
+	 * the entries in L and U (including the diagonal) and the flops of the
+	 * numeric factorization, with the same definition as AMD: one division
+	 * for each entry of L below the diagonal, and a multiply and a subtract
+	 * for each entry of L that is used to update a column.  Gives up as soon
+	 * as the flop count exceeds maxflops.
+	 *
+	 * @param nk C is nk-by-nk
+	 * @param Cp size nk+1, column pointers of C
+	 * @param Ci size nnz (C), row indices of C
+	 * @param Perm size nk, the ordering
+	 * @param maxflops largest flop count of interest
+	 * @param Count size 3: nnz (L), nnz (U) and the flop count, on output
+	 * @return TRUE if the count was completed, FALSE if it was stopped
+	 */
+	public static int klu_lu_count(int nk, int[] Cp, int[] Ci, int[] Perm,
+			double maxflops, double[] Count)
+	{
+		double flops ;
+		int[] Pinv, Flag, Lp, Lc, Li, Stack, Li2 ;
+		int j, k, p, q, i, r, top, lsize, lnz, unz, oldcol, pend ;
+
+		Pinv = new int [nk] ;
+		Flag = new int [nk] ;
+		Lp = new int [nk] ;
+		Lc = new int [nk] ;
+		Stack = new int [nk] ;
+		Li = new int [MAX (16, Cp [nk] + nk)] ;
+		for (k = 0 ; k < nk ; k++)
+		{
+			Pinv [Perm [k]] = k ;
+			Flag [k] = EMPTY ;
+		}
+		lsize = 0 ;
+		lnz = nk ;
+		unz = nk ;
+		flops = 0 ;
+
+		for (j = 0 ; j < nk ; j++)
+		{
+
+			/* -------------------------------------------------------------- */
+			/* find the pattern of column j of L and U */
+			/* -------------------------------------------------------------- */
+
+			/* the pattern of L\C(:,j) is the set of rows reachable from the
+			 * entries of C(:,j) in the graph of L(:,0:j-1).  Only the set is
+			 * needed, not a topological order, so a plain stack will do. */
+			Lp [j] = lsize ;
+			Flag [j] = j ;
+			top = 0 ;
+			oldcol = Perm [j] ;
+			pend = Cp [oldcol+1] ;
+			for (p = Cp [oldcol] ; p < pend ; p++)
+			{
+				i = Pinv [Ci [p]] ;
+				if (Flag [i] != j)
+				{
+					Flag [i] = j ;
+					Stack [top++] = i ;
+				}
+			}
+			while (top > 0)
+			{
+				i = Stack [--top] ;
+				if (i < j)
+				{
+					/* U(i,j) is nonzero: column j is updated with L(:,i) */
+					unz++ ;
+					flops += 2 * Lc [i] ;
+					for (q = Lp [i] ; q < Lp [i] + Lc [i] ; q++)
+					{
+						r = Li [q] ;
+						if (Flag [r] != j)
+						{
+							Flag [r] = j ;
+							Stack [top++] = r ;
+						}
+					}
+				}
+				else
+				{
+					/* L(i,j) is nonzero */
+					if (lsize == Li.length)
+					{
+						Li2 = new int [2 * Li.length] ;
+						System.arraycopy (Li, 0, Li2, 0, lsize) ;
+						Li = Li2 ;
+					}
+					Li [lsize++] = i ;
+				}
+			}
+			Lc [j] = lsize - Lp [j] ;
+			lnz += Lc [j] ;
+			flops += Lc [j] ;
+			if (flops > maxflops)
+			{
+				return (FALSE) ;
+			}
+		}
+
+		Count [0] = lnz ;
+		Count [1] = unz ;
+		Count [2] = flops ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Orders an nk-by-nk block with AMD or the natural ordering, whichever
+	 * gives the fewest flops in klu_lu_count (or the fewest entries in L+U,
+	 * if the flops are the same).  Nearly triangular blocks try the natural
+	 * ordering first, which keeps it on a tie.
+	 *
+	 * @param nk C is nk-by-nk, with nk > 3
+	 * @param Cp size nk+1, column pointers of C
+	 * @param Ci size nnz (C), row indices of C
+	 * @param Pblk size nk, the ordering on output
+	 * @param Stats size ORDER_STATS, nnz (L), flops, and the AMD memory
+	 * usage and symmetry on output
+	 * @return KLU_OK, or < 0 if AMD failed
+	 */
+	public static int klu_auto_order(int nk, int[] Cp, int[] Ci, int[] Pblk,
+			double[] Stats)
+	{
+		double[] amd_Info = new double [AMD_INFO] ;
+		double[] Count = new double [3] ;
+		double best_flops, best_nz ;
+		int[] Perm, Cand ;
+		int k, p, pend, i, nupper, nlower, result, c ;
+
+		/* ------------------------------------------------------------------ */
+		/* see if the block is nearly triangular */
+		/* ------------------------------------------------------------------ */
+
+		nupper = 0 ;
+		nlower = 0 ;
+		for (k = 0 ; k < nk ; k++)
+		{
+			pend = Cp [k+1] ;
+			for (p = Cp [k] ; p < pend ; p++)
+			{
+				i = Ci [p] ;
+				if (i < k)
+				{
+					nupper++ ;
+				}
+				else if (i > k)
+				{
+					nlower++ ;
+				}
+			}
+		}
+		if (MIN (nupper, nlower) <= AUTO_TRIANGULAR * (nupper + nlower))
+		{
+			Cand = new int [] { AUTO_NATURAL, AUTO_AMD } ;
+		}
+		else
+		{
+			Cand = new int [] { AUTO_AMD, AUTO_NATURAL } ;
+		}
+
+		/* ------------------------------------------------------------------ */
+		/* try each candidate, and keep the cheapest */
+		/* ------------------------------------------------------------------ */
+
+		Perm = new int [nk] ;
+		best_flops = Double.MAX_VALUE ;
+		best_nz = Double.MAX_VALUE ;
+		Stats [ORDER_LNZ] = EMPTY ;
+		Stats [ORDER_FLOPS] = EMPTY ;
+		for (c = 0 ; c < 2 ; c++)
+		{
+			if (Cand [c] == AUTO_NATURAL)
+			{
+
+				/* ---------------------------------------------------------- */
+				/* natural ordering */
+				/* ---------------------------------------------------------- */
+
+				for (k = 0 ; k < nk ; k++)
+				{
+					Perm [k] = k ;
+				}
+
+			}
+			else
+			{
+
+				/* ---------------------------------------------------------- */
+				/* AMD on C+C' (does not modify Cp or Ci) */
+				/* ---------------------------------------------------------- */
+
+				result = amd_order (nk, Cp, Ci, Perm, null, amd_Info) ;
+				if (result < AMD_OK)
+				{
+					return ((result == AMD_OUT_OF_MEMORY) ?
+						KLU_OUT_OF_MEMORY : KLU_INVALID) ;
+				}
+				Stats [ORDER_MEM] = amd_Info [AMD_MEMORY] ;
+				Stats [ORDER_SYM] = amd_Info [AMD_SYMMETRY] ;
+
+			}
+
+			/* -------------------------------------------------------------- */
+			/* count the fill and the flops, and keep the cheapest ordering */
+			/* -------------------------------------------------------------- */
+
+			if (klu_lu_count (nk, Cp, Ci, Perm, best_flops, Count) == TRUE
+				&& (Count [2] < best_flops || (Count [2] == best_flops
+					&& Count [0] + Count [1] < best_nz)))
+			{
+				best_flops = Count [2] ;
+				best_nz = Count [0] + Count [1] ;
+				System.arraycopy (Perm, 0, Pblk, 0, nk) ;
+				Stats [ORDER_LNZ] = Count [0] ;
+				Stats [ORDER_FLOPS] = Count [2] ;
+			}
+		}
+		return (KLU_OK) ;
+	}
+
+}
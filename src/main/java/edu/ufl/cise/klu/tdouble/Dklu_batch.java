@@ -0,0 +1,486 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_parallel.klu_invoke_all;
+
+/**
+ * Solve with many Numeric objects of the same Symbolic object, one
+ * right-hand-side each.  Numeric objects with the same pivot order and the
+ * same pattern of L, U and Off (for example, several operating points
+ * refactorized from one klu_factor) are solved together, up to four at a
+ * time: the loops over the blocks and columns run once, and each row index
+ * loaded from the factors is used for all of them, with their solutions
+ * interleaved in Xwork as klu_solve does for four right-hand-sides.  The
+ * groups of four are run on Common.executor if one is given.  The result for
+ * each Numeric object is identical to that of klu_solve with the default
+ * column-oriented kernels.
+ */
+public class Dklu_batch extends Dklu_internal {
+
+	/**
+	 * Returns TRUE if a and b are equal, or are the same array.
+	 */
+	protected static boolean same(int[] a, int[] b)
+	{
+		int k ;
+		if (a == b)
+		{
+			return (true) ;
+		}
+		if (a == null || b == null || a.length != b.length)
+		{
+			return (false) ;
+		}
+		for (k = 0 ; k < a.length ; k++)
+		{
+			if (a [k] != b [k])
+			{
+				return (false) ;
+			}
+		}
+		return (true) ;
+	}
+
+	/**
+	 * Returns TRUE if Numeric objects A and B of the same Symbolic object have
+	 * the same pivot order and the same pattern of L, U and Off.
+	 */
+	protected static boolean same_pattern(KLU_symbolic Symbolic,
+			KLU_numeric A, KLU_numeric B)
+	{
+		double[] LUa, LUb ;
+		int[] R ;
+		int block, k1, nk, k, p, pa, pb, len ;
+
+		if (A == B)
+		{
+			return (true) ;
+		}
+		if (!same (A.Pnum, B.Pnum) || !same (A.Lip, B.Lip) ||
+			!same (A.Llen, B.Llen) || !same (A.Uip, B.Uip) ||
+			!same (A.Ulen, B.Ulen) || !same (A.Offp, B.Offp) ||
+			!same (A.Offi, B.Offi))
+		{
+			return (false) ;
+		}
+		R = Symbolic.R ;
+		for (block = 0 ; block < Symbolic.nblocks ; block++)
+		{
+			k1 = R [block] ;
+			nk = R [block+1] - k1 ;
+			if (nk == 1)
+			{
+				continue ;
+			}
+			LUa = A.LUbx [block] ;
+			LUb = B.LUbx [block] ;
+			for (k = k1 ; k < k1 + nk ; k++)
+			{
+				/* row indices of column k of L, and of U */
+				pa = A.Lip [k] ;
+				len = A.Llen [k] ;
+				for (p = 0 ; p < len ; p++)
+				{
+					if (LUa [pa + p] != LUb [pa + p]) return (false) ;
+				}
+				pb = A.Uip [k] ;
+				len = A.Ulen [k] ;
+				for (p = 0 ; p < len ; p++)
+				{
+					if (LUa [pb + p] != LUb [pb + p]) return (false) ;
+				}
+			}
+		}
+		return (true) ;
+	}
+
+	/**
+	 * Finds the Numeric objects that can be solved together by
+	 * klu_solve_batch.  This reads all the indices of the factors, so it
+	 * should be done once, after klu_factor; klu_refactor does not change the
+	 * groups, but klu_sort may.
+	 *
+	 * @param Symbolic
+	 * @param Numerics Numeric objects of Symbolic
+	 * @param count number of Numeric objects
+	 * @param Common
+	 * @return size count, Group [j] is the first Numeric object with the same
+	 * pattern as Numerics [j], or null on error
+	 */
+	public static int[] klu_batch_groups(KLU_symbolic Symbolic,
+			KLU_numeric[] Numerics, int count, KLU_common Common)
+	{
+		int[] Group ;
+		int j, g ;
+
+		if (Common == null)
+		{
+			return (null) ;
+		}
+		if (Symbolic == null || Numerics == null || count < 0 ||
+			Numerics.length < count)
+		{
+			Common.status = KLU_INVALID ;
+			return (null) ;
+		}
+		Common.status = KLU_OK ;
+		Group = klu_malloc_int (count, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (null) ;
+		}
+		for (j = 0 ; j < count ; j++)
+		{
+			Group [j] = j ;
+			for (g = 0 ; g < j ; g++)
+			{
+				if (Group [g] == g &&
+					same_pattern (Symbolic, Numerics [g], Numerics [j]))
+				{
+					Group [j] = g ;
+					break ;
+				}
+			}
+		}
+		return (Group) ;
+	}
+
+	/**
+	 * Solves with m Numeric objects of the same pattern, m from 1 to 4, using
+	 * the Xwork of the first one.
+	 *
+	 * @param Symbolic
+	 * @param N the Numeric objects
+	 * @param B the right-hand-sides, overwritten with the solutions
+	 * @param m number of Numeric objects
+	 */
+	protected static void solve_chunk(KLU_symbolic Symbolic, KLU_numeric[] N,
+			double[][] B, int m)
+	{
+		double[] x = new double[4] ;
+		double[][] LU = new double[4][] ;
+		double[][] Udiag = new double[4][] ;
+		double[][] Offx = new double[4][] ;
+		double[][] Rs = new double[4][] ;
+		double[] X, LU0 ;
+		int[] Q, R, Pnum, Offp, Offi, Lip, Llen, Uip, Ulen ;
+		int n, nblocks, block, k1, k2, nk, k, p, pend, i, j, pl, pu, len ;
+
+		n = Symbolic.n ;
+		nblocks = Symbolic.nblocks ;
+		Q = Symbolic.Q ;
+		R = Symbolic.R ;
+		Pnum = N [0].Pnum ;
+		Offp = N [0].Offp ;
+		Offi = N [0].Offi ;
+		Lip = N [0].Lip ;
+		Llen = N [0].Llen ;
+		Uip = N [0].Uip ;
+		Ulen = N [0].Ulen ;
+		X = N [0].Xwork ;
+		for (j = 0 ; j < m ; j++)
+		{
+			Udiag [j] = N [j].Udiag ;
+			Offx [j] = N [j].Offx ;
+			Rs [j] = N [j].Rs ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* scale and permute the right hand sides, X = P*(R\B) */
+		/* ---------------------------------------------------------------------- */
+
+		for (k = 0 ; k < n ; k++)
+		{
+			i = Pnum [k] ;
+			for (j = 0 ; j < m ; j++)
+			{
+				//SCALE_DIV_ASSIGN (X [m*k+j], B [j][i], Rs [j][k]) ;
+				X [m*k + j] = (Rs [j] == null) ? B [j][i] : B [j][i] / Rs [j][k] ;
+			}
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* solve X = (L*U + Off)\X */
+		/* ---------------------------------------------------------------------- */
+
+		for (block = nblocks-1 ; block >= 0 ; block--)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			nk = k2 - k1 ;
+
+			if (nk == 1)
+			{
+				for (j = 0 ; j < m ; j++)
+				{
+					//DIV (X [m*k1+j], X [m*k1+j], Udiag [j][k1]) ;
+					X [m*k1 + j] = X [m*k1 + j] / Udiag [j][k1] ;
+				}
+			}
+			else
+			{
+				LU0 = N [0].LUbx [block] ;
+				for (j = 0 ; j < m ; j++)
+				{
+					LU [j] = N [j].LUbx [block] ;
+				}
+
+				/* solve Lx=b; the indices are read once, from LU0 */
+				for (k = k1 ; k < k2 ; k++)
+				{
+					pl = Lip [k] ;
+					len = Llen [k] ;
+					for (j = 0 ; j < m ; j++)
+					{
+						x [j] = X [m*k + j] ;
+					}
+					for (p = 0 ; p < len ; p++)
+					{
+						i = k1 + (int) LU0 [pl + p] ;
+						for (j = 0 ; j < m ; j++)
+						{
+							//MULT_SUB (X [m*i+j], Lx [j][p], x [j]) ;
+							X [m*i + j] -= LU [j][pl + len + p] * x [j] ;
+						}
+					}
+				}
+
+				/* solve Ux=b */
+				for (k = k2-1 ; k >= k1 ; k--)
+				{
+					pu = Uip [k] ;
+					len = Ulen [k] ;
+					for (j = 0 ; j < m ; j++)
+					{
+						//DIV (x [j], X [m*k+j], Udiag [j][k]) ;
+						x [j] = X [m*k + j] / Udiag [j][k] ;
+						X [m*k + j] = x [j] ;
+					}
+					for (p = 0 ; p < len ; p++)
+					{
+						i = k1 + (int) LU0 [pu + p] ;
+						for (j = 0 ; j < m ; j++)
+						{
+							//MULT_SUB (X [m*i+j], Ux [j][p], x [j]) ;
+							X [m*i + j] -= LU [j][pu + len + p] * x [j] ;
+						}
+					}
+				}
+			}
+
+			/* block back-substitution for the off-diagonal-block entries */
+			if (block > 0)
+			{
+				for (k = k1 ; k < k2 ; k++)
+				{
+					pend = Offp [k+1] ;
+					for (j = 0 ; j < m ; j++)
+					{
+						x [j] = X [m*k + j] ;
+					}
+					for (p = Offp [k] ; p < pend ; p++)
+					{
+						i = Offi [p] ;
+						for (j = 0 ; j < m ; j++)
+						{
+							//MULT_SUB (X [m*i+j], Offx [j][p], x [j]) ;
+							X [m*i + j] -= Offx [j][p] * x [j] ;
+						}
+					}
+				}
+			}
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* permute the result, B = Q*X */
+		/* ---------------------------------------------------------------------- */
+
+		for (k = 0 ; k < n ; k++)
+		{
+			i = Q [k] ;
+			for (j = 0 ; j < m ; j++)
+			{
+				B [j][i] = X [m*k + j] ;
+			}
+		}
+	}
+
+	/**
+	 * Solves A_j x_j = b_j for each Numeric object j of the same Symbolic
+	 * object.
+	 *
+	 * @param Symbolic
+	 * @param Numerics Numeric objects of Symbolic
+	 * @param Group groups from klu_batch_groups, or null to solve each
+	 * Numeric object on its own
+	 * @param count number of Numeric objects
+	 * @param B B [j] is the right-hand-side for Numerics [j] on input, of
+	 * size n, overwritten with the solution on output
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_solve_batch(final KLU_symbolic Symbolic,
+			KLU_numeric[] Numerics, int[] Group, int count, double[][] B,
+			KLU_common Common)
+	{
+		List<Callable<Object>> tasks ;
+		final List<KLU_numeric[]> chunkN ;
+		final List<double[][]> chunkB ;
+		KLU_numeric[] N ;
+		double[][] Bc ;
+		int[] Next, Last ;
+		int j, g, m, t, ntasks, nchunks ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numerics == null || B == null || count < 0 ||
+			Numerics.length < count || B.length < count ||
+			(Group != null && Group.length < count))
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		for (j = 0 ; j < count ; j++)
+		{
+			if (Numerics [j] == null || B [j] == null ||
+				Numerics [j].nblocks != Symbolic.nblocks ||
+				(Group != null && (Group [j] < 0 || Group [j] > j)))
+			{
+				Common.status = KLU_INVALID ;
+				return (FALSE) ;
+			}
+		}
+		Common.status = KLU_OK ;
+
+		/* ---------------------------------------------------------------------- */
+		/* split each group into chunks of up to 4 */
+		/* ---------------------------------------------------------------------- */
+
+		/* link the members of each group in order */
+		Next = new int [count] ;
+		Last = new int [count] ;
+		for (j = 0 ; j < count ; j++)
+		{
+			Next [j] = EMPTY ;
+			g = (Group == null) ? j : Group [j] ;
+			if (g != j)
+			{
+				Next [Last [g]] = j ;
+			}
+			Last [g] = j ;
+		}
+
+		chunkN = new ArrayList<KLU_numeric[]> () ;
+		chunkB = new ArrayList<double[][]> () ;
+		for (g = 0 ; g < count ; g++)
+		{
+			if (Group != null && Group [g] != g)
+			{
+				continue ;
+			}
+			for (j = g ; j != EMPTY ; )
+			{
+				N = new KLU_numeric [4] ;
+				Bc = new double [4][] ;
+				for (m = 0 ; m < 4 && j != EMPTY ; m++, j = Next [j])
+				{
+					N [m] = Numerics [j] ;
+					Bc [m] = B [j] ;
+				}
+				chunkN.add (N) ;
+				chunkB.add (Bc) ;
+			}
+		}
+		nchunks = chunkN.size () ;
+
+		/* ---------------------------------------------------------------------- */
+		/* solve the chunks */
+		/* ---------------------------------------------------------------------- */
+
+		ntasks = MIN (Common.nthreads, nchunks) ;
+		if (Common.executor == null || ntasks <= 1)
+		{
+			for (t = 0 ; t < nchunks ; t++)
+			{
+				solve_chunk (Symbolic, chunkN.get (t), chunkB.get (t),
+						size (chunkN.get (t))) ;
+			}
+			return (TRUE) ;
+		}
+
+		tasks = new ArrayList<Callable<Object>> (ntasks) ;
+		for (t = 0 ; t < ntasks ; t++)
+		{
+			final int first = t ;
+			final int stride = ntasks ;
+			tasks.add (new Callable<Object> ()
+			{
+				public Object call()
+				{
+					int c ;
+					for (c = first ; c < chunkN.size () ; c += stride)
+					{
+						solve_chunk (Symbolic, chunkN.get (c), chunkB.get (c),
+								size (chunkN.get (c))) ;
+					}
+					return (null) ;
+				}
+			}) ;
+		}
+		klu_invoke_all (Common.executor, tasks) ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Returns the number of Numeric objects in a chunk.
+	 */
+	protected static int size(KLU_numeric[] N)
+	{
+		int m = 0 ;
+		while (m < N.length && N [m] != null)
+		{
+			m++ ;
+		}
+		return (m) ;
+	}
+
+}
@@ -0,0 +1,232 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_border;
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_update.dense_lu;
+import static edu.ufl.cise.klu.tdouble.Dklu_update.dense_solve;
+
+/**
+ * Solves with the bordered matrix [A B ; C D], where A is factorized in a
+ * Numeric object and a few (m) rows and columns have been added, without
+ * analyzing and factorizing the larger matrix.  By block elimination,
+ *
+ *   [A B ; C D] = [I 0 ; C*inv(A) I] * [A B ; 0 S],   S = D - C*W, W = A\B
+ *
+ * klu_border computes W with one klu_solve of m right-hand-sides, and the
+ * dense LU factors of the m-by-m Schur complement S.  Each klu_border_solve
+ * then costs a klu_solve plus O(n*m + m^2).  B, C and D are dense, so this is
+ * meant for m much smaller than n: probes, sources and constraints added to a
+ * circuit matrix, for example.
+ */
+public class Dklu_border extends Dklu_internal {
+
+	/**
+	 * Factorizes [A B ; C D], given the Numeric object of A.
+	 *
+	 * @param Symbolic
+	 * @param Numeric factorization of A
+	 * @param m # of rows and columns added to A
+	 * @param B n-by-m, column-oriented with leading dimension ldb
+	 * @param ldb leading dimension of B
+	 * @param C m-by-n, column-oriented with leading dimension ldc
+	 * @param ldc leading dimension of C
+	 * @param D m-by-m, column-oriented with leading dimension ldd, or null
+	 * if zero
+	 * @param ldd leading dimension of D
+	 * @param Common
+	 * @return the Border object, or null on error
+	 */
+	public static KLU_border klu_border(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int m, double[] B, int ldb, double[] C,
+			int ldc, double[] D, int ldd, KLU_common Common)
+	{
+		KLU_border Border ;
+		double[] W, Ct, S ;
+		double s ;
+		int n, i, j, p ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (null) ;
+		}
+		if (Symbolic == null || Numeric == null || m < 0 ||
+			(m > 0 && (B == null || C == null || ldb < Symbolic.n || ldc < m ||
+			(D != null && ldd < m))))
+		{
+			Common.status = KLU_INVALID ;
+			return (null) ;
+		}
+		Common.status = KLU_OK ;
+		n = Symbolic.n ;
+
+		Border = new KLU_border () ;
+		Border.n = n ;
+		Border.m = m ;
+		W = Border.W = klu_malloc_dbl (MAX (n*m, 1), Common) ;
+		Ct = Border.Ct = klu_malloc_dbl (MAX (n*m, 1), Common) ;
+		S = Border.S = klu_malloc_dbl (MAX (m*m, 1), Common) ;
+		Border.Sp = klu_malloc_int (MAX (m, 1), Common) ;
+		Border.Sw = klu_malloc_dbl (MAX (m, 1), Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (null) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* W = A\B, and C' */
+		/* ---------------------------------------------------------------------- */
+
+		for (j = 0 ; j < m ; j++)
+		{
+			for (i = 0 ; i < n ; i++)
+			{
+				W [n*j + i] = B [ldb*j + i] ;
+				Ct [n*j + i] = C [j + ldc*i] ;
+			}
+		}
+		if (m > 0 && klu_solve (Symbolic, Numeric, n, m, W, 0, Common) == 0)
+		{
+			return (null) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* S = D - C*W, and its LU factorization */
+		/* ---------------------------------------------------------------------- */
+
+		for (j = 0 ; j < m ; j++)
+		{
+			for (i = 0 ; i < m ; i++)
+			{
+				s = (D == null) ? 0 : D [i + ldd*j] ;
+				for (p = 0 ; p < n ; p++)
+				{
+					s -= Ct [n*i + p] * W [n*j + p] ;
+				}
+				S [i + m*j] = s ;
+			}
+		}
+		Border.rcond = (m == 0) ? 1 : dense_lu (m, S, m, Border.Sp) ;
+		if (Border.rcond == 0)
+		{
+			/* the bordered matrix is singular */
+			Common.status = KLU_SINGULAR ;
+		}
+		return (Border) ;
+	}
+
+	/**
+	 * Solves [A B ; C D] [x1 ; x2] = [b1 ; b2], with x1 and b1 of size n
+	 * and x2 and b2 of size m.
+	 *
+	 * @param Symbolic
+	 * @param Numeric factorization of A
+	 * @param Border from klu_border
+	 * @param d leading dimension of X, at least n+m
+	 * @param nrhs number of right-hand-sides
+	 * @param X [b1 ; b2] on input, overwritten with [x1 ; x2] on output.
+	 * Size (n+m)*nrhs, in column-oriented form, with leading dimension d.
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_border_solve(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_border Border, int d, int nrhs,
+			double[] X, int X_offset, KLU_common Common)
+	{
+		double[] W, Ct, z ;
+		double s ;
+		int n, m, c, i, j, x ;
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Border == null || Symbolic == null || Border.n != Symbolic.n ||
+			d < Border.n + Border.m)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		if (Border.rcond == 0)
+		{
+			Common.status = KLU_SINGULAR ;
+			return (FALSE) ;
+		}
+		n = Border.n ;
+		m = Border.m ;
+		W = Border.W ;
+		Ct = Border.Ct ;
+		z = Border.Sw ;
+
+		/* y = A\b1 */
+		if (klu_solve (Symbolic, Numeric, d, nrhs, X, X_offset, Common) == 0)
+		{
+			return (FALSE) ;
+		}
+
+		for (c = 0 ; c < nrhs && m > 0 ; c++)
+		{
+			x = X_offset + d*c ;
+
+			/* x2 = S \ (b2 - C*y) */
+			for (j = 0 ; j < m ; j++)
+			{
+				s = X [x + n + j] ;
+				for (i = 0 ; i < n ; i++)
+				{
+					s -= Ct [n*j + i] * X [x + i] ;
+				}
+				z [j] = s ;
+			}
+			dense_solve (m, Border.S, m, Border.Sp, z, 0) ;
+
+			/* x1 = y - W*x2 */
+			for (j = 0 ; j < m ; j++)
+			{
+				s = z [j] ;
+				X [x + n + j] = s ;
+				if (s == 0) continue ;
+				for (i = 0 ; i < n ; i++)
+				{
+					X [x + i] -= W [n*j + i] * s ;
+				}
+			}
+		}
+		return (TRUE) ;
+	}
+
+}
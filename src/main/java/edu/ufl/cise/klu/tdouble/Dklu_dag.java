@@ -0,0 +1,417 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.DENSE_MAX;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.klu_dense_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.lsolve_rows;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.usolve_rows;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_parallel.klu_run_dag;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_super_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_super_usolve;
+
+/**
+ * Solves independent blocks of the block triangular form in parallel.
+ *
+ * Block b of X = (L*U + Off)\X can be solved as soon as every block with an
+ * entry in the rows of block b of Off has been solved.  klu_dag finds these
+ * dependencies once per Numeric object, together with a row-oriented copy of
+ * Off.  klu_dag_solve then runs the block solves as a task graph on
+ * Common.executor: each task gathers the off-diagonal updates for the rows
+ * of its block, in the same order klu_solve scatters them, and then solves
+ * the block.  The result is identical to the serial block back-substitution.
+ */
+public class Dklu_dag extends Dklu_internal {
+
+	/**
+	 * Computes the row form of the off-diagonal part.  The entries in each
+	 * row are in the order klu_solve uses them: by decreasing block, then by
+	 * increasing column.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param Common
+	 * @return TRUE if successful, FALSE if out of memory
+	 */
+	protected static int off_rows(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			KLU_common Common)
+	{
+		int[] R, Offp, Offi, Offrp, Offrj, Offrmap, W ;
+		double[] Offx, Offrx ;
+		int n, nblocks, nzoff, block, k, i, p, rp ;
+
+		n = Symbolic.n ;
+		nblocks = Symbolic.nblocks ;
+		R = Symbolic.R ;
+		Offp = Numeric.Offp ;
+		Offi = Numeric.Offi ;
+		Offx = Numeric.Offx ;
+		nzoff = Offp [n] ;
+
+		Offrp = klu_malloc_int (n+1, Common) ;
+		Offrj = klu_malloc_int (nzoff, Common) ;
+		Offrx = klu_malloc_dbl (nzoff, Common) ;
+		Offrmap = klu_malloc_int (nzoff, Common) ;
+		W = klu_malloc_int (n, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+
+		for (i = 0 ; i <= n ; i++)
+		{
+			Offrp [i] = 0 ;
+		}
+		for (p = 0 ; p < nzoff ; p++)
+		{
+			Offrp [Offi [p] + 1]++ ;
+		}
+		for (i = 0 ; i < n ; i++)
+		{
+			Offrp [i+1] += Offrp [i] ;
+			W [i] = Offrp [i] ;
+		}
+		for (block = nblocks-1 ; block >= 0 ; block--)
+		{
+			for (k = R [block] ; k < R [block+1] ; k++)
+			{
+				for (p = Offp [k] ; p < Offp [k+1] ; p++)
+				{
+					rp = W [Offi [p]]++ ;
+					Offrj [rp] = k ;
+					Offrx [rp] = Offx [p] ;
+					Offrmap [rp] = p ;
+				}
+			}
+		}
+
+		Numeric.Offrp = Offrp ;
+		Numeric.Offrj = Offrj ;
+		Numeric.Offrx = Offrx ;
+		Numeric.Offrmap = Offrmap ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Computes the block dependency graph, and the row form of the
+	 * off-diagonal part if not already computed.  Any previous graph is
+	 * replaced.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_dag(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			KLU_common Common)
+	{
+		int[] R, Offrp, Offrj, Bsp, Bsi, Bnpred, W, Blk, Mark, Lev ;
+		int n, nblocks, block, k, i, p, b, nsucc, lev, nblevels ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numeric == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+
+		n = Symbolic.n ;
+		nblocks = Symbolic.nblocks ;
+		R = Symbolic.R ;
+
+		/* ---------------------------------------------------------------------- */
+		/* allocate the result and workspace */
+		/* ---------------------------------------------------------------------- */
+
+		if (Numeric.Offrp == null && off_rows (Symbolic, Numeric, Common) == FALSE)
+		{
+			return (FALSE) ;
+		}
+		Offrp = Numeric.Offrp ;
+		Offrj = Numeric.Offrj ;
+
+		Bsp = klu_malloc_int (nblocks+1, Common) ;
+		Bnpred = klu_malloc_int (nblocks, Common) ;
+		W = klu_malloc_int (nblocks, Common) ;
+		Blk = klu_malloc_int (n, Common) ;
+		Mark = klu_malloc_int (nblocks, Common) ;
+		Lev = klu_malloc_int (nblocks, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			for (k = R [block] ; k < R [block+1] ; k++)
+			{
+				Blk [k] = block ;
+			}
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* count the distinct successors and predecessors of each block */
+		/* ---------------------------------------------------------------------- */
+
+		for (block = 0 ; block <= nblocks ; block++)
+		{
+			Bsp [block] = 0 ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			Mark [block] = EMPTY ;
+			Bnpred [block] = 0 ;
+		}
+		nblevels = 0 ;
+		for (block = nblocks-1 ; block >= 0 ; block--)
+		{
+			/* the predecessors of a block are all later blocks, so the
+			 * length of the longest path ending at the block is known */
+			lev = 0 ;
+			for (i = R [block] ; i < R [block+1] ; i++)
+			{
+				for (p = Offrp [i] ; p < Offrp [i+1] ; p++)
+				{
+					b = Blk [Offrj [p]] ;
+					if (Mark [b] != block)
+					{
+						Mark [b] = block ;
+						Bnpred [block]++ ;
+						Bsp [b+1]++ ;
+						lev = MAX (lev, Lev [b]) ;
+					}
+				}
+			}
+			Lev [block] = lev + 1 ;
+			nblevels = MAX (nblevels, lev + 1) ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			Bsp [block+1] += Bsp [block] ;
+		}
+		nsucc = Bsp [nblocks] ;
+
+		/* ---------------------------------------------------------------------- */
+		/* construct the successor lists */
+		/* ---------------------------------------------------------------------- */
+
+		Bsi = klu_malloc_int (nsucc, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			Mark [block] = EMPTY ;
+			W [block] = Bsp [block] ;
+		}
+		for (block = nblocks-1 ; block >= 0 ; block--)
+		{
+			for (i = R [block] ; i < R [block+1] ; i++)
+			{
+				for (p = Offrp [i] ; p < Offrp [i+1] ; p++)
+				{
+					b = Blk [Offrj [p]] ;
+					if (Mark [b] != block)
+					{
+						Mark [b] = block ;
+						Bsi [W [b]++] = block ;
+					}
+				}
+			}
+		}
+
+		Numeric.Bsp = Bsp ;
+		Numeric.Bsi = Bsi ;
+		Numeric.Bnpred = Bnpred ;
+		Numeric.nblevels = nblevels ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Removes the block dependency graph from the Numeric object.
+	 *
+	 * @param Numeric
+	 */
+	public static void klu_free_dag(KLU_numeric Numeric)
+	{
+		Numeric.Offrp = Numeric.Offrj = Numeric.Offrmap = null ;
+		Numeric.Offrx = null ;
+		Numeric.Bsp = Numeric.Bsi = Numeric.Bnpred = null ;
+		Numeric.nblevels = 0 ;
+	}
+
+	/**
+	 * Solves one block of X = (L*U + Off)\X, after gathering the updates
+	 * from the off-diagonal entries in its rows.
+	 */
+	protected static void solve_block(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int block, int nr, double[] X)
+	{
+		double[] Offrx, Udiag ;
+		int[] R, Offrp, Offrj ;
+		double s, offij ;
+		int k1, k2, nk, i, j, p, pend, c ;
+
+		R = Symbolic.R ;
+		Offrp = Numeric.Offrp ;
+		Offrj = Numeric.Offrj ;
+		Offrx = Numeric.Offrx ;
+		Udiag = Numeric.Udiag ;
+		k1 = R [block] ;
+		k2 = R [block+1] ;
+		nk = k2 - k1 ;
+
+		/* ------------------------------------------------------------------ */
+		/* gather the off-diagonal updates for rows k1 to k2-1 */
+		/* ------------------------------------------------------------------ */
+
+		if (nr == 1)
+		{
+			for (i = k1 ; i < k2 ; i++)
+			{
+				pend = Offrp [i+1] ;
+				for (p = Offrp [i] ; p < pend ; p++)
+				{
+					//MULT_SUB (X [i], Offrx [p], X [Offrj [p]]) ;
+					X [i] -= Offrx [p] * X [Offrj [p]] ;
+				}
+			}
+		}
+		else
+		{
+			for (i = k1 ; i < k2 ; i++)
+			{
+				pend = Offrp [i+1] ;
+				for (p = Offrp [i] ; p < pend ; p++)
+				{
+					j = Offrj [p] ;
+					offij = Offrx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						X [nr*i + c] -= offij * X [nr*j + c] ;
+					}
+				}
+			}
+		}
+
+		/* ------------------------------------------------------------------ */
+		/* solve the block system */
+		/* ------------------------------------------------------------------ */
+
+		if (nk == 1)
+		{
+			s = Udiag [k1] ;
+			for (c = 0 ; c < nr ; c++)
+			{
+				//DIV (X [nr*k1 + c], X [nr*k1 + c], s) ;
+				X [nr*k1 + c] = X [nr*k1 + c] / s ;
+			}
+		}
+		else if (Numeric.Dinv != null && Numeric.Dinv [block] != null)
+		{
+			klu_dense_solve (nk, Numeric.Dinv [block], nr, X, nr*k1,
+					(nk > 4) ? new double [DENSE_MAX] : null) ;
+		}
+		else if (Numeric.Llevp != null && Numeric.Llevp [block] != null)
+		{
+			/* all levels in order, serially; the task graph is already
+			 * using the thread pool */
+			lsolve_rows (0, nk, Numeric.Llevi [block], Numeric.Lrp [block],
+					Numeric.Lrj [block], Numeric.Lrx [block], nr, X, nr*k1) ;
+			usolve_rows (0, nk, Numeric.Ulevi [block], Numeric.Urp [block],
+					Numeric.Urj [block], Numeric.Urx [block], Udiag, k1, nr,
+					X, nr*k1) ;
+		}
+		else if (Numeric.Lsb != null)
+		{
+			klu_super_lsolve (Numeric.Lsb [block], Numeric.Lsb [block+1],
+					Numeric.Lsk, Numeric.Lsn, Numeric.Lsip, Numeric.Lsi,
+					Numeric.Lsp, Numeric.Lsx, nr, X, nr*k1) ;
+			klu_super_usolve (Numeric.Usb [block], Numeric.Usb [block+1],
+					Numeric.Usk, Numeric.Usn, Numeric.Usip, Numeric.Usi,
+					Numeric.Usp, Numeric.Usx, nr, X, nr*k1) ;
+		}
+		else if (Numeric.Lp != null)
+		{
+			klu_pack_lsolve (nk, Numeric.Lp, k1, Numeric.Li, Numeric.Lx, nr,
+					X, nr*k1) ;
+			klu_pack_usolve (nk, Numeric.Up, k1, Numeric.Ui, Numeric.Ux,
+					Numeric.Udinv, k1, nr, X, nr*k1) ;
+		}
+		else
+		{
+			klu_lsolve (nk, Numeric.Lip, k1, Numeric.Llen, k1,
+					Numeric.LUbx [block], nr, X, nr*k1) ;
+			klu_usolve (nk, Numeric.Uip, k1, Numeric.Ulen, k1,
+					Numeric.LUbx [block], Udiag, k1, nr, X, nr*k1) ;
+		}
+	}
+
+	/**
+	 * Solve X = (L*U + Off)\X for all blocks, running independent blocks
+	 * concurrently on Common.executor.  X is n-by-nr and is stored in ROW
+	 * form with row dimension nr, as in klu_solve.  klu_dag must have been
+	 * called first.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param nr number of right-hand-sides, 1 to 4
+	 * @param X right-hand-side on input, solution on output
+	 * @param Common
+	 */
+	public static void klu_dag_solve(final KLU_symbolic Symbolic,
+			final KLU_numeric Numeric, final int nr, final double[] X,
+			KLU_common Common)
+	{
+		klu_run_dag (Common.executor, Symbolic.nblocks, Numeric.Bsp,
+				Numeric.Bsi, Numeric.Bnpred, new Dklu_parallel.Task ()
+		{
+			public void run(int block)
+			{
+				solve_block (Symbolic, Numeric, block, nr, X) ;
+			}
+		}) ;
+	}
+
+}
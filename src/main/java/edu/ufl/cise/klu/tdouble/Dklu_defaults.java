@@ -50,13 +50,58 @@ public class Dklu_defaults extends Dklu_internal
 		Common.btf = TRUE ;        /* use BTF pre-ordering, or not */
 		Common.maxwork = 0 ;       /* no limit to work done by btf_order */
 		Common.ordering = 0 ;      /* 0: AMD, 1: COLAMD, 2: user-provided P and Q,
-		                            * 3: user-provided function */
+		                            * 3: user-provided function,
+		                            * 4: cheaper of AMD and natural,
+		                            * 5: nested dissection */
 		Common.scale = 2 ;         /* scale: -1: none, and do not check for errors
 		                            * in the input matrix in KLU_refactor.
 		                            * 0: none, but check for errors,
 		                            * 1: sum, 2: max */
 		Common.halt_if_singular = TRUE ;   /* quick halt if matrix is singular */
 
+		/* parallel routines, serial unless a thread pool is given */
+		Common.executor = null ;
+		Common.nthreads = Runtime.getRuntime ().availableProcessors () ;
+		Common.par_minblock = 2000 ;   /* level schedule blocks of this size */
+		Common.par_minlevel = 256 ;    /* split levels with this many rows */
+		Common.tsolve_rows = FALSE ;   /* klu_tsolve uses the column form */
+
+		/* iterative refinement */
+		Common.irstep = 3 ;            /* max # of refinement steps */
+		Common.refine_tol = DBL_EPSILON ;  /* backward error target */
+
+		/* supernodal factorization of large blocks */
+		Common.supernodal = FALSE ;    /* column-at-a-time kernel only */
+		Common.super_minblock = 200 ;  /* min. block size when enabled */
+
+		/* low-rank updates */
+		Common.update_maxrank = 16 ;   /* refactor once the rank is larger */
+
+		/* Krylov solvers preconditioned by a factorization */
+		Common.krylov_maxit = 100 ;    /* max # of iterations */
+		Common.krylov_restart = 30 ;   /* GMRES restart length */
+		Common.krylov_tol = 1e-10 ;    /* relative residual target */
+		Common.krylov_refactor_it = 10 ;   /* refactor if more are needed */
+
+		/* static pivoting */
+		Common.static_pivot = FALSE ;  /* partial pivoting */
+
+		/* incomplete factorization */
+		Common.ilu = 1 ;               /* ILUT */
+		Common.ilu_droptol = 1e-3 ;    /* drop tolerance, relative to norm (A (:,k)) */
+		Common.ilu_fill = 5 ;          /* fill cap, relative to nnz (A (:,k)) */
+
+		/* dense factorization of tiny blocks */
+		Common.dense_maxblock = 0 ;    /* sparse kernel for all blocks */
+
+		/* aggregation of small blocks */
+		Common.merge_maxblock = 0 ;    /* keep the BTF blocks */
+		Common.merge_coupling = 2 ;    /* max. coupling per row of a merge */
+
+		/* nested dissection */
+		Common.nd_leafsize = 64 ;      /* leaves ordered by minimum degree */
+		Common.nd_amd = TRUE ;         /* AMD if it gives less fill */
+
 		/* memory management routines */
 		//Common.malloc_memory  = malloc ;
 		//Common.calloc_memory  = calloc ;
@@ -78,6 +123,14 @@ public class Dklu_defaults extends Dklu_internal
 		Common.condest = EMPTY ;
 		Common.rgrowth = EMPTY ;
 		Common.work = 0 ;          /* work done by btf_order */
+		Common.berr = EMPTY ;
+		Common.ferr = EMPTY ;
+		Common.nrefine = EMPTY ;
+		Common.npert = 0 ;
+		Common.pert = EMPTY ;
+		Common.krylov_iter = EMPTY ;
+		Common.krylov_resid = EMPTY ;
+		Common.krylov_refactor = FALSE ;
 
 		Common.memusage = 0 ;
 		Common.mempeak = 0 ;
@@ -0,0 +1,420 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.construct_column;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.static_pivot;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+
+/**
+ * Dense factorization of tiny diagonal blocks.
+ *
+ * Circuit and power-system matrices often have many diagonal blocks with
+ * only two to eight rows, for which the depth-first search, the pruning and
+ * the indirect addressing of klu_kernel cost far more than the arithmetic.
+ * klu_factor gathers each such block into a dense array, factorizes it with
+ * partial pivoting (keeping the diagonal preference of Common.tol), and
+ * stores L and U in the usual LUbx form with dense patterns, so klu_refactor,
+ * klu_tsolve, klu_sort and the other routines handle the block unchanged.
+ * The explicit inverse of L*U is kept as well, and klu_solve applies it with
+ * an unrolled matrix-vector product.  klu_refactor recomputes the inverses.
+ */
+public class Dklu_dense extends Dklu_internal {
+
+	/** largest block factorized as a dense matrix */
+	public static final int DENSE_MAX = 8 ;
+
+	/**
+	 * Factorizes block k1..k1+nk-1 as a dense matrix.  The off-diagonal
+	 * entries of its columns are added to Off, as in klu_kernel.
+	 *
+	 * @param nk size of the block, 2 to DENSE_MAX
+	 * @param Ap size n+1, column pointers for A
+	 * @param Ai size nz = Ap[n], row indices for A
+	 * @param Ax size nz, values of A
+	 * @param Q size n, column permutation
+	 * @param p_LU LUbx, the LU factors of block 'block' are returned here
+	 * @param block the block to factorize
+	 * @param Udiag size n, diagonal of U
+	 * @param Llen size n, column length of L
+	 * @param Ulen size n, column length of U
+	 * @param Lip size n, column pointers for L
+	 * @param Uip size n, column pointers for U
+	 * @param P size nk, local pivot rows on output
+	 * @param hint if TRUE, P holds a preferred pivot order on input
+	 * @param lnz size of L
+	 * @param unz size of U
+	 * @param Dinv the inverse of L*U is returned in Dinv [block]
+	 * @param A size DENSE_MAX^2 workspace
+	 * @param X size nk double's, zero on input and output
+	 * @param k1 the block of A is from k1 to k1+nk-1
+	 * @param PSinv inverse of P from symbolic factorization
+	 * @param Rs scale factors for A
+	 * @param Offp off-diagonal matrix (modified by this routine)
+	 * @param Offi
+	 * @param Offx
+	 * @param Common
+	 * @return the size of LU
+	 */
+	public static int klu_dense_factor(int nk, int[] Ap, int[] Ai, double[] Ax,
+			int[] Q, double[][] p_LU, int block, double[] Udiag, int[] Llen,
+			int[] Ulen, int[] Lip, int[] Uip, int[] P, int hint, int[] lnz,
+			int[] unz, double[][] Dinv, double[] A, double[] X, int k1,
+			int[] PSinv, double[] Rs, int[] Offp, int[] Offi, double[] Offx,
+			KLU_common Common)
+	{
+		double pivot, abs_pivot, xabs, ukj, tol, t ;
+		double[] LU ;
+		int i, j, k, p, pivrow, lup, len, lusize ;
+
+		/* ---------------------------------------------------------------------- */
+		/* gather the block, with row i in position P [i] */
+		/* ---------------------------------------------------------------------- */
+
+		if (hint == FALSE)
+		{
+			for (k = 0 ; k < nk ; k++)
+			{
+				P [k] = k ;
+			}
+		}
+		for (j = 0 ; j < nk ; j++)
+		{
+			construct_column (j, Ap, Ai, Ax, Q, X, k1, PSinv, Rs,
+					Common.scale, Offp, Offi, Offx) ;
+			for (i = 0 ; i < nk ; i++)
+			{
+				A [i + j*nk] = X [P [i]] ;
+			}
+			for (i = 0 ; i < nk ; i++)
+			{
+				X [i] = 0.0 ;
+			}
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* right-looking LU with partial pivoting */
+		/* ---------------------------------------------------------------------- */
+
+		tol = (Common.static_pivot != FALSE) ? 0 : Common.tol ;
+		for (k = 0 ; k < nk ; k++)
+		{
+			if (Common.static_pivot != FALSE)
+			{
+				A [k + k*nk] = static_pivot (A [k + k*nk], Common) ;
+			}
+
+			/* find the largest entry, and take the diagonal if large enough */
+			pivrow = k ;
+			abs_pivot = 0 ;
+			for (i = k ; i < nk ; i++)
+			{
+				xabs = ABS (A [i + k*nk]) ;
+				if (xabs > abs_pivot)
+				{
+					abs_pivot = xabs ;
+					pivrow = i ;
+				}
+			}
+			if (ABS (A [k + k*nk]) >= tol * abs_pivot)
+			{
+				pivrow = k ;
+			}
+
+			if (pivrow != k)
+			{
+				/* an off-diagonal pivot has been chosen */
+				Common.noffdiag++ ;
+				for (j = 0 ; j < nk ; j++)
+				{
+					t = A [k + j*nk] ;
+					A [k + j*nk] = A [pivrow + j*nk] ;
+					A [pivrow + j*nk] = t ;
+				}
+				i = P [k] ;
+				P [k] = P [pivrow] ;
+				P [pivrow] = i ;
+			}
+
+			pivot = A [k + k*nk] ;
+			if (IS_ZERO (pivot))
+			{
+				/* matrix is numerically singular */
+				Common.status = KLU_SINGULAR ;
+				if (Common.numerical_rank == EMPTY)
+				{
+					Common.numerical_rank = k+k1 ;
+					Common.singular_col = Q [k+k1] ;
+				}
+				if (Common.halt_if_singular != 0)
+				{
+					/* do not continue the factorization */
+					return (0) ;
+				}
+			}
+
+			/* scale the pivot column and update the rest of the block */
+			for (i = k+1 ; i < nk ; i++)
+			{
+				A [i + k*nk] /= pivot ;
+			}
+			for (j = k+1 ; j < nk ; j++)
+			{
+				ukj = A [k + j*nk] ;
+				if (ukj != 0)
+				{
+					for (i = k+1 ; i < nk ; i++)
+					{
+						A [i + j*nk] -= A [i + k*nk] * ukj ;
+					}
+				}
+			}
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* store L and U with dense patterns, rows in pivotal order */
+		/* ---------------------------------------------------------------------- */
+
+		lusize = 2 * nk * (nk-1) ;
+		LU = klu_malloc_dbl (lusize, Common) ;
+		if (Common.status == KLU_OUT_OF_MEMORY)
+		{
+			return (0) ;
+		}
+		p_LU [block] = LU ;
+
+		lup = 0 ;
+		for (k = 0 ; k < nk ; k++)
+		{
+			/* L (k+1:nk-1,k) */
+			len = nk-1-k ;
+			Lip [k1+k] = lup ;
+			Llen [k1+k] = len ;
+			for (p = 0, i = k+1 ; i < nk ; p++, i++)
+			{
+				LU [lup + p] = i ;
+				LU [lup + len + p] = A [i + k*nk] ;
+			}
+			lup += 2*len ;
+
+			/* U (0:k-1,k), in topological order for klu_refactor */
+			len = k ;
+			Uip [k1+k] = lup ;
+			Ulen [k1+k] = len ;
+			for (i = 0 ; i < k ; i++)
+			{
+				LU [lup + i] = i ;
+				LU [lup + len + i] = A [i + k*nk] ;
+			}
+			lup += 2*len ;
+
+			Udiag [k1+k] = A [k + k*nk] ;
+		}
+		lnz[0] = nk * (nk+1) / 2 ;
+		unz[0] = lnz[0] ;
+
+		/* ---------------------------------------------------------------------- */
+		/* explicit inverse */
+		/* ---------------------------------------------------------------------- */
+
+		Dinv [block] = klu_malloc_dbl (nk*nk, Common) ;
+		if (Common.status == KLU_OUT_OF_MEMORY)
+		{
+			return (lusize) ;
+		}
+		dense_inverse (nk, k1, LU, Lip, Uip, Llen, Ulen, Udiag, Dinv [block]) ;
+
+		return (lusize) ;
+	}
+
+	/**
+	 * Computes D = inv (L*U) of a block, in row-major order, from the LU
+	 * factors in LUbx form.
+	 *
+	 * @param nk size of the block
+	 * @param k1 the block is from k1 to k1+nk-1
+	 * @param LU LU factors of the block
+	 * @param Lip size n, column pointers for L
+	 * @param Uip size n, column pointers for U
+	 * @param Llen size n, column length of L
+	 * @param Ulen size n, column length of U
+	 * @param Udiag size n, diagonal of U
+	 * @param D size nk*nk, output
+	 */
+	protected static void dense_inverse(int nk, int k1, double[] LU,
+			int[] Lip, int[] Uip, int[] Llen, int[] Ulen, double[] Udiag,
+			double[] D)
+	{
+		double[] Xi, Xx ;
+		double xk ;
+		int c, i, k, p ;
+		int[] len = new int[1] ;
+		int[] Xi_offset = new int[1] ;
+		int[] Xx_offset = new int[1] ;
+
+		for (i = 0 ; i < nk*nk ; i++)
+		{
+			D [i] = 0 ;
+		}
+		for (c = 0 ; c < nk ; c++)
+		{
+			/* column c of D is (L*U) \ e_c, with stride nk */
+			D [c*nk + c] = 1 ;
+			for (k = c ; k < nk ; k++)
+			{
+				xk = D [k*nk + c] ;
+				Xi = Xx = GET_POINTER (LU, Lip, k1, Llen, k1,
+						Xi_offset, Xx_offset, k, len) ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					i = (int) Xi [Xi_offset[0] + p] ;
+					D [i*nk + c] -= Xx [Xx_offset[0] + p] * xk ;
+				}
+			}
+			for (k = nk-1 ; k >= 0 ; k--)
+			{
+				xk = D [k*nk + c] / Udiag [k1+k] ;
+				D [k*nk + c] = xk ;
+				Xi = Xx = GET_POINTER (LU, Uip, k1, Ulen, k1,
+						Xi_offset, Xx_offset, k, len) ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					i = (int) Xi [Xi_offset[0] + p] ;
+					D [i*nk + c] -= Xx [Xx_offset[0] + p] * xk ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the explicit inverses of the dense blocks after klu_refactor
+	 * has changed the values of L and U.  Does nothing if no block is dense.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 */
+	public static void klu_dense_update(KLU_symbolic Symbolic,
+			KLU_numeric Numeric)
+	{
+		int block, k1 ;
+
+		if (Numeric.Dinv == null)
+		{
+			return ;
+		}
+		for (block = 0 ; block < Symbolic.nblocks ; block++)
+		{
+			if (Numeric.Dinv [block] != null)
+			{
+				k1 = Symbolic.R [block] ;
+				dense_inverse (Symbolic.R [block+1] - k1, k1,
+						Numeric.LUbx [block], Numeric.Lip, Numeric.Uip,
+						Numeric.Llen, Numeric.Ulen, Numeric.Udiag,
+						Numeric.Dinv [block]) ;
+			}
+		}
+	}
+
+	/**
+	 * Solves (L*U) x = b for a dense block by multiplying with its explicit
+	 * inverse.  X is nk-by-nr in row form with row dimension nr, as in
+	 * klu_solve, and is overwritten with the solution.
+	 *
+	 * @param nk size of the block, at most DENSE_MAX
+	 * @param D size nk*nk, inverse of L*U in row-major order
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-sides on input, solution on output
+	 * @param X_offset start of the block in X
+	 * @param W size DENSE_MAX workspace, only used if nk > 4
+	 */
+	public static void klu_dense_solve(int nk, double[] D, int nr,
+			double[] X, int X_offset, double[] W)
+	{
+		double x0, x1, x2, x3, s ;
+		int c, i, j, o ;
+
+		for (c = 0 ; c < nr ; c++)
+		{
+			o = X_offset + c ;
+			switch (nk)
+			{
+
+				case 2:
+
+					x0 = X [o] ;
+					x1 = X [o + nr] ;
+					X [o]      = D [0] * x0 + D [1] * x1 ;
+					X [o + nr] = D [2] * x0 + D [3] * x1 ;
+					break ;
+
+				case 3:
+
+					x0 = X [o] ;
+					x1 = X [o + nr] ;
+					x2 = X [o + 2*nr] ;
+					X [o]        = D [0] * x0 + D [1] * x1 + D [2] * x2 ;
+					X [o + nr]   = D [3] * x0 + D [4] * x1 + D [5] * x2 ;
+					X [o + 2*nr] = D [6] * x0 + D [7] * x1 + D [8] * x2 ;
+					break ;
+
+				case 4:
+
+					x0 = X [o] ;
+					x1 = X [o + nr] ;
+					x2 = X [o + 2*nr] ;
+					x3 = X [o + 3*nr] ;
+					X [o]        = D [0]  * x0 + D [1]  * x1 + D [2]  * x2 + D [3]  * x3 ;
+					X [o + nr]   = D [4]  * x0 + D [5]  * x1 + D [6]  * x2 + D [7]  * x3 ;
+					X [o + 2*nr] = D [8]  * x0 + D [9]  * x1 + D [10] * x2 + D [11] * x3 ;
+					X [o + 3*nr] = D [12] * x0 + D [13] * x1 + D [14] * x2 + D [15] * x3 ;
+					break ;
+
+				default:
+
+					for (j = 0 ; j < nk ; j++)
+					{
+						W [j] = X [o + j*nr] ;
+					}
+					for (i = 0 ; i < nk ; i++)
+					{
+						s = 0 ;
+						for (j = 0 ; j < nk ; j++)
+						{
+							s += D [i*nk + j] * W [j] ;
+						}
+						X [o + i*nr] = s ;
+					}
+					break ;
+
+			}
+		}
+	}
+
+}
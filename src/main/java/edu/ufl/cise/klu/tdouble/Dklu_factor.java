@@ -29,12 +29,16 @@ import edu.ufl.cise.klu.common.KLU_numeric;
 import edu.ufl.cise.klu.common.KLU_symbolic;
 
 import static edu.ufl.cise.klu.tdouble.Dklu_scale.klu_scale;
+import static edu.ufl.cise.klu.tdouble.Dklu_scale.klu_static_init;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_add_size_t;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid_LU;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid;
 import static edu.ufl.cise.klu.tdouble.Dklu.klu_kernel_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.DENSE_MAX;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.klu_dense_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.static_pivot;
 
 /**
  * Factor the matrix, after ordering and analyzing it with KLU_analyze
@@ -43,6 +47,116 @@ import static edu.ufl.cise.klu.tdouble.Dklu.klu_kernel_factor;
 public class Dklu_factor extends Dklu_internal
 {
 
+	/**
+	 * Allocates a Numeric object for the Symbolic object, and its permanent
+	 * workspace.  The factors themselves are left to the caller.
+	 *
+	 * @param Symbolic
+	 * @param Common
+	 * @return null if out of memory, or the new Numeric object
+	 */
+	protected static KLU_numeric klu_alloc_numeric(KLU_symbolic Symbolic,
+			KLU_common Common)
+	{
+		int n, nzoff, nblocks, maxblock, k ;
+		int[] ok = new int [] {TRUE} ;
+		KLU_numeric Numeric ;
+		int n1, nzoff1, s, b6, n3 ;
+
+		n = Symbolic.n ;
+		nzoff = Symbolic.nzoff ;
+		nblocks = Symbolic.nblocks ;
+		maxblock = Symbolic.maxblock ;
+
+		/* this will not cause int overflow (already checked by KLU_symbolic) */
+		n1 = n + 1 ;
+		nzoff1 = nzoff + 1 ;
+
+		//Numeric = klu_malloc (sizeof (KLU_numeric), 1, Common) ;
+		try
+		{
+			Numeric = new KLU_numeric();
+		}
+		catch (OutOfMemoryError e)
+		{
+			Common.status = KLU_OUT_OF_MEMORY ;
+			return (null) ;
+		}
+		Numeric.n = n ;
+		Numeric.nblocks = nblocks ;
+		Numeric.nzoff = nzoff ;
+		Numeric.Pnum = klu_malloc_int (n, Common) ;
+		Numeric.Offp = klu_malloc_int (n1, Common) ;
+		Numeric.Offi = klu_malloc_int (nzoff1, Common) ;
+		Numeric.Offx = klu_malloc_dbl (nzoff1, Common) ;
+
+		Numeric.Lip  = klu_malloc_int (n, Common) ;
+		Numeric.Uip  = klu_malloc_int (n, Common) ;
+		Numeric.Llen = klu_malloc_int (n, Common) ;
+		Numeric.Ulen = klu_malloc_int (n, Common) ;
+
+		Numeric.LUsize = klu_malloc_int (nblocks, Common) ;
+
+		//Numeric.LUbx = klu_malloc (nblocks, sizeof (double[]), Common) ;
+		Numeric.LUbx = new double [nblocks][] ;
+		if (Numeric.LUbx != null)
+		{
+			for (k = 0 ; k < nblocks ; k++)
+			{
+				Numeric.LUbx [k] = null ;
+			}
+		}
+
+		Numeric.Udiag = klu_malloc_dbl (n, Common) ;
+
+		if (Common.scale > 0)
+		{
+			Numeric.Rs = klu_malloc_dbl (n, Common) ;
+		}
+		else
+		{
+			/* no scaling */
+			Numeric.Rs = null ;
+		}
+
+		Numeric.Pinv = klu_malloc_int (n, Common) ;
+
+		/* allocate permanent workspace for factorization and solve.  Note that the
+		 * solver will use an Xwork of size 4n, whereas the factorization codes use
+		 * an Xwork of size n and integer space (Iwork) of size 6n. KLU_condest
+		 * uses an Xwork of size 2n.  Total size is:
+		 *
+		 *    n*sizeof(double) + max (6*maxblock*sizeof(Int), 3*n*sizeof(double))
+		 */
+		//s = klu_mult_size_t (n, sizeof (double), ok) ;
+		s = n ;
+		//n3 = klu_mult_size_t (n, 3 * sizeof (double), ok) ;
+		n3 = 3 * n ;
+		//b6 = klu_mult_size_t (maxblock, 6 * sizeof (Int), ok) ;
+		b6 = 6 * maxblock ;
+		Numeric.worksize = klu_add_size_t (s, MAX (n3, b6), ok) ;
+		try
+		{
+			if (ok[0] == 0) throw new OutOfMemoryError() ;
+
+			//Numeric.Work = klu_malloc (Numeric.worksize, 1, Common) ;
+			Numeric.Work = new double [Numeric.worksize] ;
+			Numeric.Xwork = Numeric.Work ;
+			//Numeric.Iwork = (Int[]) ((double[]) Numeric.Xwork + n) ;
+			Numeric.Iwork = new int [b6] ;
+		}
+		catch (OutOfMemoryError e)
+		{
+			/* out of memory or problem too large */
+			Common.status = ok[0] == 1 ? KLU_OUT_OF_MEMORY : KLU_TOO_LARGE ;
+			//klu_free_numeric (Numeric, Common) ;
+			Numeric = null;
+			return (null) ;
+		}
+
+		return (Numeric) ;
+	}
+
 	/**
 	 *
 	 * @param Ap size n+1, column pointers
@@ -50,21 +164,24 @@ public class Dklu_factor extends Dklu_internal
 	 * @param Ax
 	 * @param Symbolic
 	 * @param Numeric
+	 * @param Hint a previous factorization with the same Symbolic object, whose
+	 * pivot order is preferred, or null
 	 * @param Common
 	 */
 	public static void factor2(final int[] Ap, final int[] Ai, final double[] Ax,
-			final KLU_symbolic Symbolic, KLU_numeric Numeric, KLU_common Common)
+			final KLU_symbolic Symbolic, KLU_numeric Numeric, KLU_numeric Hint,
+			KLU_common Common)
 	{
 		double lsize ;
 		double[] Lnz, Rs ;
 		int[] P, Q, R, Pnum, Offp, Offi, Pblock, Pinv, Iwork,
 			Lip, Uip, Llen, Ulen ;
-		double[] Offx, X, Udiag ;
+		double[] Offx, X, Udiag, Dwork ;
 		double s ;
 		double[][] LUbx ;
 		int k1, k2, nk, k, block, oldcol, pend, oldrow, n, lnz, unz, p, newrow,
 			nblocks, poff, nzoff, scale, max_lnz_block,
-			max_unz_block ;
+			max_unz_block, dense_max ;
 		int[] lnz_block = new int [1] ;
 		int[] unz_block = new int [1] ;
 
@@ -103,6 +220,8 @@ public class Dklu_factor extends Dklu_internal
 		scale = Common.scale ;
 		max_lnz_block = 1 ;
 		max_unz_block = 1 ;
+		dense_max = MIN (Common.dense_maxblock, DENSE_MAX) ;
+		Dwork = null ;
 
 		/* compute the inverse of P from symbolic analysis.  Will be updated to
 		 * become the inverse of the numerical factorization when the factorization
@@ -149,6 +268,7 @@ public class Dklu_factor extends Dklu_internal
 				return ;
 			}
 		}
+		klu_static_init (scale, n, Ap, Ai, Ax, Rs, Common) ;
 
 		if (!NDEBUG)
 		{
@@ -178,84 +298,94 @@ public class Dklu_factor extends Dklu_internal
 			{
 
 				/* -------------------------------------------------------------- */
-				/* singleton case */
+				/* singleton case, or a run of singletons */
 				/* -------------------------------------------------------------- */
 
-				poff = Offp [k1] ;
-				oldcol = Q [k1] ;
-				pend = Ap [oldcol+1] ;
-				//CLEAR (s) ;
-				s = 0.0;
-
-				if (scale <= 0)
+				if (Symbolic.Srun != null && Symbolic.Srun [block] > block)
 				{
-					/* no scaling */
-					for (p = Ap [oldcol] ; p < pend ; p++)
-					{
-						oldrow = Ai [p] ;
-						newrow = Pinv [oldrow] ;
-						if (newrow < k1)
-						{
-							Offi [poff] = oldrow ;
-							Offx [poff] = Ax [p] ;
-							poff++ ;
-						}
-						else
-						{
-							ASSERT (newrow == k1) ;
-							PRINTF ("singleton block %d", block) ;
-							PRINT_ENTRY (Ax [p]) ;
-							s = Ax [p] ;
-						}
-					}
+					block = Symbolic.Srun [block] ;
+					k2 = R [block+1] ;
 				}
-				else
+				for (k = k1 ; k < k2 ; k++)
 				{
-					/* row scaling.  NOTE: scale factors are not yet permuted
-					 * according to the pivot row permutation, so Rs [oldrow] is
-					 * used below.  When the factorization is done, the scale
-					 * factors are permuted, so that Rs [newrow] will be used in
-					 * klu_solve, klu_tsolve, and klu_rgrowth */
-					for (p = Ap [oldcol] ; p < pend ; p++)
+					poff = Offp [k] ;
+					oldcol = Q [k] ;
+					pend = Ap [oldcol+1] ;
+					//CLEAR (s) ;
+					s = 0.0;
+
+					if (scale <= 0)
 					{
-						oldrow = Ai [p] ;
-						newrow = Pinv [oldrow] ;
-						if (newrow < k1)
+						/* no scaling */
+						for (p = Ap [oldcol] ; p < pend ; p++)
 						{
-							Offi [poff] = oldrow ;
-							//SCALE_DIV_ASSIGN (Offx [poff], Ax [p], Rs [oldrow]) ;
-							Offx [poff] = Ax [p] / Rs [oldrow] ;
-							poff++ ;
+							oldrow = Ai [p] ;
+							newrow = Pinv [oldrow] ;
+							if (newrow < k)
+							{
+								Offi [poff] = oldrow ;
+								Offx [poff] = Ax [p] ;
+								poff++ ;
+							}
+							else
+							{
+								ASSERT (newrow == k) ;
+								PRINTF ("singleton %d", k) ;
+								PRINT_ENTRY (Ax [p]) ;
+								s = Ax [p] ;
+							}
 						}
-						else
+					}
+					else
+					{
+						/* row scaling.  NOTE: scale factors are not yet
+						 * permuted according to the pivot row permutation, so
+						 * Rs [oldrow] is used below.  When the factorization is
+						 * done, the scale factors are permuted, so that
+						 * Rs [newrow] will be used in klu_solve, klu_tsolve,
+						 * and klu_rgrowth */
+						for (p = Ap [oldcol] ; p < pend ; p++)
 						{
-							ASSERT (newrow == k1) ;
-							PRINTF ("singleton block %d ", block) ;
-							PRINT_ENTRY (Ax[p]) ;
-							s = Ax [p] / Rs [oldrow] ;
-							//SCALE_DIV_ASSIGN (s, Ax [p], Rs [oldrow]) ;
+							oldrow = Ai [p] ;
+							newrow = Pinv [oldrow] ;
+							if (newrow < k)
+							{
+								Offi [poff] = oldrow ;
+								//SCALE_DIV_ASSIGN (Offx [poff], Ax [p], Rs [oldrow]) ;
+								Offx [poff] = Ax [p] / Rs [oldrow] ;
+								poff++ ;
+							}
+							else
+							{
+								ASSERT (newrow == k) ;
+								PRINTF ("singleton %d ", k) ;
+								PRINT_ENTRY (Ax[p]) ;
+								s = Ax [p] / Rs [oldrow] ;
+								//SCALE_DIV_ASSIGN (s, Ax [p], Rs [oldrow]) ;
+							}
 						}
 					}
-				}
 
-				Udiag [k1] = s ;
+					s = static_pivot (s, Common) ;
+					Udiag [k] = s ;
 
-				if (IS_ZERO (s))
-				{
-					/* singular singleton */
-					Common.status = KLU_SINGULAR ;
-					Common.numerical_rank = k1 ;
-					Common.singular_col = oldcol ;
-					if (Common.halt_if_singular == 1)
+					if (IS_ZERO (s))
 					{
-						return ;
+						/* singular singleton */
+						Common.status = KLU_SINGULAR ;
+						Common.numerical_rank = k ;
+						Common.singular_col = oldcol ;
+						if (Common.halt_if_singular == 1)
+						{
+							return ;
+						}
 					}
-				}
 
-				Offp [k1+1] = poff ;
-				Pnum [k1] = P [k1] ;
-				lnz++ ;
-				unz++ ;
+					Offp [k+1] = poff ;
+					Pnum [k] = P [k] ;
+					lnz++ ;
+					unz++ ;
+				}
 
 			}
 			else
@@ -265,7 +395,24 @@ public class Dklu_factor extends Dklu_internal
 				/* construct and factorize the kth block */
 				/* -------------------------------------------------------------- */
 
-				if (Lnz [block] < 0)
+				if (Hint != null)
+				{
+					/* prefer the pivot rows of the previous factorization,
+					 * and expect the same LU size, plus the 2*nk entries the
+					 * kernel keeps free for the next column */
+					for (k = 0 ; k < nk ; k++)
+					{
+						Pblock [k] = Pinv [Hint.Pnum [k + k1]] - k1 ;
+						if (Pblock [k] < 0 || Pblock [k] >= nk)
+						{
+							/* the hint is not from this Symbolic object */
+							Common.status = KLU_INVALID ;
+							return ;
+						}
+					}
+					lsize = (Hint.LUsize [block] + 2 * nk) / 4 + 1 ;
+				}
+				else if (Lnz [block] < 0)
 				{
 					/* COLAMD was used - no estimate of fill-in */
 					/* use 10 times the nnz in A, plus n */
@@ -276,12 +423,35 @@ public class Dklu_factor extends Dklu_internal
 					lsize = Common.initmem_amd * Lnz [block] + nk ;
 				}
 
-				/* allocates 1 arrays: LUbx [block] */
-				Numeric.LUsize [block] = klu_kernel_factor (
-						nk, Ap, Ai, Ax, Q,
-						lsize, LUbx, block, Udiag, k1, Llen, k1,
-						Ulen, k1, Lip, k1, Uip, k1, Pblock, lnz_block, unz_block,
-						X, Iwork, k1, Pinv, Rs, Offp, Offi, Offx, Common) ;
+				if (nk <= dense_max)
+				{
+					/* tiny block: dense LU, and its explicit inverse */
+					if (Dwork == null)
+					{
+						Dwork = klu_malloc_dbl (DENSE_MAX * DENSE_MAX, Common) ;
+						Numeric.Dinv = new double [nblocks][] ;
+						if (Common.status < KLU_OK)
+						{
+							return ;
+						}
+					}
+					Numeric.LUsize [block] = klu_dense_factor (
+							nk, Ap, Ai, Ax, Q, LUbx, block, Udiag, Llen,
+							Ulen, Lip, Uip, Pblock,
+							(Hint != null) ? TRUE : FALSE, lnz_block, unz_block,
+							Numeric.Dinv, Dwork, X, k1, Pinv, Rs,
+							Offp, Offi, Offx, Common) ;
+				}
+				else
+				{
+					/* allocates 1 arrays: LUbx [block] */
+					Numeric.LUsize [block] = klu_kernel_factor (
+							nk, Ap, Ai, Ax, Q,
+							lsize, LUbx, block, Udiag, k1, Llen, k1,
+							Ulen, k1, Lip, k1, Uip, k1, Pblock,
+							(Hint != null) ? TRUE : FALSE, lnz_block, unz_block,
+							X, Iwork, k1, Pinv, Rs, Offp, Offi, Offx, Common) ;
+				}
 
 				if (Common.status < KLU_OK ||
 				   (Common.status == KLU_SINGULAR &&
@@ -434,10 +604,32 @@ public class Dklu_factor extends Dklu_internal
 	public static KLU_numeric klu_factor(int[] Ap, int[] Ai, double[] Ax,
 			KLU_symbolic Symbolic, KLU_common Common)
 	{
-		int n, nzoff, nblocks, maxblock, k ;
-		int[] ok = new int [] {TRUE} ;
+		return (klu_factor (Ap, Ai, Ax, Symbolic, null, Common)) ;
+	}
+
+	/**
+	 * Factor the matrix, preferring the pivot order of a previous
+	 * factorization with the same Symbolic object (one that klu_refactor can
+	 * no longer be used with, because its pivots have become too small).  The
+	 * pivot row of the previous factorization is taken for each column
+	 * whenever it passes the pivot tolerance test (Common.tol), in place of
+	 * the diagonal.  If every hinted row is accepted, the factors have the
+	 * same pattern as before, and their memory is allocated once, from the
+	 * size of the previous factors.
+	 *
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param Ax
+	 * @param Symbolic
+	 * @param Hint previous factorization, or null to prefer the diagonal
+	 * @param Common
+	 * @return null if error, or a valid KLU_numeric object if successful
+	 */
+	public static KLU_numeric klu_factor(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_numeric Hint, KLU_common Common)
+	{
+		int n, nzoff, nblocks, maxblock ;
 		KLU_numeric Numeric ;
-		int n1, nzoff1, s, b6, n3 ;
 
 		if (Common == null)
 		{
@@ -451,8 +643,9 @@ public class Dklu_factor extends Dklu_internal
 		/* get the contents of the Symbolic object */
 		/* ---------------------------------------------------------------------- */
 
-		/* check for a valid Symbolic object */
-		if (Symbolic == null)
+		/* check for a valid Symbolic object, and hint */
+		if (Symbolic == null || (Hint != null && (Hint.n != Symbolic.n ||
+			Hint.nblocks != Symbolic.nblocks)))
 		{
 			Common.status = KLU_INVALID ;
 			return (null) ;
@@ -479,89 +672,9 @@ public class Dklu_factor extends Dklu_internal
 		/* allocate the Numeric object  */
 		/* ---------------------------------------------------------------------- */
 
-		/* this will not cause int overflow (already checked by KLU_symbolic) */
-		n1 = n + 1 ;
-		nzoff1 = nzoff + 1 ;
-
-		//Numeric = klu_malloc (sizeof (KLU_numeric), 1, Common) ;
-		try
-		{
-			Numeric = new KLU_numeric();
-		}
-		catch (OutOfMemoryError e)
+		Numeric = klu_alloc_numeric (Symbolic, Common) ;
+		if (Numeric == null)
 		{
-			Common.status = KLU_OUT_OF_MEMORY ;
-			return (null) ;
-		}
-		Numeric.n = n ;
-		Numeric.nblocks = nblocks ;
-		Numeric.nzoff = nzoff ;
-		Numeric.Pnum = klu_malloc_int (n, Common) ;
-		Numeric.Offp = klu_malloc_int (n1, Common) ;
-		Numeric.Offi = klu_malloc_int (nzoff1, Common) ;
-		Numeric.Offx = klu_malloc_dbl (nzoff1, Common) ;
-
-		Numeric.Lip  = klu_malloc_int (n, Common) ;
-		Numeric.Uip  = klu_malloc_int (n, Common) ;
-		Numeric.Llen = klu_malloc_int (n, Common) ;
-		Numeric.Ulen = klu_malloc_int (n, Common) ;
-
-		Numeric.LUsize = klu_malloc_int (nblocks, Common) ;
-
-		//Numeric.LUbx = klu_malloc (nblocks, sizeof (double[]), Common) ;
-		Numeric.LUbx = new double [nblocks][] ;
-		if (Numeric.LUbx != null)
-		{
-			for (k = 0 ; k < nblocks ; k++)
-			{
-				Numeric.LUbx [k] = null ;
-			}
-		}
-
-		Numeric.Udiag = klu_malloc_dbl (n, Common) ;
-
-		if (Common.scale > 0)
-		{
-			Numeric.Rs = klu_malloc_dbl (n, Common) ;
-		}
-		else
-		{
-			/* no scaling */
-			Numeric.Rs = null ;
-		}
-
-		Numeric.Pinv = klu_malloc_int (n, Common) ;
-
-		/* allocate permanent workspace for factorization and solve.  Note that the
-		 * solver will use an Xwork of size 4n, whereas the factorization codes use
-		 * an Xwork of size n and integer space (Iwork) of size 6n. KLU_condest
-		 * uses an Xwork of size 2n.  Total size is:
-		 *
-		 *    n*sizeof(double) + max (6*maxblock*sizeof(Int), 3*n*sizeof(double))
-		 */
-		//s = klu_mult_size_t (n, sizeof (double), ok) ;
-		s = n ;
-		//n3 = klu_mult_size_t (n, 3 * sizeof (double), ok) ;
-		n3 = 3 * n ;
-		//b6 = klu_mult_size_t (maxblock, 6 * sizeof (Int), ok) ;
-		b6 = 6 * maxblock ;
-		Numeric.worksize = klu_add_size_t (s, MAX (n3, b6), ok) ;
-		try
-		{
-			if (ok[0] == 0) throw new OutOfMemoryError() ;
-
-			//Numeric.Work = klu_malloc (Numeric.worksize, 1, Common) ;
-			Numeric.Work = new double [Numeric.worksize] ;
-			Numeric.Xwork = Numeric.Work ;
-			//Numeric.Iwork = (Int[]) ((double[]) Numeric.Xwork + n) ;
-			Numeric.Iwork = new int [b6] ;
-		}
-		catch (OutOfMemoryError e)
-		{
-			/* out of memory or problem too large */
-			Common.status = ok[0] == 1 ? KLU_OUT_OF_MEMORY : KLU_TOO_LARGE ;
-			//klu_free_numeric (Numeric, Common) ;
-			Numeric = null;
 			return (null) ;
 		}
 
@@ -569,7 +682,7 @@ public class Dklu_factor extends Dklu_internal
 		/* factorize the blocks */
 		/* ---------------------------------------------------------------------- */
 
-		factor2 (Ap, Ai, Ax, Symbolic, Numeric, Common) ;
+		factor2 (Ap, Ai, Ax, Symbolic, Numeric, Hint, Common) ;
 
 		/* ---------------------------------------------------------------------- */
 		/* return or free the Numeric object */
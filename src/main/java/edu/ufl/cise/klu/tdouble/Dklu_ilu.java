@@ -0,0 +1,727 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_alloc_numeric;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.construct_column;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.lpivot;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.lsolve_numeric;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.lsolve_symbolic;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_realloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_scale.klu_scale;
+
+/**
+ * Incomplete LU factorization of the diagonal blocks of the BTF form, for use
+ * as a preconditioner (with klu_gmres or klu_bicgstab, for example).  The
+ * ordering and block structure come from klu_analyze, and the result is an
+ * ordinary Numeric object that klu_solve, klu_tsolve and the other solvers
+ * accept.  The off-diagonal blocks are kept exactly.
+ *
+ * Two variants are provided, chosen by Common.ilu:
+ *
+ * ILU(0) (Common.ilu = 0) restricts L+U to the pattern of A, plus the
+ * diagonal.  Fill-in is discarded as it is created, so no depth-first search
+ * is needed, and the factors take no more space than A.
+ *
+ * ILUT (Common.ilu = 1) computes each column with the DFS and sparse
+ * triangular solve of klu_kernel, and then drops the entries of L (:,k) and
+ * U (:,k) smaller than Common.ilu_droptol * norm (A (:,k)), keeping at most
+ * Common.ilu_fill * nnz (A (:,k)) of the largest in each.  Since the pattern
+ * of L changes as entries are dropped, symmetric pruning is not used.
+ *
+ * Both use partial pivoting with diagonal preference (Common.tol), and the
+ * row scaling in Common.scale.  A zero pivot is reported as KLU_SINGULAR, as
+ * in klu_factor.
+ */
+public class Dklu_ilu extends Dklu_internal {
+
+	/**
+	 * Returns the kth largest of W [0..n-1], for 1 <= k <= n.  W is
+	 * reordered.
+	 */
+	protected static double kth_largest(double[] W, int n, int k)
+	{
+		double pivot, t ;
+		int lo, hi, i, j ;
+
+		lo = 0 ;
+		hi = n - 1 ;
+		k-- ;
+		while (lo < hi)
+		{
+			pivot = W [(lo + hi) >>> 1] ;
+			i = lo ;
+			j = hi ;
+			while (i <= j)
+			{
+				while (W [i] > pivot) i++ ;
+				while (W [j] < pivot) j-- ;
+				if (i <= j)
+				{
+					t = W [i] ;
+					W [i] = W [j] ;
+					W [j] = t ;
+					i++ ;
+					j-- ;
+				}
+			}
+			if (k <= j)
+			{
+				hi = j ;
+			}
+			else if (k >= i)
+			{
+				lo = i ;
+			}
+			else
+			{
+				break ;
+			}
+		}
+		return (W [k]) ;
+	}
+
+	/**
+	 * Returns the smallest magnitude an entry of a column of L or U must have
+	 * to be kept: droptol, or the magnitude of the lfil-th largest entry if
+	 * there are more than lfil of them.
+	 *
+	 * @param V values of the column
+	 * @param V_offset
+	 * @param I if not null, the entries are V [I [I_offset + p]]
+	 * @param I_offset
+	 * @param len number of entries in the column
+	 * @param scale the entries are compared as |V| * scale
+	 * @param droptol
+	 * @param lfil max. number of entries kept
+	 * @param W size len or more, workspace
+	 */
+	protected static double drop_threshold(double[] V, int V_offset, int[] I,
+			int I_offset, int len, double scale, double droptol, int lfil,
+			double[] W)
+	{
+		double t ;
+		int p, nbig ;
+
+		nbig = 0 ;
+		for (p = 0 ; p < len ; p++)
+		{
+			t = ABS ((I == null) ? V [V_offset + p] : V [I [I_offset + p]]) * scale ;
+			if (t >= droptol)
+			{
+				W [nbig++] = t ;
+			}
+		}
+		if (nbig > lfil)
+		{
+			droptol = MAX (droptol, kth_largest (W, nbig, MAX (lfil, 1))) ;
+		}
+		return (droptol) ;
+	}
+
+	/**
+	 * Factorizes a diagonal block of size nk > 1 incompletely, into an LU
+	 * array of its own.  The arguments are those of klu_kernel.
+	 *
+	 * @return the new LU array, or null if out of memory or if halted at a
+	 * singular pivot
+	 */
+	protected static double[] ilu_block(int nk, int k1, int[] Ap, int[] Ai,
+			double[] Ax, int[] Q, int[] PSinv, double[] Rs, int[] Pblk,
+			int[] Pbinv, int[] Stack, int[] Flag, int[] Lpend, int[] Ap_pos,
+			double[] X, double[] W, int[] Lip, int[] Uip, int[] Llen,
+			int[] Ulen, double[] Udiag, int[] Offp, int[] Offi, double[] Offx,
+			int[] p_lusize, int[] lnz_block, int[] unz_block, KLU_common Common)
+	{
+		double[] pivot = new double [1] ;
+		double[] abs_pivot = new double [1] ;
+		int[] pivrow = new int [1] ;
+		int[] firstrow = new int [1] ;
+		int[] len = new int [1] ;
+		int[] Li_offset = new int [1] ;
+		int[] Lx_offset = new int [1] ;
+		double[] LU ;
+		double xsize, xj, aij, cnorm, droptol, t ;
+		int k, p, q, i, j, s, top, nu, nl, diagrow, kbar, lup, lusize,
+			newlusize, oldcol, pend, anzk, lfil, ilu, scale, lx ;
+
+		ilu = Common.ilu ;
+		scale = Common.scale ;
+
+		/* L and U take about as much space as the block of A, times the fill
+		 * cap for ILUT, but no more than a dense block */
+		lusize = 0 ;
+		for (k = 0 ; k < nk ; k++)
+		{
+			oldcol = Q [k1 + k] ;
+			lusize += Ap [oldcol+1] - Ap [oldcol] + 1 ;
+		}
+		xsize = 2 * ((double) lusize) *
+			((ilu == 0) ? 1 : MAX (1.0, Common.ilu_fill)) + 2*nk ;
+		xsize = MIN (xsize, 2 * ((double) nk) * ((double) nk) + 2*nk) ;
+		if (INT_OVERFLOW (xsize))
+		{
+			Common.status = KLU_TOO_LARGE ;
+			return (null) ;
+		}
+		lusize = (int) xsize ;
+		LU = klu_malloc_dbl (lusize, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (null) ;
+		}
+
+		for (k = 0 ; k < nk ; k++)
+		{
+			X [k] = 0.0 ;
+			Flag [k] = EMPTY ;
+			Lpend [k] = EMPTY ;
+			Pblk [k] = k ;
+			Pbinv [k] = FLIP (k) ;
+		}
+		firstrow [0] = 0 ;
+		lup = 0 ;
+		lnz_block [0] = 0 ;
+		unz_block [0] = 0 ;
+
+		for (k = 0 ; k < nk ; k++)
+		{
+
+			/* -------------------------------------------------------------- */
+			/* LU can grow by at most 2*nk entries for this column */
+			/* -------------------------------------------------------------- */
+
+			xsize = ((double) lup) + 2 * nk ;
+			if (xsize > (double) lusize)
+			{
+				xsize = (Common.memgrow * ((double) lusize) + 4*nk + 1) ;
+				if (INT_OVERFLOW (xsize))
+				{
+					Common.status = KLU_TOO_LARGE ;
+					return (null) ;
+				}
+				newlusize = (int) (Common.memgrow * lusize + 2*nk + 1) ;
+				LU = klu_realloc_dbl (newlusize, lusize, LU, Common) ;
+				Common.nrealloc++ ;
+				if (Common.status == KLU_OUT_OF_MEMORY)
+				{
+					return (null) ;
+				}
+				lusize = newlusize ;
+			}
+
+			Lip [k1 + k] = lup ;
+			diagrow = Pblk [k] ;
+			oldcol = Q [k1 + k] ;
+			pend = Ap [oldcol+1] ;
+
+			if (ilu == 0)
+			{
+
+				/* ---------------------------------------------------------- */
+				/* ILU(0): the pattern of the column is that of A, plus the
+				 * diagonal.  U (:,k) goes in Stack [0..nu-1], as pivot steps,
+				 * and L (:,k) in LU [lup ...] */
+				/* ---------------------------------------------------------- */
+
+				nu = 0 ;
+				nl = 0 ;
+				for (p = Ap [oldcol] ; p < pend ; p++)
+				{
+					i = PSinv [Ai [p]] - k1 ;
+					if (i < 0) continue ;   /* entry in the off-diagonal part */
+					Flag [i] = k ;
+					if (Pbinv [i] >= 0)
+					{
+						Stack [nu++] = Pbinv [i] ;
+					}
+					else
+					{
+						LU [lup + nl++] = i ;
+					}
+				}
+				if (Flag [diagrow] != k && Pbinv [diagrow] < 0)
+				{
+					Flag [diagrow] = k ;
+					LU [lup + nl++] = diagrow ;
+				}
+				Llen [k1 + k] = nl ;
+				construct_column (k, Ap, Ai, Ax, Q, X, k1, PSinv, Rs, scale,
+						Offp, Offi, Offx) ;
+
+				/* solve with L in pivot order, dropping the fill-in */
+				Arrays.sort (Stack, 0, nu) ;
+				for (q = 0 ; q < nu ; q++)
+				{
+					s = Stack [q] ;
+					xj = X [Pblk [s]] ;
+					GET_POINTER (LU, Lip, k1, Llen, k1, Li_offset, Lx_offset,
+							s, len) ;
+					for (p = 0 ; p < len [0] ; p++)
+					{
+						i = (int) LU [Li_offset [0] + p] ;
+						if (Flag [i] == k)
+						{
+							X [i] -= LU [Lx_offset [0] + p] * xj ;
+						}
+					}
+				}
+				top = 0 ;
+				cnorm = 0 ;
+				droptol = 0 ;
+				lfil = nk ;
+			}
+			else
+			{
+
+				/* ---------------------------------------------------------- */
+				/* ILUT: the column of L and U as in klu_kernel */
+				/* ---------------------------------------------------------- */
+
+				top = lsolve_symbolic (nk, k, Ap, Ai, Q, Pbinv, Stack, Flag,
+						Lpend, Ap_pos, LU, lup, Llen, k1, Lip, k1, k1, PSinv) ;
+				construct_column (k, Ap, Ai, Ax, Q, X, k1, PSinv, Rs, scale,
+						Offp, Offi, Offx) ;
+
+				/* norm and # of entries of the column of the block of A */
+				cnorm = 0 ;
+				anzk = 0 ;
+				for (p = Ap [oldcol] ; p < pend ; p++)
+				{
+					i = PSinv [Ai [p]] - k1 ;
+					if (i < 0) continue ;
+					aij = X [i] ;
+					cnorm += aij * aij ;
+					anzk++ ;
+				}
+				cnorm = Math.sqrt (cnorm) ;
+				droptol = Common.ilu_droptol * cnorm ;
+				xsize = Common.ilu_fill * anzk ;
+				lfil = (xsize >= nk) ? nk : MAX (1, (int) xsize) ;
+
+				lsolve_numeric (Pbinv, LU, Stack, Lip, k1, top, nk, Llen, k1, X) ;
+
+				/* drop the small entries of U (:,k), keeping Stack [top..]
+				 * for the rest */
+				t = drop_threshold (X, 0, Stack, top, nk - top, 1.0, droptol,
+						lfil, W) ;
+				for (p = top, q = top ; p < nk ; p++)
+				{
+					j = Stack [p] ;
+					if (X [j] != 0 && ABS (X [j]) >= t)
+					{
+						Stack [q++] = j ;
+					}
+					else
+					{
+						X [j] = 0.0 ;
+					}
+				}
+				nu = q - top ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* partial pivoting with diagonal preference */
+			/* -------------------------------------------------------------- */
+
+			if (lpivot (diagrow, pivrow, pivot, abs_pivot, Common.tol, X,
+					LU, Lip, k1, Llen, k1, k, nk, Pbinv, firstrow,
+					Common) == 0)
+			{
+				Common.status = KLU_SINGULAR ;
+				if (Common.numerical_rank == EMPTY)
+				{
+					Common.numerical_rank = k + k1 ;
+					Common.singular_col = Q [k + k1] ;
+				}
+				if (Common.halt_if_singular != 0)
+				{
+					return (null) ;
+				}
+			}
+
+			/* -------------------------------------------------------------- */
+			/* drop the small entries of L (:,k) (ILUT only) */
+			/* -------------------------------------------------------------- */
+
+			if (ilu != 0 && pivot [0] != 0)
+			{
+				nl = Llen [k1 + k] ;
+				lx = lup + nl ;
+				t = drop_threshold (LU, lx, null, 0, nl, abs_pivot [0],
+						droptol, lfil, W) ;
+				for (p = 0, q = 0 ; p < nl ; p++)
+				{
+					if (LU [lx + p] != 0 && ABS (LU [lx + p]) * abs_pivot [0] >= t)
+					{
+						LU [lup + q] = LU [lup + p] ;
+						W [q] = LU [lx + p] ;
+						q++ ;
+					}
+				}
+				for (p = 0 ; p < q ; p++)
+				{
+					LU [lup + q + p] = W [p] ;
+				}
+				Llen [k1 + k] = q ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* store U (:,k), and clear X */
+			/* -------------------------------------------------------------- */
+
+			lup += 2 * Llen [k1 + k] ;
+			Uip [k1 + k] = lup ;
+			if (ilu == 0)
+			{
+				Ulen [k1 + k] = nu ;
+				for (q = 0 ; q < nu ; q++)
+				{
+					s = Stack [q] ;
+					LU [lup + q] = s ;
+					LU [lup + nu + q] = X [Pblk [s]] ;
+					X [Pblk [s]] = 0.0 ;
+				}
+			}
+			else
+			{
+				Ulen [k1 + k] = nu ;
+				for (q = 0 ; q < nu ; q++)
+				{
+					j = Stack [top + q] ;
+					LU [lup + q] = Pbinv [j] ;
+					LU [lup + nu + q] = X [j] ;
+					X [j] = 0.0 ;
+				}
+			}
+			lup += 2 * Ulen [k1 + k] ;
+			Udiag [k1 + k] = pivot [0] ;
+
+			/* -------------------------------------------------------------- */
+			/* log the pivot permutation */
+			/* -------------------------------------------------------------- */
+
+			if (pivrow [0] != diagrow)
+			{
+				Common.noffdiag++ ;
+				if (Pbinv [diagrow] < 0)
+				{
+					kbar = FLIP (Pbinv [pivrow [0]]) ;
+					Pblk [kbar] = diagrow ;
+					Pbinv [diagrow] = FLIP (kbar) ;
+				}
+			}
+			Pblk [k] = pivrow [0] ;
+			Pbinv [pivrow [0]] = k ;
+
+			lnz_block [0] += Llen [k1 + k] + 1 ;
+			unz_block [0] += Ulen [k1 + k] + 1 ;
+		}
+
+		/* put L in the pivotal order */
+		for (k = 0 ; k < nk ; k++)
+		{
+			pend = Lip [k1 + k] + Llen [k1 + k] ;
+			for (p = Lip [k1 + k] ; p < pend ; p++)
+			{
+				LU [p] = Pbinv [(int) LU [p]] ;
+			}
+		}
+
+		/* trim LU to size */
+		LU = klu_realloc_dbl (MAX (lup, 1), lusize, LU, Common) ;
+		p_lusize [0] = lup ;
+		return (LU) ;
+	}
+
+	/**
+	 * Computes an incomplete factorization, ILU(0) or ILUT depending on
+	 * Common.ilu, after ordering and analyzing the matrix with klu_analyze
+	 * or klu_analyze_given.
+	 *
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param Ax size nz, numerical values
+	 * @param Symbolic
+	 * @param Common
+	 * @return null if error, or a Numeric object holding the incomplete
+	 * factors if successful
+	 */
+	public static KLU_numeric klu_ilu_factor(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_common Common)
+	{
+		KLU_numeric Numeric ;
+
+		if (Common == null)
+		{
+			return (null) ;
+		}
+		Common.status = KLU_OK ;
+		Common.numerical_rank = EMPTY ;
+		Common.singular_col = EMPTY ;
+
+		if (Symbolic == null || Ap == null || Ai == null || Ax == null ||
+			Common.ilu < 0 || Common.ilu > 1)
+		{
+			Common.status = KLU_INVALID ;
+			return (null) ;
+		}
+
+		Common.tol = MIN (Common.tol, 1.0) ;
+		Common.tol = MAX (0.0, Common.tol) ;
+		Common.memgrow = MAX (1.0, Common.memgrow) ;
+		Common.ilu_droptol = MAX (0.0, Common.ilu_droptol) ;
+
+		Numeric = klu_alloc_numeric (Symbolic, Common) ;
+		if (Numeric == null)
+		{
+			return (null) ;
+		}
+
+		factor_ilu (Ap, Ai, Ax, Symbolic, Numeric, Common) ;
+
+		if (Common.status < KLU_OK)
+		{
+			Numeric = null ;
+		}
+		else if (Common.status == KLU_SINGULAR)
+		{
+			if (Common.halt_if_singular == 1)
+			{
+				Numeric = null ;
+			}
+		}
+		else if (Common.status == KLU_OK)
+		{
+			Common.numerical_rank = Symbolic.n ;
+			Common.singular_col = Symbolic.n ;
+		}
+		return (Numeric) ;
+	}
+
+	/**
+	 * The factorization of klu_ilu_factor, block by block as in klu_factor.
+	 */
+	protected static void factor_ilu(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_numeric Numeric, KLU_common Common)
+	{
+		double[] W ;
+		double[] X, Rs, Udiag, Offx, LU ;
+		int[] P, Q, R, Pnum, Pinv, Lip, Uip, Llen, Ulen, Offp, Offi, Pblk,
+			Pbinv, Stack, Flag, Lpend, Ap_pos ;
+		int[] lnz_block = new int [1] ;
+		int[] unz_block = new int [1] ;
+		int[] lusize = new int [1] ;
+		double s ;
+		int n, nblocks, maxblock, block, k1, k2, nk, k, p, poff, oldcol,
+			oldrow, newrow, pend, scale, lnz, unz, max_lnz_block,
+			max_unz_block, nzoff ;
+
+		n = Symbolic.n ;
+		nblocks = Symbolic.nblocks ;
+		maxblock = Symbolic.maxblock ;
+		nzoff = Symbolic.nzoff ;
+		P = Symbolic.P ;
+		Q = Symbolic.Q ;
+		R = Symbolic.R ;
+
+		Pnum = Numeric.Pnum ;
+		Pinv = Numeric.Pinv ;
+		Lip = Numeric.Lip ;
+		Uip = Numeric.Uip ;
+		Llen = Numeric.Llen ;
+		Ulen = Numeric.Ulen ;
+		Udiag = Numeric.Udiag ;
+		Offp = Numeric.Offp ;
+		Offi = Numeric.Offi ;
+		Offx = Numeric.Offx ;
+		Rs = Numeric.Rs ;
+		X = Numeric.Xwork ;
+		scale = Common.scale ;
+		Common.nrealloc = 0 ;
+		Common.noffdiag = 0 ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check the input matrix and compute the scale factors */
+		/* ---------------------------------------------------------------------- */
+
+		if (scale >= 0)
+		{
+			klu_scale (scale, n, Ap, Ai, Ax, Rs, Pnum, Common) ;
+			if (Common.status < KLU_OK)
+			{
+				return ;
+			}
+		}
+
+		for (k = 0 ; k < n ; k++)
+		{
+			Pinv [P [k]] = k ;
+		}
+
+		Pblk   = klu_malloc_int (maxblock, Common) ;
+		Pbinv  = klu_malloc_int (maxblock, Common) ;
+		Stack  = klu_malloc_int (maxblock, Common) ;
+		Flag   = klu_malloc_int (maxblock, Common) ;
+		Lpend  = klu_malloc_int (maxblock, Common) ;
+		Ap_pos = klu_malloc_int (maxblock, Common) ;
+		W      = klu_malloc_dbl (maxblock, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* factorize each block */
+		/* ---------------------------------------------------------------------- */
+
+		lnz = 0 ;
+		unz = 0 ;
+		max_lnz_block = 1 ;
+		max_unz_block = 1 ;
+		Offp [0] = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			nk = k2 - k1 ;
+
+			if (nk == 1)
+			{
+
+				/* -------------------------------------------------------------- */
+				/* singleton case, exact */
+				/* -------------------------------------------------------------- */
+
+				poff = Offp [k1] ;
+				oldcol = Q [k1] ;
+				pend = Ap [oldcol+1] ;
+				s = 0.0 ;
+				for (p = Ap [oldcol] ; p < pend ; p++)
+				{
+					oldrow = Ai [p] ;
+					newrow = Pinv [oldrow] ;
+					if (newrow < k1)
+					{
+						Offi [poff] = oldrow ;
+						Offx [poff] = (scale <= 0) ? Ax [p] : (Ax [p] / Rs [oldrow]) ;
+						poff++ ;
+					}
+					else
+					{
+						s = (scale <= 0) ? Ax [p] : (Ax [p] / Rs [oldrow]) ;
+					}
+				}
+				Udiag [k1] = s ;
+				if (IS_ZERO (s))
+				{
+					/* singular singleton */
+					Common.status = KLU_SINGULAR ;
+					if (Common.numerical_rank == EMPTY)
+					{
+						Common.numerical_rank = k1 ;
+						Common.singular_col = oldcol ;
+					}
+					if (Common.halt_if_singular == 1)
+					{
+						return ;
+					}
+				}
+				Offp [k1+1] = poff ;
+				Pnum [k1] = P [k1] ;
+				lnz++ ;
+				unz++ ;
+				continue ;
+			}
+
+			/* ------------------------------------------------------------------ */
+			/* incomplete factorization of the block */
+			/* ------------------------------------------------------------------ */
+
+			LU = ilu_block (nk, k1, Ap, Ai, Ax, Q, Pinv, Rs, Pblk, Pbinv,
+					Stack, Flag, Lpend, Ap_pos, X, W, Lip, Uip, Llen, Ulen,
+					Udiag, Offp, Offi, Offx, lusize, lnz_block, unz_block,
+					Common) ;
+			if (LU == null)
+			{
+				/* out of memory, or singular */
+				return ;
+			}
+			Numeric.LUbx [block] = LU ;
+			Numeric.LUsize [block] = lusize [0] ;
+			lnz += lnz_block [0] ;
+			unz += unz_block [0] ;
+			max_lnz_block = MAX (max_lnz_block, lnz_block [0]) ;
+			max_unz_block = MAX (max_unz_block, unz_block [0]) ;
+
+			/* combine the row ordering with the symbolic pre-ordering */
+			for (k = 0 ; k < nk ; k++)
+			{
+				Pnum [k + k1] = P [Pblk [k] + k1] ;
+			}
+		}
+		ASSERT (nzoff == Offp [n]) ;
+
+		Numeric.lnz = lnz ;
+		Numeric.unz = unz ;
+		Numeric.max_lnz_block = max_lnz_block ;
+		Numeric.max_unz_block = max_unz_block ;
+
+		/* compute the inverse of Pnum */
+		for (k = 0 ; k < n ; k++)
+		{
+			Pinv [Pnum [k]] = k ;
+		}
+
+		/* permute scale factors Rs according to pivotal row order */
+		if (scale > 0)
+		{
+			for (k = 0 ; k < n ; k++)
+			{
+				X [k] = Rs [Pnum [k]] ;
+			}
+			for (k = 0 ; k < n ; k++)
+			{
+				Rs [k] = X [k] ;
+			}
+		}
+
+		/* apply the pivot row permutations to the off-diagonal entries */
+		for (p = 0 ; p < nzoff ; p++)
+		{
+			Offi [p] = Pinv [Offi [p]] ;
+		}
+	}
+
+}
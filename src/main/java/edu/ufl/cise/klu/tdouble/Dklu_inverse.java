@@ -0,0 +1,624 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+
+/**
+ * Selected entries of the inverse of A, from the LU factors.
+ *
+ * With F = P*(R\A)*Q the permuted and scaled matrix that KLU factorizes, A
+ * is R*P'*F*Q' and so inv(A) (Q [k], Pnum [m]) = inv(F) (k,m) / Rs [m].  F is
+ * block upper triangular.  Within a diagonal block F_b = L*U, the entries of
+ * Z = inv(F_b) satisfy the recurrences of Takahashi and Erisman & Tinney:
+ *
+ *   Z (i,i) = (1 - U (i,i+1:nk) * Z (i+1:nk,i)) / U (i,i)
+ *   Z (i,j) = - U (i,i+1:nk) * Z (i+1:nk,j) / U (i,i)     for i < j
+ *   Z (i,j) = - Z (i,j+1:nk) * L (j+1:nk,j)               for i > j
+ *
+ * where only the nonzeros of U and L appear in the sums.  Starting from the
+ * entries asked for, the entries each one needs are found first (for the
+ * diagonal and the pattern of L+U, these are mostly on the pattern of L+U
+ * itself), and then all of them are computed in decreasing order of
+ * min (i,j), so that each sum only uses entries that are already known.  The
+ * work is about that of a factorization, rather than that of n solves.
+ *
+ * An entry of inv(F) in the block row above its block column couples the
+ * blocks through Off; these are computed by a solve with column m of the
+ * identity, restricted to the blocks up to that of m, one solve for each
+ * such column m.  Entries below the block diagonal are zero.
+ */
+public class Dklu_inverse extends Dklu_internal {
+
+	/**
+	 * The entries of inv(F) needed so far, in the order they were found, with
+	 * an open-addressing hash table on (i,j).
+	 */
+	protected static class Entries
+	{
+		int n ;         /* F is n-by-n */
+		int nz ;        /* # of entries */
+		int[] Ei ;      /* size nz, row of each entry */
+		int[] Ej ;      /* size nz, column of each entry */
+		double[] Zx ;   /* size nz, value of each entry */
+		long[] key ;    /* hash table of i*n+j, size a power of 2 */
+		int[] slot ;    /* entry in each slot of the table, or EMPTY */
+
+		Entries(int n, int nzmax)
+		{
+			int size = 16 ;
+			while (size < 2 * nzmax)
+			{
+				size *= 2 ;
+			}
+			this.n = n ;
+			nz = 0 ;
+			Ei = new int [MAX (nzmax, 1)] ;
+			Ej = new int [MAX (nzmax, 1)] ;
+			key = new long [size] ;
+			slot = new int [size] ;
+			for (int s = 0 ; s < size ; s++)
+			{
+				slot [s] = EMPTY ;
+			}
+		}
+
+		/**
+		 * Returns the first slot of key k.
+		 */
+		int hash(long k)
+		{
+			k *= 0x9E3779B97F4A7C15L ;
+			return ((int) (k >>> 32)) & (slot.length - 1) ;
+		}
+
+		/**
+		 * Returns the entry (i,j), or EMPTY if not present.
+		 */
+		int find(int i, int j)
+		{
+			long k = ((long) i) * n + j ;
+			int s = hash (k) ;
+			while (slot [s] != EMPTY)
+			{
+				if (key [s] == k) return (slot [s]) ;
+				s = (s + 1) & (slot.length - 1) ;
+			}
+			return (EMPTY) ;
+		}
+
+		/**
+		 * Returns the entry (i,j), adding it if not yet present.
+		 */
+		int add(int i, int j)
+		{
+			long k = ((long) i) * n + j ;
+			int s = hash (k) ;
+			while (slot [s] != EMPTY)
+			{
+				if (key [s] == k) return (slot [s]) ;
+				s = (s + 1) & (slot.length - 1) ;
+			}
+			if (nz == Ei.length)
+			{
+				Ei = grow (Ei) ;
+				Ej = grow (Ej) ;
+			}
+			Ei [nz] = i ;
+			Ej [nz] = j ;
+			key [s] = k ;
+			slot [s] = nz ;
+			if (2 * (nz + 1) > slot.length)
+			{
+				rehash () ;
+			}
+			return (nz++) ;
+		}
+
+		int[] grow(int[] A)
+		{
+			int[] B = new int [2 * A.length] ;
+			System.arraycopy (A, 0, B, 0, A.length) ;
+			return (B) ;
+		}
+
+		void rehash()
+		{
+			int e, s ;
+			key = new long [2 * key.length] ;
+			slot = new int [2 * slot.length] ;
+			for (s = 0 ; s < slot.length ; s++)
+			{
+				slot [s] = EMPTY ;
+			}
+			for (e = 0 ; e <= nz ; e++)
+			{
+				long k = ((long) Ei [e]) * n + Ej [e] ;
+				s = hash (k) ;
+				while (slot [s] != EMPTY)
+				{
+					s = (s + 1) & (slot.length - 1) ;
+				}
+				key [s] = k ;
+				slot [s] = e ;
+			}
+		}
+	}
+
+	/**
+	 * Adds the entries that entry e of inv(F) depends on, all in the same
+	 * diagonal block.
+	 */
+	protected static void depends(Entries Z, int e, int[] Blk, int[] R,
+			KLU_numeric Numeric, int[] Urp, int[] Urj)
+	{
+		double[] LU ;
+		int i, j, k1, p, pend, len ;
+
+		i = Z.Ei [e] ;
+		j = Z.Ej [e] ;
+		if (i <= j)
+		{
+			/* Z (i,j) needs Z (k,j) for each U (i,k) */
+			pend = Urp [i+1] ;
+			for (p = Urp [i] ; p < pend ; p++)
+			{
+				Z.add (Urj [p], j) ;
+			}
+		}
+		else
+		{
+			/* Z (i,j) needs Z (i,k) for each L (k,j) */
+			k1 = R [Blk [j]] ;
+			LU = Numeric.LUbx [Blk [j]] ;
+			p = Numeric.Lip [j] ;
+			len = Numeric.Llen [j] ;
+			for (pend = p + len ; p < pend ; p++)
+			{
+				Z.add (i, k1 + (int) LU [p]) ;
+			}
+		}
+	}
+
+	/**
+	 * Computes entry e of inv(F), from the entries it depends on.
+	 */
+	protected static void compute(Entries Z, int e, int[] Blk, int[] R,
+			KLU_numeric Numeric, int[] Urp, int[] Urj, double[] Urx)
+	{
+		double[] LU, Zx, Udiag ;
+		double s ;
+		int i, j, k1, p, pend, len ;
+
+		Zx = Z.Zx ;
+		Udiag = Numeric.Udiag ;
+		i = Z.Ei [e] ;
+		j = Z.Ej [e] ;
+		s = 0 ;
+		if (i <= j)
+		{
+			pend = Urp [i+1] ;
+			for (p = Urp [i] ; p < pend ; p++)
+			{
+				//MULT_ADD (s, Urx [p], Z (Urj [p], j)) ;
+				s += Urx [p] * Zx [Z.find (Urj [p], j)] ;
+			}
+			//DIV (Zx [e], (i == j) ? 1 - s : -s, Udiag [i]) ;
+			Zx [e] = ((i == j) ? (1 - s) : -s) / Udiag [i] ;
+		}
+		else
+		{
+			k1 = R [Blk [j]] ;
+			LU = Numeric.LUbx [Blk [j]] ;
+			p = Numeric.Lip [j] ;
+			len = Numeric.Llen [j] ;
+			for (pend = p + len ; p < pend ; p++)
+			{
+				//MULT_ADD (s, Z (i, Li [p]), Lx [p]) ;
+				s += Zx [Z.find (i, k1 + (int) LU [p])] * LU [p + len] ;
+			}
+			Zx [e] = -s ;
+		}
+	}
+
+	/**
+	 * Solves F x = e_m for the blocks 0 to bm, where bm is the block of m.
+	 * X is zero on input, and holds x in rows 0 to R [bm+1]-1 on output.
+	 */
+	protected static void column(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			int m, int bm, double[] X)
+	{
+		double[] Offx, Udiag ;
+		int[] R, Offp, Offi ;
+		double xk ;
+		int block, k1, k2, nk, k, p, pend ;
+
+		R = Symbolic.R ;
+		Offp = Numeric.Offp ;
+		Offi = Numeric.Offi ;
+		Offx = Numeric.Offx ;
+		Udiag = Numeric.Udiag ;
+
+		X [m] = 1 ;
+		for (block = bm ; block >= 0 ; block--)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			nk = k2 - k1 ;
+			if (nk == 1)
+			{
+				X [k1] = X [k1] / Udiag [k1] ;
+			}
+			else
+			{
+				klu_lsolve (nk, Numeric.Lip, k1, Numeric.Llen, k1,
+						Numeric.LUbx [block], 1, X, k1) ;
+				klu_usolve (nk, Numeric.Uip, k1, Numeric.Ulen, k1,
+						Numeric.LUbx [block], Udiag, k1, 1, X, k1) ;
+			}
+			if (block > 0)
+			{
+				for (k = k1 ; k < k2 ; k++)
+				{
+					xk = X [k] ;
+					pend = Offp [k+1] ;
+					for (p = Offp [k] ; p < pend ; p++)
+					{
+						//MULT_SUB (X [Offi [p]], Offx [p], xk) ;
+						X [Offi [p]] -= Offx [p] * xk ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes selected entries of inv(A): Zx [p] = inv(A) (Ri [p], Ci [p])
+	 * for p = 0 to nz-1.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param nz number of entries wanted
+	 * @param Ri size nz, row indices of the entries of inv(A)
+	 * @param Ci size nz, column indices of the entries of inv(A)
+	 * @param Zx size nz, the entries on output
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_sel_inverse(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int nz, int[] Ri, int[] Ci, double[] Zx,
+			KLU_common Common)
+	{
+		Entries Z ;
+		double[] LU, Urx, Rs, X ;
+		int[] R, Q, Pinv, Blk, Qinv, Urp, Urj, Ent, Cnt, Order, Next, Head ;
+		int n, nblocks, block, k1, k2, nk, k, m, i, j, p, pend, len, e, t,
+			bk, bm, nunz, nb ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numeric == null || nz < 0 ||
+			(nz > 0 && (Ri == null || Ci == null || Zx == null)))
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		n = Symbolic.n ;
+		for (p = 0 ; p < nz ; p++)
+		{
+			if (Ri [p] < 0 || Ri [p] >= n || Ci [p] < 0 || Ci [p] >= n)
+			{
+				Common.status = KLU_INVALID ;
+				return (FALSE) ;
+			}
+		}
+		Common.status = KLU_OK ;
+		nblocks = Symbolic.nblocks ;
+		R = Symbolic.R ;
+		Q = Symbolic.Q ;
+		Pinv = Numeric.Pinv ;
+		Rs = Numeric.Rs ;
+
+		/* ---------------------------------------------------------------------- */
+		/* block of each row and column of F, and the inverse of Q */
+		/* ---------------------------------------------------------------------- */
+
+		Blk = klu_malloc_int (n, Common) ;
+		Qinv = klu_malloc_int (n, Common) ;
+		Urp = klu_malloc_int (n+1, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			for (k = R [block] ; k < R [block+1] ; k++)
+			{
+				Blk [k] = block ;
+			}
+		}
+		for (k = 0 ; k < n ; k++)
+		{
+			Qinv [Q [k]] = k ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* U by rows, without the diagonal, in the global row/column numbering */
+		/* ---------------------------------------------------------------------- */
+
+		for (k = 0 ; k <= n ; k++)
+		{
+			Urp [k] = 0 ;
+		}
+		nunz = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			if (k2 - k1 == 1) continue ;
+			LU = Numeric.LUbx [block] ;
+			for (j = k1 ; j < k2 ; j++)
+			{
+				p = Numeric.Uip [j] ;
+				len = Numeric.Ulen [j] ;
+				for (pend = p + len ; p < pend ; p++)
+				{
+					Urp [k1 + (int) LU [p] + 1]++ ;
+				}
+				nunz += len ;
+			}
+		}
+		for (k = 0 ; k < n ; k++)
+		{
+			Urp [k+1] += Urp [k] ;
+		}
+		Urj = klu_malloc_int (nunz + 1, Common) ;
+		Urx = klu_malloc_dbl (nunz + 1, Common) ;
+		Next = klu_malloc_int (n, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		for (k = 0 ; k < n ; k++)
+		{
+			Next [k] = Urp [k] ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			if (k2 - k1 == 1) continue ;
+			LU = Numeric.LUbx [block] ;
+			for (j = k1 ; j < k2 ; j++)
+			{
+				p = Numeric.Uip [j] ;
+				len = Numeric.Ulen [j] ;
+				for (pend = p + len ; p < pend ; p++)
+				{
+					t = Next [k1 + (int) LU [p]]++ ;
+					Urj [t] = j ;
+					Urx [t] = LU [p + len] ;
+				}
+			}
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* find the entries of inv(F) needed within the diagonal blocks */
+		/* ---------------------------------------------------------------------- */
+
+		Z = new Entries (n, 2 * nz) ;
+		Ent = klu_malloc_int (MAX (nz, 1), Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		nb = 0 ;
+		for (p = 0 ; p < nz ; p++)
+		{
+			k = Qinv [Ri [p]] ;
+			m = Pinv [Ci [p]] ;
+			bk = Blk [k] ;
+			bm = Blk [m] ;
+			if (bk == bm)
+			{
+				Ent [p] = Z.add (k, m) ;
+			}
+			else
+			{
+				/* zero, or coupled through Off */
+				Ent [p] = EMPTY ;
+				if (bk < bm) nb++ ;
+			}
+		}
+		for (e = 0 ; e < Z.nz ; e++)
+		{
+			/* Z.nz grows as the entries needed are added */
+			depends (Z, e, Blk, R, Numeric, Urp, Urj) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* compute them in decreasing order of min(i,j), diagonal last */
+		/* ---------------------------------------------------------------------- */
+
+		Cnt = klu_malloc_int (2*n + 1, Common) ;
+		Order = klu_malloc_int (Z.nz + 1, Common) ;
+		Z.Zx = klu_malloc_dbl (Z.nz + 1, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		for (t = 0 ; t <= 2*n ; t++)
+		{
+			Cnt [t] = 0 ;
+		}
+		for (e = 0 ; e < Z.nz ; e++)
+		{
+			i = Z.Ei [e] ;
+			j = Z.Ej [e] ;
+			Cnt [2 * (n-1 - MIN (i, j)) + ((i == j) ? 1 : 0) + 1]++ ;
+		}
+		for (t = 0 ; t < 2*n ; t++)
+		{
+			Cnt [t+1] += Cnt [t] ;
+		}
+		for (e = 0 ; e < Z.nz ; e++)
+		{
+			i = Z.Ei [e] ;
+			j = Z.Ej [e] ;
+			Order [Cnt [2 * (n-1 - MIN (i, j)) + ((i == j) ? 1 : 0)]++] = e ;
+		}
+		for (t = 0 ; t < Z.nz ; t++)
+		{
+			compute (Z, Order [t], Blk, R, Numeric, Urp, Urj, Urx) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* entries above the block diagonal, one solve for each column of F */
+		/* ---------------------------------------------------------------------- */
+
+		X = null ;
+		Head = null ;
+		if (nb > 0)
+		{
+			X = klu_malloc_dbl (n, Common) ;
+			Head = klu_malloc_int (n, Common) ;
+			if (Common.status < KLU_OK)
+			{
+				return (FALSE) ;
+			}
+			for (k = 0 ; k < n ; k++)
+			{
+				X [k] = 0 ;
+				Head [k] = EMPTY ;
+			}
+			/* link the entries in each column m */
+			Next = klu_malloc_int (nz, Common) ;
+			if (Common.status < KLU_OK)
+			{
+				return (FALSE) ;
+			}
+			for (p = 0 ; p < nz ; p++)
+			{
+				k = Qinv [Ri [p]] ;
+				m = Pinv [Ci [p]] ;
+				if (Blk [k] < Blk [m])
+				{
+					Next [p] = Head [m] ;
+					Head [m] = p ;
+				}
+			}
+			for (m = 0 ; m < n ; m++)
+			{
+				if (Head [m] == EMPTY) continue ;
+				bm = Blk [m] ;
+				column (Symbolic, Numeric, m, bm, X) ;
+				for (p = Head [m] ; p != EMPTY ; p = Next [p])
+				{
+					Zx [p] = X [Qinv [Ri [p]]] ;
+				}
+				for (k = 0 ; k < R [bm+1] ; k++)
+				{
+					X [k] = 0 ;
+				}
+			}
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* inv(A) (Q [k], Pnum [m]) = inv(F) (k,m) / Rs [m] */
+		/* ---------------------------------------------------------------------- */
+
+		for (p = 0 ; p < nz ; p++)
+		{
+			k = Qinv [Ri [p]] ;
+			m = Pinv [Ci [p]] ;
+			if (Ent [p] != EMPTY)
+			{
+				Zx [p] = Z.Zx [Ent [p]] ;
+			}
+			else if (Blk [k] > Blk [m])
+			{
+				Zx [p] = 0 ;
+			}
+			if (Rs != null)
+			{
+				//SCALE_DIV (Zx [p], Rs [m]) ;
+				Zx [p] = Zx [p] / Rs [m] ;
+			}
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Computes the diagonal of inv(A).
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param D size n, the diagonal of inv(A) on output
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_inverse_diag(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, double[] D, KLU_common Common)
+	{
+		int[] I ;
+		int n, k ;
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numeric == null || D == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		n = Symbolic.n ;
+		I = klu_malloc_int (n, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		for (k = 0 ; k < n ; k++)
+		{
+			I [k] = k ;
+		}
+		return (klu_sel_inverse (Symbolic, Numeric, n, I, I, D, Common)) ;
+	}
+
+}
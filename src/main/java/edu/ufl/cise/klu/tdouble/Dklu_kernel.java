@@ -27,6 +27,8 @@ package edu.ufl.cise.klu.tdouble;
 import edu.ufl.cise.klu.common.KLU_common;
 
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_realloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_super_kernel.super_column;
+import static edu.ufl.cise.klu.tdouble.Dklu_super_kernel.super_lsolve_numeric;
 
 /**
  * Sparse left-looking LU factorization, with partial pivoting.  Based on
@@ -506,6 +508,25 @@ public class Dklu_kernel extends Dklu_internal {
 		return (TRUE) ;
 	}
 
+	/**
+	 * Returns the pivot s, or +/- Common.pert if static pivoting is in use and
+	 * s is smaller than that in magnitude.  The perturbation is counted in
+	 * Common.npert.
+	 *
+	 * @param s the pivot
+	 * @param Common
+	 * @return the pivot to use
+	 */
+	public static double static_pivot(double s, KLU_common Common)
+	{
+		if (Common.static_pivot != FALSE && ABS (s) < Common.pert)
+		{
+			Common.npert++ ;
+			return ((s < 0) ? -Common.pert : Common.pert) ;
+		}
+		return (s) ;
+	}
+
 	/**
 	 * Prune the columns of L to reduce work in subsequent depth-first searches.
 	 *
@@ -618,17 +639,25 @@ public class Dklu_kernel extends Dklu_internal {
 	}
 
 	/**
+	 * The column loop of klu_kernel.  Factorizes the block into LU starting at
+	 * position lup, growing LU if needed, and puts L in the pivotal order.
+	 * LU is not trimmed, so that klu_packed_factor can factorize the next
+	 * block right after this one in the same array.
 	 *
 	 * @param n A is n-by-n
 	 * @param Ap size n+1, column pointers for A
 	 * @param Ai size nz = Ap[n], row indices for A
 	 * @param Ax size nz, values of A
 	 * @param Q size n, optional input permutation
-	 * @param lusize initial size of LU on input
+	 * @param lup position in LU of the first column of L
+	 * @param p_lusize size 1, size of LU on input and output
 	 * @param Pinv size n, inverse row permutation, where Pinv[i] = k if
 	 * row i is the kth pivot row
 	 * @param P size n, row permutation, where P[k] = i if row i is the
 	 * kth pivot row.
+	 * @param hint if TRUE, P holds a preferred pivot order on input, and
+	 * row P[k] plays the role of the diagonal in column k.  If FALSE, the
+	 * input P is ignored and the diagonal is preferred.
 	 * @param p_LU LU array, size lusize on input
 	 * @param Udiag size n, diagonal of U
 	 * @param Llen size n, column length of L
@@ -649,10 +678,12 @@ public class Dklu_kernel extends Dklu_internal {
 	 * @param Offi
 	 * @param Offx
 	 * @param Common
-	 * @return final size of LU on output
+	 * @return position in LU after the last column of U, or EMPTY if the
+	 * factorization stopped early (Common.status gives the reason)
 	 */
-	public static int klu_kernel(int n, int[] Ap, int[] Ai, double[] Ax,
-			int[] Q, int lusize, int[] Pinv, int[] P, double[][] p_LU,
+	public static int klu_kernel_columns(int n, int[] Ap, int[] Ai, double[] Ax,
+			int[] Q, int lup, int[] p_lusize, int[] Pinv, int[] P, int hint,
+			double[][] p_LU,
 			double[] Udiag, int Udiag_offset, int[] Llen, int Llen_offset,
 			int[] Ulen, int Ulen_offset, int[] Lip, int Lip_offset,
 			int[] Uip, int Uip_offset,
@@ -666,11 +697,11 @@ public class Dklu_kernel extends Dklu_internal {
 		double[] Ux ;
 		/*int[]*/double[] Li, Ui ;
 		double[] LU ;          /* LU factors (pattern and values) */
-		int k, p, i, j, kbar, diagrow, lup, top, scale;
+		int k, p, i, j, kbar, diagrow, top, scale;
 		int[] len = new int[1] ;
 		int[] firstrow = new int[1] ;
 		int[] pivrow = new int[] {0} ;
-		int newlusize;
+		int lusize, newlusize;
 		int[] Ui_offset = new int [1] ;
 		int[] Ux_offset = new int [1] ;
 		int[] Li_offset = new int [1] ;
@@ -678,10 +709,22 @@ public class Dklu_kernel extends Dklu_internal {
 
 		double[] Lx;  // only used when debugging
 
+		/* supernodal workspace, if used */
+		int supernodal, nsuper ;
+		int[] Super = null, Sfirst = null, Slast = null, Sw = null,
+			Rpos = null, Rmark = null ;
+		int[][] Sri = null ;
+		double[][] Spx = null ;
+		double[] xs = null ;
+
 		ASSERT (Common != null) ;
 		scale = Common.scale ;
-		tol = Common.tol ;
+		/* with static pivoting, the diagonal is always taken if present */
+		tol = (Common.static_pivot != FALSE) ? 0.0 : Common.tol ;
 		memgrow = Common.memgrow ;
+		supernodal = (Common.supernodal != 0 && n >= Common.super_minblock) ?
+				TRUE : FALSE ;
+		nsuper = 0 ;
 		lnz[0] = 0 ;
 		unz[0] = 0 ;
 		pivot[0] = 0.0 ;  //CLEAR (pivot) ;
@@ -690,6 +733,7 @@ public class Dklu_kernel extends Dklu_internal {
 		/* get initial Li, Lx, Ui, and Ux */
 		/* ---------------------------------------------------------------------- */
 
+		lusize = p_lusize [0] ;
 		PRINTF ("input: lusize %d \n", lusize) ;
 		ASSERT (lusize > 0) ;
 		LU = p_LU [0] ;
@@ -699,7 +743,6 @@ public class Dklu_kernel extends Dklu_internal {
 		/* ---------------------------------------------------------------------- */
 
 		firstrow[0] = 0 ;
-		lup = 0 ;
 
 		for (k = 0 ; k < n ; k++)
 		{
@@ -709,6 +752,23 @@ public class Dklu_kernel extends Dklu_internal {
 			Lpend [k] = EMPTY ;     /* flag k as not pruned */
 		}
 
+		if (supernodal != 0)
+		{
+			Super = new int [n] ;
+			Sfirst = new int [n] ;
+			Slast = new int [n] ;
+			Sw = new int [n] ;
+			Rpos = new int [n] ;
+			Rmark = new int [n] ;
+			Sri = new int [n][] ;
+			Spx = new double [n][] ;
+			xs = new double [n] ;
+			for (k = 0 ; k < n ; k++)
+			{
+				Rmark [k] = EMPTY ;
+			}
+		}
+
 		/* ---------------------------------------------------------------------- */
 		/* mark all rows as non-pivotal and determine initial diagonal mapping */
 		/* ---------------------------------------------------------------------- */
@@ -716,8 +776,11 @@ public class Dklu_kernel extends Dklu_internal {
 		/* PSinv does the symmetric permutation, so don't do it here */
 		for (k = 0 ; k < n ; k++)
 		{
-			P [k] = k ;
-			Pinv [k] = FLIP (k) ;   /* mark all rows as non-pivotal */
+			if (hint == FALSE)
+			{
+				P [k] = k ;
+			}
+			Pinv [P [k]] = FLIP (k) ;   /* mark all rows as non-pivotal */
 		}
 		/* initialize the construction of the off-diagonal matrix */
 		Offp [0] = 0 ;
@@ -765,7 +828,7 @@ public class Dklu_kernel extends Dklu_internal {
 				{
 					PRINTF ("Matrix is too large (int overflow)\n") ;
 					Common.status = KLU_TOO_LARGE ;
-					return (lusize) ;
+					return (EMPTY) ;
 				}
 				newlusize = (int) (memgrow * lusize + 2*n + 1) ;
 				/* Future work: retry mechanism in case of malloc failure */
@@ -775,9 +838,10 @@ public class Dklu_kernel extends Dklu_internal {
 				if (Common.status == KLU_OUT_OF_MEMORY)
 				{
 					PRINTF ("Matrix is too large (LU)\n") ;
-					return (lusize) ;
+					return (EMPTY) ;
 				}
 				lusize = newlusize ;
+				p_lusize [0] = lusize ;
 				PRINTF ("inc LU to %d done\n", lusize) ;
 			}
 
@@ -842,8 +906,17 @@ public class Dklu_kernel extends Dklu_internal {
 			/* compute the numerical values of the kth column (s = L \ A (:,k)) */
 			/* ------------------------------------------------------------------ */
 
-			lsolve_numeric (Pinv, LU, Stack, Lip, Lip_offset, top, n,
-					Llen, Llen_offset, X) ;
+			if (supernodal != 0)
+			{
+				super_lsolve_numeric (Pinv, P, LU, Stack, Lip, Lip_offset,
+						top, n, Llen, Llen_offset, X, k, Flag, Super, Sfirst,
+						Slast, Sw, Sri, Spx, xs) ;
+			}
+			else
+			{
+				lsolve_numeric (Pinv, LU, Stack, Lip, Lip_offset, top, n,
+						Llen, Llen_offset, X) ;
+			}
 
 			if (!NDEBUG)
 			{
@@ -870,6 +943,14 @@ public class Dklu_kernel extends Dklu_internal {
 			PRINTF ("k %d, diagrow = %d, UNFLIP (diagrow) = %d\n",
 				k, diagrow, UNFLIP (diagrow)) ;
 
+			/* static pivoting: perturb a tiny diagonal, which lpivot then
+			 * takes since tol is zero */
+			if (Common.static_pivot != FALSE && Pinv [diagrow] < 0 &&
+				Flag [diagrow] == k)
+			{
+				X [diagrow] = static_pivot (X [diagrow], Common) ;
+			}
+
 			/* find a pivot and scale the pivot column */
 			if (lpivot (diagrow, pivrow, pivot, abs_pivot, tol, X, LU, Lip, Lip_offset,
 						Llen, Llen_offset, k, n, Pinv, firstrow, Common) == 0)
@@ -884,7 +965,7 @@ public class Dklu_kernel extends Dklu_internal {
 				if (Common.halt_if_singular != 0)
 				{
 					/* do not continue the factorization */
-					return (lusize) ;
+					return (EMPTY) ;
 				}
 			}
 
@@ -959,6 +1040,14 @@ public class Dklu_kernel extends Dklu_internal {
 			P [k] = pivrow[0] ;
 			Pinv [pivrow[0]] = k ;
 
+			if (supernodal != 0)
+			{
+				/* add column k of L to a supernode */
+				nsuper = super_column (k, P, LU, Lip, Lip_offset, Llen,
+						Llen_offset, Super, Sfirst, Slast, Sw, Sri, Spx, Rpos,
+						Rmark, nsuper) ;
+			}
+
 			if (!NDEBUG)
 			{
 				for (i = 0 ; i < n ; i++) { ASSERT (IS_ZERO (X [i])) ;}
@@ -1019,6 +1108,69 @@ public class Dklu_kernel extends Dklu_internal {
 			}
 		}
 
+		return (lup) ;
+	}
+
+	/**
+	 *
+	 * @param n A is n-by-n
+	 * @param Ap size n+1, column pointers for A
+	 * @param Ai size nz = Ap[n], row indices for A
+	 * @param Ax size nz, values of A
+	 * @param Q size n, optional input permutation
+	 * @param lusize initial size of LU on input
+	 * @param Pinv size n, inverse row permutation, where Pinv[i] = k if
+	 * row i is the kth pivot row
+	 * @param P size n, row permutation, where P[k] = i if row i is the
+	 * kth pivot row.
+	 * @param hint if TRUE, P holds a preferred pivot order on input, and
+	 * row P[k] plays the role of the diagonal in column k.  If FALSE, the
+	 * input P is ignored and the diagonal is preferred.
+	 * @param p_LU LU array, size lusize on input
+	 * @param Udiag size n, diagonal of U
+	 * @param Llen size n, column length of L
+	 * @param Ulen size n, column length of U
+	 * @param Lip size n, column pointers for L
+	 * @param Uip size n, column pointers for U
+	 * @param lnz size 1, size of L
+	 * @param unz size 1, size of U
+	 * @param X size n, undefined on input, zero on output
+	 * @param Stack size n
+	 * @param Flag size n
+	 * @param Ap_pos size n
+	 * @param Lpend size n workspace, for pruning only
+	 * @param k1 the block of A is from k1 to k2-1
+	 * @param PSinv inverse of P from symbolic factorization
+	 * @param Rs scale factors for A
+	 * @param Offp off-diagonal matrix (modified by this routine)
+	 * @param Offi
+	 * @param Offx
+	 * @param Common
+	 * @return final size of LU on output
+	 */
+	public static int klu_kernel(int n, int[] Ap, int[] Ai, double[] Ax,
+			int[] Q, int lusize, int[] Pinv, int[] P, int hint, double[][] p_LU,
+			double[] Udiag, int Udiag_offset, int[] Llen, int Llen_offset,
+			int[] Ulen, int Ulen_offset, int[] Lip, int Lip_offset,
+			int[] Uip, int Uip_offset,
+			int[] lnz, int[] unz, double[] X, int[] Stack, int[] Flag,
+			int[] Ap_pos, int[] Lpend, int k1, int[] PSinv, double[] Rs,
+			int[] Offp, int[] Offi, double[] Offx, KLU_common Common)
+	{
+		int[] p_lusize = new int[] {lusize} ;
+		double[] LU ;
+		int lup, newlusize ;
+
+		lup = klu_kernel_columns (n, Ap, Ai, Ax, Q, 0, p_lusize, Pinv, P, hint,
+				p_LU, Udiag, Udiag_offset, Llen, Llen_offset, Ulen, Ulen_offset,
+				Lip, Lip_offset, Uip, Uip_offset, lnz, unz, X, Stack, Flag,
+				Ap_pos, Lpend, k1, PSinv, Rs, Offp, Offi, Offx, Common) ;
+		lusize = p_lusize [0] ;
+		if (lup == EMPTY)
+		{
+			return (lusize) ;
+		}
+
 		/* ---------------------------------------------------------------------- */
 		/* shrink the LU factors to just the required size */
 		/* ---------------------------------------------------------------------- */
@@ -1027,7 +1179,7 @@ public class Dklu_kernel extends Dklu_internal {
 		ASSERT ((int) newlusize <= lusize) ;
 
 		/* this cannot fail, since the block is descreasing in size */
-		LU = klu_realloc_dbl (newlusize, lusize, LU, Common) ;
+		LU = klu_realloc_dbl (newlusize, lusize, p_LU [0], Common) ;
 		p_LU [0] = LU ;
 		return (newlusize) ;
 	}
@@ -0,0 +1,549 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_refine.klu_residual;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * Solve Ax=b with a Krylov method (restarted GMRES or BiCGStab), using an
+ * existing factorization as a right preconditioner.  The Numeric object may
+ * be a factorization of an older matrix with the same pattern as A, when
+ * refactorizing at every step is too costly (a Newton iteration, or a time
+ * step with slowly varying values).  The methods stop once
+ * norm (b-A*x) <= Common.krylov_tol * norm (b), or after Common.krylov_maxit
+ * iterations.  Each iteration takes one matrix-vector product with A and one
+ * klu_solve (two of each for BiCGStab).
+ *
+ * On return, Common.krylov_iter is the number of iterations, Common.krylov_resid
+ * the relative residual norm (b-A*x) / norm (b), and Common.krylov_refactor is
+ * TRUE if the method did not converge or needed more than
+ * Common.krylov_refactor_it iterations, in which case the caller should
+ * refactorize A before the next solve.  If the tolerance was not reached,
+ * the methods return FALSE with Common.status set to the warning
+ * KLU_NOT_CONVERGED; x is then the last iterate.
+ *
+ * The workspace is allocated once on entry; the iterations themselves,
+ * including the products with A, allocate no memory.
+ */
+public class Dklu_krylov extends Dklu_internal {
+
+	/**
+	 * Computes Y = A*X.
+	 *
+	 * @param n A is n-by-n
+	 * @param Ap column pointers of A
+	 * @param Ai row indices of A
+	 * @param Ax values of A
+	 * @param X size n
+	 * @param Y size n, A*X on output
+	 */
+	public static void klu_matvec(int n, int[] Ap, int[] Ai, double[] Ax,
+			double[] X, int X_offset, double[] Y, int Y_offset)
+	{
+		double xj ;
+		int i, j, p, pend ;
+
+		for (i = 0 ; i < n ; i++)
+		{
+			Y [Y_offset + i] = 0 ;
+		}
+		for (j = 0 ; j < n ; j++)
+		{
+			xj = X [X_offset + j] ;
+			if (xj == 0)
+			{
+				continue ;
+			}
+			pend = Ap [j+1] ;
+			for (p = Ap [j] ; p < pend ; p++)
+			{
+				Y [Y_offset + Ai [p]] += Ax [p] * xj ;
+			}
+		}
+	}
+
+	/**
+	 * Returns the 2-norm of X.
+	 */
+	protected static double norm2(int n, double[] X, int X_offset)
+	{
+		double s, xi ;
+		int i ;
+
+		s = 0 ;
+		for (i = 0 ; i < n ; i++)
+		{
+			xi = X [X_offset + i] ;
+			s += xi * xi ;
+		}
+		return (Math.sqrt (s)) ;
+	}
+
+	/**
+	 * Returns the dot product of X and Y.
+	 */
+	protected static double dot(int n, double[] X, int X_offset,
+			double[] Y, int Y_offset)
+	{
+		double s ;
+		int i ;
+
+		s = 0 ;
+		for (i = 0 ; i < n ; i++)
+		{
+			s += X [X_offset + i] * Y [Y_offset + i] ;
+		}
+		return (s) ;
+	}
+
+	/**
+	 * Checks the inputs and clears the statistics of a Krylov solve.
+	 *
+	 * @return TRUE if the inputs are valid, FALSE otherwise
+	 */
+	private static int check_inputs(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_numeric Numeric, double[] B,
+			double[] X, KLU_common Common)
+	{
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		Common.krylov_iter = EMPTY ;
+		Common.krylov_resid = EMPTY ;
+		Common.krylov_refactor = FALSE ;
+		if (Numeric == null || Symbolic == null || Ap == null || Ai == null ||
+			Ax == null || B == null || X == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Sets the statistics at the end of a Krylov solve.
+	 *
+	 * @return TRUE if the method converged, FALSE otherwise
+	 */
+	private static int finish(int iter, double resid, KLU_common Common)
+	{
+		Common.krylov_iter = iter ;
+		Common.krylov_resid = resid ;
+		Common.krylov_refactor = (resid > Common.krylov_tol ||
+			iter > Common.krylov_refactor_it) ? TRUE : FALSE ;
+		if (resid > Common.krylov_tol)
+		{
+			Common.status = KLU_NOT_CONVERGED ;
+			return (FALSE) ;
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Solve Ax=b with GMRES, restarted every Common.krylov_restart iterations,
+	 * and preconditioned on the right by the factorization in Numeric.
+	 *
+	 * @param Ap column pointers of A
+	 * @param Ai row indices of A
+	 * @param Ax values of A
+	 * @param Symbolic
+	 * @param Numeric factorization of A, or of a matrix close to A
+	 * @param B size n, the right-hand-side
+	 * @param X size n, the initial guess on input (zero if nothing better is
+	 * known), the solution on output
+	 * @param Common
+	 * @return TRUE if the method converged, FALSE otherwise (Common.status is
+	 * KLU_NOT_CONVERGED if the iteration limit was reached)
+	 */
+	public static int klu_gmres(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_numeric Numeric, double[] B, int B_offset,
+			double[] X, int X_offset, KLU_common Common)
+	{
+		double[] V, H, Cs, Sn, G ;
+		double bnorm, beta, resid, hij, hj1, r, temp ;
+		int n, m, m1, i, j, l, iter, w_offset, vj, vj1, nj ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (check_inputs (Ap, Ai, Ax, Symbolic, Numeric, B, X, Common) == FALSE)
+		{
+			return (FALSE) ;
+		}
+		n = Symbolic.n ;
+		bnorm = norm2 (n, B, B_offset) ;
+		if (bnorm == 0)
+		{
+			/* b is zero, so is x */
+			for (i = 0 ; i < n ; i++)
+			{
+				X [X_offset + i] = 0 ;
+			}
+			return (finish (0, 0, Common)) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* get workspace */
+		/* ---------------------------------------------------------------------- */
+
+		m = MAX (1, MIN (Common.krylov_restart, n)) ;
+		m1 = m + 1 ;
+		/* Krylov basis V (n-by-m+1), followed by a work vector of size n */
+		V = klu_malloc_dbl (n * (m + 2), Common) ;
+		H = klu_malloc_dbl (m1 * m, Common) ;
+		Cs = klu_malloc_dbl (m, Common) ;
+		Sn = klu_malloc_dbl (m, Common) ;
+		G = klu_malloc_dbl (m1, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		w_offset = n * m1 ;
+
+		/* ---------------------------------------------------------------------- */
+		/* restarted GMRES */
+		/* ---------------------------------------------------------------------- */
+
+		iter = 0 ;
+		for ( ; ; )
+		{
+			/* v0 = b - A*x, using the true residual at each restart */
+			klu_residual (n, Ap, Ai, Ax, X, X_offset, B, B_offset,
+					V, 0, V, w_offset) ;
+			beta = norm2 (n, V, 0) ;
+			resid = beta / bnorm ;
+			PRINTF ("gmres iter %d resid %g\n", iter, resid) ;
+			if (resid <= Common.krylov_tol || iter >= Common.krylov_maxit)
+			{
+				break ;
+			}
+			for (i = 0 ; i < n ; i++)
+			{
+				V [i] /= beta ;
+			}
+			G [0] = beta ;
+			for (i = 1 ; i < m1 ; i++)
+			{
+				G [i] = 0 ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* Arnoldi process, with Givens rotations applied to H */
+			/* -------------------------------------------------------------- */
+
+			nj = 0 ;
+			for (j = 0 ; j < m && iter < Common.krylov_maxit ; j++)
+			{
+				iter++ ;
+				vj = j * n ;
+				vj1 = vj + n ;
+
+				/* v(j+1) = A * (M \ v(j)) */
+				System.arraycopy (V, vj, V, w_offset, n) ;
+				if (klu_solve (Symbolic, Numeric, n, 1, V, w_offset, Common) == FALSE)
+				{
+					return (FALSE) ;
+				}
+				klu_matvec (n, Ap, Ai, Ax, V, w_offset, V, vj1) ;
+
+				/* modified Gram-Schmidt */
+				for (i = 0 ; i <= j ; i++)
+				{
+					hij = dot (n, V, i * n, V, vj1) ;
+					for (l = 0 ; l < n ; l++)
+					{
+						V [vj1 + l] -= hij * V [i * n + l] ;
+					}
+					H [i + j*m1] = hij ;
+				}
+				hj1 = norm2 (n, V, vj1) ;
+				H [j+1 + j*m1] = hj1 ;
+				if (hj1 != 0)
+				{
+					for (l = 0 ; l < n ; l++)
+					{
+						V [vj1 + l] /= hj1 ;
+					}
+				}
+
+				/* apply the previous rotations to column j of H */
+				for (i = 0 ; i < j ; i++)
+				{
+					temp = Cs [i] * H [i + j*m1] + Sn [i] * H [i+1 + j*m1] ;
+					H [i+1 + j*m1] = -Sn [i] * H [i + j*m1]
+						+ Cs [i] * H [i+1 + j*m1] ;
+					H [i + j*m1] = temp ;
+				}
+
+				/* rotate away H (j+1,j) */
+				r = Math.hypot (H [j + j*m1], hj1) ;
+				if (r == 0)
+				{
+					Cs [j] = 1 ;
+					Sn [j] = 0 ;
+				}
+				else
+				{
+					Cs [j] = H [j + j*m1] / r ;
+					Sn [j] = hj1 / r ;
+				}
+				H [j + j*m1] = r ;
+				H [j+1 + j*m1] = 0 ;
+				G [j+1] = -Sn [j] * G [j] ;
+				G [j] = Cs [j] * G [j] ;
+				nj = j + 1 ;
+
+				resid = ABS (G [j+1]) / bnorm ;
+				PRINTF ("gmres iter %d est. resid %g\n", iter, resid) ;
+				if (resid <= Common.krylov_tol || hj1 == 0)
+				{
+					break ;
+				}
+			}
+
+			/* -------------------------------------------------------------- */
+			/* x = x + M \ (V*y), where H*y = g */
+			/* -------------------------------------------------------------- */
+
+			for (i = nj - 1 ; i >= 0 ; i--)
+			{
+				temp = G [i] ;
+				for (l = i + 1 ; l < nj ; l++)
+				{
+					temp -= H [i + l*m1] * G [l] ;
+				}
+				G [i] = (H [i + i*m1] != 0) ? temp / H [i + i*m1] : 0 ;
+			}
+			for (l = 0 ; l < n ; l++)
+			{
+				V [w_offset + l] = 0 ;
+			}
+			for (i = 0 ; i < nj ; i++)
+			{
+				temp = G [i] ;
+				for (l = 0 ; l < n ; l++)
+				{
+					V [w_offset + l] += temp * V [i * n + l] ;
+				}
+			}
+			if (klu_solve (Symbolic, Numeric, n, 1, V, w_offset, Common) == FALSE)
+			{
+				return (FALSE) ;
+			}
+			for (l = 0 ; l < n ; l++)
+			{
+				X [X_offset + l] += V [w_offset + l] ;
+			}
+		}
+
+		return (finish (iter, resid, Common)) ;
+	}
+
+	/**
+	 * Solve Ax=b with BiCGStab, preconditioned on the right by the
+	 * factorization in Numeric.  The method is restarted from the true
+	 * residual if it breaks down.
+	 *
+	 * @param Ap column pointers of A
+	 * @param Ai row indices of A
+	 * @param Ax values of A
+	 * @param Symbolic
+	 * @param Numeric factorization of A, or of a matrix close to A
+	 * @param B size n, the right-hand-side
+	 * @param X size n, the initial guess on input (zero if nothing better is
+	 * known), the solution on output
+	 * @param Common
+	 * @return TRUE if the method converged, FALSE otherwise (Common.status is
+	 * KLU_NOT_CONVERGED if the iteration limit was reached)
+	 */
+	public static int klu_bicgstab(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_numeric Numeric, double[] B, int B_offset,
+			double[] X, int X_offset, KLU_common Common)
+	{
+		double[] W ;
+		double bnorm, resid, rho, rho1, alpha, omega, beta, tt, rv ;
+		int n, i, iter, restart, r, rh, p, v, ph, s, sh, t ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (check_inputs (Ap, Ai, Ax, Symbolic, Numeric, B, X, Common) == FALSE)
+		{
+			return (FALSE) ;
+		}
+		n = Symbolic.n ;
+		bnorm = norm2 (n, B, B_offset) ;
+		if (bnorm == 0)
+		{
+			/* b is zero, so is x */
+			for (i = 0 ; i < n ; i++)
+			{
+				X [X_offset + i] = 0 ;
+			}
+			return (finish (0, 0, Common)) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* get workspace */
+		/* ---------------------------------------------------------------------- */
+
+		W = klu_malloc_dbl (8 * n, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		r = 0 ;         /* residual */
+		rh = n ;        /* shadow residual */
+		p = 2*n ;       /* search direction */
+		v = 3*n ;       /* A * (M \ p) */
+		ph = 4*n ;      /* M \ p */
+		s = 5*n ;       /* intermediate residual */
+		sh = 6*n ;      /* M \ s */
+		t = 7*n ;       /* A * (M \ s), and workspace for klu_residual */
+
+		/* ---------------------------------------------------------------------- */
+		/* BiCGStab */
+		/* ---------------------------------------------------------------------- */
+
+		rho = 1 ;
+		alpha = 1 ;
+		omega = 1 ;
+		iter = 0 ;
+		restart = TRUE ;
+		for ( ; ; )
+		{
+			if (restart == TRUE)
+			{
+				/* r = b - A*x, rhat = r, p = r */
+				klu_residual (n, Ap, Ai, Ax, X, X_offset, B, B_offset,
+						W, r, W, t) ;
+				resid = norm2 (n, W, r) / bnorm ;
+				PRINTF ("bicgstab iter %d resid %g\n", iter, resid) ;
+				if (resid <= Common.krylov_tol)
+				{
+					break ;
+				}
+				System.arraycopy (W, r, W, rh, n) ;
+				System.arraycopy (W, r, W, p, n) ;
+				rho = dot (n, W, rh, W, r) ;
+				restart = FALSE ;
+			}
+			else
+			{
+				rho1 = dot (n, W, rh, W, r) ;
+				if (rho1 == 0 || omega == 0)
+				{
+					/* breakdown */
+					restart = TRUE ;
+					continue ;
+				}
+				beta = (rho1 / rho) * (alpha / omega) ;
+				for (i = 0 ; i < n ; i++)
+				{
+					W [p + i] = W [r + i] + beta * (W [p + i] - omega * W [v + i]) ;
+				}
+				rho = rho1 ;
+			}
+			if (iter >= Common.krylov_maxit)
+			{
+				break ;
+			}
+			iter++ ;
+
+			/* v = A * (M \ p) */
+			System.arraycopy (W, p, W, ph, n) ;
+			if (klu_solve (Symbolic, Numeric, n, 1, W, ph, Common) == FALSE)
+			{
+				return (FALSE) ;
+			}
+			klu_matvec (n, Ap, Ai, Ax, W, ph, W, v) ;
+			rv = dot (n, W, rh, W, v) ;
+			if (rv == 0)
+			{
+				/* breakdown */
+				restart = TRUE ;
+				continue ;
+			}
+			alpha = rho / rv ;
+
+			/* s = r - alpha*v */
+			for (i = 0 ; i < n ; i++)
+			{
+				W [s + i] = W [r + i] - alpha * W [v + i] ;
+			}
+			if (norm2 (n, W, s) / bnorm <= Common.krylov_tol)
+			{
+				for (i = 0 ; i < n ; i++)
+				{
+					X [X_offset + i] += alpha * W [ph + i] ;
+				}
+				restart = TRUE ;
+				continue ;
+			}
+
+			/* t = A * (M \ s) */
+			System.arraycopy (W, s, W, sh, n) ;
+			if (klu_solve (Symbolic, Numeric, n, 1, W, sh, Common) == FALSE)
+			{
+				return (FALSE) ;
+			}
+			klu_matvec (n, Ap, Ai, Ax, W, sh, W, t) ;
+			tt = dot (n, W, t, W, t) ;
+			omega = (tt > 0) ? dot (n, W, t, W, s) / tt : 0 ;
+
+			/* x = x + alpha*phat + omega*shat, r = s - omega*t */
+			for (i = 0 ; i < n ; i++)
+			{
+				X [X_offset + i] += alpha * W [ph + i] + omega * W [sh + i] ;
+				W [r + i] = W [s + i] - omega * W [t + i] ;
+			}
+			resid = norm2 (n, W, r) / bnorm ;
+			PRINTF ("bicgstab iter %d est. resid %g\n", iter, resid) ;
+			if (resid <= Common.krylov_tol)
+			{
+				/* confirm with the true residual */
+				restart = TRUE ;
+			}
+		}
+
+		/* report the true residual */
+		klu_residual (n, Ap, Ai, Ax, X, X_offset, B, B_offset, W, r, W, t) ;
+		resid = norm2 (n, W, r) / bnorm ;
+
+		return (finish (iter, resid, Common)) ;
+	}
+
+}
@@ -0,0 +1,704 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_parallel.klu_invoke_all;
+
+/**
+ * Level-scheduled triangular solves for large blocks.
+ *
+ * klu_levels makes a row-oriented copy of L and U of each block of size
+ * Common.par_minblock or more, and splits the rows of each factor into
+ * levels.  Row i of L is in level 1 + (the highest level of any column j
+ * with L(i,j) nonzero), so all rows in a level depend only on rows in
+ * earlier levels and can be solved at the same time.  The levels of U are
+ * found in the same way, starting from the last row.  klu_solve then solves
+ * each level with a dot-product (gather) sweep, splitting large levels into
+ * Common.nthreads tasks run on Common.executor with a barrier between levels.
+ * Each task writes only the rows it owns, so no synchronization is needed
+ * inside a level.  Blocks smaller than Common.par_minblock are solved by
+ * klu_lsolve and klu_usolve as usual.
+ *
+ * The row copy is kept up to date by klu_refactor, and rebuilt by klu_sort.
+ */
+public class Dklu_levels extends Dklu_internal {
+
+	/**
+	 * Counts the entries in each row of L or U of one block.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Xip column pointers of L or U, into LU
+	 * @param Xlen column lengths of L or U
+	 * @param LU LU factors of the block
+	 * @param Rp size nk+1, row pointers on output
+	 * @return number of entries
+	 */
+	protected static int row_counts(int nk, int[] Xip, int Xip_offset,
+			int[] Xlen, int Xlen_offset, double[] LU, int[] Rp)
+	{
+		/*int[]*/double[] Xi ;
+		int i, k, p, nz ;
+		int[] len = new int[1] ;
+		int[] Xi_offset = new int[1] ;
+		int[] Xx_offset = new int[1] ;
+
+		for (i = 0 ; i <= nk ; i++)
+		{
+			Rp [i] = 0 ;
+		}
+		for (k = 0 ; k < nk ; k++)
+		{
+			Xi = GET_POINTER (LU, Xip, Xip_offset, Xlen, Xlen_offset,
+					Xi_offset, Xx_offset, k, len) ;
+			for (p = 0 ; p < len[0] ; p++)
+			{
+				Rp [(int) Xi [Xi_offset[0] + p] + 1]++ ;
+			}
+		}
+		nz = 0 ;
+		for (i = 0 ; i < nk ; i++)
+		{
+			nz += Rp [i+1] ;
+			Rp [i+1] = nz ;
+		}
+		return (nz) ;
+	}
+
+	/**
+	 * Transposes L or U of one block into row form.  The column indices in
+	 * each row appear in increasing order.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Xip column pointers of L or U, into LU
+	 * @param Xlen column lengths of L or U
+	 * @param LU LU factors of the block
+	 * @param Rp size nk+1, row pointers from row_counts
+	 * @param Rj column indices on output
+	 * @param Rx values on output
+	 * @param Rmap position of each entry in LU on output
+	 * @param W size nk workspace
+	 */
+	protected static void transpose(int nk, int[] Xip, int Xip_offset,
+			int[] Xlen, int Xlen_offset, double[] LU, int[] Rp, int[] Rj,
+			double[] Rx, int[] Rmap, int[] W)
+	{
+		/*int[]*/double[] Xi ;
+		double[] Xx ;
+		int i, k, p, rp ;
+		int[] len = new int[1] ;
+		int[] Xi_offset = new int[1] ;
+		int[] Xx_offset = new int[1] ;
+
+		for (i = 0 ; i < nk ; i++)
+		{
+			W [i] = Rp [i] ;
+		}
+		for (k = 0 ; k < nk ; k++)
+		{
+			Xi = Xx = GET_POINTER (LU, Xip, Xip_offset, Xlen, Xlen_offset,
+					Xi_offset, Xx_offset, k, len) ;
+			for (p = 0 ; p < len[0] ; p++)
+			{
+				rp = W [(int) Xi [Xi_offset[0] + p]]++ ;
+				Rj [rp] = k ;
+				Rx [rp] = Xx [Xx_offset[0] + p] ;
+				Rmap [rp] = Xx_offset[0] + p ;
+			}
+		}
+	}
+
+	/**
+	 * Allocates the per-block row form arrays, if not already allocated.
+	 *
+	 * @param Numeric
+	 * @param nblocks number of blocks
+	 */
+	protected static void alloc_rows(KLU_numeric Numeric, int nblocks)
+	{
+		if (Numeric.Lrp != null)
+		{
+			return ;
+		}
+		Numeric.Lrp   = new int [nblocks][] ;
+		Numeric.Lrj   = new int [nblocks][] ;
+		Numeric.Lrx   = new double [nblocks][] ;
+		Numeric.Lrmap = new int [nblocks][] ;
+		Numeric.Urp   = new int [nblocks][] ;
+		Numeric.Urj   = new int [nblocks][] ;
+		Numeric.Urx   = new double [nblocks][] ;
+		Numeric.Urmap = new int [nblocks][] ;
+	}
+
+	/**
+	 * Computes the row form of L and U of one block.
+	 *
+	 * @param Numeric
+	 * @param block the block to transpose
+	 * @param k1 first row of the block
+	 * @param nk the block is nk-by-nk
+	 * @param W size nk workspace
+	 * @param Common
+	 * @return TRUE if successful, FALSE if out of memory
+	 */
+	protected static int row_form(KLU_numeric Numeric, int block, int k1,
+			int nk, int[] W, KLU_common Common)
+	{
+		int[] Lp, Up ;
+		int lnz, unz ;
+
+		Lp = klu_malloc_int (nk+1, Common) ;
+		Up = klu_malloc_int (nk+1, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		lnz = row_counts (nk, Numeric.Lip, k1, Numeric.Llen, k1,
+				Numeric.LUbx [block], Lp) ;
+		unz = row_counts (nk, Numeric.Uip, k1, Numeric.Ulen, k1,
+				Numeric.LUbx [block], Up) ;
+		Numeric.Lrj [block] = klu_malloc_int (lnz, Common) ;
+		Numeric.Lrx [block] = klu_malloc_dbl (lnz, Common) ;
+		Numeric.Lrmap [block] = klu_malloc_int (lnz, Common) ;
+		Numeric.Urj [block] = klu_malloc_int (unz, Common) ;
+		Numeric.Urx [block] = klu_malloc_dbl (unz, Common) ;
+		Numeric.Urmap [block] = klu_malloc_int (unz, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		transpose (nk, Numeric.Lip, k1, Numeric.Llen, k1, Numeric.LUbx [block],
+				Lp, Numeric.Lrj [block], Numeric.Lrx [block],
+				Numeric.Lrmap [block], W) ;
+		transpose (nk, Numeric.Uip, k1, Numeric.Ulen, k1, Numeric.LUbx [block],
+				Up, Numeric.Urj [block], Numeric.Urx [block],
+				Numeric.Urmap [block], W) ;
+		Numeric.Lrp [block] = Lp ;
+		Numeric.Urp [block] = Up ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Recomputes the positions of the row forms in LUbx after klu_sort has
+	 * reordered the entries in each column of L and U.  The row forms
+	 * themselves do not change, since the column indices in each row are in
+	 * increasing order either way.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_rows_remap(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			KLU_common Common)
+	{
+		int[] R, W ;
+		int block, k1, nk ;
+
+		if (Numeric.Lrp == null)
+		{
+			return (TRUE) ;
+		}
+		R = Symbolic.R ;
+		W = klu_malloc_int (Symbolic.maxblock, Common) ;
+		if (W == null)
+		{
+			return (FALSE) ;
+		}
+		for (block = 0 ; block < Symbolic.nblocks ; block++)
+		{
+			if (Numeric.Lrp [block] == null)
+			{
+				continue ;
+			}
+			k1 = R [block] ;
+			nk = R [block+1] - k1 ;
+			transpose (nk, Numeric.Lip, k1, Numeric.Llen, k1,
+					Numeric.LUbx [block], Numeric.Lrp [block], Numeric.Lrj [block],
+					Numeric.Lrx [block], Numeric.Lrmap [block], W) ;
+			transpose (nk, Numeric.Uip, k1, Numeric.Ulen, k1,
+					Numeric.LUbx [block], Numeric.Urp [block], Numeric.Urj [block],
+					Numeric.Urx [block], Numeric.Urmap [block], W) ;
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Finds the levels of a triangular factor in row form.
+	 *
+	 * @param nk the factor is nk-by-nk
+	 * @param Rp row pointers
+	 * @param Rj column indices
+	 * @param lower TRUE if the factor is lower triangular, FALSE if upper
+	 * @param Lev size nk workspace
+	 * @param Levi size nk, rows in level order on output
+	 * @param Common
+	 * @return level pointers, size nlevels+1, or null if out of memory
+	 */
+	protected static int[] levels(int nk, int[] Rp, int[] Rj, int lower,
+			int[] Lev, int[] Levi, KLU_common Common)
+	{
+		int[] Levp ;
+		int i, s, p, pend, lev, nlevels ;
+
+		nlevels = 0 ;
+		for (s = 0 ; s < nk ; s++)
+		{
+			/* rows of L are done top-down, rows of U bottom-up */
+			i = (lower != 0) ? s : nk - 1 - s ;
+			lev = 0 ;
+			pend = Rp [i+1] ;
+			for (p = Rp [i] ; p < pend ; p++)
+			{
+				lev = MAX (lev, Lev [Rj [p]] + 1) ;
+			}
+			Lev [i] = lev ;
+			nlevels = MAX (nlevels, lev + 1) ;
+		}
+
+		Levp = klu_malloc_int (nlevels + 1, Common) ;
+		if (Levp == null)
+		{
+			return (null) ;
+		}
+		for (lev = 0 ; lev <= nlevels ; lev++)
+		{
+			Levp [lev] = 0 ;
+		}
+		for (i = 0 ; i < nk ; i++)
+		{
+			Levp [Lev [i] + 1]++ ;
+		}
+		for (lev = 0 ; lev < nlevels ; lev++)
+		{
+			Levp [lev+1] += Levp [lev] ;
+		}
+		for (i = 0 ; i < nk ; i++)
+		{
+			Levi [Levp [Lev [i]]++] = i ;
+		}
+		/* shift the pointers back */
+		for (lev = nlevels ; lev > 0 ; lev--)
+		{
+			Levp [lev] = Levp [lev-1] ;
+		}
+		Levp [0] = 0 ;
+		return (Levp) ;
+	}
+
+	/**
+	 * Computes the row form and level schedule of L and U for each block of
+	 * size Common.par_minblock or more.  Any previous schedule is replaced.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_levels(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			KLU_common Common)
+	{
+		int[] R, W, Lev ;
+		int nblocks, block, k1, k2, nk, minblock ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numeric == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+
+		R = Symbolic.R ;
+		nblocks = Symbolic.nblocks ;
+		minblock = MAX (2, Common.par_minblock) ;
+
+		/* ---------------------------------------------------------------------- */
+		/* allocate the per-block arrays, keeping any row forms already built */
+		/* ---------------------------------------------------------------------- */
+
+		alloc_rows (Numeric, nblocks) ;
+		Numeric.Llevp = new int [nblocks][] ;
+		Numeric.Llevi = new int [nblocks][] ;
+		Numeric.Ulevp = new int [nblocks][] ;
+		Numeric.Ulevi = new int [nblocks][] ;
+
+		W = klu_malloc_int (Symbolic.maxblock, Common) ;
+		Lev = klu_malloc_int (Symbolic.maxblock, Common) ;
+
+		/* ---------------------------------------------------------------------- */
+		/* transpose and level-schedule each large block */
+		/* ---------------------------------------------------------------------- */
+
+		for (block = 0 ; block < nblocks && Common.status == KLU_OK ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			nk = k2 - k1 ;
+			if (nk < minblock)
+			{
+				/* small blocks are solved serially */
+				continue ;
+			}
+			PRINTF ("levels %d, k1 %d k2-1 %d nk %d\n", block, k1, k2-1, nk) ;
+
+			/* L and U in row form */
+			if (Numeric.Lrp [block] == null &&
+				row_form (Numeric, block, k1, nk, W, Common) == FALSE)
+			{
+				break ;
+			}
+
+			/* level schedules */
+			Numeric.Llevi [block] = klu_malloc_int (nk, Common) ;
+			Numeric.Ulevi [block] = klu_malloc_int (nk, Common) ;
+			if (Common.status < KLU_OK) break ;
+			Numeric.Llevp [block] = levels (nk, Numeric.Lrp [block],
+					Numeric.Lrj [block], TRUE, Lev, Numeric.Llevi [block], Common) ;
+			Numeric.Ulevp [block] = levels (nk, Numeric.Urp [block],
+					Numeric.Urj [block], FALSE, Lev, Numeric.Ulevi [block], Common) ;
+		}
+
+		if (Common.status < KLU_OK)
+		{
+			/* out of memory; solve everything serially */
+			klu_free_levels (Numeric) ;
+			return (FALSE) ;
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Copies the numerical values of L, U and Off into their row forms, after
+	 * the matrix has been refactorized.  Does nothing for the row forms that
+	 * klu_levels and klu_dag have not computed.
+	 *
+	 * @param Numeric
+	 */
+	public static void klu_levels_update(KLU_numeric Numeric)
+	{
+		int[] map ;
+		double[] LU, Rx ;
+		int block, p, nz ;
+
+		if (Numeric == null)
+		{
+			return ;
+		}
+		if (Numeric.Offrp != null)
+		{
+			map = Numeric.Offrmap ;
+			Rx = Numeric.Offrx ;
+			LU = Numeric.Offx ;
+			nz = map.length ;
+			for (p = 0 ; p < nz ; p++)
+			{
+				Rx [p] = LU [map [p]] ;
+			}
+		}
+		if (Numeric.Lrp == null)
+		{
+			return ;
+		}
+		for (block = 0 ; block < Numeric.nblocks ; block++)
+		{
+			if (Numeric.Lrp [block] == null)
+			{
+				continue ;
+			}
+			LU = Numeric.LUbx [block] ;
+			map = Numeric.Lrmap [block] ;
+			Rx = Numeric.Lrx [block] ;
+			nz = map.length ;
+			for (p = 0 ; p < nz ; p++)
+			{
+				Rx [p] = LU [map [p]] ;
+			}
+			map = Numeric.Urmap [block] ;
+			Rx = Numeric.Urx [block] ;
+			nz = map.length ;
+			for (p = 0 ; p < nz ; p++)
+			{
+				Rx [p] = LU [map [p]] ;
+			}
+		}
+	}
+
+	/**
+	 * Removes the row form of L and U and the level schedules from the
+	 * Numeric object.
+	 *
+	 * @param Numeric
+	 */
+	public static void klu_free_levels(KLU_numeric Numeric)
+	{
+		Numeric.rows = FALSE ;
+		Numeric.Lrp = Numeric.Lrj = Numeric.Lrmap = null ;
+		Numeric.Urp = Numeric.Urj = Numeric.Urmap = null ;
+		Numeric.Lrx = Numeric.Urx = null ;
+		Numeric.Llevp = Numeric.Llevi = null ;
+		Numeric.Ulevp = Numeric.Ulevi = null ;
+	}
+
+	/**
+	 * Solves rows Levi [first..last-1] of Lx=b, using the row form of L.
+	 */
+	protected static void lsolve_rows(int first, int last, int[] Levi,
+			int[] Lrp, int[] Lrj, double[] Lrx, int nr,
+			double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xi, lij ;
+		int s, i, j, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (s = first ; s < last ; s++)
+			{
+				i = Levi [s] ;
+				xi = X [X_offset + i] ;
+				pend = Lrp [i+1] ;
+				for (p = Lrp [i] ; p < pend ; p++)
+				{
+					//MULT_SUB (xi, Lrx [p], X [Lrj [p]]) ;
+					xi -= Lrx [p] * X [X_offset + Lrj [p]] ;
+				}
+				X [X_offset + i] = xi ;
+			}
+		}
+		else
+		{
+			for (s = first ; s < last ; s++)
+			{
+				i = Levi [s] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*i + c] ;
+				}
+				pend = Lrp [i+1] ;
+				for (p = Lrp [i] ; p < pend ; p++)
+				{
+					j = X_offset + nr*Lrj [p] ;
+					lij = Lrx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						x [c] -= lij * X [j + c] ;
+					}
+				}
+				for (c = 0 ; c < nr ; c++)
+				{
+					X [X_offset + nr*i + c] = x [c] ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solves rows Levi [first..last-1] of Ux=b, using the row form of U.
+	 */
+	protected static void usolve_rows(int first, int last, int[] Levi,
+			int[] Urp, int[] Urj, double[] Urx, double[] Udiag,
+			int Udiag_offset, int nr, double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xi, uij, uii ;
+		int s, i, j, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (s = first ; s < last ; s++)
+			{
+				i = Levi [s] ;
+				xi = X [X_offset + i] ;
+				pend = Urp [i+1] ;
+				for (p = Urp [i] ; p < pend ; p++)
+				{
+					//MULT_SUB (xi, Urx [p], X [Urj [p]]) ;
+					xi -= Urx [p] * X [X_offset + Urj [p]] ;
+				}
+				//DIV (X [i], xi, Udiag [i]) ;
+				X [X_offset + i] = xi / Udiag [Udiag_offset + i] ;
+			}
+		}
+		else
+		{
+			for (s = first ; s < last ; s++)
+			{
+				i = Levi [s] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*i + c] ;
+				}
+				pend = Urp [i+1] ;
+				for (p = Urp [i] ; p < pend ; p++)
+				{
+					j = X_offset + nr*Urj [p] ;
+					uij = Urx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						x [c] -= uij * X [j + c] ;
+					}
+				}
+				uii = Udiag [Udiag_offset + i] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					X [X_offset + nr*i + c] = x [c] / uii ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solves one level of Lx=b or Ux=b, in parallel if the level is large
+	 * enough and a thread pool is given, serially otherwise.
+	 */
+	protected static void solve_level(final int first, final int last,
+			final int[] Levi, final int[] Rp, final int[] Rj, final double[] Rx,
+			final double[] Udiag, final int Udiag_offset, final int nr,
+			final double[] X, final int X_offset, KLU_common Common)
+	{
+		List<Callable<Object>> tasks ;
+		ExecutorService executor ;
+		int ntasks, chunk, t, nrows ;
+
+		executor = Common.executor ;
+		nrows = last - first ;
+		ntasks = MIN (Common.nthreads, nrows / MAX (1, Common.par_minlevel / 4)) ;
+
+		if (executor == null || ntasks <= 1 || nrows < Common.par_minlevel)
+		{
+			if (Udiag == null)
+			{
+				lsolve_rows (first, last, Levi, Rp, Rj, Rx, nr, X, X_offset) ;
+			}
+			else
+			{
+				usolve_rows (first, last, Levi, Rp, Rj, Rx, Udiag,
+						Udiag_offset, nr, X, X_offset) ;
+			}
+			return ;
+		}
+
+		chunk = (nrows + ntasks - 1) / ntasks ;
+		tasks = new ArrayList<Callable<Object>> (ntasks) ;
+		for (t = first ; t < last ; t += chunk)
+		{
+			final int s1 = t ;
+			final int s2 = MIN (t + chunk, last) ;
+			tasks.add (new Callable<Object> ()
+			{
+				public Object call()
+				{
+					if (Udiag == null)
+					{
+						lsolve_rows (s1, s2, Levi, Rp, Rj, Rx, nr, X, X_offset) ;
+					}
+					else
+					{
+						usolve_rows (s1, s2, Levi, Rp, Rj, Rx, Udiag,
+								Udiag_offset, nr, X, X_offset) ;
+					}
+					return (null) ;
+				}
+			}) ;
+		}
+		klu_invoke_all (executor, tasks) ;
+	}
+
+	/**
+	 * Solve Lx=b for one block, level by level, using the row form of L from
+	 * klu_levels.  B is n-by-nrhs and is stored in ROW form with row dimension
+	 * nrhs, as for klu_lsolve.  nrhs must be in the range 1 to 4.
+	 *
+	 * @param Lrp row pointers of L
+	 * @param Lrj column indices of L
+	 * @param Lrx values of L
+	 * @param Llevp level pointers of L
+	 * @param Llevi rows of L in level order
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to Lx=b on output
+	 * @param Common
+	 */
+	public static void klu_par_lsolve(int[] Lrp, int[] Lrj, double[] Lrx,
+			int[] Llevp, int[] Llevi, int nr, double[] X, int X_offset,
+			KLU_common Common)
+	{
+		int lev, nlevels ;
+
+		nlevels = Llevp.length - 1 ;
+		for (lev = 0 ; lev < nlevels ; lev++)
+		{
+			solve_level (Llevp [lev], Llevp [lev+1], Llevi, Lrp, Lrj, Lrx,
+					null, 0, nr, X, X_offset, Common) ;
+		}
+	}
+
+	/**
+	 * Solve Ux=b for one block, level by level, using the row form of U from
+	 * klu_levels.  B is stored as for klu_par_lsolve.
+	 *
+	 * @param Urp row pointers of U
+	 * @param Urj column indices of U
+	 * @param Urx values of U, excluding the diagonal
+	 * @param Udiag diagonal of U
+	 * @param Ulevp level pointers of U
+	 * @param Ulevi rows of U in level order
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to Ux=b on output
+	 * @param Common
+	 */
+	public static void klu_par_usolve(int[] Urp, int[] Urj, double[] Urx,
+			double[] Udiag, int Udiag_offset, int[] Ulevp, int[] Ulevi,
+			int nr, double[] X, int X_offset, KLU_common Common)
+	{
+		int lev, nlevels ;
+
+		nlevels = Ulevp.length - 1 ;
+		for (lev = 0 ; lev < nlevels ; lev++)
+		{
+			solve_level (Ulevp [lev], Ulevp [lev+1], Ulevi, Urp, Urj, Urx,
+					Udiag, Udiag_offset, nr, X, X_offset, Common) ;
+		}
+	}
+
+}
@@ -0,0 +1,1481 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.ORDER_FLOPS;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.ORDER_LNZ;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.ORDER_NODES;
+
+import static edu.ufl.cise.amd.tdouble.Damd_order.amd_order;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_INFO;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_OK;
+import static edu.ufl.cise.amd.tdouble.Damd.AMD_OUT_OF_MEMORY;
+
+/**
+ * Nested-dissection ordering of a block (ordering 5).
+ *
+ * The graph of C+C' is split in two by a small vertex separator, the two
+ * halves are ordered recursively, and the separator is ordered last, so no
+ * fill can connect the halves.  Subgraphs of Common.nd_leafsize vertices or
+ * less are leaves, ordered by minimum degree.  This is not a replacement
+ * for AMD on every block.  On 2D meshes AMD still gives somewhat less fill,
+ * although the gap shrinks as the mesh grows.  On 3D meshes of more than
+ * a few thousand vertices, nested dissection gives less fill and needs far
+ * fewer flops to factorize; on smaller ones AMD is still better.  So unless
+ * Common.nd_amd is FALSE, each block is also ordered by AMD, and the AMD
+ * ordering is kept if it predicts fewer entries in L.  Such a block is a
+ * single node of the separator tree.  Where nested dissection is kept, the
+ * separator tree exposes independent parts of the factorization.
+ *
+ * Each bisection is multilevel.  The graph is coarsened by heavy-edge
+ * matching.  The coarsest graph is then split from a few seeds: each seed
+ * grows a region, whose edge cut is refined with the Fiduccia-Mattheyses
+ * heuristic.  The split is turned into a vertex separator, which the vertex
+ * version of the same heuristic refines further.  The lightest separator
+ * over all seeds is kept.  It is projected back to the finer graphs one
+ * level at a time, and refined again at each level.
+ *
+ * A leaf is ordered together with its halo, the separator vertices next to
+ * it, which are eliminated after it.  The fill between the leaf and the
+ * separators therefore counts in its minimum degree ordering.
+ *
+ * The dissection is returned as a separator tree, in postorder: each node
+ * owns a contiguous range of the columns of the block (a separator, or a
+ * leaf), and its subtree covers a contiguous range that ends with its own
+ * columns.  The subtrees of two children are independent, so they can be
+ * factorized in parallel.
+ */
+public class Dklu_nd extends Dklu_internal {
+
+	/** graphs this small or smaller are not coarsened further */
+	public static final int ND_COARSEN = 40 ;
+
+	/** max. # of refinement passes at each level */
+	public static final int ND_PASSES = 4 ;
+
+	/** each half of a bisection may have up to (1+ND_IMBALANCE)/2 of the
+	 * total vertex weight */
+	public static final double ND_IMBALANCE = 0.1 ;
+
+	/** # of seeds tried to split the coarsest graph */
+	public static final int ND_SEEDS = 8 ;
+
+	/** leaves this small or smaller are ordered by minimum degree on their
+	 * elimination graph, larger ones with AMD */
+	public static final int ND_MINDEG = 256 ;
+
+	/**
+	 * An undirected graph, in compressed-row form without self-edges, with
+	 * vertex and edge weights.
+	 */
+	private static class ND_graph
+	{
+		int nv ;          /* # of vertices */
+		int[] xadj ;      /* size nv+1, adjacency pointers */
+		int[] adj ;       /* size xadj [nv], adjacent vertices */
+		int[] vwgt ;      /* size nv, vertex weights */
+		int[] ewgt ;      /* size xadj [nv], edge weights */
+		int[] label ;     /* size nv, vertex of the block, or of the finer
+		                   * graph for a coarse graph */
+	}
+
+	/**
+	 * The separator tree and the ordering under construction.
+	 */
+	private static class ND_tree
+	{
+		int[] Perm ;      /* the ordering of the block */
+		int[] Start ;     /* first own column of each node */
+		int[] First ;     /* first column of the subtree of each node */
+		int[] Parent ;    /* parent of each node, EMPTY for the root */
+		int offset ;      /* node t is stored at position offset+t */
+		int nnodes ;      /* # of nodes so far */
+		int leafsize ;    /* largest subgraph not dissected further */
+		int status ;      /* KLU_OK, or the error of AMD on a large leaf */
+		ND_graph Root ;   /* the graph of the whole block */
+		int[] Map ;       /* size nk workspace, all EMPTY between uses */
+		int[] Halo ;      /* size nk workspace */
+	}
+
+	/**
+	 * Builds the graph of C+C', without the diagonal.
+	 *
+	 * @param nk C is nk-by-nk
+	 * @param Cp size nk+1, column pointers of C
+	 * @param Ci size nnz (C), row indices of C
+	 * @return the graph, with unit weights
+	 */
+	private static ND_graph build_graph(int nk, int[] Cp, int[] Ci)
+	{
+		ND_graph G = new ND_graph () ;
+		int[] Cnt, Flag, Tp, Ti ;
+		int i, j, p, pend, e ;
+
+		/* the entries of C and C' off the diagonal, with duplicates */
+		Cnt = new int [nk+1] ;
+		for (j = 0 ; j < nk ; j++)
+		{
+			pend = Cp [j+1] ;
+			for (p = Cp [j] ; p < pend ; p++)
+			{
+				i = Ci [p] ;
+				if (i != j)
+				{
+					Cnt [i]++ ;
+					Cnt [j]++ ;
+				}
+			}
+		}
+		Tp = new int [nk+1] ;
+		for (j = 0 ; j < nk ; j++)
+		{
+			Tp [j+1] = Tp [j] + Cnt [j] ;
+			Cnt [j] = Tp [j] ;
+		}
+		Ti = new int [Tp [nk]] ;
+		for (j = 0 ; j < nk ; j++)
+		{
+			pend = Cp [j+1] ;
+			for (p = Cp [j] ; p < pend ; p++)
+			{
+				i = Ci [p] ;
+				if (i != j)
+				{
+					Ti [Cnt [i]++] = j ;
+					Ti [Cnt [j]++] = i ;
+				}
+			}
+		}
+
+		/* remove the duplicates */
+		Flag = new int [nk] ;
+		for (i = 0 ; i < nk ; i++)
+		{
+			Flag [i] = EMPTY ;
+		}
+		G.nv = nk ;
+		G.xadj = new int [nk+1] ;
+		G.adj = new int [Tp [nk]] ;
+		e = 0 ;
+		for (i = 0 ; i < nk ; i++)
+		{
+			G.xadj [i] = e ;
+			for (p = Tp [i] ; p < Tp [i+1] ; p++)
+			{
+				j = Ti [p] ;
+				if (Flag [j] != i)
+				{
+					Flag [j] = i ;
+					G.adj [e++] = j ;
+				}
+			}
+		}
+		G.xadj [nk] = e ;
+		G.vwgt = new int [nk] ;
+		G.ewgt = new int [e] ;
+		G.label = new int [nk] ;
+		for (i = 0 ; i < nk ; i++)
+		{
+			G.vwgt [i] = 1 ;
+			G.label [i] = i ;
+		}
+		for (p = 0 ; p < e ; p++)
+		{
+			G.ewgt [p] = 1 ;
+		}
+		return (G) ;
+	}
+
+	/**
+	 * Returns the subgraph of G induced by the vertices v with
+	 * Where [v] == part.  Its labels are the labels of G.
+	 *
+	 * @param G the graph
+	 * @param Where size G.nv, the part of each vertex
+	 * @param part the part to extract
+	 * @param Map size G.nv workspace
+	 * @return the subgraph
+	 */
+	private static ND_graph subgraph(ND_graph G, int[] Where, int part,
+			int[] Map)
+	{
+		ND_graph S = new ND_graph () ;
+		int v, u, p, nv, e ;
+
+		nv = 0 ;
+		e = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			if (Where [v] == part)
+			{
+				Map [v] = nv++ ;
+				for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+				{
+					if (Where [G.adj [p]] == part)
+					{
+						e++ ;
+					}
+				}
+			}
+		}
+		S.nv = nv ;
+		S.xadj = new int [nv+1] ;
+		S.adj = new int [e] ;
+		S.ewgt = new int [e] ;
+		S.vwgt = new int [nv] ;
+		S.label = new int [nv] ;
+		e = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			if (Where [v] == part)
+			{
+				S.xadj [Map [v]] = e ;
+				S.vwgt [Map [v]] = G.vwgt [v] ;
+				S.label [Map [v]] = G.label [v] ;
+				for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+				{
+					u = G.adj [p] ;
+					if (Where [u] == part)
+					{
+						S.adj [e] = Map [u] ;
+						S.ewgt [e] = G.ewgt [p] ;
+						e++ ;
+					}
+				}
+			}
+		}
+		S.xadj [nv] = e ;
+		return (S) ;
+	}
+
+	/**
+	 * Coarsens G by heavy-edge matching: each vertex is merged with the
+	 * unmatched neighbor to which it has the heaviest edge, if any.  The
+	 * label of each coarse vertex is unused; Cmap gives the coarse vertex of
+	 * each vertex of G.
+	 *
+	 * @param G the graph
+	 * @param Cmap size G.nv, the coarse vertex of each vertex on output
+	 * @return the coarse graph
+	 */
+	private static ND_graph coarsen(ND_graph G, int[] Cmap)
+	{
+		ND_graph C = new ND_graph () ;
+		int[] Match, Pos, Xadj, Adj, Ewgt ;
+		int v, u, w, p, best, bestw, cnv, c, e, k, pos ;
+
+		/* ------------------------------------------------------------------ */
+		/* heavy-edge matching */
+		/* ------------------------------------------------------------------ */
+
+		Match = new int [G.nv] ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			Match [v] = EMPTY ;
+		}
+		cnv = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			if (Match [v] != EMPTY)
+			{
+				continue ;
+			}
+			best = v ;
+			bestw = 0 ;
+			for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+			{
+				u = G.adj [p] ;
+				if (Match [u] == EMPTY && G.ewgt [p] > bestw)
+				{
+					best = u ;
+					bestw = G.ewgt [p] ;
+				}
+			}
+			Match [v] = best ;
+			Match [best] = v ;
+			Cmap [v] = cnv ;
+			Cmap [best] = cnv ;
+			cnv++ ;
+		}
+
+		/* ------------------------------------------------------------------ */
+		/* merge the adjacency lists of each matched pair */
+		/* ------------------------------------------------------------------ */
+
+		C.nv = cnv ;
+		C.vwgt = new int [cnv] ;
+		Xadj = new int [cnv+1] ;
+		Adj = new int [G.xadj [G.nv]] ;
+		Ewgt = new int [G.xadj [G.nv]] ;
+		Pos = new int [cnv] ;
+		for (c = 0 ; c < cnv ; c++)
+		{
+			Pos [c] = EMPTY ;
+		}
+		e = 0 ;
+		c = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			if (Cmap [v] != c)
+			{
+				continue ;     /* second vertex of a pair, already done */
+			}
+			Xadj [c] = e ;
+			u = Match [v] ;
+			C.vwgt [c] = G.vwgt [v] + ((u != v) ? G.vwgt [u] : 0) ;
+			for (k = 0 ; k < 2 ; k++)
+			{
+				w = (k == 0) ? v : u ;
+				if (k == 1 && u == v)
+				{
+					break ;
+				}
+				for (p = G.xadj [w] ; p < G.xadj [w+1] ; p++)
+				{
+					int cu = Cmap [G.adj [p]] ;
+					if (cu == c)
+					{
+						continue ;     /* the edge inside the pair */
+					}
+					pos = Pos [cu] ;
+					if (pos >= Xadj [c])
+					{
+						Ewgt [pos] += G.ewgt [p] ;
+					}
+					else
+					{
+						Pos [cu] = e ;
+						Adj [e] = cu ;
+						Ewgt [e] = G.ewgt [p] ;
+						e++ ;
+					}
+				}
+			}
+			c++ ;
+		}
+		Xadj [cnv] = e ;
+		C.xadj = Xadj ;
+		C.adj = Adj ;
+		C.ewgt = Ewgt ;
+		return (C) ;
+	}
+
+	/**
+	 * Adds vertex v with the given gain to a max-heap.  Entries are not
+	 * removed when the gain of a vertex changes; stale ones are skipped
+	 * when they are popped.
+	 *
+	 * @param H the heap: H [0] is its size, followed by (gain, vertex) pairs
+	 * @param gain the gain of v
+	 * @param v the vertex
+	 * @return the heap, reallocated if it was full
+	 */
+	private static int[] heap_push(int[] H, int gain, int v)
+	{
+		int[] H2 ;
+		int k, parent, tg, tv ;
+
+		k = H [0]++ ;
+		if (2*k + 3 > H.length)
+		{
+			H2 = new int [2 * H.length] ;
+			System.arraycopy (H, 0, H2, 0, H.length) ;
+			H = H2 ;
+		}
+		H [2*k+1] = gain ;
+		H [2*k+2] = v ;
+		while (k > 0)
+		{
+			parent = (k-1) / 2 ;
+			if (H [2*parent+1] >= H [2*k+1])
+			{
+				break ;
+			}
+			tg = H [2*parent+1] ; H [2*parent+1] = H [2*k+1] ; H [2*k+1] = tg ;
+			tv = H [2*parent+2] ; H [2*parent+2] = H [2*k+2] ; H [2*k+2] = tv ;
+			k = parent ;
+		}
+		return (H) ;
+	}
+
+	/**
+	 * Removes the entry with the largest gain from a max-heap.
+	 *
+	 * @param H the heap, not empty
+	 * @return the vertex of the entry; its gain is left in H [2*H[0]+1]
+	 */
+	private static int heap_pop(int[] H)
+	{
+		int k, c, size, tg, tv ;
+
+		size = --H [0] ;
+		tg = H [1] ; H [1] = H [2*size+1] ; H [2*size+1] = tg ;
+		tv = H [2] ; H [2] = H [2*size+2] ; H [2*size+2] = tv ;
+		k = 0 ;
+		for ( ; ; )
+		{
+			c = 2*k + 1 ;
+			if (c >= size)
+			{
+				break ;
+			}
+			if (c+1 < size && H [2*(c+1)+1] > H [2*c+1])
+			{
+				c++ ;
+			}
+			if (H [2*k+1] >= H [2*c+1])
+			{
+				break ;
+			}
+			tg = H [2*c+1] ; H [2*c+1] = H [2*k+1] ; H [2*k+1] = tg ;
+			tv = H [2*c+2] ; H [2*c+2] = H [2*k+2] ; H [2*k+2] = tv ;
+			k = c ;
+		}
+		return (H [2*size+2]) ;
+	}
+
+	/**
+	 * Refines a bisection of G with the Fiduccia-Mattheyses heuristic.  In
+	 * each pass, boundary vertices are moved to the other side one at a
+	 * time, the one that reduces the edge cut the most first, even if that
+	 * makes the cut larger for a while, and each vertex at most once.  The
+	 * larger side may not get heavier than maxw.  The pass then returns to
+	 * the best bisection it has seen: the one with the smallest cut, or the
+	 * better balanced one of two with the same cut.
+	 *
+	 * @param G the graph
+	 * @param Where size G.nv, the side (0 or 1) of each vertex, modified
+	 * @param Pwgt size 2, the weight of each side, modified
+	 * @param maxw largest weight allowed for one side
+	 */
+	private static void refine(ND_graph G, int[] Where, int[] Pwgt,
+			double maxw)
+	{
+		int[] Gain, Lock, Moved, H ;
+		int pass, v, u, p, s, w, cut, bestcut, nmoved, best, bestdiff,
+			limit, k ;
+
+		Gain = new int [G.nv] ;
+		Lock = new int [G.nv] ;
+		Moved = new int [G.nv] ;
+		H = new int [2*G.nv + 1] ;
+		limit = MIN (MAX (G.nv / 100, 25), 150) ;
+		cut = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+			{
+				if (Where [G.adj [p]] != Where [v])
+				{
+					cut += G.ewgt [p] ;
+				}
+			}
+		}
+		cut /= 2 ;
+
+		for (pass = 0 ; pass < ND_PASSES ; pass++)
+		{
+
+			/* -------------------------------------------------------------- */
+			/* gains of the boundary vertices */
+			/* -------------------------------------------------------------- */
+
+			H [0] = 0 ;
+			for (v = 0 ; v < G.nv ; v++)
+			{
+				Lock [v] = FALSE ;
+				Gain [v] = 0 ;
+				w = 0 ;
+				for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+				{
+					if (Where [G.adj [p]] != Where [v])
+					{
+						Gain [v] += G.ewgt [p] ;
+						w = 1 ;
+					}
+					else
+					{
+						Gain [v] -= G.ewgt [p] ;
+					}
+				}
+				if (w == 1)
+				{
+					H = heap_push (H, Gain [v], v) ;
+				}
+			}
+
+			/* -------------------------------------------------------------- */
+			/* move vertices, keeping track of the best bisection */
+			/* -------------------------------------------------------------- */
+
+			bestcut = cut ;
+			bestdiff = Math.abs (Pwgt [0] - Pwgt [1]) ;
+			best = 0 ;
+			nmoved = 0 ;
+			while (H [0] > 0 && nmoved - best < limit)
+			{
+				v = heap_pop (H) ;
+				if (Lock [v] == TRUE || H [2*H[0]+1] != Gain [v])
+				{
+					continue ;     /* stale entry */
+				}
+				s = Where [v] ;
+				Lock [v] = TRUE ;
+				if (Pwgt [1-s] + G.vwgt [v] > maxw)
+				{
+					continue ;     /* the other side would be too heavy */
+				}
+				Where [v] = 1-s ;
+				Pwgt [s] -= G.vwgt [v] ;
+				Pwgt [1-s] += G.vwgt [v] ;
+				cut -= Gain [v] ;
+				Moved [nmoved++] = v ;
+				for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+				{
+					u = G.adj [p] ;
+					if (Lock [u] == FALSE)
+					{
+						Gain [u] += (Where [u] == s) ? 2*G.ewgt [p] : -2*G.ewgt [p] ;
+						H = heap_push (H, Gain [u], u) ;
+					}
+				}
+				if (cut < bestcut || (cut == bestcut
+					&& Math.abs (Pwgt [0] - Pwgt [1]) < bestdiff))
+				{
+					bestcut = cut ;
+					bestdiff = Math.abs (Pwgt [0] - Pwgt [1]) ;
+					best = nmoved ;
+				}
+			}
+
+			/* -------------------------------------------------------------- */
+			/* undo the moves after the best bisection */
+			/* -------------------------------------------------------------- */
+
+			for (k = nmoved-1 ; k >= best ; k--)
+			{
+				v = Moved [k] ;
+				s = Where [v] ;
+				Where [v] = 1-s ;
+				Pwgt [s] -= G.vwgt [v] ;
+				Pwgt [1-s] += G.vwgt [v] ;
+			}
+			cut = bestcut ;
+			if (best == 0)
+			{
+				break ;        /* no improvement in this pass */
+			}
+		}
+	}
+
+	/**
+	 * Splits G in two by growing side 0 breadth-first from a seed until it
+	 * has half the vertex weight, and refines the split.
+	 *
+	 * @param G the graph
+	 * @param seed first vertex of side 0
+	 * @param Where size G.nv, the side of each vertex on output
+	 * @param Pwgt size 2, the weight of each side on output
+	 * @param Queue size G.nv workspace
+	 * @param maxw largest weight allowed for one side
+	 * @return the last vertex added to side 0
+	 */
+	private static int grow(ND_graph G, int seed, int[] Where, int[] Pwgt,
+			int[] Queue, double maxw)
+	{
+		int v, u, p, head, tail, total, next, last ;
+
+		total = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			Where [v] = 1 ;
+			total += G.vwgt [v] ;
+		}
+		Pwgt [0] = 0 ;
+		Pwgt [1] = total ;
+		head = 0 ;
+		tail = 0 ;
+		next = 0 ;
+		last = seed ;
+		Queue [tail++] = seed ;
+		Where [seed] = 0 ;
+		while (2 * (Pwgt [0] + G.vwgt [Queue [head]]) <= total
+			|| Pwgt [0] == 0)
+		{
+			v = Queue [head++] ;
+			Pwgt [0] += G.vwgt [v] ;
+			Pwgt [1] -= G.vwgt [v] ;
+			last = v ;
+			for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+			{
+				u = G.adj [p] ;
+				if (Where [u] == 1)
+				{
+					Where [u] = 0 ;
+					Queue [tail++] = u ;
+				}
+			}
+			if (head == tail)
+			{
+				/* the component is exhausted: continue from another one */
+				while (next < G.nv && Where [next] == 0)
+				{
+					next++ ;
+				}
+				if (next == G.nv)
+				{
+					break ;
+				}
+				Where [next] = 0 ;
+				Queue [tail++] = next ;
+			}
+		}
+		/* vertices still in the queue go back to side 1 */
+		while (head < tail)
+		{
+			Where [Queue [head++]] = 1 ;
+		}
+		refine (G, Where, Pwgt, maxw) ;
+		return (last) ;
+	}
+
+	/**
+	 * Turns a bisection of G into a vertex separator, by moving the boundary
+	 * of the side with fewer boundary vertices into the separator.
+	 *
+	 * @param G the graph
+	 * @param Where size G.nv, the side (0 or 1) of each vertex on input, and
+	 * 0, 1 or 2 (the separator) on output
+	 * @param Pwgt size 3, the weight of each side and of the separator on
+	 * output
+	 */
+	private static void vertex_separator(ND_graph G, int[] Where, int[] Pwgt)
+	{
+		int v, p, nb0, nb1, side ;
+
+		/* take the boundary of the side with fewer boundary vertices */
+		nb0 = 0 ;
+		nb1 = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+			{
+				if (Where [G.adj [p]] != Where [v])
+				{
+					if (Where [v] == 0) nb0++ ; else nb1++ ;
+					break ;
+				}
+			}
+		}
+		side = (nb0 <= nb1) ? 0 : 1 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			if (Where [v] != side)
+			{
+				continue ;
+			}
+			for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+			{
+				if (Where [G.adj [p]] == 1-side)
+				{
+					Where [v] = 2 ;
+					break ;
+				}
+			}
+		}
+		Pwgt [0] = 0 ;
+		Pwgt [1] = 0 ;
+		Pwgt [2] = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			Pwgt [Where [v]] += G.vwgt [v] ;
+		}
+	}
+
+	/**
+	 * Removes the stale entries from the top of a heap of separator moves:
+	 * those of vertices that have already moved or left the separator, or
+	 * whose gain has changed since they were added.
+	 *
+	 * @param H the heap of moves to side "to"
+	 * @param G the graph
+	 * @param Where size G.nv, the part of each vertex
+	 * @param Ed size 2*G.nv, the weight of the neighbors of each separator
+	 * vertex on each side
+	 * @param Lock size G.nv, TRUE for the vertices moved in this pass
+	 * @param to the side the moves go to
+	 */
+	private static void heap_clean(int[] H, ND_graph G, int[] Where, int[] Ed,
+			int[] Lock, int to)
+	{
+		int v ;
+
+		while (H [0] > 0)
+		{
+			v = H [2] ;
+			if (Lock [v] == FALSE && Where [v] == 2
+				&& H [1] == G.vwgt [v] - Ed [2*v + 1-to])
+			{
+				break ;
+			}
+			heap_pop (H) ;
+		}
+	}
+
+	/**
+	 * Adds the moves of separator vertex v to both heaps, with their current
+	 * gains.  Moving v to side s pulls its neighbors on side 1-s into the
+	 * separator, so the gain is vwgt [v] - Ed [2*v+1-s].
+	 */
+	private static void push_moves(int[][] H, ND_graph G, int[] Ed, int v)
+	{
+		H [0] = heap_push (H [0], G.vwgt [v] - Ed [2*v+1], v) ;
+		H [1] = heap_push (H [1], G.vwgt [v] - Ed [2*v], v) ;
+	}
+
+	/**
+	 * Refines a vertex separator of G with the Fiduccia-Mattheyses heuristic
+	 * for vertex separators.  A move takes a vertex out of the separator and
+	 * puts it on one side; its neighbors on the other side then join the
+	 * separator.  In each pass, the move that reduces the weight of the
+	 * separator the most is made first, even if it makes the separator
+	 * heavier for a while, and each vertex moves at most once.  No side may
+	 * get heavier than maxw.  The pass then returns to the best separator it
+	 * has seen: the lightest one, or the better balanced one of two with the
+	 * same weight.
+	 *
+	 * @param G the graph
+	 * @param Where size G.nv, the part (0, 1 or 2 for the separator) of each
+	 * vertex, modified
+	 * @param Pwgt size 3, the weight of each part, modified
+	 * @param maxw largest weight allowed for one side
+	 */
+	private static void node_refine(ND_graph G, int[] Where, int[] Pwgt,
+			double maxw)
+	{
+		int[][] H ;
+		int[] Ed, Lock, Moved, Pulled, Pstart ;
+		int pass, v, u, w, p, q, to, other, g0, g1, nmoved, npulled, best,
+			bestsep, bestdiff, limit, k ;
+
+		Ed = new int [2*G.nv] ;
+		Lock = new int [G.nv] ;
+		Moved = new int [G.nv] ;
+		Pstart = new int [G.nv+1] ;
+		Pulled = new int [G.xadj [G.nv]] ;
+		H = new int [2][] ;
+		H [0] = new int [2*G.nv + 1] ;
+		H [1] = new int [2*G.nv + 1] ;
+		limit = MIN (MAX (G.nv / 100, 25), 150) ;
+
+		for (pass = 0 ; pass < ND_PASSES ; pass++)
+		{
+
+			/* -------------------------------------------------------------- */
+			/* gains of the separator vertices */
+			/* -------------------------------------------------------------- */
+
+			H [0][0] = 0 ;
+			H [1][0] = 0 ;
+			for (v = 0 ; v < G.nv ; v++)
+			{
+				Lock [v] = FALSE ;
+				if (Where [v] != 2)
+				{
+					continue ;
+				}
+				Ed [2*v] = 0 ;
+				Ed [2*v+1] = 0 ;
+				for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+				{
+					u = G.adj [p] ;
+					if (Where [u] != 2)
+					{
+						Ed [2*v + Where [u]] += G.vwgt [u] ;
+					}
+				}
+				push_moves (H, G, Ed, v) ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* move vertices, keeping track of the best separator */
+			/* -------------------------------------------------------------- */
+
+			bestsep = Pwgt [2] ;
+			bestdiff = Math.abs (Pwgt [0] - Pwgt [1]) ;
+			best = 0 ;
+			nmoved = 0 ;
+			npulled = 0 ;
+			while (nmoved - best < limit)
+			{
+				/* the best move to each side that keeps the balance */
+				for (to = 0 ; to < 2 ; to++)
+				{
+					heap_clean (H [to], G, Where, Ed, Lock, to) ;
+					while (H [to][0] > 0
+						&& Pwgt [to] + G.vwgt [H [to][2]] > maxw)
+					{
+						heap_pop (H [to]) ;
+						heap_clean (H [to], G, Where, Ed, Lock, to) ;
+					}
+				}
+				g0 = (H [0][0] > 0) ? H [0][1] : Integer.MIN_VALUE ;
+				g1 = (H [1][0] > 0) ? H [1][1] : Integer.MIN_VALUE ;
+				if (g0 == Integer.MIN_VALUE && g1 == Integer.MIN_VALUE)
+				{
+					break ;
+				}
+				to = (g0 > g1 || (g0 == g1 && Pwgt [0] <= Pwgt [1])) ? 0 : 1 ;
+				other = 1-to ;
+				v = heap_pop (H [to]) ;
+
+				/* move v to side "to" */
+				Where [v] = to ;
+				Lock [v] = TRUE ;
+				Pwgt [2] -= G.vwgt [v] ;
+				Pwgt [to] += G.vwgt [v] ;
+				Moved [nmoved] = v ;
+				Pstart [nmoved] = npulled ;
+				for (p = G.xadj [v] ; p < G.xadj [v+1] ; p++)
+				{
+					u = G.adj [p] ;
+					if (Where [u] == 2)
+					{
+						/* u now has a heavier neighbor on side "to" */
+						Ed [2*u+to] += G.vwgt [v] ;
+						if (Lock [u] == FALSE)
+						{
+							push_moves (H, G, Ed, u) ;
+						}
+					}
+					else if (Where [u] == other)
+					{
+						/* u joins the separator */
+						Where [u] = 2 ;
+						Pwgt [other] -= G.vwgt [u] ;
+						Pwgt [2] += G.vwgt [u] ;
+						Pulled [npulled++] = u ;
+						Ed [2*u] = 0 ;
+						Ed [2*u+1] = 0 ;
+						for (q = G.xadj [u] ; q < G.xadj [u+1] ; q++)
+						{
+							w = G.adj [q] ;
+							if (Where [w] != 2)
+							{
+								Ed [2*u + Where [w]] += G.vwgt [w] ;
+							}
+							else if (w != u)
+							{
+								Ed [2*w+other] -= G.vwgt [u] ;
+								if (Lock [w] == FALSE)
+								{
+									push_moves (H, G, Ed, w) ;
+								}
+							}
+						}
+						if (Lock [u] == FALSE)
+						{
+							push_moves (H, G, Ed, u) ;
+						}
+					}
+				}
+				nmoved++ ;
+				Pstart [nmoved] = npulled ;
+				if (Pwgt [2] < bestsep || (Pwgt [2] == bestsep
+					&& Math.abs (Pwgt [0] - Pwgt [1]) < bestdiff))
+				{
+					bestsep = Pwgt [2] ;
+					bestdiff = Math.abs (Pwgt [0] - Pwgt [1]) ;
+					best = nmoved ;
+				}
+			}
+
+			/* -------------------------------------------------------------- */
+			/* undo the moves after the best separator */
+			/* -------------------------------------------------------------- */
+
+			for (k = nmoved-1 ; k >= best ; k--)
+			{
+				v = Moved [k] ;
+				to = Where [v] ;
+				other = 1-to ;
+				for (p = Pstart [k] ; p < Pstart [k+1] ; p++)
+				{
+					u = Pulled [p] ;
+					Where [u] = other ;
+					Pwgt [2] -= G.vwgt [u] ;
+					Pwgt [other] += G.vwgt [u] ;
+				}
+				Where [v] = 2 ;
+				Pwgt [to] -= G.vwgt [v] ;
+				Pwgt [2] += G.vwgt [v] ;
+			}
+			if (best == 0)
+			{
+				break ;        /* no improvement in this pass */
+			}
+		}
+	}
+
+	/**
+	 * Finds a vertex separator of G with multilevel bisection.
+	 *
+	 * @param G the graph, with at least 2 vertices
+	 * @param Where size G.nv, on output 0 or 1 for the two halves and 2 for
+	 * the separator
+	 */
+	private static void bisect(ND_graph G, int[] Where)
+	{
+		ND_graph[] Levels ;
+		int[][] Cmaps ;
+		int[] W, Wbest, Pwgt, Queue, Fine ;
+		int nlevels, level, v, s, seed, t, bestsep, bestdiff, total ;
+		double maxw ;
+		ND_graph C ;
+
+		total = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			total += G.vwgt [v] ;
+		}
+		maxw = (1 + ND_IMBALANCE) * total / 2 ;
+
+		/* ------------------------------------------------------------------ */
+		/* coarsen until the graph is small, or stops shrinking */
+		/* ------------------------------------------------------------------ */
+
+		Levels = new ND_graph [32] ;
+		Cmaps = new int [32][] ;
+		Levels [0] = G ;
+		nlevels = 1 ;
+		while (Levels [nlevels-1].nv > ND_COARSEN && nlevels < 32)
+		{
+			Cmaps [nlevels-1] = new int [Levels [nlevels-1].nv] ;
+			C = coarsen (Levels [nlevels-1], Cmaps [nlevels-1]) ;
+			if (C.nv > 0.9 * Levels [nlevels-1].nv)
+			{
+				break ;
+			}
+			Levels [nlevels++] = C ;
+		}
+
+		/* ------------------------------------------------------------------ */
+		/* separate the coarsest graph, keeping the best of a few seeds */
+		/* ------------------------------------------------------------------ */
+
+		/* each seed gives a bisection, refined for its edge cut and then
+		 * turned into a vertex separator and refined again; the lightest
+		 * separator is kept, since that is what the ordering depends on */
+		C = Levels [nlevels-1] ;
+		W = new int [C.nv] ;
+		Wbest = new int [C.nv] ;
+		Queue = new int [C.nv] ;
+		Pwgt = new int [3] ;
+		bestsep = Integer.MAX_VALUE ;
+		bestdiff = Integer.MAX_VALUE ;
+		seed = 0 ;
+		for (t = 0 ; t < ND_SEEDS ; t++)
+		{
+			/* the first seeds walk to a far end of the graph, which gives
+			 * flatter fronts; the others are spread over the vertices */
+			s = grow (C, seed, W, Pwgt, Queue, maxw) ;
+			vertex_separator (C, W, Pwgt) ;
+			node_refine (C, W, Pwgt, maxw) ;
+			if (Pwgt [0] > 0 && Pwgt [1] > 0 && (Pwgt [2] < bestsep
+				|| (Pwgt [2] == bestsep
+				&& Math.abs (Pwgt [0] - Pwgt [1]) < bestdiff)))
+			{
+				bestsep = Pwgt [2] ;
+				bestdiff = Math.abs (Pwgt [0] - Pwgt [1]) ;
+				System.arraycopy (W, 0, Wbest, 0, C.nv) ;
+			}
+			seed = (t == 0) ? s : (int) (((long) C.nv * t) / ND_SEEDS) ;
+		}
+		if (bestsep == Integer.MAX_VALUE)
+		{
+			/* no separator found (the graph is a clique, for example) */
+			for (v = 0 ; v < G.nv ; v++)
+			{
+				Where [v] = 0 ;
+			}
+			return ;
+		}
+
+		/* ------------------------------------------------------------------ */
+		/* project the separator back to G, refining it at each level */
+		/* ------------------------------------------------------------------ */
+
+		W = Wbest ;
+		for (level = nlevels-2 ; level >= 0 ; level--)
+		{
+			C = Levels [level] ;
+			Fine = (level == 0) ? Where : new int [C.nv] ;
+			Pwgt [0] = 0 ;
+			Pwgt [1] = 0 ;
+			Pwgt [2] = 0 ;
+			for (v = 0 ; v < C.nv ; v++)
+			{
+				Fine [v] = W [Cmaps [level] [v]] ;
+				Pwgt [Fine [v]] += C.vwgt [v] ;
+			}
+			node_refine (C, Fine, Pwgt, maxw) ;
+			W = Fine ;
+		}
+		if (nlevels == 1)
+		{
+			System.arraycopy (W, 0, Where, 0, G.nv) ;
+		}
+	}
+
+	/**
+	 * Orders the leaf G by minimum degree, eliminating the vertices of its
+	 * explicit elimination graph one at a time.  The neighbors of the leaf
+	 * outside of it (its halo: vertices of the separators above it, which
+	 * are eliminated later) are part of the graph, so that the fill
+	 * between the leaf and the separators counts in the degrees, but they
+	 * are not eliminated.  The graph is held as a dense bit matrix, so this
+	 * is only for small leaves, for which it is much cheaper than setting up
+	 * AMD.  Ties go to the lowest vertex.
+	 *
+	 * @param G the leaf
+	 * @param T the tree
+	 * @param Perm size G.nv, the ordering on output
+	 */
+	private static void min_degree(ND_graph G, ND_tree T, int[] Perm)
+	{
+		ND_graph R = T.Root ;
+		long[] Adj ;
+		long bits ;
+		int[] Deg, Map, Halo ;
+		int nv, nh, nw, k, v, u, p, best, w, i ;
+
+		/* number the vertices of the leaf, and then those of its halo */
+		nv = G.nv ;
+		Map = T.Map ;
+		Halo = T.Halo ;
+		for (v = 0 ; v < nv ; v++)
+		{
+			Map [G.label [v]] = v ;
+		}
+		nh = 0 ;
+		for (v = 0 ; v < nv ; v++)
+		{
+			for (p = R.xadj [G.label [v]] ; p < R.xadj [G.label [v]+1] ; p++)
+			{
+				u = R.adj [p] ;
+				if (Map [u] == EMPTY)
+				{
+					Map [u] = nv + nh ;
+					Halo [nh++] = u ;
+				}
+			}
+		}
+
+		/* the rows of the leaf vertices */
+		nw = (nv + nh + 63) >>> 6 ;
+		Adj = new long [nv * nw] ;
+		Deg = new int [nv] ;
+		for (v = 0 ; v < nv ; v++)
+		{
+			for (p = R.xadj [G.label [v]] ; p < R.xadj [G.label [v]+1] ; p++)
+			{
+				u = Map [R.adj [p]] ;
+				Adj [v*nw + (u >>> 6)] |= 1L << u ;
+			}
+			Deg [v] = R.xadj [G.label [v]+1] - R.xadj [G.label [v]] ;
+		}
+		for (v = 0 ; v < nv ; v++)
+		{
+			Map [G.label [v]] = EMPTY ;
+		}
+		for (k = 0 ; k < nh ; k++)
+		{
+			Map [Halo [k]] = EMPTY ;
+		}
+
+		for (k = 0 ; k < nv ; k++)
+		{
+			/* the uneliminated vertex of least degree */
+			best = EMPTY ;
+			for (v = 0 ; v < nv ; v++)
+			{
+				if (Deg [v] >= 0 && (best == EMPTY || Deg [v] < Deg [best]))
+				{
+					best = v ;
+				}
+			}
+			Perm [k] = best ;
+			Deg [best] = EMPTY ;
+
+			/* its neighbors in the leaf become a clique, with its halo */
+			for (w = 0 ; w < nw ; w++)
+			{
+				for (bits = Adj [best*nw + w] ; bits != 0 ; bits &= bits - 1)
+				{
+					u = (w << 6) + Long.numberOfTrailingZeros (bits) ;
+					if (u >= nv)
+					{
+						break ;
+					}
+					Deg [u] = 0 ;
+					for (i = 0 ; i < nw ; i++)
+					{
+						Adj [u*nw + i] |= Adj [best*nw + i] ;
+					}
+					Adj [u*nw + (u >>> 6)] &= ~(1L << u) ;
+					Adj [u*nw + (best >>> 6)] &= ~(1L << best) ;
+					for (i = 0 ; i < nw ; i++)
+					{
+						Deg [u] += Long.bitCount (Adj [u*nw + i]) ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Orders the subgraph G by minimum degree (with AMD if it has more than
+	 * ND_MINDEG vertices) and makes it a leaf of the tree.
+	 *
+	 * @param G the graph
+	 * @param pos first column of the leaf
+	 * @param T the tree
+	 * @return the new node
+	 */
+	private static int order_leaf(ND_graph G, int pos, ND_tree T)
+	{
+		double[] amd_Info = new double [AMD_INFO] ;
+		int[] Perm ;
+		int k, result ;
+
+		Perm = new int [G.nv] ;
+		if (G.nv <= ND_MINDEG)
+		{
+			min_degree (G, T, Perm) ;
+		}
+		else
+		{
+			/* the graph is symmetric, so xadj and adj are also its CSC form */
+			result = amd_order (G.nv, G.xadj, G.adj, Perm, null, amd_Info) ;
+			if (result < AMD_OK)
+			{
+				T.status = (result == AMD_OUT_OF_MEMORY) ?
+					KLU_OUT_OF_MEMORY : KLU_INVALID ;
+				for (k = 0 ; k < G.nv ; k++)
+				{
+					Perm [k] = k ;
+				}
+			}
+		}
+		for (k = 0 ; k < G.nv ; k++)
+		{
+			T.Perm [pos + k] = G.label [Perm [k]] ;
+		}
+		return (new_node (T, pos, pos)) ;
+	}
+
+	/**
+	 * Adds a node to the tree, with no parent yet.
+	 *
+	 * @param T the tree
+	 * @param start first own column of the node
+	 * @param first first column of its subtree
+	 * @return the new node
+	 */
+	private static int new_node(ND_tree T, int start, int first)
+	{
+		int t = T.nnodes++ ;
+		T.Start [T.offset + t] = start ;
+		T.First [T.offset + t] = first ;
+		T.Parent [T.offset + t] = EMPTY ;
+		return (t) ;
+	}
+
+	/**
+	 * Orders G by nested dissection, as columns pos to pos+G.nv-1 of the
+	 * block.
+	 *
+	 * @param G the graph
+	 * @param pos first column
+	 * @param T the tree
+	 * @return the root of the subtree of G
+	 */
+	private static int dissect(ND_graph G, int pos, ND_tree T)
+	{
+		ND_graph G0, G1 ;
+		int[] Where, Map ;
+		int v, k, n0, n1, c0, c1, node ;
+
+		if (G.nv <= T.leafsize)
+		{
+			return (order_leaf (G, pos, T)) ;
+		}
+
+		/* find the separator */
+		Where = new int [G.nv] ;
+		bisect (G, Where) ;
+		n0 = 0 ;
+		n1 = 0 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			if (Where [v] == 0) n0++ ;
+			else if (Where [v] == 1) n1++ ;
+		}
+		if (n0 == 0 || n1 == 0)
+		{
+			/* no useful separator (a clique, for example) */
+			return (order_leaf (G, pos, T)) ;
+		}
+
+		/* order the two halves, and then the separator */
+		Map = new int [G.nv] ;
+		G0 = subgraph (G, Where, 0, Map) ;
+		G1 = subgraph (G, Where, 1, Map) ;
+		c0 = dissect (G0, pos, T) ;
+		G0 = null ;
+		c1 = dissect (G1, pos + n0, T) ;
+		G1 = null ;
+		k = pos + n0 + n1 ;
+		for (v = 0 ; v < G.nv ; v++)
+		{
+			if (Where [v] == 2)
+			{
+				T.Perm [k++] = G.label [v] ;
+			}
+		}
+		node = new_node (T, pos + n0 + n1, pos) ;
+		T.Parent [T.offset + c0] = node ;
+		T.Parent [T.offset + c1] = node ;
+		return (node) ;
+	}
+
+	/**
+	 * Counts the entries in the Cholesky factor of (G+I)(Perm,Perm), and the
+	 * flops of an LU factorization with the same pattern, with the
+	 * definitions of AMD.  Uses the elimination tree and the row subtrees,
+	 * in time proportional to nnz (L).
+	 *
+	 * @param G the graph of C+C'
+	 * @param Perm size G.nv, the ordering
+	 * @param Count size 2: nnz (L) including the diagonal, and the flops
+	 */
+	private static void chol_count(ND_graph G, int[] Perm, double[] Count)
+	{
+		double lnz, flops, c ;
+		int[] Pinv, Parent, Ancestor, Mark, Colcount ;
+		int nv, k, p, i, r, next ;
+
+		nv = G.nv ;
+		Pinv = new int [nv] ;
+		Parent = new int [nv] ;
+		Ancestor = new int [nv] ;
+		Mark = new int [nv] ;
+		Colcount = new int [nv] ;
+		for (k = 0 ; k < nv ; k++)
+		{
+			Pinv [Perm [k]] = k ;
+		}
+
+		/* elimination tree, with path compression */
+		for (k = 0 ; k < nv ; k++)
+		{
+			Parent [k] = EMPTY ;
+			Ancestor [k] = EMPTY ;
+			for (p = G.xadj [Perm [k]] ; p < G.xadj [Perm [k]+1] ; p++)
+			{
+				for (i = Pinv [G.adj [p]] ; i != EMPTY && i < k ; i = next)
+				{
+					next = Ancestor [i] ;
+					Ancestor [i] = k ;
+					if (next == EMPTY)
+					{
+						Parent [i] = k ;
+					}
+				}
+			}
+		}
+
+		/* row k of L is the subtree of the etree reached from row k of A */
+		for (k = 0 ; k < nv ; k++)
+		{
+			Mark [k] = k ;
+			for (p = G.xadj [Perm [k]] ; p < G.xadj [Perm [k]+1] ; p++)
+			{
+				for (r = Pinv [G.adj [p]] ; r < k && Mark [r] != k ;
+					r = Parent [r])
+				{
+					Colcount [r]++ ;
+					Mark [r] = k ;
+				}
+			}
+		}
+
+		lnz = nv ;
+		flops = 0 ;
+		for (k = 0 ; k < nv ; k++)
+		{
+			c = Colcount [k] ;
+			lnz += c ;
+			flops += c + 2 * c * c ;
+		}
+		Count [0] = lnz ;
+		Count [1] = flops ;
+	}
+
+	/**
+	 * Orders an nk-by-nk block by nested dissection, and returns its
+	 * separator tree in postorder, in Start, First and Parent from position
+	 * offset on.  Node t owns columns Start [offset+t] to
+	 * Start [offset+t+1]-1 of the block (or to nk-1 for the root), and its
+	 * subtree covers columns First [offset+t] to the same end.  There are at
+	 * most 2*nk-1 nodes.
+	 *
+	 * @param nk C is nk-by-nk
+	 * @param Cp size nk+1, column pointers of C
+	 * @param Ci size nnz (C), row indices of C
+	 * @param Pblk size nk, the ordering on output
+	 * @param leafsize largest subgraph that is not dissected further
+	 * @param amd if TRUE, order the block by AMD instead (with no tree) if
+	 * that predicts fewer entries in L
+	 * @param Start first own column of each node, on output
+	 * @param First first column of the subtree of each node, on output
+	 * @param Parent parent of each node, EMPTY for the root, on output
+	 * @param offset position of the first node in Start, First and Parent
+	 * @param Stats size ORDER_STATS, nnz (L), flops and the # of nodes (0 if
+	 * AMD was kept) on output
+	 * @return KLU_OK, or < 0 if AMD failed
+	 */
+	public static int klu_nd_order(int nk, int[] Cp, int[] Ci, int[] Pblk,
+			int leafsize, int amd, int[] Start, int[] First, int[] Parent,
+			int offset, double[] Stats)
+	{
+		double[] amd_Info = new double [AMD_INFO] ;
+		double[] Count = new double [2] ;
+		double[] Amd_count = new double [2] ;
+		ND_graph G ;
+		ND_tree T ;
+		int[] Perm ;
+		int k, result ;
+
+		G = build_graph (nk, Cp, Ci) ;
+		T = new ND_tree () ;
+		T.Perm = Pblk ;
+		T.Start = Start ;
+		T.First = First ;
+		T.Parent = Parent ;
+		T.offset = offset ;
+		T.nnodes = 0 ;
+		T.leafsize = MAX (leafsize, 3) ;
+		T.status = KLU_OK ;
+		T.Root = G ;
+		T.Map = new int [nk] ;
+		T.Halo = new int [nk] ;
+		for (k = 0 ; k < nk ; k++)
+		{
+			T.Map [k] = EMPTY ;
+		}
+
+		dissect (G, 0, T) ;
+		if (T.status != KLU_OK)
+		{
+			return (T.status) ;
+		}
+
+		chol_count (G, Pblk, Count) ;
+		Stats [ORDER_LNZ] = Count [0] ;
+		Stats [ORDER_FLOPS] = Count [1] ;
+		Stats [ORDER_NODES] = T.nnodes ;
+
+		/* ---------------------------------------------------------------------- */
+		/* keep AMD instead, if it gives less fill */
+		/* ---------------------------------------------------------------------- */
+
+		if (amd == TRUE)
+		{
+			Perm = new int [nk] ;
+			result = amd_order (nk, Cp, Ci, Perm, null, amd_Info) ;
+			if (result < AMD_OK)
+			{
+				return ((result == AMD_OUT_OF_MEMORY) ?
+					KLU_OUT_OF_MEMORY : KLU_INVALID) ;
+			}
+			chol_count (G, Perm, Amd_count) ;
+			if (Amd_count [0] < Count [0])
+			{
+				System.arraycopy (Perm, 0, Pblk, 0, nk) ;
+				Stats [ORDER_LNZ] = Amd_count [0] ;
+				Stats [ORDER_FLOPS] = Amd_count [1] ;
+				Stats [ORDER_NODES] = 0 ;
+			}
+		}
+		return (KLU_OK) ;
+	}
+
+	/**
+	 * Appends the separator tree of a block, returned by klu_nd_order at
+	 * position 2*k1 of Symbolic.Sep_start, Sep_first and Sep_parent, to the
+	 * tree of the blocks before it, which has nsep nodes.  The columns are
+	 * shifted to the BTF form.  A block that was not ordered by nested
+	 * dissection (nnodes is zero) becomes a single node.
+	 *
+	 * @param k1 first column of the block
+	 * @param nk size of the block
+	 * @param nnodes # of nodes of the tree of the block
+	 * @param nsep # of nodes of the blocks before it
+	 * @param Symbolic
+	 */
+	public static void klu_nd_append(int k1, int nk, int nnodes, int nsep,
+			KLU_symbolic Symbolic)
+	{
+		int[] Start, First, Parent ;
+		int t, src, p ;
+
+		Start = Symbolic.Sep_start ;
+		First = Symbolic.Sep_first ;
+		Parent = Symbolic.Sep_parent ;
+		if (nnodes == 0)
+		{
+			Start [nsep] = k1 ;
+			First [nsep] = k1 ;
+			Parent [nsep] = EMPTY ;
+			return ;
+		}
+
+		/* nsep <= 2*k1, so the nodes only move to the left */
+		src = 2*k1 ;
+		ASSERT (nsep <= src) ;
+		for (t = 0 ; t < nnodes ; t++)
+		{
+			p = Parent [src + t] ;
+			Start [nsep + t] = Start [src + t] + k1 ;
+			First [nsep + t] = First [src + t] + k1 ;
+			Parent [nsep + t] = (p == EMPTY) ? EMPTY : (p + nsep) ;
+		}
+	}
+
+}
@@ -0,0 +1,467 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+
+/**
+ * Packed copy of the LU factors for the solves.
+ *
+ * klu_kernel stores the columns of L and U of a block interleaved in one
+ * array, LUbx [block], as [Li, Lx, Ui, Ux] for each column, with the row
+ * indices held as doubles.  The forward solve therefore streams the U part
+ * through the cache and the backward solve the L part.  klu_pack copies L
+ * and U of all blocks into two separate compressed-column arenas with
+ * integer row indices, and stores the inverse of the diagonal of U, so that
+ * klu_solve and klu_tsolve read only the factor they need and multiply
+ * instead of divide.  klu_refactor keeps the values up to date.
+ */
+public class Dklu_pack extends Dklu_internal {
+
+	/**
+	 * Copies the values of L, U and the inverse of the diagonal of U into
+	 * the packed arrays, whose pattern has already been set.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param pattern TRUE to copy the row indices as well
+	 */
+	protected static void pack(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			int pattern)
+	{
+		/*int[]*/double[] Xi ;
+		double[] Xx, Lx, Ux, Udiag, Udinv ;
+		int[] R, Lip, Llen, Uip, Ulen, Lp, Li, Up, Ui ;
+		int block, k1, k2, k, p, lp, up ;
+		int[] len = new int[1] ;
+		int[] Xi_offset = new int[1] ;
+		int[] Xx_offset = new int[1] ;
+
+		R = Symbolic.R ;
+		Lip = Numeric.Lip ;
+		Llen = Numeric.Llen ;
+		Uip = Numeric.Uip ;
+		Ulen = Numeric.Ulen ;
+		Udiag = Numeric.Udiag ;
+		Lp = Numeric.Lp ;
+		Li = Numeric.Li ;
+		Lx = Numeric.Lx ;
+		Up = Numeric.Up ;
+		Ui = Numeric.Ui ;
+		Ux = Numeric.Ux ;
+		Udinv = Numeric.Udinv ;
+
+		for (block = 0 ; block < Symbolic.nblocks ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			for (k = k1 ; k < k2 ; k++)
+			{
+				Udinv [k] = 1 / Udiag [k] ;
+			}
+			if (k2 - k1 == 1)
+			{
+				continue ;
+			}
+			for (k = 0 ; k < k2 - k1 ; k++)
+			{
+				Xi = Xx = GET_POINTER (Numeric.LUbx [block], Lip, k1, Llen, k1,
+						Xi_offset, Xx_offset, k, len) ;
+				lp = Lp [k1 + k] ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					if (pattern != 0)
+					{
+						Li [lp + p] = (int) Xi [Xi_offset[0] + p] ;
+					}
+					Lx [lp + p] = Xx [Xx_offset[0] + p] ;
+				}
+				Xi = Xx = GET_POINTER (Numeric.LUbx [block], Uip, k1, Ulen, k1,
+						Xi_offset, Xx_offset, k, len) ;
+				up = Up [k1 + k] ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					if (pattern != 0)
+					{
+						Ui [up + p] = (int) Xi [Xi_offset[0] + p] ;
+					}
+					Ux [up + p] = Xx [Xx_offset[0] + p] ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Packs L and U of all blocks into separate contiguous arrays, for use by
+	 * klu_solve and klu_tsolve.  Any previous packed copy is replaced.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_pack(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			KLU_common Common)
+	{
+		int[] R, Llen, Ulen, Lp, Up ;
+		int n, block, k1, k2, k, lnz, unz ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numeric == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+		klu_free_pack (Numeric) ;
+
+		n = Symbolic.n ;
+		R = Symbolic.R ;
+		Llen = Numeric.Llen ;
+		Ulen = Numeric.Ulen ;
+
+		/* ---------------------------------------------------------------------- */
+		/* column pointers, in the block order */
+		/* ---------------------------------------------------------------------- */
+
+		Lp = klu_malloc_int (n+1, Common) ;
+		Up = klu_malloc_int (n+1, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+		lnz = 0 ;
+		unz = 0 ;
+		for (block = 0 ; block < Symbolic.nblocks ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			for (k = k1 ; k < k2 ; k++)
+			{
+				Lp [k] = lnz ;
+				Up [k] = unz ;
+				if (k2 - k1 > 1)
+				{
+					lnz += Llen [k] ;
+					unz += Ulen [k] ;
+				}
+			}
+		}
+		Lp [n] = lnz ;
+		Up [n] = unz ;
+
+		/* ---------------------------------------------------------------------- */
+		/* allocate the arenas and copy the factors */
+		/* ---------------------------------------------------------------------- */
+
+		Numeric.Lp = Lp ;
+		Numeric.Up = Up ;
+		Numeric.Li = klu_malloc_int (lnz, Common) ;
+		Numeric.Lx = klu_malloc_dbl (lnz, Common) ;
+		Numeric.Ui = klu_malloc_int (unz, Common) ;
+		Numeric.Ux = klu_malloc_dbl (unz, Common) ;
+		Numeric.Udinv = klu_malloc_dbl (n, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			klu_free_pack (Numeric) ;
+			return (FALSE) ;
+		}
+		pack (Symbolic, Numeric, TRUE) ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Copies the numerical values of L and U into the packed arrays, after
+	 * the matrix has been refactorized.  Does nothing if klu_pack was not
+	 * called.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 */
+	public static void klu_pack_update(KLU_symbolic Symbolic,
+			KLU_numeric Numeric)
+	{
+		if (Numeric != null && Numeric.Lp != null)
+		{
+			pack (Symbolic, Numeric, FALSE) ;
+		}
+	}
+
+	/**
+	 * Removes the packed copy of L and U from the Numeric object.
+	 *
+	 * @param Numeric
+	 */
+	public static void klu_free_pack(KLU_numeric Numeric)
+	{
+		Numeric.Lp = Numeric.Li = Numeric.Up = Numeric.Ui = null ;
+		Numeric.Lx = Numeric.Ux = Numeric.Udinv = null ;
+	}
+
+	/**
+	 * Solve Lx=b for one block, using the packed L.  B is n-by-nrhs and is
+	 * stored in ROW form with row dimension nrhs, as for klu_lsolve.  nrhs
+	 * must be in the range 1 to 4.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Lp column pointers of L
+	 * @param Li row indices of L
+	 * @param Lx values of L
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to Lx=b on output
+	 */
+	public static void klu_pack_lsolve(int nk, int[] Lp, int Lp_offset,
+			int[] Li, double[] Lx, int nr, double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xk, lik ;
+		int k, i, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (k = 0 ; k < nk ; k++)
+			{
+				xk = X [X_offset + k] ;
+				pend = Lp [Lp_offset + k + 1] ;
+				for (p = Lp [Lp_offset + k] ; p < pend ; p++)
+				{
+					//MULT_SUB (X [Li [p]], Lx [p], xk) ;
+					X [X_offset + Li [p]] -= Lx [p] * xk ;
+				}
+			}
+		}
+		else
+		{
+			for (k = 0 ; k < nk ; k++)
+			{
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*k + c] ;
+				}
+				pend = Lp [Lp_offset + k + 1] ;
+				for (p = Lp [Lp_offset + k] ; p < pend ; p++)
+				{
+					i = X_offset + nr*Li [p] ;
+					lik = Lx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						X [i + c] -= lik * x [c] ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve Ux=b for one block, using the packed U and the inverse of its
+	 * diagonal.  B is stored as for klu_pack_lsolve.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Up column pointers of U
+	 * @param Ui row indices of U
+	 * @param Ux values of U, excluding the diagonal
+	 * @param Udinv inverse of the diagonal of U
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to Ux=b on output
+	 */
+	public static void klu_pack_usolve(int nk, int[] Up, int Up_offset,
+			int[] Ui, double[] Ux, double[] Udinv, int Udinv_offset, int nr,
+			double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xk, uik, dinv ;
+		int k, i, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (k = nk-1 ; k >= 0 ; k--)
+			{
+				xk = X [X_offset + k] * Udinv [Udinv_offset + k] ;
+				X [X_offset + k] = xk ;
+				pend = Up [Up_offset + k + 1] ;
+				for (p = Up [Up_offset + k] ; p < pend ; p++)
+				{
+					//MULT_SUB (X [Ui [p]], Ux [p], xk) ;
+					X [X_offset + Ui [p]] -= Ux [p] * xk ;
+				}
+			}
+		}
+		else
+		{
+			for (k = nk-1 ; k >= 0 ; k--)
+			{
+				dinv = Udinv [Udinv_offset + k] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*k + c] * dinv ;
+					X [X_offset + nr*k + c] = x [c] ;
+				}
+				pend = Up [Up_offset + k + 1] ;
+				for (p = Up [Up_offset + k] ; p < pend ; p++)
+				{
+					i = X_offset + nr*Ui [p] ;
+					uik = Ux [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						X [i + c] -= uik * x [c] ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve L'x=b for one block, using the packed L.  B is stored as for
+	 * klu_pack_lsolve.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Lp column pointers of L
+	 * @param Li row indices of L
+	 * @param Lx values of L
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to L'x=b on output
+	 */
+	public static void klu_pack_ltsolve(int nk, int[] Lp, int Lp_offset,
+			int[] Li, double[] Lx, int nr, double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xk, lik ;
+		int k, i, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (k = nk-1 ; k >= 0 ; k--)
+			{
+				xk = X [X_offset + k] ;
+				pend = Lp [Lp_offset + k + 1] ;
+				for (p = Lp [Lp_offset + k] ; p < pend ; p++)
+				{
+					//MULT_SUB (xk, Lx [p], X [Li [p]]) ;
+					xk -= Lx [p] * X [X_offset + Li [p]] ;
+				}
+				X [X_offset + k] = xk ;
+			}
+		}
+		else
+		{
+			for (k = nk-1 ; k >= 0 ; k--)
+			{
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*k + c] ;
+				}
+				pend = Lp [Lp_offset + k + 1] ;
+				for (p = Lp [Lp_offset + k] ; p < pend ; p++)
+				{
+					i = X_offset + nr*Li [p] ;
+					lik = Lx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						x [c] -= lik * X [i + c] ;
+					}
+				}
+				for (c = 0 ; c < nr ; c++)
+				{
+					X [X_offset + nr*k + c] = x [c] ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve U'x=b for one block, using the packed U and the inverse of its
+	 * diagonal.  B is stored as for klu_pack_lsolve.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Up column pointers of U
+	 * @param Ui row indices of U
+	 * @param Ux values of U, excluding the diagonal
+	 * @param Udinv inverse of the diagonal of U
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to U'x=b on output
+	 */
+	public static void klu_pack_utsolve(int nk, int[] Up, int Up_offset,
+			int[] Ui, double[] Ux, double[] Udinv, int Udinv_offset, int nr,
+			double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xk, uik, dinv ;
+		int k, i, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (k = 0 ; k < nk ; k++)
+			{
+				xk = X [X_offset + k] ;
+				pend = Up [Up_offset + k + 1] ;
+				for (p = Up [Up_offset + k] ; p < pend ; p++)
+				{
+					//MULT_SUB (xk, Ux [p], X [Ui [p]]) ;
+					xk -= Ux [p] * X [X_offset + Ui [p]] ;
+				}
+				X [X_offset + k] = xk * Udinv [Udinv_offset + k] ;
+			}
+		}
+		else
+		{
+			for (k = 0 ; k < nk ; k++)
+			{
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*k + c] ;
+				}
+				pend = Up [Up_offset + k + 1] ;
+				for (p = Up [Up_offset + k] ; p < pend ; p++)
+				{
+					i = X_offset + nr*Ui [p] ;
+					uik = Ux [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						x [c] -= uik * X [i + c] ;
+					}
+				}
+				dinv = Udinv [Udinv_offset + k] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					X [X_offset + nr*k + c] = x [c] * dinv ;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,683 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.analyze_worker;
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze_given.klu_alloc_symbolic;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_alloc_numeric;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.klu_kernel_columns;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_realloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_parallel.klu_invoke_all;
+import static edu.ufl.cise.klu.tdouble.Dklu_scale.klu_scale;
+
+import static edu.ufl.cise.colamd.tdouble.Dcolamd.COLAMD_recommended;
+
+/**
+ * Many small independent systems, packed together.  The systems are given as
+ * one block diagonal matrix in compressed-column form: system s is rows and
+ * columns Sn [s] to Sn [s+1]-1, and no entry may lie outside of the diagonal
+ * block of its system.  Each system becomes one block of a single Symbolic
+ * and Numeric object, so the cost of allocating and checking two objects and
+ * their twenty-odd arrays is paid once for the whole set instead of once per
+ * system.
+ *
+ * klu_packed_analyze orders each system as klu_analyze orders the blocks of
+ * the BTF form.  klu_packed_factor factorizes the systems one after the other
+ * into a single LU array, shared by all LUbx [block]; Lip and Uip hold
+ * positions in that array.  The objects can be used with every other routine
+ * (klu_solve, klu_refactor, klu_condest, ...).  klu_packed_solve solves the
+ * systems in chunks on Common.executor, each system in one pass from B back
+ * to B.
+ */
+public class Dklu_packed extends Dklu_internal {
+
+	/**
+	 * Orders each of the nsys systems of a packed matrix.
+	 *
+	 * @param nsys number of systems, > 0
+	 * @param Sn size nsys+1, system s is rows and columns Sn [s] to
+	 * Sn [s+1]-1, with Sn [0] = 0 and n = Sn [nsys]
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param Common
+	 * @return null if error, or a valid KLU_symbolic object if successful
+	 */
+	public static KLU_symbolic klu_packed_analyze(int nsys, int[] Sn,
+			int[] Ap, int[] Ai, KLU_common Common)
+	{
+		KLU_symbolic Symbolic ;
+		int[] Pbtf, Qbtf, Cp, Ci, Pinv, Pblk, P, Q, R ;
+		int n, nz, s, k1, k2, j, p, pend, i, maxblock, ordering, Cilen, k ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check the packing */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (null) ;
+		}
+		Common.status = KLU_OK ;
+		Common.structural_rank = EMPTY ;
+		if (nsys <= 0 || Sn == null || Sn.length < nsys+1 || Sn [0] != 0)
+		{
+			Common.status = KLU_INVALID ;
+			return (null) ;
+		}
+		maxblock = 1 ;
+		for (s = 0 ; s < nsys ; s++)
+		{
+			if (Sn [s+1] <= Sn [s])
+			{
+				/* every system must have at least one row */
+				Common.status = KLU_INVALID ;
+				return (null) ;
+			}
+			maxblock = MAX (maxblock, Sn [s+1] - Sn [s]) ;
+		}
+		n = Sn [nsys] ;
+
+		/* checks Ap and Ai, and allocates P, Q, R and Lnz */
+		Symbolic = klu_alloc_symbolic (n, Ap, Ai, Common) ;
+		if (Symbolic == null)
+		{
+			return (null) ;
+		}
+		for (s = 0 ; s < nsys ; s++)
+		{
+			k1 = Sn [s] ;
+			k2 = Sn [s+1] ;
+			for (j = k1 ; j < k2 ; j++)
+			{
+				pend = Ap [j+1] ;
+				for (p = Ap [j] ; p < pend ; p++)
+				{
+					i = Ai [p] ;
+					if (i < k1 || i >= k2)
+					{
+						/* entry couples two systems */
+						Common.status = KLU_INVALID ;
+						return (null) ;
+					}
+				}
+			}
+		}
+		P = Symbolic.P ;
+		Q = Symbolic.Q ;
+		R = Symbolic.R ;
+		nz = Symbolic.nz ;
+
+		ordering = Common.ordering ;
+		if (ordering == 1)
+		{
+			/* COLAMD */
+			Cilen = COLAMD_recommended (nz, n, n) ;
+		}
+		else if (ordering == 0 || ordering == 2 || ordering == 4 ||
+			(ordering == 3 && Common.user_order != null))
+		{
+			/* AMD, natural, automatic choice, or user ordering function */
+			Cilen = nz+1 ;
+		}
+		else
+		{
+			/* invalid ordering */
+			Common.status = KLU_INVALID ;
+			return (null) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* each system is one block */
+		/* ---------------------------------------------------------------------- */
+
+		Symbolic.ordering = ordering ;
+		Symbolic.do_btf = FALSE ;
+		Symbolic.structural_rank = EMPTY ;
+		Symbolic.nblocks = nsys ;
+		Symbolic.maxblock = maxblock ;
+		for (s = 0 ; s <= nsys ; s++)
+		{
+			R [s] = Sn [s] ;
+		}
+		Common.work = 0 ;
+
+		if (ordering == 2)
+		{
+			/* natural ordering */
+			for (k = 0 ; k < n ; k++)
+			{
+				P [k] = k ;
+				Q [k] = k ;
+			}
+			for (s = 0 ; s < nsys ; s++)
+			{
+				Symbolic.Lnz [s] = EMPTY ;
+			}
+			Symbolic.lnz = EMPTY ;
+			Symbolic.unz = EMPTY ;
+			Symbolic.nzoff = 0 ;
+			Symbolic.est_flops = EMPTY ;
+			Symbolic.symmetry = EMPTY ;
+			return (Symbolic) ;
+		}
+
+		Pbtf = klu_malloc_int (n, Common) ;
+		Qbtf = klu_malloc_int (n, Common) ;
+		Pblk = klu_malloc_int (maxblock, Common) ;
+		Cp   = klu_malloc_int (maxblock + 1, Common) ;
+		Ci   = klu_malloc_int (MAX (Cilen, nz+1), Common) ;
+		Pinv = klu_malloc_int (n, Common) ;
+		if (Common.status == KLU_OK)
+		{
+			for (k = 0 ; k < n ; k++)
+			{
+				Pbtf [k] = k ;
+				Qbtf [k] = k ;
+			}
+			Common.status = analyze_worker (n, Ap, Ai, nsys, Pbtf, Qbtf, R,
+				ordering, P, Q, Symbolic.Lnz, Pblk, Cp, Ci, Cilen, Pinv,
+				Symbolic, Common) ;
+		}
+		Pblk = Cp = Ci = Pinv = Pbtf = Qbtf = null ;
+
+		if (Common.status < KLU_OK)
+		{
+			Symbolic = null ;
+		}
+		return (Symbolic) ;
+	}
+
+	/**
+	 * Factorizes the systems of a packed matrix, one after the other, into a
+	 * single LU array.  Each system is factorized by klu_kernel_columns,
+	 * starting where the previous system ended, so LU is allocated once (and
+	 * grown, if the estimate from the ordering is too small) and then trimmed
+	 * to size at the end.
+	 *
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param Ax size nz, numerical values
+	 * @param Symbolic from klu_packed_analyze
+	 * @param Common
+	 * @return null if error, or a valid KLU_numeric object if successful
+	 */
+	public static KLU_numeric klu_packed_factor(int[] Ap, int[] Ai,
+			double[] Ax, KLU_symbolic Symbolic, KLU_common Common)
+	{
+		KLU_numeric Numeric ;
+
+		if (Common == null)
+		{
+			return (null) ;
+		}
+		Common.status = KLU_OK ;
+		Common.numerical_rank = EMPTY ;
+		Common.singular_col = EMPTY ;
+
+		if (Symbolic == null || Symbolic.nzoff != 0)
+		{
+			/* the systems must not be coupled */
+			Common.status = KLU_INVALID ;
+			return (null) ;
+		}
+
+		Common.initmem_amd = MAX (1.0, Common.initmem_amd) ;
+		Common.initmem = MAX (1.0, Common.initmem) ;
+		Common.tol = MIN (Common.tol, 1.0) ;
+		Common.tol = MAX (0.0, Common.tol) ;
+		Common.memgrow = MAX (1.0, Common.memgrow) ;
+
+		Numeric = klu_alloc_numeric (Symbolic, Common) ;
+		if (Numeric == null)
+		{
+			return (null) ;
+		}
+
+		factor_packed (Ap, Ai, Ax, Symbolic, Numeric, Common) ;
+
+		if (Common.status < KLU_OK)
+		{
+			Numeric = null ;
+		}
+		else if (Common.status == KLU_SINGULAR)
+		{
+			if (Common.halt_if_singular == 1)
+			{
+				Numeric = null ;
+			}
+		}
+		else if (Common.status == KLU_OK)
+		{
+			Common.numerical_rank = Symbolic.n ;
+			Common.singular_col = Symbolic.n ;
+		}
+		return (Numeric) ;
+	}
+
+	/**
+	 * The factorization of klu_packed_factor.
+	 */
+	protected static void factor_packed(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_numeric Numeric, KLU_common Common)
+	{
+		double[][] p_LU = new double [1][] ;
+		int[] p_lusize = new int [1] ;
+		int[] lnz_block = new int [1] ;
+		int[] unz_block = new int [1] ;
+		double[] LU, X, Rs, Udiag, Lnz ;
+		int[] P, Q, R, Pnum, Pinv, Lip, Uip, Llen, Ulen, Offp, Offi, Pblk,
+			Pbinv, Stack, Flag, Lpend, Ap_pos ;
+		double[] Offx ;
+		double s, lsize, maxlnz, tsize ;
+		int n, nblocks, block, k1, k2, nk, k, p, lup, lusize, lu1, anz,
+			scale, lnz, unz, max_lnz_block, max_unz_block, oldcol, pend ;
+
+		n = Symbolic.n ;
+		nblocks = Symbolic.nblocks ;
+		P = Symbolic.P ;
+		Q = Symbolic.Q ;
+		R = Symbolic.R ;
+		Lnz = Symbolic.Lnz ;
+
+		Pnum = Numeric.Pnum ;
+		Pinv = Numeric.Pinv ;
+		Lip = Numeric.Lip ;
+		Uip = Numeric.Uip ;
+		Llen = Numeric.Llen ;
+		Ulen = Numeric.Ulen ;
+		Udiag = Numeric.Udiag ;
+		Offp = Numeric.Offp ;
+		Offi = Numeric.Offi ;
+		Offx = Numeric.Offx ;
+		Rs = Numeric.Rs ;
+		X = Numeric.Xwork ;
+		scale = Common.scale ;
+		Common.nrealloc = 0 ;
+		Common.noffdiag = 0 ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check the input matrix and compute the scale factors */
+		/* ---------------------------------------------------------------------- */
+
+		if (scale >= 0)
+		{
+			klu_scale (scale, n, Ap, Ai, Ax, Rs, Pnum, Common) ;
+			if (Common.status < KLU_OK)
+			{
+				return ;
+			}
+		}
+
+		for (k = 0 ; k < n ; k++)
+		{
+			Pinv [P [k]] = k ;
+		}
+		for (k = 0 ; k <= n ; k++)
+		{
+			/* there are no off-diagonal entries */
+			Offp [k] = 0 ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* allocate LU for all systems, using the estimates from the ordering */
+		/* ---------------------------------------------------------------------- */
+
+		tsize = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			nk = R [block+1] - k1 ;
+			if (nk == 1) continue ;
+			anz = Ap [k1+nk] - Ap [k1] ;
+			lsize = (Lnz [block] < 0) ? (Common.initmem * anz + nk) :
+				(Common.initmem_amd * Lnz [block] + nk) ;
+			maxlnz = (((double) nk) * ((double) nk) + ((double) nk)) / 2. ;
+			lsize = MIN (maxlnz, lsize) ;
+			lsize = MAX (nk+1, lsize) ;
+			/* L and U, indices and values */
+			tsize += 4 * lsize ;
+			if (INT_OVERFLOW (tsize))
+			{
+				Common.status = KLU_TOO_LARGE ;
+				return ;
+			}
+		}
+		lusize = MAX ((int) tsize, 1) ;
+		LU = klu_malloc_dbl (lusize, Common) ;
+		Pblk   = klu_malloc_int (Symbolic.maxblock, Common) ;
+		Pbinv  = klu_malloc_int (Symbolic.maxblock, Common) ;
+		Stack  = klu_malloc_int (Symbolic.maxblock, Common) ;
+		Flag   = klu_malloc_int (Symbolic.maxblock, Common) ;
+		Lpend  = klu_malloc_int (Symbolic.maxblock, Common) ;
+		Ap_pos = klu_malloc_int (Symbolic.maxblock, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* factorize each system */
+		/* ---------------------------------------------------------------------- */
+
+		lup = 0 ;
+		lnz = 0 ;
+		unz = 0 ;
+		max_lnz_block = 1 ;
+		max_unz_block = 1 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			nk = k2 - k1 ;
+
+			if (nk == 1)
+			{
+
+				/* -------------------------------------------------------------- */
+				/* singleton system */
+				/* -------------------------------------------------------------- */
+
+				oldcol = Q [k1] ;
+				pend = Ap [oldcol+1] ;
+				s = 0.0 ;
+				for (p = Ap [oldcol] ; p < pend ; p++)
+				{
+					/* the only entry, if any, is the diagonal */
+					s = (scale <= 0) ? Ax [p] : (Ax [p] / Rs [Ai [p]]) ;
+				}
+				Udiag [k1] = s ;
+				if (IS_ZERO (s))
+				{
+					/* singular singleton */
+					Common.status = KLU_SINGULAR ;
+					if (Common.numerical_rank == EMPTY)
+					{
+						Common.numerical_rank = k1 ;
+						Common.singular_col = oldcol ;
+					}
+					if (Common.halt_if_singular == 1)
+					{
+						return ;
+					}
+				}
+				Pnum [k1] = P [k1] ;
+				lnz++ ;
+				unz++ ;
+				continue ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* factorize the system in LU [lu1 ...] */
+			/* -------------------------------------------------------------- */
+
+			lu1 = lup ;
+			p_LU [0] = LU ;
+			p_lusize [0] = lusize ;
+			lup = klu_kernel_columns (nk, Ap, Ai, Ax, Q, lu1, p_lusize, Pbinv,
+					Pblk, FALSE, p_LU, Udiag, k1, Llen, k1, Ulen, k1, Lip, k1,
+					Uip, k1, lnz_block, unz_block, X, Stack, Flag, Ap_pos,
+					Lpend, k1, Pinv, Rs, Offp, Offi, Offx, Common) ;
+			LU = p_LU [0] ;
+			lusize = p_lusize [0] ;
+			if (lup == EMPTY)
+			{
+				return ;
+			}
+
+			/* combine the row ordering with the symbolic pre-ordering */
+			for (k = 0 ; k < nk ; k++)
+			{
+				Pnum [k + k1] = P [Pblk [k] + k1] ;
+			}
+
+			Numeric.LUsize [block] = lup - lu1 ;
+			lnz += lnz_block [0] ;
+			unz += unz_block [0] ;
+			max_lnz_block = MAX (max_lnz_block, lnz_block [0]) ;
+			max_unz_block = MAX (max_unz_block, unz_block [0]) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* trim LU, and share it between all blocks */
+		/* ---------------------------------------------------------------------- */
+
+		LU = klu_realloc_dbl (MAX (lup, 1), lusize, LU, Common) ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			Numeric.LUbx [block] = (R [block+1] - R [block] == 1) ? null : LU ;
+		}
+
+		Numeric.lnz = lnz ;
+		Numeric.unz = unz ;
+		Numeric.max_lnz_block = max_lnz_block ;
+		Numeric.max_unz_block = max_unz_block ;
+
+		/* compute the inverse of Pnum */
+		for (k = 0 ; k < n ; k++)
+		{
+			Pinv [Pnum [k]] = k ;
+		}
+
+		/* permute scale factors Rs according to pivotal row order */
+		if (scale > 0)
+		{
+			for (k = 0 ; k < n ; k++)
+			{
+				X [k] = Rs [Pnum [k]] ;
+			}
+			for (k = 0 ; k < n ; k++)
+			{
+				Rs [k] = X [k] ;
+			}
+		}
+	}
+
+	/**
+	 * Solves systems b1 to b2-1 for columns chunk to chunk+nr-1 of B, each
+	 * from B back to B, using Xwork [4*R [b1] ... 4*R [b2]-1].
+	 */
+	protected static void solve_systems(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int b1, int b2, int d, int chunk, int nr,
+			double[] B, int B_offset)
+	{
+		double[] X, Rs, Udiag ;
+		int[] R, Q, Pnum ;
+		double rs ;
+		int block, k1, k2, nk, k, i, c, b, x0 ;
+
+		R = Symbolic.R ;
+		Q = Symbolic.Q ;
+		Pnum = Numeric.Pnum ;
+		Rs = Numeric.Rs ;
+		Udiag = Numeric.Udiag ;
+		X = Numeric.Xwork ;
+		b = B_offset + d*chunk ;
+		/* row k is at X [x0 + nr*k], inside X [4*R [b1] ... 4*R [b2]-1] whatever
+		 * nr is, so that chunks of different sizes in other threads do not
+		 * overlap with this one */
+		x0 = (4 - nr) * R [b1] ;
+
+		for (block = b1 ; block < b2 ; block++)
+		{
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			nk = k2 - k1 ;
+
+			/* X = P*(R\B) for this system */
+			for (k = k1 ; k < k2 ; k++)
+			{
+				i = Pnum [k] ;
+				rs = (Rs == null) ? 1.0 : Rs [k] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					//SCALE_DIV_ASSIGN (X [x0 + nr*k + c], B [i + d*c], rs) ;
+					X [x0 + nr*k + c] = (Rs == null) ? B [b + i + d*c] :
+						(B [b + i + d*c] / rs) ;
+				}
+			}
+
+			/* X = (L*U)\X */
+			if (nk == 1)
+			{
+				for (c = 0 ; c < nr ; c++)
+				{
+					//DIV (X [x0 + nr*k1 + c], X [x0 + nr*k1 + c], Udiag [k1]) ;
+					X [x0 + nr*k1 + c] = X [x0 + nr*k1 + c] / Udiag [k1] ;
+				}
+			}
+			else
+			{
+				klu_lsolve (nk, Numeric.Lip, k1, Numeric.Llen, k1,
+						Numeric.LUbx [block], nr, X, x0 + nr*k1) ;
+				klu_usolve (nk, Numeric.Uip, k1, Numeric.Ulen, k1,
+						Numeric.LUbx [block], Udiag, k1, nr, X, x0 + nr*k1) ;
+			}
+
+			/* B = Q*X for this system */
+			for (k = k1 ; k < k2 ; k++)
+			{
+				i = Q [k] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					B [b + i + d*c] = X [x0 + nr*k + c] ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solves Ax=b for a packed matrix.  The systems are split into
+	 * Common.nthreads chunks of about the same number of rows, which are
+	 * solved concurrently on Common.executor if one is given.  The result is
+	 * the same as that of klu_solve.
+	 *
+	 * @param Symbolic from klu_packed_analyze
+	 * @param Numeric from klu_packed_factor or klu_refactor
+	 * @param d leading dimension of B
+	 * @param nrhs number of right-hand-sides
+	 * @param B right-hand-side on input, overwritten with solution to Ax=b on
+	 * output. Size n*nrhs, in column-oriented form, with leading dimension d.
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_packed_solve(final KLU_symbolic Symbolic,
+			final KLU_numeric Numeric, final int d, final int nrhs,
+			final double[] B, final int B_offset, KLU_common Common)
+	{
+		List<Callable<Object>> tasks ;
+		int[] R, Cb ;
+		int n, nblocks, ntasks, t, block, chunk, nr ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Numeric == null || Symbolic == null || d < Symbolic.n || nrhs < 0
+			|| B == null || Symbolic.nzoff != 0)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+		n = Symbolic.n ;
+		nblocks = Symbolic.nblocks ;
+		R = Symbolic.R ;
+
+		/* ---------------------------------------------------------------------- */
+		/* split the systems into chunks of about n/ntasks rows */
+		/* ---------------------------------------------------------------------- */
+
+		ntasks = (Common.executor == null) ? 1 :
+			MAX (1, MIN (Common.nthreads, nblocks)) ;
+		Cb = new int [ntasks+1] ;
+		Cb [0] = 0 ;
+		block = 0 ;
+		for (t = 1 ; t < ntasks ; t++)
+		{
+			while (block < nblocks && R [block] < (int) (((long) n * t) / ntasks))
+			{
+				block++ ;
+			}
+			Cb [t] = block ;
+		}
+		Cb [ntasks] = nblocks ;
+
+		/* ---------------------------------------------------------------------- */
+		/* solve in chunks of 4 columns at a time */
+		/* ---------------------------------------------------------------------- */
+
+		if (ntasks == 1)
+		{
+			for (chunk = 0 ; chunk < nrhs ; chunk += 4)
+			{
+				nr = MIN (nrhs - chunk, 4) ;
+				solve_systems (Symbolic, Numeric, 0, nblocks, d, chunk, nr,
+						B, B_offset) ;
+			}
+			return (TRUE) ;
+		}
+
+		tasks = new ArrayList<Callable<Object>> (ntasks) ;
+		for (t = 0 ; t < ntasks ; t++)
+		{
+			final int b1 = Cb [t] ;
+			final int b2 = Cb [t+1] ;
+			tasks.add (new Callable<Object> ()
+			{
+				public Object call()
+				{
+					int chunk, nr ;
+					for (chunk = 0 ; chunk < nrhs ; chunk += 4)
+					{
+						nr = MIN (nrhs - chunk, 4) ;
+						solve_systems (Symbolic, Numeric, b1, b2, d, chunk,
+								nr, B, B_offset) ;
+					}
+					return (null) ;
+				}
+			}) ;
+		}
+		klu_invoke_all (Common.executor, tasks) ;
+		return (TRUE) ;
+	}
+
+}
@@ -0,0 +1,235 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Task helpers for the parallel routines.  No user-callable routines are in
+ * this file.
+ */
+public class Dklu_parallel extends Dklu_internal {
+
+	/**
+	 * Runs a list of independent tasks and waits for all of them to finish.
+	 * All but the last task are submitted to the executor; the last one is
+	 * run by the calling thread.  The tasks must not wait on each other, so
+	 * that this cannot deadlock even if the pool has a single thread.
+	 * Interrupts are deferred until all tasks are done, since the tasks
+	 * update the solution in place and cannot be abandoned half-way.
+	 *
+	 * @param executor thread pool
+	 * @param tasks tasks to run
+	 */
+	public static void klu_invoke_all(ExecutorService executor,
+			List<Callable<Object>> tasks)
+	{
+		List<Future<Object>> futures ;
+		RuntimeException failure = null ;
+		boolean interrupted = false ;
+		int t, ntasks ;
+
+		ntasks = tasks.size () ;
+		futures = new ArrayList<Future<Object>> (ntasks) ;
+		for (t = 0 ; t < ntasks - 1 ; t++)
+		{
+			futures.add (executor.submit (tasks.get (t))) ;
+		}
+		if (ntasks > 0)
+		{
+			try
+			{
+				tasks.get (ntasks - 1).call () ;
+			}
+			catch (Exception e)
+			{
+				failure = wrap (e) ;
+			}
+		}
+		for (t = 0 ; t < futures.size () ; t++)
+		{
+			while (true)
+			{
+				try
+				{
+					futures.get (t).get () ;
+					break ;
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true ;
+				}
+				catch (ExecutionException e)
+				{
+					if (failure == null)
+					{
+						failure = wrap (e.getCause ()) ;
+					}
+					break ;
+				}
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread ().interrupt () ;
+		}
+		if (failure != null)
+		{
+			throw failure ;
+		}
+	}
+
+	/**
+	 * One node of a task graph, identified by its index.
+	 */
+	public interface Task
+	{
+		void run(int t) ;
+	}
+
+	/**
+	 * Runs a task graph and waits for all of its tasks to finish.  Task t
+	 * may start once all of its predecessors are done; its successors are
+	 * Si [Sp [t] ... Sp [t+1]-1].  A finished task continues with one of the
+	 * successors it released in the same thread and submits the others to
+	 * the executor, so chains of dependent tasks are not handed from thread
+	 * to thread.  The calling thread only waits.
+	 *
+	 * @param executor thread pool
+	 * @param ntasks number of tasks
+	 * @param Sp size ntasks+1, successor pointers
+	 * @param Si successor lists
+	 * @param Npred size ntasks, number of predecessors of each task
+	 * @param body the work done by each task
+	 */
+	public static void klu_run_dag(final ExecutorService executor, int ntasks,
+			final int[] Sp, final int[] Si, int[] Npred, final Task body)
+	{
+		final AtomicIntegerArray npred = new AtomicIntegerArray (Npred) ;
+		final CountDownLatch done = new CountDownLatch (ntasks) ;
+		final AtomicReference<Throwable> failure =
+			new AtomicReference<Throwable> () ;
+		boolean interrupted = false ;
+		int t ;
+
+		class Node implements Runnable
+		{
+			private final int first ;
+
+			Node(int first)
+			{
+				this.first = first ;
+			}
+
+			public void run()
+			{
+				int t, next, p ;
+				try
+				{
+					for (t = first ; t != EMPTY ; t = next)
+					{
+						body.run (t) ;
+						next = EMPTY ;
+						for (p = Sp [t] ; p < Sp [t+1] ; p++)
+						{
+							if (npred.decrementAndGet (Si [p]) == 0)
+							{
+								if (next == EMPTY)
+								{
+									next = Si [p] ;
+								}
+								else
+								{
+									executor.execute (new Node (Si [p])) ;
+								}
+							}
+						}
+						done.countDown () ;
+					}
+				}
+				catch (Throwable e)
+				{
+					/* stop waiting for the tasks that will never run */
+					failure.compareAndSet (null, e) ;
+					while (done.getCount () > 0)
+					{
+						done.countDown () ;
+					}
+				}
+			}
+		}
+
+		for (t = 0 ; t < ntasks ; t++)
+		{
+			if (Npred [t] == 0)
+			{
+				executor.execute (new Node (t)) ;
+			}
+		}
+		while (true)
+		{
+			try
+			{
+				done.await () ;
+				break ;
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true ;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread ().interrupt () ;
+		}
+		if (failure.get () != null)
+		{
+			throw wrap (failure.get ()) ;
+		}
+	}
+
+	private static RuntimeException wrap(Throwable e)
+	{
+		if (e instanceof RuntimeException)
+		{
+			return ((RuntimeException) e) ;
+		}
+		if (e instanceof Error)
+		{
+			throw ((Error) e) ;
+		}
+		return (new RuntimeException (e)) ;
+	}
+
+}
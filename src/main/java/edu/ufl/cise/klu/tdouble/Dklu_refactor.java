@@ -30,8 +30,15 @@ import edu.ufl.cise.klu.common.KLU_symbolic;
 
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
 import static edu.ufl.cise.klu.tdouble.Dklu_scale.klu_scale;
+import static edu.ufl.cise.klu.tdouble.Dklu_scale.klu_static_init;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid;
+import static edu.ufl.cise.klu.tdouble.Dklu_kernel.static_pivot;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid_LU;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_levels_update;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_update;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.klu_dense_update;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve_factored.klu_rsinv_update;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_supernodes_update;
 
 /**
  * Factor the matrix, after ordering and analyzing it with KLU_analyze, and
@@ -57,7 +64,7 @@ public class Dklu_refactor extends Dklu_internal {
 		double ukk, ujk, s ;
 		double[] Offx, Lx, Ux, X, Az, Udiag ;
 		double[] Rs ;
-		int[] Q, R, Pnum, Offp, Offi, Pinv, Lip, Uip, Llen, Ulen ;
+		int[] Q, R, Pnum, Offp, Offi, Pinv, Lip, Uip, Llen, Ulen, Srun ;
 		/*int[]*/double[] Ui, Li ;
 		double[][] LUbx ;
 		double[] LU ;
@@ -99,6 +106,7 @@ public class Dklu_refactor extends Dklu_internal {
 		n = Symbolic.n ;
 		Q = Symbolic.Q ;
 		R = Symbolic.R ;
+		Srun = Symbolic.Srun ;
 		nblocks = Symbolic.nblocks ;
 		maxblock = Symbolic.maxblock ;
 
@@ -155,6 +163,7 @@ public class Dklu_refactor extends Dklu_internal {
 				return (FALSE) ;
 			}
 		}
+		klu_static_init (scale, n, Ap, Ai, Ax, Rs, Common) ;
 
 		/* ---------------------------------------------------------------------- */
 		/* clear workspace X */
@@ -194,28 +203,36 @@ public class Dklu_refactor extends Dklu_internal {
 				{
 
 					/* ---------------------------------------------------------- */
-					/* singleton case */
+					/* singleton case, or a run of singletons */
 					/* ---------------------------------------------------------- */
 
-					oldcol = Q [k1] ;
-					pend = Ap [oldcol+1] ;
-					s = 0 ; //CLEAR (s) ;
-					for (p = Ap [oldcol] ; p < pend ; p++)
+					if (Srun != null && Srun [block] > block)
 					{
-						newrow = Pinv [Ai [p]] - k1 ;
-						if (newrow < 0 && poff < nzoff)
-						{
-							/* entry in off-diagonal block */
-							Offx [poff] = Az [p] ;
-							poff++ ;
-						}
-						else
+						block = Srun [block] ;
+						k2 = R [block+1] ;
+					}
+					for (k = k1 ; k < k2 ; k++)
+					{
+						oldcol = Q [k] ;
+						pend = Ap [oldcol+1] ;
+						s = 0 ; //CLEAR (s) ;
+						for (p = Ap [oldcol] ; p < pend ; p++)
 						{
-							/* singleton */
-							s = Az [p] ;
+							newrow = Pinv [Ai [p]] - k ;
+							if (newrow < 0 && poff < nzoff)
+							{
+								/* entry in off-diagonal block */
+								Offx [poff] = Az [p] ;
+								poff++ ;
+							}
+							else
+							{
+								/* singleton */
+								s = Az [p] ;
+							}
 						}
+						Udiag [k] = static_pivot (s, Common) ;
 					}
-					Udiag [k1] = s ;
 
 				}
 				else
@@ -285,6 +302,7 @@ public class Dklu_refactor extends Dklu_internal {
 						ukk = X [k] ;
 						/* X [k] = 0 ; */
 						CLEAR (X, k) ;
+						ukk = static_pivot (ukk, Common) ;
 						/* singular case */
 						if (IS_ZERO (ukk))
 						{
@@ -340,31 +358,39 @@ public class Dklu_refactor extends Dklu_internal {
 				{
 
 					/* ---------------------------------------------------------- */
-					/* singleton case */
+					/* singleton case, or a run of singletons */
 					/* ---------------------------------------------------------- */
 
-					oldcol = Q [k1] ;
-					pend = Ap [oldcol+1] ;
-					s = 0 ; //CLEAR (s) ;
-					for (p = Ap [oldcol] ; p < pend ; p++)
+					if (Srun != null && Srun [block] > block)
 					{
-						oldrow = Ai [p] ;
-						newrow = Pinv [oldrow] - k1 ;
-						if (newrow < 0 && poff < nzoff)
-						{
-							/* entry in off-diagonal block */
-							Offx [poff] = Az [p] / Rs [oldrow] ;
-							//SCALE_DIV_ASSIGN (Offx [poff], Az [p], Rs [oldrow]) ;
-							poff++ ;
-						}
-						else
+						block = Srun [block] ;
+						k2 = R [block+1] ;
+					}
+					for (k = k1 ; k < k2 ; k++)
+					{
+						oldcol = Q [k] ;
+						pend = Ap [oldcol+1] ;
+						s = 0 ; //CLEAR (s) ;
+						for (p = Ap [oldcol] ; p < pend ; p++)
 						{
-							/* singleton */
-							s = Az [p] / Rs [oldrow] ;
-							//SCALE_DIV_ASSIGN (s, Az [p], Rs [oldrow]) ;
+							oldrow = Ai [p] ;
+							newrow = Pinv [oldrow] - k ;
+							if (newrow < 0 && poff < nzoff)
+							{
+								/* entry in off-diagonal block */
+								Offx [poff] = Az [p] / Rs [oldrow] ;
+								//SCALE_DIV_ASSIGN (Offx [poff], Az [p], Rs [oldrow]) ;
+								poff++ ;
+							}
+							else
+							{
+								/* singleton */
+								s = Az [p] / Rs [oldrow] ;
+								//SCALE_DIV_ASSIGN (s, Az [p], Rs [oldrow]) ;
+							}
 						}
+						Udiag [k] = static_pivot (s, Common) ;
 					}
-					Udiag [k1] = s ;
 
 				}
 				else
@@ -437,6 +463,7 @@ public class Dklu_refactor extends Dklu_internal {
 						ukk = X [k] ;
 						/* X [k] = 0 ; */
 						CLEAR (X, k) ;
+						ukk = static_pivot (ukk, Common) ;
 						/* singular case */
 						if (IS_ZERO (ukk))
 						{
@@ -487,6 +514,13 @@ public class Dklu_refactor extends Dklu_internal {
 			}
 		}
 
+		/* refresh the copies of the factors used by the solves */
+		klu_levels_update (Numeric) ;
+		klu_pack_update (Symbolic, Numeric) ;
+		klu_dense_update (Symbolic, Numeric) ;
+		klu_supernodes_update (Symbolic, Numeric) ;
+		klu_rsinv_update (Numeric) ;
+
 		if (!NDEBUG)
 		{
 			ASSERT (Offp [n] == poff) ;
@@ -0,0 +1,245 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * Solve Ax=b with iterative refinement.  Each step computes the residual
+ * r = b - A*x in a single pass over A, together with |A|*|x| + |b| for the
+ * componentwise backward error, and then corrects x with the solution of
+ * A*dx = r.  Refinement stops when the backward error is at most
+ * Common.refine_tol, when it no longer drops by at least half, or after
+ * Common.irstep steps.  This allows a looser pivot tolerance (Common.tol)
+ * or a factorization of a nearby matrix to be used safely.
+ *
+ * Uses Numeric.Xwork as workspace (undefined on input and output), of size
+ * 4n double's.  No other memory is allocated.
+ */
+public class Dklu_refine extends Dklu_internal {
+
+	/**
+	 * Computes the residual R = B - A*X and W = |A|*|X| + |B| in one pass
+	 * over A.
+	 *
+	 * @param n A is n-by-n
+	 * @param Ap column pointers of A
+	 * @param Ai row indices of A
+	 * @param Ax values of A
+	 * @param X size n, the current solution
+	 * @param B size n, the right-hand-side
+	 * @param R size n, the residual on output
+	 * @param W size n, |A|*|X| + |B| on output
+	 */
+	public static void klu_residual(int n, int[] Ap, int[] Ai, double[] Ax,
+			double[] X, int X_offset, double[] B, int B_offset,
+			double[] R, int R_offset, double[] W, int W_offset)
+	{
+		double xj, axij ;
+		int i, j, p, pend ;
+
+		for (i = 0 ; i < n ; i++)
+		{
+			R [R_offset + i] = B [B_offset + i] ;
+			W [W_offset + i] = ABS (B [B_offset + i]) ;
+		}
+		for (j = 0 ; j < n ; j++)
+		{
+			xj = X [X_offset + j] ;
+			pend = Ap [j+1] ;
+			for (p = Ap [j] ; p < pend ; p++)
+			{
+				i = Ai [p] ;
+				axij = Ax [p] * xj ;
+				R [R_offset + i] -= axij ;
+				W [W_offset + i] += ABS (axij) ;
+			}
+		}
+	}
+
+	/**
+	 * Solve Ax=b with iterative refinement, using the symbolic and numeric
+	 * objects from klu_analyze (or klu_analyze_given) and klu_factor or
+	 * klu_refactor.  The Numeric object may be a factorization of a nearby
+	 * matrix.  On return, Common.berr is the componentwise backward error,
+	 * Common.ferr an estimate of the relative forward error (in the max norm),
+	 * and Common.nrefine the number of refinement steps, each the largest
+	 * over all right-hand-sides.
+	 *
+	 * @param Ap column pointers of A
+	 * @param Ai row indices of A
+	 * @param Ax values of A
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param d leading dimension of B
+	 * @param nrhs number of right-hand-sides
+	 * @param B right-hand-side on input, overwritten with solution to Ax=b on
+	 * output. Size n*nrhs, in column-oriented form, with leading dimension d.
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_solve_refine(int[] Ap, int[] Ai, double[] Ax,
+			KLU_symbolic Symbolic, KLU_numeric Numeric, int d, int nrhs,
+			double[] B, int B_offset, KLU_common Common)
+	{
+		double[] W ;
+		double berr, lstres, ferr, xmax, dxmax, ri, wi, berr_max, ferr_max ;
+		int n, i, j, x_offset, b_offset, r_offset, w_offset, step, nrefine ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		Common.berr = EMPTY ;
+		Common.ferr = EMPTY ;
+		Common.nrefine = EMPTY ;
+		if (Numeric == null || Symbolic == null || Ap == null || Ai == null ||
+			Ax == null || d < Symbolic.n || nrhs < 0 || B == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+
+		/* ---------------------------------------------------------------------- */
+		/* get workspace: the first n entries of Xwork are used by klu_solve */
+		/* ---------------------------------------------------------------------- */
+
+		n = Symbolic.n ;
+		W = Numeric.Xwork ;
+		b_offset = n ;      /* copy of b */
+		r_offset = 2*n ;    /* residual, and the correction dx */
+		w_offset = 3*n ;    /* |A|*|x| + |b| */
+
+		berr_max = 0 ;
+		ferr_max = 0 ;
+		nrefine = 0 ;
+
+		for (j = 0 ; j < nrhs ; j++)
+		{
+			x_offset = B_offset + j*d ;
+
+			/* -------------------------------------------------------------- */
+			/* x = A\b */
+			/* -------------------------------------------------------------- */
+
+			for (i = 0 ; i < n ; i++)
+			{
+				W [b_offset + i] = B [x_offset + i] ;
+			}
+			if (klu_solve (Symbolic, Numeric, n, 1, B, x_offset, Common) == FALSE)
+			{
+				return (FALSE) ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* refine x */
+			/* -------------------------------------------------------------- */
+
+			lstres = Double.POSITIVE_INFINITY ;
+			ferr = EMPTY ;
+			berr = 0 ;
+			for (step = 0 ; ; step++)
+			{
+				/* r = b - A*x, and the backward error */
+				klu_residual (n, Ap, Ai, Ax, B, x_offset, W, b_offset,
+						W, r_offset, W, w_offset) ;
+				berr = 0 ;
+				for (i = 0 ; i < n ; i++)
+				{
+					/* if w(i) is zero then so is r(i) */
+					wi = W [w_offset + i] ;
+					if (wi > 0)
+					{
+						ri = ABS (W [r_offset + i]) ;
+						berr = MAX (berr, ri / wi) ;
+					}
+				}
+				PRINTF ("refine rhs %d step %d berr %g\n", j, step, berr) ;
+				if (berr <= Common.refine_tol || berr > lstres / 2 ||
+					step >= Common.irstep)
+				{
+					break ;
+				}
+
+				/* x = x + A\r */
+				if (klu_solve (Symbolic, Numeric, n, 1, W, r_offset, Common) == FALSE)
+				{
+					return (FALSE) ;
+				}
+				xmax = 0 ;
+				dxmax = 0 ;
+				for (i = 0 ; i < n ; i++)
+				{
+					B [x_offset + i] += W [r_offset + i] ;
+					xmax = MAX (xmax, ABS (B [x_offset + i])) ;
+					dxmax = MAX (dxmax, ABS (W [r_offset + i])) ;
+				}
+				ferr = (xmax > 0) ? dxmax / xmax : dxmax ;
+				lstres = berr ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* estimate the forward error if x was not corrected */
+			/* -------------------------------------------------------------- */
+
+			if (step == 0)
+			{
+				/* the correction A\r is not applied, only measured */
+				if (klu_solve (Symbolic, Numeric, n, 1, W, r_offset, Common) == FALSE)
+				{
+					return (FALSE) ;
+				}
+				xmax = 0 ;
+				dxmax = 0 ;
+				for (i = 0 ; i < n ; i++)
+				{
+					xmax = MAX (xmax, ABS (B [x_offset + i])) ;
+					dxmax = MAX (dxmax, ABS (W [r_offset + i])) ;
+				}
+				ferr = (xmax > 0) ? dxmax / xmax : dxmax ;
+			}
+
+			berr_max = MAX (berr_max, berr) ;
+			ferr_max = MAX (ferr_max, ferr) ;
+			nrefine = MAX (nrefine, step) ;
+		}
+
+		Common.berr = berr_max ;
+		Common.ferr = ferr_max ;
+		Common.nrefine = nrefine ;
+		return (TRUE) ;
+	}
+
+}
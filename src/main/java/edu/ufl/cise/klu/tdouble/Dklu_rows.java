@@ -0,0 +1,312 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_dag.off_rows;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.alloc_rows;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.row_form;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+
+/**
+ * Row-oriented copy of the factors, for solving A'x=b.
+ *
+ * klu_ltsolve and klu_utsolve solve with the transpose of the column-stored
+ * factors by dot products, and klu_tsolve applies the off-diagonal part one
+ * column at a time.  With L, U and Off also stored by rows, the transposed
+ * solve becomes a column-oriented (scatter) solve with the same access
+ * pattern as klu_solve.  klu_rows builds the copy; klu_refactor keeps its
+ * values up to date and klu_sort its positions.
+ */
+public class Dklu_rows extends Dklu_internal {
+
+	/**
+	 * Computes the row form of L and U for every block of size 2 or more,
+	 * and of the off-diagonal part, keeping any parts already computed by
+	 * klu_levels or klu_dag.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_rows(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			KLU_common Common)
+	{
+		int[] R, W ;
+		int nblocks, block, k1, nk ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numeric == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+
+		R = Symbolic.R ;
+		nblocks = Symbolic.nblocks ;
+
+		/* ---------------------------------------------------------------------- */
+		/* off-diagonal part */
+		/* ---------------------------------------------------------------------- */
+
+		if (Numeric.Offrp == null && off_rows (Symbolic, Numeric, Common) == FALSE)
+		{
+			return (FALSE) ;
+		}
+		if (Numeric.rows != FALSE)
+		{
+			return (TRUE) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* L and U of each block */
+		/* ---------------------------------------------------------------------- */
+
+		alloc_rows (Numeric, nblocks) ;
+		W = klu_malloc_int (Symbolic.maxblock, Common) ;
+		if (W == null)
+		{
+			return (FALSE) ;
+		}
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			nk = R [block+1] - k1 ;
+			if (nk > 1 && Numeric.Lrp [block] == null &&
+				row_form (Numeric, block, k1, nk, W, Common) == FALSE)
+			{
+				return (FALSE) ;
+			}
+		}
+		Numeric.rows = TRUE ;
+		return (TRUE) ;
+	}
+
+	/**
+	 * Solve U'x=b for one block, using the row form of U.  B is n-by-nrhs
+	 * and is stored in ROW form with row dimension nrhs, as for klu_utsolve.
+	 * nrhs must be in the range 1 to 4.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Urp row pointers of U
+	 * @param Urj column indices of U
+	 * @param Urx values of U, excluding the diagonal
+	 * @param Udiag diagonal of U
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to U'x=b on output
+	 */
+	public static void klu_rows_utsolve(int nk, int[] Urp, int[] Urj,
+			double[] Urx, double[] Udiag, int Udiag_offset, int nr,
+			double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xk, ukj, ukk ;
+		int k, j, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (k = 0 ; k < nk ; k++)
+			{
+				//DIV (xk, X [k], Udiag [k]) ;
+				xk = X [X_offset + k] / Udiag [Udiag_offset + k] ;
+				X [X_offset + k] = xk ;
+				pend = Urp [k+1] ;
+				for (p = Urp [k] ; p < pend ; p++)
+				{
+					//MULT_SUB (X [Urj [p]], Urx [p], xk) ;
+					X [X_offset + Urj [p]] -= Urx [p] * xk ;
+				}
+			}
+		}
+		else
+		{
+			for (k = 0 ; k < nk ; k++)
+			{
+				ukk = Udiag [Udiag_offset + k] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*k + c] / ukk ;
+					X [X_offset + nr*k + c] = x [c] ;
+				}
+				pend = Urp [k+1] ;
+				for (p = Urp [k] ; p < pend ; p++)
+				{
+					j = X_offset + nr*Urj [p] ;
+					ukj = Urx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						X [j + c] -= ukj * x [c] ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve L'x=b for one block, using the row form of L.  B is stored as
+	 * for klu_rows_utsolve.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Lrp row pointers of L
+	 * @param Lrj column indices of L
+	 * @param Lrx values of L
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to L'x=b on output
+	 */
+	public static void klu_rows_ltsolve(int nk, int[] Lrp, int[] Lrj,
+			double[] Lrx, int nr, double[] X, int X_offset)
+	{
+		double[] x = new double[4] ;
+		double xk, lkj ;
+		int k, j, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (k = nk-1 ; k >= 0 ; k--)
+			{
+				xk = X [X_offset + k] ;
+				pend = Lrp [k+1] ;
+				for (p = Lrp [k] ; p < pend ; p++)
+				{
+					//MULT_SUB (X [Lrj [p]], Lrx [p], xk) ;
+					X [X_offset + Lrj [p]] -= Lrx [p] * xk ;
+				}
+			}
+		}
+		else
+		{
+			for (k = nk-1 ; k >= 0 ; k--)
+			{
+				for (c = 0 ; c < nr ; c++)
+				{
+					x [c] = X [X_offset + nr*k + c] ;
+				}
+				pend = Lrp [k+1] ;
+				for (p = Lrp [k] ; p < pend ; p++)
+				{
+					j = X_offset + nr*Lrj [p] ;
+					lkj = Lrx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						X [j + c] -= lkj * x [c] ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve X = (L*U + Off)'\X for all blocks, using the row form from
+	 * klu_rows.  X is n-by-nr and is stored in ROW form with row dimension
+	 * nr, as in klu_tsolve.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param nr number of right-hand-sides, 1 to 4
+	 * @param X right-hand-side on input, solution on output
+	 */
+	public static void klu_rows_tsolve(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int nr, double[] X)
+	{
+		double[] Offrx, Udiag ;
+		int[] R, Offrp, Offrj ;
+		double s, offkj ;
+		int nblocks, block, k1, k2, nk, k, j, p, pend, c ;
+
+		R = Symbolic.R ;
+		nblocks = Symbolic.nblocks ;
+		Offrp = Numeric.Offrp ;
+		Offrj = Numeric.Offrj ;
+		Offrx = Numeric.Offrx ;
+		Udiag = Numeric.Udiag ;
+
+		for (block = 0 ; block < nblocks ; block++)
+		{
+
+			/* -------------------------------------------------------------- */
+			/* the block of size nk is from rows/columns k1 to k2-1 */
+			/* -------------------------------------------------------------- */
+
+			k1 = R [block] ;
+			k2 = R [block+1] ;
+			nk = k2 - k1 ;
+			PRINTF ("tsolve rows %d, k1 %d k2-1 %d nk %d\n", block, k1,k2-1,nk) ;
+
+			/* -------------------------------------------------------------- */
+			/* solve the block system */
+			/* -------------------------------------------------------------- */
+
+			if (nk == 1)
+			{
+				s = Udiag [k1] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					//DIV (X [nr*k1 + c], X [nr*k1 + c], s) ;
+					X [nr*k1 + c] = X [nr*k1 + c] / s ;
+				}
+			}
+			else
+			{
+				klu_rows_utsolve (nk, Numeric.Urp [block], Numeric.Urj [block],
+						Numeric.Urx [block], Udiag, k1, nr, X, nr*k1) ;
+				klu_rows_ltsolve (nk, Numeric.Lrp [block], Numeric.Lrj [block],
+						Numeric.Lrx [block], nr, X, nr*k1) ;
+			}
+
+			/* -------------------------------------------------------------- */
+			/* scatter the off-diagonal entries in rows k1 to k2-1 */
+			/* -------------------------------------------------------------- */
+
+			for (k = k1 ; k < k2 ; k++)
+			{
+				pend = Offrp [k+1] ;
+				for (p = Offrp [k] ; p < pend ; p++)
+				{
+					j = Offrj [p] ;
+					offkj = Offrx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						//MULT_SUB (X [nr*j + c], Offrx [p], X [nr*k + c]) ;
+						X [nr*j + c] -= offkj * X [nr*k + c] ;
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -26,6 +26,8 @@ package edu.ufl.cise.klu.tdouble;
 
 import edu.ufl.cise.klu.common.KLU_common;
 
+import static edu.ufl.cise.klu.tdouble.Dklu_simd.klu_vrownorm;
+
 /**
  * Scale a matrix and check to see if it is valid.  Can be called by the user.
  * This is called by KLU_factor and KLU_refactor.  Returns true if the input
@@ -55,7 +57,6 @@ public class Dklu_scale extends Dklu_internal {
 	public static int klu_scale(int scale, int n, int[] Ap, int[] Ai,
 			double[] Ax, double[] Rs, int[] W, KLU_common Common)
 	{
-		double a ;
 		double[] Az ;
 		int row, col, p, pend ;
 		boolean check_duplicates ;
@@ -148,18 +149,12 @@ public class Dklu_scale extends Dklu_internal {
 					/* flag row i as appearing in column col */
 					W [row] = col ;
 				}
-				//ABS (a, Az [p]) ;
-				a = ABS (Az [p]) ;
-				if (scale == 1)
-				{
-					/* accumulate the abs. row sum */
-					Rs [row] += a ;
-				}
-				else if (scale > 1)
-				{
-					/* find the max abs. value in the row */
-					Rs [row] = MAX (Rs [row], a) ;
-				}
+			}
+			if (scale > 0)
+			{
+				/* accumulate the abs. row sum, or find the max abs. value in
+				 * each row */
+				klu_vrownorm (scale == 1 ? 1 : 2, Ai, Az, Ap [col], pend, Rs) ;
 			}
 		}
 
@@ -182,4 +177,45 @@ public class Dklu_scale extends Dklu_internal {
 		return (TRUE) ;
 	}
 
+	/**
+	 * Starts a factorization with static pivoting: clears Common.npert and
+	 * sets Common.pert to sqrt (eps) times the largest entry of the scaled
+	 * matrix.  Does nothing if Common.static_pivot is FALSE.
+	 *
+	 * @param scale 0: none, 1: sum, 2: max
+	 * @param n
+	 * @param Ap size n+1, column pointers
+	 * @param Ai size nz, row indices
+	 * @param Ax size nz, numerical values
+	 * @param Rs size n, scale factors from klu_scale, in the original row
+	 * order.  Not accessed if scale <= 0.
+	 * @param Common
+	 */
+	public static void klu_static_init(int scale, int n, int[] Ap, int[] Ai,
+			double[] Ax, double[] Rs, KLU_common Common)
+	{
+		double anorm, a ;
+		int p, nz ;
+
+		Common.npert = 0 ;
+		if (Common.static_pivot == FALSE)
+		{
+			Common.pert = EMPTY ;
+			return ;
+		}
+		anorm = 0 ;
+		nz = Ap [n] ;
+		for (p = 0 ; p < nz ; p++)
+		{
+			a = ABS (Ax [p]) ;
+			if (scale > 0)
+			{
+				a /= Rs [Ai [p]] ;
+			}
+			anorm = MAX (anorm, a) ;
+		}
+		/* an all-zero matrix is perturbed to sqrt (eps) * I */
+		Common.pert = Math.sqrt (DBL_EPSILON) * ((anorm > 0) ? anorm : 1) ;
+	}
+
 }
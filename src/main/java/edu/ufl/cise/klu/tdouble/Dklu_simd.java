@@ -0,0 +1,113 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+/**
+ * Small dense kernels used in the inner loops of the solves, of klu_scale
+ * and of the supernodal routines.  This is the portable scalar version.  The
+ * jar is a multi-release jar: on Java 21 and later this class is replaced by
+ * the one in src/main/java21, which implements the same kernels with the
+ * Vector API (jdk.incubator.vector) when that module is present, and falls
+ * back to these loops otherwise.  All kernels except klu_vdot give results
+ * identical to the scalar loops.
+ */
+public class Dklu_simd extends Dklu_internal {
+
+	/** TRUE if the kernels use the Vector API */
+	public static final boolean VECTOR = false ;
+
+	/**
+	 * y [0..n-1] -= a * x [0..n-1]
+	 */
+	public static void klu_vsub(int n, double a, double[] x, int x_offset,
+			double[] y, int y_offset)
+	{
+		int i ;
+		for (i = 0 ; i < n ; i++)
+		{
+			//MULT_SUB (y [i], a, x [i]) ;
+			y [y_offset + i] -= a * x [x_offset + i] ;
+		}
+	}
+
+	/**
+	 * y [0..3] -= a * x [0..3], the update of one entry for four
+	 * right-hand-sides.
+	 */
+	public static void klu_vsub4(double a, double[] x, int x_offset,
+			double[] y, int y_offset)
+	{
+		y [y_offset    ] -= a * x [x_offset    ] ;
+		y [y_offset + 1] -= a * x [x_offset + 1] ;
+		y [y_offset + 2] -= a * x [x_offset + 2] ;
+		y [y_offset + 3] -= a * x [x_offset + 3] ;
+	}
+
+	/**
+	 * Returns x [0..n-1]' * y [0..n-1].  The vector version sums in a
+	 * different order.
+	 */
+	public static double klu_vdot(int n, double[] x, int x_offset, double[] y,
+			int y_offset)
+	{
+		double s = 0 ;
+		int i ;
+		for (i = 0 ; i < n ; i++)
+		{
+			s += x [x_offset + i] * y [y_offset + i] ;
+		}
+		return (s) ;
+	}
+
+	/**
+	 * Adds |Ax [p]| to Rs [Ai [p]] (scale == 1), or takes the max of the two
+	 * (scale == 2), for p = p1 to pend-1.  The rows Ai [p1..pend-1] must be
+	 * distinct.
+	 */
+	public static void klu_vrownorm(int scale, int[] Ai, double[] Ax, int p1,
+			int pend, double[] Rs)
+	{
+		double a ;
+		int p, row ;
+		for (p = p1 ; p < pend ; p++)
+		{
+			row = Ai [p] ;
+			//ABS (a, Az [p]) ;
+			a = ABS (Ax [p]) ;
+			if (scale == 1)
+			{
+				/* accumulate the abs. row sum */
+				Rs [row] += a ;
+			}
+			else
+			{
+				/* find the max abs. value in the row */
+				Rs [row] = MAX (Rs [row], a) ;
+			}
+		}
+	}
+
+}
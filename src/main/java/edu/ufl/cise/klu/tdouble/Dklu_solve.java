@@ -31,6 +31,17 @@ import edu.ufl.cise.klu.common.KLU_symbolic;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid;
 import static edu.ufl.cise.klu.tdouble.Dklu.klu_lsolve;
 import static edu.ufl.cise.klu.tdouble.Dklu.klu_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_dag.klu_dag;
+import static edu.ufl.cise.klu.tdouble.Dklu_dag.klu_dag_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.DENSE_MAX;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.klu_dense_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_par_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_par_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_super_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_super_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_simd.klu_vsub4;
 
 /**
  * Solve Ax=b using the symbolic and numeric objects from KLU_analyze
@@ -58,10 +69,10 @@ public class Dklu_solve extends Dklu_internal {
 		double offik, s ;
 		double[] x = new double[4] ;
 		double rs ;
-		double[] Offx, X, Bz, Udiag, Rs ;
-		int[] Q, R, Pnum, Offp, Offi, Lip, Uip, Llen, Ulen ;
-		double[][] LUbx ;
-		int k1, k2, nk, k, block, pend, n, p, nblocks, chunk, nr, i ;
+		double[] Offx, X, Bz, Udiag, Rs, Dw ;
+		int[] Q, R, Pnum, Offp, Offi, Lip, Uip, Llen, Ulen, Srun ;
+		double[][] LUbx, Dinv ;
+		int k1, k2, nk, k, block, pend, n, p, nblocks, chunk, nr, i, dag ;
 
 		/* ---------------------------------------------------------------------- */
 		/* check inputs */
@@ -88,6 +99,7 @@ public class Dklu_solve extends Dklu_internal {
 		nblocks = Symbolic.nblocks ;
 		Q = Symbolic.Q ;
 		R = Symbolic.R ;
+		Srun = Symbolic.Srun ;
 
 		/* ---------------------------------------------------------------------- */
 		/* get the contents of the Numeric object */
@@ -105,12 +117,30 @@ public class Dklu_solve extends Dklu_internal {
 		Ulen = Numeric.Ulen ;
 		LUbx = Numeric.LUbx ;
 		Udiag = Numeric.Udiag ;
+		Dinv = Numeric.Dinv ;
+		Dw = (Dinv != null) ? new double [DENSE_MAX] : null ;
 
 		Rs = Numeric.Rs ;
 		X = Numeric.Xwork ;
 
 		if (!NDEBUG) ASSERT (klu_valid (n, Offp, Offi, Offx)) ;
 
+		/* ---------------------------------------------------------------------- */
+		/* use the block dependency graph if a thread pool is given */
+		/* ---------------------------------------------------------------------- */
+
+		dag = FALSE ;
+		if (Common.executor != null && nblocks > 1)
+		{
+			if (Numeric.Bnpred == null && klu_dag (Symbolic, Numeric, Common) == FALSE)
+			{
+				/* out of memory; solve serially */
+				Common.status = KLU_OK ;
+			}
+			/* a chain of blocks has nothing to run concurrently */
+			dag = (Numeric.Bnpred != null && Numeric.nblevels < nblocks) ? TRUE : FALSE ;
+		}
+
 		/* ---------------------------------------------------------------------- */
 		/* solve in chunks of 4 columns at a time */
 		/* ---------------------------------------------------------------------- */
@@ -244,7 +274,12 @@ public class Dklu_solve extends Dklu_internal {
 			/* solve X = (L*U + Off)\X */
 			/* ------------------------------------------------------------------ */
 
-			for (block = nblocks-1 ; block >= 0 ; block--)
+			if (dag == TRUE)
+			{
+				/* solve independent blocks concurrently */
+				klu_dag_solve (Symbolic, Numeric, nr, X, Common) ;
+			}
+			else for (block = nblocks-1 ; block >= 0 ; block--)
 			{
 
 				/* -------------------------------------------------------------- */
@@ -256,6 +291,15 @@ public class Dklu_solve extends Dklu_internal {
 				nk = k2 - k1 ;
 				PRINTF ("solve %d, k1 %d k2-1 %d nk %d\n", block, k1,k2-1,nk) ;
 
+				if (Srun != null && Srun [block] < block)
+				{
+					/* a run of singleton blocks, solved in one sweep */
+					block = Srun [block] ;
+					singleton_usolve (R [block], k2, Udiag, Offp, Offi,
+							Offx, nr, X) ;
+					continue ;
+				}
+
 				/* solve the block system */
 				if (nk == 1)
 				{
@@ -297,6 +341,39 @@ public class Dklu_solve extends Dklu_internal {
 
 					}
 				}
+				else if (Dinv != null && Dinv [block] != null)
+				{
+					/* tiny block, explicit inverse from klu_factor */
+					klu_dense_solve (nk, Dinv [block], nr, X, nr*k1, Dw) ;
+				}
+				else if (Numeric.Llevp != null && Numeric.Llevp [block] != null)
+				{
+					/* large block, level-scheduled by klu_levels */
+					klu_par_lsolve (Numeric.Lrp [block], Numeric.Lrj [block],
+							Numeric.Lrx [block], Numeric.Llevp [block],
+							Numeric.Llevi [block], nr, X, nr*k1, Common) ;
+					klu_par_usolve (Numeric.Urp [block], Numeric.Urj [block],
+							Numeric.Urx [block], Udiag, k1, Numeric.Ulevp [block],
+							Numeric.Ulevi [block], nr, X, nr*k1, Common) ;
+				}
+				else if (Numeric.Lsb != null)
+				{
+					/* dense panels from klu_supernodes */
+					klu_super_lsolve (Numeric.Lsb [block], Numeric.Lsb [block+1],
+							Numeric.Lsk, Numeric.Lsn, Numeric.Lsip, Numeric.Lsi,
+							Numeric.Lsp, Numeric.Lsx, nr, X, nr*k1) ;
+					klu_super_usolve (Numeric.Usb [block], Numeric.Usb [block+1],
+							Numeric.Usk, Numeric.Usn, Numeric.Usip, Numeric.Usi,
+							Numeric.Usp, Numeric.Usx, nr, X, nr*k1) ;
+				}
+				else if (Numeric.Lp != null)
+				{
+					/* packed copy from klu_pack */
+					klu_pack_lsolve (nk, Numeric.Lp, k1, Numeric.Li,
+							Numeric.Lx, nr, X, nr*k1) ;
+					klu_pack_usolve (nk, Numeric.Up, k1, Numeric.Ui,
+							Numeric.Ux, Numeric.Udinv, k1, nr, X, nr*k1) ;
+				}
 				else
 				{
 					klu_lsolve (nk, Lip, k1, Llen, k1,
@@ -382,14 +459,8 @@ public class Dklu_solve extends Dklu_internal {
 								{
 									i = Offi [p] ;
 									offik = Offx [p] ;
-									//MULT_SUB (X [4*i], offik, x [0]) ;
-									X [4*i] -= offik * x [0] ;
-									//MULT_SUB (X [4*i + 1], offik, x [1]) ;
-									X [4*i + 1] -= offik * x [1] ;
-									//MULT_SUB (X [4*i + 2], offik, x [2]) ;
-									X [4*i + 2] -= offik * x [2] ;
-									//MULT_SUB (X [4*i + 3], offik, x [3]) ;
-									X [4*i + 3] -= offik * x [3] ;
+									//MULT_SUB (X [4*i..4*i+3], offik, x [0..3]) ;
+									klu_vsub4 (offik, x, 0, X, 4*i) ;
 								}
 							}
 							break ;
@@ -455,4 +526,63 @@ public class Dklu_solve extends Dklu_internal {
 		return (TRUE) ;
 	}
 
+	/**
+	 * Solves a run of singleton blocks, columns k1 to k2-1, with one
+	 * backward sweep over the upper triangular matrix formed by the
+	 * singletons and the off-diagonal entries in those columns.  Each x (k)
+	 * is divided by its singleton and then removed from the right-hand-side
+	 * with column k of Off, in the same order as the block-by-block solve.
+	 *
+	 * @param k1 first column of the run
+	 * @param k2 last column of the run, plus one
+	 * @param Udiag size n, the singletons
+	 * @param Offp off-diagonal matrix
+	 * @param Offi
+	 * @param Offx
+	 * @param nr number of right-hand-sides
+	 * @param X size n*nr, in row form with row dimension nr
+	 */
+	protected static void singleton_usolve(int k1, int k2, double[] Udiag,
+			int[] Offp, int[] Offi, double[] Offx, int nr, double[] X)
+	{
+		double xk, s, offik ;
+		int k, p, pend, i, c ;
+
+		if (nr == 1)
+		{
+			for (k = k2-1 ; k >= k1 ; k--)
+			{
+				xk = X [k] / Udiag [k] ;
+				X [k] = xk ;
+				pend = Offp [k+1] ;
+				for (p = Offp [k] ; p < pend ; p++)
+				{
+					//MULT_SUB (X [Offi [p]], Offx [p], xk) ;
+					X [Offi [p]] -= Offx [p] * xk ;
+				}
+			}
+		}
+		else
+		{
+			for (k = k2-1 ; k >= k1 ; k--)
+			{
+				s = Udiag [k] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					X [nr*k + c] = X [nr*k + c] / s ;
+				}
+				pend = Offp [k+1] ;
+				for (p = Offp [k] ; p < pend ; p++)
+				{
+					i = Offi [p] ;
+					offik = Offx [p] ;
+					for (c = 0 ; c < nr ; c++)
+					{
+						X [nr*i + c] -= offik * X [nr*k + c] ;
+					}
+				}
+			}
+		}
+	}
+
 }
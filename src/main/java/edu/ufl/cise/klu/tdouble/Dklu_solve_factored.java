@@ -0,0 +1,313 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu.klu_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.DENSE_MAX;
+import static edu.ufl.cise.klu.tdouble.Dklu_dense.klu_dense_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_par_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_par_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_usolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_super_lsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_super_usolve;
+
+/**
+ * Solve in the ordering of the factors.  klu_solve computes
+ * x = Q*((L*U + Off)\(P*(R\b))), gathering b into Numeric.Xwork and
+ * scattering the result back on every call.  When the factorization is
+ * applied many times, as a preconditioner in an iterative method, the
+ * vectors can instead be kept permuted: klu_permute_in computes
+ * P*(R\b) once, klu_solve_factored solves with L*U + Off in place, and
+ * klu_permute_out applies Q to get x.  The row scaling is applied by
+ * multiplying with 1/Rs, kept in Numeric.Rsinv.
+ */
+public class Dklu_solve_factored extends Dklu_internal {
+
+	/**
+	 * Permutes and scales B into the ordering of the factors, X = P*(R\B).
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param d leading dimension of B and X
+	 * @param nrhs number of right-hand-sides
+	 * @param B size n*nrhs, in column-oriented form, with leading dimension d
+	 * @param X output, in the same form as B
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_permute_in(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			int d, int nrhs, double[] B, int B_offset, double[] X, int X_offset,
+			KLU_common Common)
+	{
+		double[] Rsinv ;
+		int[] Pnum ;
+		int n, k, c, xo, bo ;
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Numeric == null || Symbolic == null || d < Symbolic.n || nrhs < 0 ||
+			B == null || X == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+
+		n = Symbolic.n ;
+		Pnum = Numeric.Pnum ;
+		if (Numeric.Rs != null && Numeric.Rsinv == null)
+		{
+			Numeric.Rsinv = klu_malloc_dbl (n, Common) ;
+			if (Common.status < KLU_OK)
+			{
+				Numeric.Rsinv = null ;
+				return (FALSE) ;
+			}
+			klu_rsinv_update (Numeric) ;
+		}
+		Rsinv = (Numeric.Rs == null) ? null : Numeric.Rsinv ;
+
+		for (c = 0 ; c < nrhs ; c++)
+		{
+			xo = X_offset + d*c ;
+			bo = B_offset + d*c ;
+			if (Rsinv == null)
+			{
+				for (k = 0 ; k < n ; k++)
+				{
+					X [xo + k] = B [bo + Pnum [k]] ;
+				}
+			}
+			else
+			{
+				for (k = 0 ; k < n ; k++)
+				{
+					X [xo + k] = B [bo + Pnum [k]] * Rsinv [k] ;
+				}
+			}
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Permutes X out of the ordering of the factors, B = Q*X.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param d leading dimension of X and B
+	 * @param nrhs number of right-hand-sides
+	 * @param X size n*nrhs, in column-oriented form, with leading dimension d
+	 * @param B output, in the same form as X
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_permute_out(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int d, int nrhs, double[] X, int X_offset,
+			double[] B, int B_offset, KLU_common Common)
+	{
+		int[] Q ;
+		int n, k, c, xo, bo ;
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Numeric == null || Symbolic == null || d < Symbolic.n || nrhs < 0 ||
+			B == null || X == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+
+		n = Symbolic.n ;
+		Q = Symbolic.Q ;
+		for (c = 0 ; c < nrhs ; c++)
+		{
+			xo = X_offset + d*c ;
+			bo = B_offset + d*c ;
+			for (k = 0 ; k < n ; k++)
+			{
+				B [bo + Q [k]] = X [xo + k] ;
+			}
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Solves (L*U + Off) x = b in place, for b already in the ordering of the
+	 * factors (from klu_permute_in).  Uses the same copies of the factors as
+	 * klu_solve, if any were built, but no workspace.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param d leading dimension of X
+	 * @param nrhs number of right-hand-sides
+	 * @param X right-hand-side on input, solution on output.  Size n*nrhs,
+	 * in column-oriented form, with leading dimension d.
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_solve_factored(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int d, int nrhs, double[] X, int X_offset,
+			KLU_common Common)
+	{
+		double xk ;
+		double[] Offx, Udiag, Dw ;
+		int[] R, Offp, Offi ;
+		int nblocks, block, k1, k2, nk, k, p, pend, c, xo ;
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Numeric == null || Symbolic == null || d < Symbolic.n || nrhs < 0 ||
+			X == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+
+		nblocks = Symbolic.nblocks ;
+		R = Symbolic.R ;
+		Offp = Numeric.Offp ;
+		Offi = Numeric.Offi ;
+		Offx = Numeric.Offx ;
+		Udiag = Numeric.Udiag ;
+		Dw = (Numeric.Dinv != null) ? new double [DENSE_MAX] : null ;
+
+		for (c = 0 ; c < nrhs ; c++)
+		{
+			xo = X_offset + d*c ;
+			for (block = nblocks-1 ; block >= 0 ; block--)
+			{
+				k1 = R [block] ;
+				k2 = R [block+1] ;
+				nk = k2 - k1 ;
+
+				/* ---------------------------------------------------------- */
+				/* solve the block system */
+				/* ---------------------------------------------------------- */
+
+				if (nk == 1)
+				{
+					//DIV (X [k1], X [k1], Udiag [k1]) ;
+					X [xo + k1] = X [xo + k1] / Udiag [k1] ;
+				}
+				else if (Numeric.Dinv != null && Numeric.Dinv [block] != null)
+				{
+					klu_dense_solve (nk, Numeric.Dinv [block], 1, X, xo + k1,
+							Dw) ;
+				}
+				else if (Numeric.Llevp != null && Numeric.Llevp [block] != null)
+				{
+					klu_par_lsolve (Numeric.Lrp [block], Numeric.Lrj [block],
+							Numeric.Lrx [block], Numeric.Llevp [block],
+							Numeric.Llevi [block], 1, X, xo + k1, Common) ;
+					klu_par_usolve (Numeric.Urp [block], Numeric.Urj [block],
+							Numeric.Urx [block], Udiag, k1, Numeric.Ulevp [block],
+							Numeric.Ulevi [block], 1, X, xo + k1, Common) ;
+				}
+				else if (Numeric.Lsb != null)
+				{
+					klu_super_lsolve (Numeric.Lsb [block], Numeric.Lsb [block+1],
+							Numeric.Lsk, Numeric.Lsn, Numeric.Lsip, Numeric.Lsi,
+							Numeric.Lsp, Numeric.Lsx, 1, X, xo + k1) ;
+					klu_super_usolve (Numeric.Usb [block], Numeric.Usb [block+1],
+							Numeric.Usk, Numeric.Usn, Numeric.Usip, Numeric.Usi,
+							Numeric.Usp, Numeric.Usx, 1, X, xo + k1) ;
+				}
+				else if (Numeric.Lp != null)
+				{
+					klu_pack_lsolve (nk, Numeric.Lp, k1, Numeric.Li, Numeric.Lx,
+							1, X, xo + k1) ;
+					klu_pack_usolve (nk, Numeric.Up, k1, Numeric.Ui, Numeric.Ux,
+							Numeric.Udinv, k1, 1, X, xo + k1) ;
+				}
+				else
+				{
+					klu_lsolve (nk, Numeric.Lip, k1, Numeric.Llen, k1,
+							Numeric.LUbx [block], 1, X, xo + k1) ;
+					klu_usolve (nk, Numeric.Uip, k1, Numeric.Ulen, k1,
+							Numeric.LUbx [block], Udiag, k1, 1, X, xo + k1) ;
+				}
+
+				/* ---------------------------------------------------------- */
+				/* block back-substitution for the off-diagonal-block entries */
+				/* ---------------------------------------------------------- */
+
+				if (block > 0)
+				{
+					for (k = k1 ; k < k2 ; k++)
+					{
+						pend = Offp [k+1] ;
+						xk = X [xo + k] ;
+						for (p = Offp [k] ; p < pend ; p++)
+						{
+							//MULT_SUB (X [Offi [p]], Offx [p], xk) ;
+							X [xo + Offi [p]] -= Offx [p] * xk ;
+						}
+					}
+				}
+			}
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Recomputes Numeric.Rsinv from Numeric.Rs, after the matrix has been
+	 * refactorized.  Does nothing if Rsinv was never computed.
+	 *
+	 * @param Numeric
+	 */
+	public static void klu_rsinv_update(KLU_numeric Numeric)
+	{
+		double[] Rs, Rsinv ;
+		int k ;
+
+		Rs = Numeric.Rs ;
+		Rsinv = Numeric.Rsinv ;
+		if (Rs == null || Rsinv == null)
+		{
+			return ;
+		}
+		for (k = 0 ; k < Rsinv.length ; k++)
+		{
+			Rsinv [k] = 1 / Rs [k] ;
+		}
+	}
+
+}
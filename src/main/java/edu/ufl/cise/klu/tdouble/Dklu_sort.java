@@ -31,6 +31,8 @@ import edu.ufl.cise.klu.common.KLU_symbolic;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid_LU;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
 import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_rows_remap;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack;
 
 /**
  * Sorts the columns of L and U so that the row indices appear in strictly
@@ -52,7 +54,7 @@ public class Dklu_sort extends Dklu_internal {
 		int[] Xi_offset = new int[1] ;
 		int[] Xx_offset = new int[1] ;
 
-		ASSERT (klu_valid_LU (n, FALSE, Xip, Xip_offset, Xlen, Xlen_offset, LU)) ;
+		if (!NDEBUG) ASSERT (klu_valid_LU (n, FALSE, Xip, Xip_offset, Xlen, Xlen_offset, LU)) ;
 
 		/* count the number of entries in each row of L or U */
 		for (i = 0 ; i < n ; i++)
@@ -111,7 +113,7 @@ public class Dklu_sort extends Dklu_internal {
 			}
 		}
 
-		ASSERT (klu_valid_LU (n, FALSE, Xip, Xip_offset, Xlen, Xlen_offset, LU)) ;
+		if (!NDEBUG) ASSERT (klu_valid_LU (n, FALSE, Xip, Xip_offset, Xlen, Xlen_offset, LU)) ;
 	}
 
 
@@ -169,6 +171,18 @@ public class Dklu_sort extends Dklu_internal {
 
 		PRINTF ("\n======================= sort done.\n") ;
 
+		/* the row form of L and U refers to the old positions; update it */
+		if (Common.status == KLU_OK)
+		{
+			klu_rows_remap (Symbolic, Numeric, Common) ;
+		}
+
+		/* the packed copy of L and U is in the old order; repack it */
+		if (Common.status == KLU_OK && Numeric.Lp != null)
+		{
+			klu_pack (Symbolic, Numeric, Common) ;
+		}
+
 		/* free workspace */
 		//KLU_free (W, maxblock, sizeof (Int), Common) ;
 		W = null;
@@ -0,0 +1,298 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_simd.klu_vdot;
+
+/**
+ * Supernodal variant of the left-looking kernel.  As each column of L is
+ * computed, it is compared with the previous one; consecutive columns j-1
+ * and j with L(:,j-1) = {P[j]} + L(:,j) form a supernode, and a copy of the
+ * supernode is kept as a dense row-major panel.  The numerical solve with L
+ * then applies all the columns of a supernode that are in the pattern of x
+ * at once, when the last of them is reached in the topological order: a
+ * small dense triangular solve, followed by one dot product per row below
+ * it.  This is valid since every column that depends on a column of a
+ * supernode also depends on the last column of that supernode.  Pivots are
+ * still chosen one column at a time by lpivot, with the usual threshold
+ * partial pivoting.  No user-callable routines are in this file.
+ */
+public class Dklu_super_kernel extends Dklu_internal {
+
+	/**
+	 * Computes the numerical values of x, for the solution of Lx=b, like
+	 * lsolve_numeric, but with the columns of each supernode applied as a
+	 * dense block.
+	 *
+	 * @param Pinv Pinv[i] = k if i is kth pivot row, or EMPTY if row i
+	 * is not yet pivotal.
+	 * @param P P[j] is the pivot row of column j, for j < k
+	 * @param LU LU factors (pattern and values)
+	 * @param Stack stack for dfs
+	 * @param Lip size n, Lip[k] is position in LU of column k of L
+	 * @param top top of stack on input
+	 * @param n A is n-by-n
+	 * @param Llen size n, Llen[k] = # nonzeros in column k of L
+	 * @param X size n, initially zero.  On output,
+	 * X[Ui[up1..up-1]] and X[Li[lp1..lp-1]] contains the solution.
+	 * @param k the column being computed, also the mark value of Flag
+	 * @param Flag Flag[i] == k if row i is in the pattern of x
+	 * @param Super Super[j] is the supernode containing column j
+	 * @param Sfirst first column of each supernode
+	 * @param Slast last column of each supernode
+	 * @param Sw row stride of each panel
+	 * @param Sri rows of each supernode, or null if it has no panel
+	 * @param Spx panel of each supernode, or null
+	 * @param xs size n workspace
+	 */
+	public static void super_lsolve_numeric(int[] Pinv, int[] P, double[] LU,
+			int[] Stack, int[] Lip, int Lip_offset, int top, int n,
+			int[] Llen, int Llen_offset, double[] X, int k, int[] Flag,
+			int[] Super, int[] Sfirst, int[] Slast, int[] Sw, int[][] Sri,
+			double[][] Spx, double[] xs)
+	{
+		double xj ;
+		double[] Lx, Px ;
+		/*int[]*/double[] Li ;
+		int[] R ;
+		int p, s, j, jnew, sn, f, a, b, jj, q, w, ld, i, pq ;
+		int[] len = new int[1] ;
+		int[] Li_offset = new int [1] ;
+		int[] Lx_offset = new int [1] ;
+
+		for (s = top ; s < n ; s++)
+		{
+			j = Stack [s] ;
+			jnew = Pinv [j] ;
+			ASSERT (jnew >= 0) ;
+			sn = Super [jnew] ;
+
+			if (Spx [sn] == null)
+			{
+				/* forward solve with column j of L */
+				xj = X [j] ;
+				Li = Lx = GET_POINTER (LU, Lip, Lip_offset, Llen, Llen_offset,
+						Li_offset, Lx_offset, jnew, len) ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					//MULT_SUB (X [Li [p]], Lx [p], xj) ;
+					X [(int) Li [Li_offset[0] + p]] -= Lx [Lx_offset[0] + p] * xj ;
+				}
+				continue ;
+			}
+			if (jnew != Slast [sn])
+			{
+				/* deferred until the last column of the supernode */
+				continue ;
+			}
+
+			/* the columns of the supernode in the pattern of x are a suffix
+			 * f+a ... f+b of it */
+			f = Sfirst [sn] ;
+			b = jnew - f ;
+			a = b ;
+			while (a > 0 && Flag [P [f+a-1]] == k)
+			{
+				a-- ;
+			}
+			R = Sri [sn] ;
+			Px = Spx [sn] ;
+			w = Sw [sn] ;
+			ld = R.length ;
+
+			/* dense unit lower triangular solve.  R [q] is the pivot row of
+			 * column f+q+1, for q < b */
+			for (jj = a ; jj <= b ; jj++)
+			{
+				xj = X [P [f+jj]] ;
+				xs [jj] = xj ;
+				for (q = jj ; q < b ; q++)
+				{
+					X [R [q]] -= Px [q*w + jj] * xj ;
+				}
+			}
+
+			/* update the rows below the supernode, one row at a time */
+			for (q = b ; q < ld ; q++)
+			{
+				i = R [q] ;
+				pq = q*w ;
+				X [i] -= klu_vdot (b-a+1, Px, pq + a, xs, a) ;
+			}
+		}
+	}
+
+	/**
+	 * Adds column k of L, just computed, to the supernode of column k-1 if
+	 * it has the same pattern, or starts a new supernode with it.
+	 *
+	 * @param k the column of L, with pivot row P[k]
+	 * @param P pivot rows of columns 0 to k
+	 * @param LU LU factors (pattern and values)
+	 * @param Lip size n, Lip[k] is position in LU of column k of L
+	 * @param Llen size n, Llen[k] = # nonzeros in column k of L
+	 * @param Super Super[j] is the supernode containing column j
+	 * @param Sfirst first column of each supernode
+	 * @param Slast last column of each supernode
+	 * @param Sw row stride of each panel
+	 * @param Sri rows of each supernode, or null if it has no panel
+	 * @param Spx panel of each supernode, or null
+	 * @param Rpos Rpos[i] is the position of row i in its supernode
+	 * @param Rmark Rmark[i] is the last supernode that contains row i
+	 * @param nsuper # of supernodes so far
+	 * @return # of supernodes including column k
+	 */
+	public static int super_column(int k, int[] P, double[] LU, int[] Lip,
+			int Lip_offset, int[] Llen, int Llen_offset, int[] Super,
+			int[] Sfirst, int[] Slast, int[] Sw, int[][] Sri, double[][] Spx,
+			int[] Rpos, int[] Rmark, int nsuper)
+	{
+		double x ;
+		double[] Lx, Px, Pnew ;
+		/*int[]*/double[] Li ;
+		int[] R ;
+		int p, i, sn, ns, ld, w, q, r, c, join, lk ;
+		int[] len = new int[1] ;
+		int[] Li_offset = new int [1] ;
+		int[] Lx_offset = new int [1] ;
+
+		Li = Lx = GET_POINTER (LU, Lip, Lip_offset, Llen, Llen_offset,
+				Li_offset, Lx_offset, k, len) ;
+		lk = len[0] ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check if L (:,k-1) = {P [k]} + L (:,k) */
+		/* ---------------------------------------------------------------------- */
+
+		sn = nsuper - 1 ;
+		join = FALSE ;
+		if (sn >= 0 && Spx [sn] != null)
+		{
+			ASSERT (Slast [sn] == k-1) ;
+			ns = k - Sfirst [sn] ;
+			ld = Sri [sn].length ;
+			if (lk == ld - ns && Rmark [P [k]] == sn && Rpos [P [k]] >= ns-1)
+			{
+				join = TRUE ;
+				for (p = 0 ; p < lk && join != 0 ; p++)
+				{
+					i = (int) Li [Li_offset[0] + p] ;
+					if (Rmark [i] != sn || Rpos [i] < ns-1)
+					{
+						join = FALSE ;
+					}
+				}
+			}
+		}
+
+		if (join == 0)
+		{
+			/* -------------------------------------------------------------- */
+			/* start a new supernode with column k */
+			/* -------------------------------------------------------------- */
+
+			sn = nsuper++ ;
+			Sfirst [sn] = k ;
+			Slast [sn] = k ;
+			Super [k] = sn ;
+			if (lk == 0)
+			{
+				/* nothing below the diagonal; the column stays sparse */
+				Sri [sn] = null ;
+				Spx [sn] = null ;
+				return (nsuper) ;
+			}
+			w = MIN (4, lk + 1) ;
+			R = new int [lk] ;
+			Px = new double [lk * w] ;
+			for (p = 0 ; p < lk ; p++)
+			{
+				i = (int) Li [Li_offset[0] + p] ;
+				R [p] = i ;
+				Rpos [i] = p ;
+				Rmark [i] = sn ;
+				Px [p*w] = Lx [Lx_offset[0] + p] ;
+			}
+			Sw [sn] = w ;
+			Sri [sn] = R ;
+			Spx [sn] = Px ;
+			return (nsuper) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* add column k to supernode sn, as its column ns */
+		/* ---------------------------------------------------------------------- */
+
+		R = Sri [sn] ;
+		Px = Spx [sn] ;
+		w = Sw [sn] ;
+		ld = R.length ;
+		ns = k - Sfirst [sn] ;
+
+		if (ns >= w)
+		{
+			/* widen the panel */
+			c = MIN (2*w, ld + 1) ;
+			Pnew = new double [ld * c] ;
+			for (q = 0 ; q < ld ; q++)
+			{
+				System.arraycopy (Px, q*w, Pnew, q*c, ns) ;
+			}
+			Px = Pnew ;
+			w = c ;
+			Sw [sn] = w ;
+			Spx [sn] = Px ;
+		}
+
+		/* move the pivot row of column k to position ns-1, so that the rows
+		 * of the triangular part come first */
+		q = Rpos [P [k]] ;
+		r = ns - 1 ;
+		if (q != r)
+		{
+			i = R [r] ;
+			R [r] = R [q] ;
+			R [q] = i ;
+			Rpos [R [r]] = r ;
+			Rpos [R [q]] = q ;
+			for (c = 0 ; c < ns ; c++)
+			{
+				x = Px [r*w + c] ;
+				Px [r*w + c] = Px [q*w + c] ;
+				Px [q*w + c] = x ;
+			}
+		}
+
+		for (p = 0 ; p < lk ; p++)
+		{
+			Px [Rpos [(int) Li [Li_offset[0] + p]] * w + ns] = Lx [Lx_offset[0] + p] ;
+		}
+		Slast [sn] = k ;
+		Super [k] = sn ;
+		return (nsuper) ;
+	}
+
+}
@@ -0,0 +1,557 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_simd.klu_vsub;
+
+/**
+ * Supernodal triangular solves.
+ *
+ * klu_supernodes finds runs of consecutive columns of L with a dense
+ * diagonal block and identical structure below it, and likewise for U,
+ * and copies each run into a dense panel.  klu_solve then solves with the
+ * diagonal block of each panel by a small dense triangular solve, and
+ * applies the rest of the panel one row at a time, accumulating all of the
+ * row's updates in a register before storing it.  This replaces one index
+ * load and one load/store of X per entry with one per row of the panel.
+ * The updates reach each entry of X in the same order as in klu_lsolve and
+ * klu_usolve, so the result is identical.  klu_refactor keeps the panels up
+ * to date.
+ */
+public class Dklu_supernodes extends Dklu_internal {
+
+	/**
+	 * Finds the supernodes of L or U of one block.
+	 *
+	 * @param nk the block is nk-by-nk
+	 * @param Xip column pointers of L or U, into LU
+	 * @param Xlen column lengths of L or U
+	 * @param LU LU factors of the block
+	 * @param lower TRUE for L, FALSE for U
+	 * @param Mark size nk workspace
+	 * @param Sk first column of each supernode found, on output
+	 * @param Sn # of columns of each supernode found, on output
+	 * @param nsuper # of supernodes already found in earlier blocks
+	 * @return # of supernodes found, including earlier blocks
+	 */
+	protected static int find(int nk, int[] Xip, int Xip_offset, int[] Xlen,
+			int Xlen_offset, double[] LU, int lower, int[] Mark,
+			int[] Sk, int[] Sn, int nsuper)
+	{
+		/*int[]*/double[] Xi ;
+		int c, p, join ;
+		int[] len = new int[1] ;
+		int[] Xi_offset = new int[1] ;
+		int[] Xx_offset = new int[1] ;
+
+		for (c = 0 ; c < nk ; c++)
+		{
+			Mark [c] = EMPTY ;
+		}
+		for (c = 0 ; c < nk ; c++)
+		{
+			join = FALSE ;
+			if (lower != 0)
+			{
+				/* Mark holds the rows of column c-1.  Join if
+				 * L (:,c-1) = {c} + L (:,c) */
+				if (c > 0 && Xlen [Xlen_offset + c-1] == Xlen [Xlen_offset + c] + 1
+					&& Mark [c] == c-1)
+				{
+					join = TRUE ;
+				}
+				Xi = GET_POINTER (LU, Xip, Xip_offset, Xlen, Xlen_offset,
+						Xi_offset, Xx_offset, c, len) ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					if (Mark [(int) Xi [Xi_offset[0] + p]] != c-1)
+					{
+						join = FALSE ;
+					}
+					Mark [(int) Xi [Xi_offset[0] + p]] = c ;
+				}
+			}
+			else
+			{
+				/* join if U (:,c) = U (:,c-1) + {c-1} */
+				Xi = GET_POINTER (LU, Xip, Xip_offset, Xlen, Xlen_offset,
+						Xi_offset, Xx_offset, c, len) ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					Mark [(int) Xi [Xi_offset[0] + p]] = c ;
+				}
+				if (c > 0 && Xlen [Xlen_offset + c] == Xlen [Xlen_offset + c-1] + 1
+					&& Mark [c-1] == c)
+				{
+					join = TRUE ;
+					Xi = GET_POINTER (LU, Xip, Xip_offset, Xlen, Xlen_offset,
+							Xi_offset, Xx_offset, c-1, len) ;
+					for (p = 0 ; p < len[0] ; p++)
+					{
+						if (Mark [(int) Xi [Xi_offset[0] + p]] != c)
+						{
+							join = FALSE ;
+						}
+					}
+				}
+			}
+			if (join != 0)
+			{
+				Sn [nsuper-1]++ ;
+			}
+			else
+			{
+				Sk [nsuper] = c ;
+				Sn [nsuper] = 1 ;
+				nsuper++ ;
+			}
+		}
+		return (nsuper) ;
+	}
+
+	/**
+	 * Copies L or U of one block into its panels.
+	 *
+	 * @param Xip column pointers of L or U, into LU
+	 * @param Xlen column lengths of L or U
+	 * @param LU LU factors of the block
+	 * @param Udiag diagonal of U, or null for L
+	 * @param s1 first supernode of the block
+	 * @param s2 last supernode of the block, plus one
+	 * @param Sk first column of each supernode
+	 * @param Sn # of columns of each supernode
+	 * @param Sip row pointers of each supernode
+	 * @param Si row indices, computed if pattern is TRUE
+	 * @param Sp panel pointers
+	 * @param Sx panels, on output
+	 * @param pattern TRUE to compute Si as well
+	 * @param Pos size nk workspace
+	 */
+	protected static void fill(int[] Xip, int Xip_offset, int[] Xlen,
+			int Xlen_offset, double[] LU, double[] Udiag, int Udiag_offset,
+			int s1, int s2, int[] Sk, int[] Sn, int[] Sip, int[] Si, int[] Sp,
+			double[] Sx, int pattern, int[] Pos)
+	{
+		/*int[]*/double[] Xi ;
+		double[] Xx ;
+		int s, f, ns, m, px, pi, r, j, c, p, pos ;
+		int[] len = new int[1] ;
+		int[] Xi_offset = new int[1] ;
+		int[] Xx_offset = new int[1] ;
+
+		for (s = s1 ; s < s2 ; s++)
+		{
+			f = Sk [s] ;
+			ns = Sn [s] ;
+			pi = Sip [s] ;
+			m = Sip [s+1] - pi ;
+			px = Sp [s] ;
+
+			/* the rows off the diagonal block are those of the last column of
+			 * L, or of the first column of U */
+			if (pattern != 0)
+			{
+				c = (Udiag == null) ? f + ns - 1 : f ;
+				Xi = GET_POINTER (LU, Xip, Xip_offset, Xlen, Xlen_offset,
+						Xi_offset, Xx_offset, c, len) ;
+				for (p = 0 ; p < m ; p++)
+				{
+					Si [pi + p] = (int) Xi [Xi_offset[0] + p] ;
+				}
+			}
+			for (r = 0 ; r < ns ; r++)
+			{
+				Pos [f + r] = r ;
+			}
+			for (r = 0 ; r < m ; r++)
+			{
+				Pos [Si [pi + r]] = ns + r ;
+			}
+
+			for (j = 0 ; j < ns ; j++)
+			{
+				c = f + j ;
+				Sx [px + j*ns + j] = (Udiag == null) ? 1 : Udiag [Udiag_offset + c] ;
+				Xi = Xx = GET_POINTER (LU, Xip, Xip_offset, Xlen, Xlen_offset,
+						Xi_offset, Xx_offset, c, len) ;
+				for (p = 0 ; p < len[0] ; p++)
+				{
+					pos = Pos [(int) Xi [Xi_offset[0] + p]] ;
+					if (pos < ns)
+					{
+						Sx [px + j*ns + pos] = Xx [Xx_offset[0] + p] ;
+					}
+					else
+					{
+						Sx [px + ns*ns + (pos-ns)*ns + j] = Xx [Xx_offset[0] + p] ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the supernodes of L and U of every block and copies them into
+	 * dense panels, for use by klu_solve.  Any previous supernodes are
+	 * replaced.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_supernodes(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			KLU_common Common)
+	{
+		int[] R, Lsb, Lsk, Lsn, Lsip, Lsp, Usb, Usk, Usn, Usip, Usp, Mark,
+			Tk, Tn ;
+		int n, nblocks, block, k1, nk, s, nl, nu, lrows, urows, lsize, usize,
+			ns, m ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Symbolic == null || Numeric == null)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		Common.status = KLU_OK ;
+		klu_free_supernodes (Numeric) ;
+
+		n = Symbolic.n ;
+		nblocks = Symbolic.nblocks ;
+		R = Symbolic.R ;
+
+		Lsb = klu_malloc_int (nblocks+1, Common) ;
+		Usb = klu_malloc_int (nblocks+1, Common) ;
+		Tk = klu_malloc_int (2*n, Common) ;
+		Tn = klu_malloc_int (2*n, Common) ;
+		Mark = klu_malloc_int (Symbolic.maxblock, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* find the supernodes; those of L in Tk [0..n-1], of U in Tk [n..] */
+		/* ---------------------------------------------------------------------- */
+
+		nl = 0 ;
+		nu = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			nk = R [block+1] - k1 ;
+			Lsb [block] = nl ;
+			Usb [block] = nu ;
+			if (nk == 1)
+			{
+				continue ;
+			}
+			nl = find (nk, Numeric.Lip, k1, Numeric.Llen, k1,
+					Numeric.LUbx [block], TRUE, Mark, Tk, Tn, nl) ;
+			nu = find (nk, Numeric.Uip, k1, Numeric.Ulen, k1,
+					Numeric.LUbx [block], FALSE, Mark, Tk, Tn, n + nu) - n ;
+		}
+		Lsb [nblocks] = nl ;
+		Usb [nblocks] = nu ;
+
+		Lsk = klu_malloc_int (nl, Common) ;
+		Lsn = klu_malloc_int (nl, Common) ;
+		Lsip = klu_malloc_int (nl+1, Common) ;
+		Lsp = klu_malloc_int (nl+1, Common) ;
+		Usk = klu_malloc_int (nu, Common) ;
+		Usn = klu_malloc_int (nu, Common) ;
+		Usip = klu_malloc_int (nu+1, Common) ;
+		Usp = klu_malloc_int (nu+1, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			return (FALSE) ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* size of each panel */
+		/* ---------------------------------------------------------------------- */
+
+		lrows = 0 ;
+		lsize = 0 ;
+		urows = 0 ;
+		usize = 0 ;
+		for (block = 0 ; block < nblocks ; block++)
+		{
+			k1 = R [block] ;
+			for (s = Lsb [block] ; s < Lsb [block+1] ; s++)
+			{
+				Lsk [s] = Tk [s] ;
+				Lsn [s] = ns = Tn [s] ;
+				m = Numeric.Llen [k1 + Lsk [s] + ns - 1] ;
+				Lsip [s] = lrows ;
+				Lsp [s] = lsize ;
+				lrows += m ;
+				lsize += ns * (ns + m) ;
+			}
+			for (s = Usb [block] ; s < Usb [block+1] ; s++)
+			{
+				Usk [s] = Tk [n + s] ;
+				Usn [s] = ns = Tn [n + s] ;
+				m = Numeric.Ulen [k1 + Usk [s]] ;
+				Usip [s] = urows ;
+				Usp [s] = usize ;
+				urows += m ;
+				usize += ns * (ns + m) ;
+			}
+		}
+		Lsip [nl] = lrows ;
+		Lsp [nl] = lsize ;
+		Usip [nu] = urows ;
+		Usp [nu] = usize ;
+
+		/* ---------------------------------------------------------------------- */
+		/* allocate and fill the panels */
+		/* ---------------------------------------------------------------------- */
+
+		Numeric.Lsi = klu_malloc_int (lrows, Common) ;
+		Numeric.Lsx = klu_malloc_dbl (lsize, Common) ;
+		Numeric.Usi = klu_malloc_int (urows, Common) ;
+		Numeric.Usx = klu_malloc_dbl (usize, Common) ;
+		if (Common.status < KLU_OK)
+		{
+			klu_free_supernodes (Numeric) ;
+			return (FALSE) ;
+		}
+		Numeric.Lsb = Lsb ;
+		Numeric.Lsk = Lsk ;
+		Numeric.Lsn = Lsn ;
+		Numeric.Lsip = Lsip ;
+		Numeric.Lsp = Lsp ;
+		Numeric.Usb = Usb ;
+		Numeric.Usk = Usk ;
+		Numeric.Usn = Usn ;
+		Numeric.Usip = Usip ;
+		Numeric.Usp = Usp ;
+		panels (Symbolic, Numeric, TRUE, Mark) ;
+
+		PRINTF ("supernodes: L %d U %d, n %d\n", nl, nu, n) ;
+		return (TRUE) ;
+	}
+
+	protected static void panels(KLU_symbolic Symbolic, KLU_numeric Numeric,
+			int pattern, int[] Pos)
+	{
+		int[] R ;
+		int block, k1 ;
+
+		R = Symbolic.R ;
+		for (block = 0 ; block < Symbolic.nblocks ; block++)
+		{
+			k1 = R [block] ;
+			fill (Numeric.Lip, k1, Numeric.Llen, k1, Numeric.LUbx [block],
+					null, 0, Numeric.Lsb [block], Numeric.Lsb [block+1],
+					Numeric.Lsk, Numeric.Lsn, Numeric.Lsip, Numeric.Lsi,
+					Numeric.Lsp, Numeric.Lsx, pattern, Pos) ;
+			fill (Numeric.Uip, k1, Numeric.Ulen, k1, Numeric.LUbx [block],
+					Numeric.Udiag, k1, Numeric.Usb [block], Numeric.Usb [block+1],
+					Numeric.Usk, Numeric.Usn, Numeric.Usip, Numeric.Usi,
+					Numeric.Usp, Numeric.Usx, pattern, Pos) ;
+		}
+	}
+
+	/**
+	 * Copies the numerical values of L and U into the panels, after the
+	 * matrix has been refactorized.  Does nothing if klu_supernodes was not
+	 * called.  Uses Numeric.Iwork as workspace.
+	 *
+	 * @param Symbolic
+	 * @param Numeric
+	 */
+	public static void klu_supernodes_update(KLU_symbolic Symbolic,
+			KLU_numeric Numeric)
+	{
+		if (Numeric != null && Numeric.Lsb != null)
+		{
+			panels (Symbolic, Numeric, FALSE, Numeric.Iwork) ;
+		}
+	}
+
+	/**
+	 * Removes the supernodes from the Numeric object.
+	 *
+	 * @param Numeric
+	 */
+	public static void klu_free_supernodes(KLU_numeric Numeric)
+	{
+		Numeric.Lsb = Numeric.Lsk = Numeric.Lsn = null ;
+		Numeric.Lsip = Numeric.Lsi = Numeric.Lsp = null ;
+		Numeric.Lsx = null ;
+		Numeric.Usb = Numeric.Usk = Numeric.Usn = null ;
+		Numeric.Usip = Numeric.Usi = Numeric.Usp = null ;
+		Numeric.Usx = null ;
+	}
+
+	/**
+	 * Solve Lx=b for one block, one supernode at a time.  B is n-by-nrhs and
+	 * is stored in ROW form with row dimension nrhs, as for klu_lsolve.
+	 *
+	 * @param s1 first supernode of the block
+	 * @param s2 last supernode of the block, plus one
+	 * @param Lsk first column of each supernode
+	 * @param Lsn # of columns of each supernode
+	 * @param Lsip row pointers of each supernode
+	 * @param Lsi row indices
+	 * @param Lsp panel pointers
+	 * @param Lsx panels
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to Lx=b on output
+	 */
+	public static void klu_super_lsolve(int s1, int s2, int[] Lsk, int[] Lsn,
+			int[] Lsip, int[] Lsi, int[] Lsp, double[] Lsx, int nr,
+			double[] X, int X_offset)
+	{
+		double xj, t ;
+		int c, xo, s, f, ns, px, j, r, p, pend, i ;
+
+		for (c = 0 ; c < nr ; c++)
+		{
+			xo = X_offset + c ;
+			for (s = s1 ; s < s2 ; s++)
+			{
+				f = xo + nr*Lsk [s] ;
+				ns = Lsn [s] ;
+				px = Lsp [s] ;
+
+				/* unit lower triangular solve with the diagonal block */
+				for (j = 0 ; j < ns ; j++)
+				{
+					xj = X [f + nr*j] ;
+					if (nr == 1)
+					{
+						klu_vsub (ns-j-1, xj, Lsx, px + j*ns + j+1, X, f + j+1) ;
+						continue ;
+					}
+					for (r = j+1 ; r < ns ; r++)
+					{
+						//MULT_SUB (X [f+r], Lsx [px + j*ns + r], xj) ;
+						X [f + nr*r] -= Lsx [px + j*ns + r] * xj ;
+					}
+				}
+
+				/* update the rows below, one row at a time */
+				px += ns*ns ;
+				pend = Lsip [s+1] ;
+				for (p = Lsip [s] ; p < pend ; p++)
+				{
+					i = xo + nr*Lsi [p] ;
+					t = X [i] ;
+					for (j = 0 ; j < ns ; j++)
+					{
+						t -= Lsx [px++] * X [f + nr*j] ;
+					}
+					X [i] = t ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve Ux=b for one block, one supernode at a time.  B is stored as for
+	 * klu_super_lsolve.
+	 *
+	 * @param s1 first supernode of the block
+	 * @param s2 last supernode of the block, plus one
+	 * @param Usk first column of each supernode
+	 * @param Usn # of columns of each supernode
+	 * @param Usip row pointers of each supernode
+	 * @param Usi row indices
+	 * @param Usp panel pointers
+	 * @param Usx panels
+	 * @param nr number of right-hand-sides
+	 * @param X right-hand-side on input, solution to Ux=b on output
+	 */
+	public static void klu_super_usolve(int s1, int s2, int[] Usk, int[] Usn,
+			int[] Usip, int[] Usi, int[] Usp, double[] Usx, int nr,
+			double[] X, int X_offset)
+	{
+		double xj, t ;
+		int c, xo, s, f, ns, px, j, r, p, pend, i, rp ;
+
+		for (c = 0 ; c < nr ; c++)
+		{
+			xo = X_offset + c ;
+			for (s = s2-1 ; s >= s1 ; s--)
+			{
+				f = xo + nr*Usk [s] ;
+				ns = Usn [s] ;
+				px = Usp [s] ;
+
+				/* upper triangular solve with the diagonal block */
+				for (j = ns-1 ; j >= 0 ; j--)
+				{
+					//DIV (xj, X [f+j], Usx [px + j*ns + j]) ;
+					xj = X [f + nr*j] / Usx [px + j*ns + j] ;
+					X [f + nr*j] = xj ;
+					if (nr == 1)
+					{
+						klu_vsub (j, xj, Usx, px + j*ns, X, f) ;
+						continue ;
+					}
+					for (r = 0 ; r < j ; r++)
+					{
+						//MULT_SUB (X [f+r], Usx [px + j*ns + r], xj) ;
+						X [f + nr*r] -= Usx [px + j*ns + r] * xj ;
+					}
+				}
+
+				/* update the rows above, one row at a time */
+				px += ns*ns ;
+				pend = Usip [s+1] ;
+				for (p = Usip [s] ; p < pend ; p++)
+				{
+					i = xo + nr*Usi [p] ;
+					rp = px + (p - Usip [s]) * ns ;
+					t = X [i] ;
+					for (j = ns-1 ; j >= 0 ; j--)
+					{
+						t -= Usx [rp + j] * X [f + nr*j] ;
+					}
+					X [i] = t ;
+				}
+			}
+		}
+	}
+
+}
@@ -31,6 +31,11 @@ import edu.ufl.cise.klu.common.KLU_symbolic;
 import static edu.ufl.cise.klu.tdouble.Dklu_dump.klu_valid;
 import static edu.ufl.cise.klu.tdouble.Dklu.klu_ltsolve;
 import static edu.ufl.cise.klu.tdouble.Dklu.klu_utsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_ltsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack_utsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_rows.klu_rows;
+import static edu.ufl.cise.klu.tdouble.Dklu_rows.klu_rows_tsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_simd.klu_vsub4;
 
 /**
  * Solve A'x=b using the symbolic and numeric objects from KLU_analyze
@@ -38,6 +43,12 @@ import static edu.ufl.cise.klu.tdouble.Dklu.klu_utsolve;
  * performed.  Uses Numeric.Xwork as workspace (undefined on input and output),
  * of size 4n double's (note that columns 2 to 4 of Xwork overlap with
  * Numeric.Iwork).
+ *
+ * To solve both Ax=b and A'y=c, call klu_solve and then klu_tsolve with the
+ * same Symbolic and Numeric objects.  A combined solve would not read the
+ * factors any fewer times: x needs all of L before any of U, y needs all of
+ * U' before any of L', and the two solves visit the blocks in opposite
+ * orders.
  */
 public class Dklu_tsolve extends Dklu_internal {
 
@@ -60,9 +71,9 @@ public class Dklu_tsolve extends Dklu_internal {
 		double rs ;
 		double[] Rs ;
 		double[] Offx, X, Bz, Udiag ;
-		int[] Q, R, Pnum, Offp, Offi, Lip, Uip, Llen, Ulen ;
+		int[] Q, R, Pnum, Offp, Offi, Lip, Uip, Llen, Ulen, Srun ;
 		double[][] LUbx ;
-		int k1, k2, nk, k, block, pend, n, p, nblocks, chunk, nr, i ;
+		int k1, k2, nk, k, block, pend, n, p, nblocks, chunk, nr, i, rows ;
 
 		/* ---------------------------------------------------------------------- */
 		/* check inputs */
@@ -89,6 +100,7 @@ public class Dklu_tsolve extends Dklu_internal {
 		nblocks = Symbolic.nblocks ;
 		Q = Symbolic.Q ;
 		R = Symbolic.R ;
+		Srun = Symbolic.Srun ;
 
 		/* ---------------------------------------------------------------------- */
 		/* get the contents of the Numeric object */
@@ -111,6 +123,22 @@ public class Dklu_tsolve extends Dklu_internal {
 		X = Numeric.Xwork ;
 		if (!NDEBUG) ASSERT (klu_valid (n, Offp, Offi, Offx)) ;
 
+		/* ---------------------------------------------------------------------- */
+		/* get the row form of the factors, if requested */
+		/* ---------------------------------------------------------------------- */
+
+		rows = FALSE ;
+		if (Common.tsolve_rows != 0)
+		{
+			if ((Numeric.rows == FALSE || Numeric.Offrp == null) &&
+				klu_rows (Symbolic, Numeric, Common) == FALSE)
+			{
+				/* out of memory; use the column form */
+				Common.status = KLU_OK ;
+			}
+			rows = (Numeric.rows != FALSE && Numeric.Offrp != null) ? TRUE : FALSE ;
+		}
+
 		/* ---------------------------------------------------------------------- */
 		/* solve in chunks of 4 columns at a time */
 		/* ---------------------------------------------------------------------- */
@@ -178,7 +206,12 @@ public class Dklu_tsolve extends Dklu_internal {
 			/* solve X = (L*U + Off)'\X */
 			/* ------------------------------------------------------------------ */
 
-			for (block = 0 ; block < nblocks ; block++)
+			if (rows == TRUE)
+			{
+				/* scatter-style solve with the row form of the factors */
+				klu_rows_tsolve (Symbolic, Numeric, nr, X) ;
+			}
+			else for (block = 0 ; block < nblocks ; block++)
 			{
 
 				/* -------------------------------------------------------------- */
@@ -190,6 +223,15 @@ public class Dklu_tsolve extends Dklu_internal {
 				nk = k2 - k1 ;
 				PRINTF ("tsolve %d, k1 %d k2-1 %d nk %d\n", block, k1,k2-1,nk) ;
 
+				if (Srun != null && Srun [block] > block)
+				{
+					/* a run of singleton blocks, solved in one sweep */
+					block = Srun [block] ;
+					singleton_utsolve (k1, R [block+1], Udiag, Offp, Offi,
+							Offx, nr, X) ;
+					continue ;
+				}
+
 				/* -------------------------------------------------------------- */
 				/* block back-substitution for the off-diagonal-block entries */
 				/* -------------------------------------------------------------- */
@@ -279,14 +321,8 @@ public class Dklu_tsolve extends Dklu_internal {
 								{
 									offik = Offx [p] ;
 								}
-								//MULT_SUB (x [0], offik, X [4*i]) ;
-								x [0] -= offik * X [4*i] ;
-								//MULT_SUB (x [1], offik, X [4*i + 1]) ;
-								x [1] -= offik * X [4*i + 1] ;
-								//MULT_SUB (x [2], offik, X [4*i + 2]) ;
-								x [2] -= offik * X [4*i + 2] ;
-								//MULT_SUB (x [3], offik, X [4*i + 3]) ;
-								x [3] -= offik * X [4*i + 3] ;
+								//MULT_SUB (x [0..3], offik, X [4*i..4*i+3]) ;
+								klu_vsub4 (offik, X, 4*i, x, 0) ;
 							}
 							X [4*k    ] = x [0] ;
 							X [4*k + 1] = x [1] ;
@@ -343,6 +379,14 @@ public class Dklu_tsolve extends Dklu_internal {
 
 					}
 				}
+				else if (Numeric.Lp != null)
+				{
+					/* packed copy from klu_pack */
+					klu_pack_utsolve (nk, Numeric.Up, k1, Numeric.Ui,
+							Numeric.Ux, Numeric.Udinv, k1, nr, X, nr*k1) ;
+					klu_pack_ltsolve (nk, Numeric.Lp, k1, Numeric.Li,
+							Numeric.Lx, nr, X, nr*k1) ;
+				}
 				else
 				{
 					klu_utsolve (nk, Uip, k1, Ulen, k1, LUbx [block],
@@ -477,4 +521,58 @@ public class Dklu_tsolve extends Dklu_internal {
 		return (TRUE) ;
 	}
 
+	/**
+	 * Solves a run of singleton blocks, columns k1 to k2-1, with one forward
+	 * sweep over the transpose of the upper triangular matrix formed by the
+	 * singletons and the off-diagonal entries in those columns, in the same
+	 * order as the block-by-block solve.
+	 *
+	 * @param k1 first column of the run
+	 * @param k2 last column of the run, plus one
+	 * @param Udiag size n, the singletons
+	 * @param Offp off-diagonal matrix
+	 * @param Offi
+	 * @param Offx
+	 * @param nr number of right-hand-sides
+	 * @param X size n*nr, in row form with row dimension nr
+	 */
+	protected static void singleton_utsolve(int k1, int k2, double[] Udiag,
+			int[] Offp, int[] Offi, double[] Offx, int nr, double[] X)
+	{
+		double xk, s ;
+		int k, p, pend, c ;
+
+		if (nr == 1)
+		{
+			for (k = k1 ; k < k2 ; k++)
+			{
+				xk = X [k] ;
+				pend = Offp [k+1] ;
+				for (p = Offp [k] ; p < pend ; p++)
+				{
+					//MULT_SUB (xk, Offx [p], X [Offi [p]]) ;
+					xk -= Offx [p] * X [Offi [p]] ;
+				}
+				X [k] = xk / Udiag [k] ;
+			}
+		}
+		else
+		{
+			for (k = k1 ; k < k2 ; k++)
+			{
+				s = Udiag [k] ;
+				pend = Offp [k+1] ;
+				for (c = 0 ; c < nr ; c++)
+				{
+					xk = X [nr*k + c] ;
+					for (p = Offp [k] ; p < pend ; p++)
+					{
+						xk -= Offx [p] * X [nr*Offi [p] + c] ;
+					}
+					X [nr*k + c] = xk / s ;
+				}
+			}
+		}
+	}
+
 }
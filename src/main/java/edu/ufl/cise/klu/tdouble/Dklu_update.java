@@ -0,0 +1,379 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+import edu.ufl.cise.klu.common.KLU_update;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_dbl;
+import static edu.ufl.cise.klu.tdouble.Dklu_memory.klu_malloc_int;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * Solves with A + U*V', where A is factorized in a Numeric object and U and V
+ * are n-by-k, without refactorizing.  By the Sherman-Morrison-Woodbury
+ * formula,
+ *
+ *   inv (A + U*V') = inv (A) - W * inv (I + V'*W) * V' * inv (A),  W = A\U
+ *
+ * klu_update_add appends columns to U and V, computes their columns of W
+ * with one klu_solve, and factorizes the small dense matrix S = I + V'*W.
+ * Each klu_update_solve then costs a klu_solve plus O(n*k + k^2).  A switch
+ * that changes one entry of A is a rank-1 update, with u = delta*e_i and
+ * v = e_j.
+ *
+ * The cost of klu_update_add grows with k, and the formula loses accuracy as
+ * S becomes ill-conditioned; Update.refactor is set when refactorizing
+ * A + U*V' (and calling klu_update_clear) is the better choice.
+ */
+public class Dklu_update extends Dklu_internal {
+
+	/**
+	 * LU factorization of a dense k-by-k matrix with partial pivoting, in
+	 * place.  A has leading dimension lda.
+	 *
+	 * @param k
+	 * @param A k-by-k, column-oriented, overwritten with L and U
+	 * @param lda leading dimension of A
+	 * @param Piv size k, output row pivots: row k was swapped with Piv [k]
+	 * @return rcond estimate min/max of abs (diag (U)), 0 if singular
+	 */
+	protected static double dense_lu(int k, double[] A, int lda, int[] Piv)
+	{
+		double x, amax, umin, umax ;
+		int i, j, c, p ;
+
+		umin = 0 ;
+		umax = 0 ;
+		for (j = 0 ; j < k ; j++)
+		{
+			/* find the pivot in column j */
+			p = j ;
+			amax = ABS (A [j + lda*j]) ;
+			for (i = j+1 ; i < k ; i++)
+			{
+				if (ABS (A [i + lda*j]) > amax)
+				{
+					amax = ABS (A [i + lda*j]) ;
+					p = i ;
+				}
+			}
+			Piv [j] = p ;
+			if (p != j)
+			{
+				for (c = 0 ; c < k ; c++)
+				{
+					x = A [j + lda*c] ;
+					A [j + lda*c] = A [p + lda*c] ;
+					A [p + lda*c] = x ;
+				}
+			}
+			umin = (j == 0) ? amax : MIN (umin, amax) ;
+			umax = MAX (umax, amax) ;
+			if (amax == 0)
+			{
+				continue ;
+			}
+
+			/* scale column j of L, and update the rest of A */
+			x = A [j + lda*j] ;
+			for (i = j+1 ; i < k ; i++)
+			{
+				A [i + lda*j] /= x ;
+			}
+			for (c = j+1 ; c < k ; c++)
+			{
+				x = A [j + lda*c] ;
+				if (x == 0) continue ;
+				for (i = j+1 ; i < k ; i++)
+				{
+					A [i + lda*c] -= A [i + lda*j] * x ;
+				}
+			}
+		}
+		return ((umax == 0) ? 0 : (umin / umax)) ;
+	}
+
+	/**
+	 * Solves A*x=b with the factors from dense_lu, overwriting b with x.
+	 */
+	protected static void dense_solve(int k, double[] A, int lda, int[] Piv,
+			double[] b, int b_offset)
+	{
+		double x ;
+		int i, j ;
+
+		for (j = 0 ; j < k ; j++)
+		{
+			if (Piv [j] != j)
+			{
+				x = b [b_offset + j] ;
+				b [b_offset + j] = b [b_offset + Piv [j]] ;
+				b [b_offset + Piv [j]] = x ;
+			}
+		}
+		for (j = 0 ; j < k ; j++)
+		{
+			x = b [b_offset + j] ;
+			for (i = j+1 ; i < k ; i++)
+			{
+				b [b_offset + i] -= A [i + lda*j] * x ;
+			}
+		}
+		for (j = k-1 ; j >= 0 ; j--)
+		{
+			x = b [b_offset + j] / A [j + lda*j] ;
+			b [b_offset + j] = x ;
+			for (i = 0 ; i < j ; i++)
+			{
+				b [b_offset + i] -= A [i + lda*j] * x ;
+			}
+		}
+	}
+
+	/**
+	 * Adds k columns to the update U*V', so that later solves are with
+	 * A + U*V' for the U and V of all calls since the last klu_update_clear.
+	 *
+	 * @param Symbolic
+	 * @param Numeric factorization of A
+	 * @param Update update to add to, or null to start a new one
+	 * @param k # of columns to add
+	 * @param U n-by-k, column-oriented with leading dimension d
+	 * @param V n-by-k, column-oriented with leading dimension d
+	 * @param d leading dimension of U and V
+	 * @param Common
+	 * @return the Update object, or null on error
+	 */
+	public static KLU_update klu_update_add(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_update Update, int k, double[] U,
+			double[] V, int d, KLU_common Common)
+	{
+		double[] Unew, Vnew, Wnew, S, W ;
+		double s ;
+		int n, k0, kt, kmax, i, j, p ;
+
+		/* ---------------------------------------------------------------------- */
+		/* check inputs */
+		/* ---------------------------------------------------------------------- */
+
+		if (Common == null)
+		{
+			return (null) ;
+		}
+		if (Symbolic == null || Numeric == null || k < 0 || U == null ||
+			V == null || d < Symbolic.n ||
+			(Update != null && Update.n != Symbolic.n))
+		{
+			Common.status = KLU_INVALID ;
+			return (null) ;
+		}
+		Common.status = KLU_OK ;
+		n = Symbolic.n ;
+
+		if (Update == null)
+		{
+			Update = new KLU_update () ;
+			Update.n = n ;
+			Update.k = 0 ;
+			Update.kmax = 0 ;
+		}
+		k0 = Update.k ;
+		kt = k0 + k ;
+
+		/* ---------------------------------------------------------------------- */
+		/* make room for kt columns */
+		/* ---------------------------------------------------------------------- */
+
+		if (kt > Update.kmax)
+		{
+			kmax = MAX (kt, 2 * Update.kmax) ;
+			Unew = klu_malloc_dbl (n * kmax, Common) ;
+			Vnew = klu_malloc_dbl (n * kmax, Common) ;
+			Wnew = klu_malloc_dbl (n * kmax, Common) ;
+			Update.S = klu_malloc_dbl (kmax * kmax, Common) ;
+			Update.Sp = klu_malloc_int (kmax, Common) ;
+			Update.Sw = klu_malloc_dbl (kmax, Common) ;
+			if (Common.status < KLU_OK)
+			{
+				return (null) ;
+			}
+			if (k0 > 0)
+			{
+				System.arraycopy (Update.U, 0, Unew, 0, n * k0) ;
+				System.arraycopy (Update.V, 0, Vnew, 0, n * k0) ;
+				System.arraycopy (Update.W, 0, Wnew, 0, n * k0) ;
+			}
+			Update.U = Unew ;
+			Update.V = Vnew ;
+			Update.W = Wnew ;
+			Update.kmax = kmax ;
+		}
+
+		/* ---------------------------------------------------------------------- */
+		/* append U and V, and W = A\U for the new columns */
+		/* ---------------------------------------------------------------------- */
+
+		W = Update.W ;
+		for (j = 0 ; j < k ; j++)
+		{
+			for (i = 0 ; i < n ; i++)
+			{
+				Update.U [n * (k0+j) + i] = U [d*j + i] ;
+				Update.V [n * (k0+j) + i] = V [d*j + i] ;
+				W [n * (k0+j) + i] = U [d*j + i] ;
+			}
+		}
+		if (k > 0 && klu_solve (Symbolic, Numeric, n, k, W, n * k0, Common) == 0)
+		{
+			return (null) ;
+		}
+		Update.k = kt ;
+
+		/* ---------------------------------------------------------------------- */
+		/* S = I + V'*W, and its LU factorization */
+		/* ---------------------------------------------------------------------- */
+
+		S = Update.S ;
+		for (j = 0 ; j < kt ; j++)
+		{
+			for (i = 0 ; i < kt ; i++)
+			{
+				s = (i == j) ? 1 : 0 ;
+				for (p = 0 ; p < n ; p++)
+				{
+					s += Update.V [n*i + p] * W [n*j + p] ;
+				}
+				S [i + kt*j] = s ;
+			}
+		}
+		Update.rcond = dense_lu (kt, S, kt, Update.Sp) ;
+		Update.refactor = (kt > Common.update_maxrank ||
+			Update.rcond < Math.sqrt (DBL_EPSILON)) ? TRUE : FALSE ;
+		if (Update.rcond == 0)
+		{
+			/* A + U*V' is singular, or the formula cannot be used */
+			Common.status = KLU_SINGULAR ;
+		}
+		return (Update) ;
+	}
+
+	/**
+	 * Solves (A + U*V') x = b.
+	 *
+	 * @param Symbolic
+	 * @param Numeric factorization of A
+	 * @param Update from klu_update_add
+	 * @param d leading dimension of B
+	 * @param nrhs number of right-hand-sides
+	 * @param B right-hand-side on input, overwritten with solution on
+	 * output. Size n*nrhs, in column-oriented form, with leading dimension d.
+	 * @param Common
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_update_solve(KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_update Update, int d, int nrhs,
+			double[] B, int B_offset, KLU_common Common)
+	{
+		double[] V, W, z ;
+		double s ;
+		int n, k, c, i, j, b ;
+
+		if (Common == null)
+		{
+			return (FALSE) ;
+		}
+		if (Update == null || Symbolic == null || Update.n != Symbolic.n)
+		{
+			Common.status = KLU_INVALID ;
+			return (FALSE) ;
+		}
+		if (Update.k > 0 && Update.rcond == 0)
+		{
+			Common.status = KLU_SINGULAR ;
+			return (FALSE) ;
+		}
+
+		/* x = A\b */
+		if (klu_solve (Symbolic, Numeric, d, nrhs, B, B_offset, Common) == 0)
+		{
+			return (FALSE) ;
+		}
+
+		/* x = x - W * (S \ (V'*x)) */
+		n = Update.n ;
+		k = Update.k ;
+		V = Update.V ;
+		W = Update.W ;
+		z = Update.Sw ;
+		for (c = 0 ; c < nrhs && k > 0 ; c++)
+		{
+			b = B_offset + d*c ;
+			for (j = 0 ; j < k ; j++)
+			{
+				s = 0 ;
+				for (i = 0 ; i < n ; i++)
+				{
+					s += V [n*j + i] * B [b + i] ;
+				}
+				z [j] = s ;
+			}
+			dense_solve (k, Update.S, k, Update.Sp, z, 0) ;
+			for (j = 0 ; j < k ; j++)
+			{
+				s = z [j] ;
+				if (s == 0) continue ;
+				for (i = 0 ; i < n ; i++)
+				{
+					B [b + i] -= W [n*j + i] * s ;
+				}
+			}
+		}
+		return (TRUE) ;
+	}
+
+	/**
+	 * Removes all columns of the update, after A + U*V' has been
+	 * refactorized into the Numeric object.  The space is kept for reuse.
+	 *
+	 * @param Update
+	 * @return TRUE if successful, FALSE otherwise
+	 */
+	public static int klu_update_clear(KLU_update Update)
+	{
+		if (Update == null)
+		{
+			return (FALSE) ;
+		}
+		Update.k = 0 ;
+		Update.rcond = 0 ;
+		Update.refactor = FALSE ;
+		return (TRUE) ;
+	}
+
+}
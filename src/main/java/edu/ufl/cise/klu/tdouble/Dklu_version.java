@@ -33,12 +33,16 @@ public abstract class Dklu_version {
 	public static final int KLU_INVALID = -3;
 	/** integer overflow has occured */
 	public static final int KLU_TOO_LARGE = -4;
+	/** a Krylov solve stopped at the iteration limit above the tolerance */
+	public static final int KLU_NOT_CONVERGED = 2;
 
 	/** enable diagnostic printing */
 	public static boolean NPRINT = true ;
 
 	protected static final int INT_MAX = 0x7fffffff ;
 
+	protected static final double DBL_EPSILON = 2.220446049250313e-16 ;
+
 	protected static final String INT_ID = "%d" ;
 
 //	protected static int BYTES (Object type, double n)
@@ -0,0 +1,252 @@
+/**
+ * KLU: a sparse LU factorization algorithm.
+ * Copyright (C) 2004-2009, Timothy A. Davis.
+ * Copyright (C) 2011-2012, Richard W. Lincoln.
+ * http://www.cise.ufl.edu/research/sparse/klu
+ *
+ * -------------------------------------------------------------------------
+ *
+ * KLU is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * KLU is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this Module; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ *
+ */
+
+
+package edu.ufl.cise.klu.tdouble;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Small dense kernels, implemented with the Vector API.  This version of the
+ * class is used from the multi-release jar on Java 21 and later.  The Vector
+ * API is still an incubator module, so it is only used if the JVM was started
+ * with --add-modules jdk.incubator.vector, and not if the system property
+ * edu.ufl.cise.klu.vector is "false"; otherwise the scalar loops are used,
+ * as in the portable version.  The vector and scalar kernels give identical
+ * results, except for the order of the sum in klu_vdot.
+ */
+public class Dklu_simd extends Dklu_internal {
+
+	/** TRUE if the kernels use the Vector API */
+	public static final boolean VECTOR = available () ;
+
+	/** TRUE if four doubles fit in a native vector, for klu_vsub4 */
+	private static final boolean VECTOR4 = VECTOR && Vec.wide4 () ;
+
+	private static boolean available()
+	{
+		if ("false".equals (System.getProperty ("edu.ufl.cise.klu.vector")))
+		{
+			return (false) ;
+		}
+		try
+		{
+			Class.forName ("jdk.incubator.vector.DoubleVector") ;
+			return (Vec.S.length () > 1) ;
+		}
+		catch (Throwable e)
+		{
+			/* module not present, or not resolved */
+			return (false) ;
+		}
+	}
+
+	/**
+	 * The vector kernels.  Only loaded if the Vector API is available.
+	 */
+	private static final class Vec {
+
+		static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED ;
+		static final VectorSpecies<Double> S4 = DoubleVector.SPECIES_256 ;
+
+		static boolean wide4()
+		{
+			return (S.vectorBitSize () >= 256) ;
+		}
+
+		static void vsub(int n, double a, double[] x, int x_offset,
+				double[] y, int y_offset)
+		{
+			DoubleVector va = DoubleVector.broadcast (S, a) ;
+			int i, bound = S.loopBound (n) ;
+			for (i = 0 ; i < bound ; i += S.length ())
+			{
+				DoubleVector vy = DoubleVector.fromArray (S, y, y_offset + i) ;
+				DoubleVector vx = DoubleVector.fromArray (S, x, x_offset + i) ;
+				vy.sub (vx.mul (va)).intoArray (y, y_offset + i) ;
+			}
+			for ( ; i < n ; i++)
+			{
+				y [y_offset + i] -= a * x [x_offset + i] ;
+			}
+		}
+
+		static void vsub4(double a, double[] x, int x_offset, double[] y,
+				int y_offset)
+		{
+			DoubleVector vy = DoubleVector.fromArray (S4, y, y_offset) ;
+			DoubleVector vx = DoubleVector.fromArray (S4, x, x_offset) ;
+			vy.sub (vx.mul (a)).intoArray (y, y_offset) ;
+		}
+
+		static double vdot(int n, double[] x, int x_offset, double[] y,
+				int y_offset)
+		{
+			DoubleVector vs = DoubleVector.zero (S) ;
+			double s ;
+			int i, bound = S.loopBound (n) ;
+			for (i = 0 ; i < bound ; i += S.length ())
+			{
+				DoubleVector vx = DoubleVector.fromArray (S, x, x_offset + i) ;
+				DoubleVector vy = DoubleVector.fromArray (S, y, y_offset + i) ;
+				vs = vs.add (vx.mul (vy)) ;
+			}
+			s = vs.reduceLanes (VectorOperators.ADD) ;
+			for ( ; i < n ; i++)
+			{
+				s += x [x_offset + i] * y [y_offset + i] ;
+			}
+			return (s) ;
+		}
+
+		static void vrownorm(int scale, int[] Ai, double[] Ax, int p1,
+				int pend, double[] Rs)
+		{
+			DoubleVector va, vr ;
+			VectorMask<Double> m ;
+			int p, bound = p1 + S.loopBound (pend - p1) ;
+			for (p = p1 ; p < bound ; p += S.length ())
+			{
+				/* a = ABS (Ax [p]), which is Math.abs, so -0 becomes +0 */
+				va = DoubleVector.fromArray (S, Ax, p).abs () ;
+
+				/* the rows in one column are distinct, so gather and scatter
+				 * through Ai do not conflict */
+				vr = DoubleVector.fromArray (S, Rs, 0, Ai, p) ;
+				if (scale == 1)
+				{
+					vr = vr.add (va) ;
+				}
+				else
+				{
+					/* MAX (Rs [row], a) */
+					m = vr.compare (VectorOperators.GT, va) ;
+					vr = va.blend (vr, m) ;
+				}
+				vr.intoArray (Rs, 0, Ai, p) ;
+			}
+			scalar_rownorm (scale, Ai, Ax, p, pend, Rs) ;
+		}
+	}
+
+	/**
+	 * y [0..n-1] -= a * x [0..n-1]
+	 */
+	public static void klu_vsub(int n, double a, double[] x, int x_offset,
+			double[] y, int y_offset)
+	{
+		int i ;
+		if (VECTOR)
+		{
+			Vec.vsub (n, a, x, x_offset, y, y_offset) ;
+			return ;
+		}
+		for (i = 0 ; i < n ; i++)
+		{
+			//MULT_SUB (y [i], a, x [i]) ;
+			y [y_offset + i] -= a * x [x_offset + i] ;
+		}
+	}
+
+	/**
+	 * y [0..3] -= a * x [0..3], the update of one entry for four
+	 * right-hand-sides.
+	 */
+	public static void klu_vsub4(double a, double[] x, int x_offset,
+			double[] y, int y_offset)
+	{
+		if (VECTOR4)
+		{
+			Vec.vsub4 (a, x, x_offset, y, y_offset) ;
+			return ;
+		}
+		y [y_offset    ] -= a * x [x_offset    ] ;
+		y [y_offset + 1] -= a * x [x_offset + 1] ;
+		y [y_offset + 2] -= a * x [x_offset + 2] ;
+		y [y_offset + 3] -= a * x [x_offset + 3] ;
+	}
+
+	/**
+	 * Returns x [0..n-1]' * y [0..n-1].  The vector version sums in a
+	 * different order.
+	 */
+	public static double klu_vdot(int n, double[] x, int x_offset, double[] y,
+			int y_offset)
+	{
+		double s = 0 ;
+		int i ;
+		if (VECTOR)
+		{
+			return (Vec.vdot (n, x, x_offset, y, y_offset)) ;
+		}
+		for (i = 0 ; i < n ; i++)
+		{
+			s += x [x_offset + i] * y [y_offset + i] ;
+		}
+		return (s) ;
+	}
+
+	/**
+	 * Adds |Ax [p]| to Rs [Ai [p]] (scale == 1), or takes the max of the two
+	 * (scale == 2), for p = p1 to pend-1.  The rows Ai [p1..pend-1] must be
+	 * distinct.
+	 */
+	public static void klu_vrownorm(int scale, int[] Ai, double[] Ax, int p1,
+			int pend, double[] Rs)
+	{
+		if (VECTOR)
+		{
+			Vec.vrownorm (scale, Ai, Ax, p1, pend, Rs) ;
+			return ;
+		}
+		scalar_rownorm (scale, Ai, Ax, p1, pend, Rs) ;
+	}
+
+	private static void scalar_rownorm(int scale, int[] Ai, double[] Ax,
+			int p1, int pend, double[] Rs)
+	{
+		double a ;
+		int p, row ;
+		for (p = p1 ; p < pend ; p++)
+		{
+			row = Ai [p] ;
+			//ABS (a, Az [p]) ;
+			a = ABS (Ax [p]) ;
+			if (scale == 1)
+			{
+				/* accumulate the abs. row sum */
+				Rs [row] += a ;
+			}
+			else
+			{
+				/* find the max abs. value in the row */
+				Rs [row] = MAX (Rs [row], a) ;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+
+/**
+ * klu_analyze with the blocks ordered on a thread pool, compared with the
+ * serial analysis: the Symbolic objects must be identical.
+ */
+public class Dklu_analyze_parallel_test extends Dklu_problem {
+
+	/**
+	 * Check that two Symbolic objects are identical.
+	 */
+	protected static void assertSymbolic (KLU_symbolic S, KLU_symbolic T)
+	{
+		assertEquals (S.n, T.n) ;
+		assertEquals (S.nz, T.nz) ;
+		assertEquals (S.nzoff, T.nzoff) ;
+		assertEquals (S.nblocks, T.nblocks) ;
+		assertEquals (S.maxblock, T.maxblock) ;
+		assertEquals (S.ordering, T.ordering) ;
+		assertEquals (S.do_btf, T.do_btf) ;
+		assertEquals (S.structural_rank, T.structural_rank) ;
+		assertTrue (Arrays.equals (S.P, T.P)) ;
+		assertTrue (Arrays.equals (S.Q, T.Q)) ;
+		assertTrue (Arrays.equals (S.R, T.R)) ;
+		assertTrue (Arrays.equals (S.Srun, T.Srun)) ;
+		assertTrue (Arrays.equals (S.Lnz, T.Lnz)) ;
+		assertEquals (Double.doubleToLongBits (S.lnz),
+				Double.doubleToLongBits (T.lnz)) ;
+		assertEquals (Double.doubleToLongBits (S.unz),
+				Double.doubleToLongBits (T.unz)) ;
+		assertEquals (Double.doubleToLongBits (S.est_flops),
+				Double.doubleToLongBits (T.est_flops)) ;
+		assertEquals (Double.doubleToLongBits (S.symmetry),
+				Double.doubleToLongBits (T.symmetry)) ;
+	}
+
+	private static void check (Dmatrix A, int ordering, ExecutorService executor)
+	{
+		KLU_common Common = common () ;
+		Common.ordering = ordering ;
+		KLU_symbolic Serial = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		assertNotNull (Serial) ;
+		Common.executor = executor ;
+		for (int nthreads = 2 ; nthreads <= 8 ; nthreads *= 2)
+		{
+			Common.nthreads = nthreads ;
+			KLU_symbolic Parallel = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+			assertNotNull (Parallel) ;
+			assertSymbolic (Serial, Parallel) ;
+		}
+	}
+
+	/**
+	 * AMD on each block.  COLAMD is not tested: the bundled COLAMDJ fails
+	 * on most inputs, serial or not.
+	 */
+	public void test_amd() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			check (btf (12, 20, 0.05, 1), 0, executor) ;
+			check (btf (40, 4, 0.02, 2), 0, executor) ;
+			check (load ("impcol_a"), 0, executor) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+}
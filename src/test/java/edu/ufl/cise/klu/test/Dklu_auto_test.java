@@ -0,0 +1,129 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_auto.klu_auto_order;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+import static edu.ufl.cise.klu.test.Dklu_analyze_parallel_test.assertSymbolic;
+
+/**
+ * The automatic choice of ordering (ordering 4), compared with AMD, and
+ * with klu_solve and klu_tsolve on the AMD factorization.
+ */
+public class Dklu_auto_test extends Dklu_problem {
+
+	/**
+	 * An irreducible, nearly lower triangular matrix: a random lower band
+	 * of width w, and a single entry in the top right corner.
+	 */
+	private static Dmatrix nearly_triangular (int n, int w, long seed)
+	{
+		Random rand = new Random (seed) ;
+		double[] D = new double [n*n] ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			D [j + j*n] = 4 + rand.nextDouble () ;
+			D [((j + 1 < n) ? j + 1 : 0) + j*n] = 1 ;
+			for (int i = j + 2 ; i < Math.min (n, j + w) ; i++)
+			{
+				if (rand.nextDouble () < 0.5)
+				{
+					D [i + j*n] = rand.nextDouble () - 0.5 ;
+				}
+			}
+		}
+		return (sparse (n, D)) ;
+	}
+
+	/**
+	 * On a nearly triangular block, the natural ordering is chosen over
+	 * AMD.
+	 */
+	public void test_natural() {
+		Dmatrix A = nearly_triangular (60, 6, 1) ;
+		int[] Pblk = new int [A.n] ;
+		double[] Stats = new double [8] ;
+		assertEquals (0, klu_auto_order (A.n, A.Ap, A.Ai, Pblk, Stats)) ;
+		for (int k = 0 ; k < A.n ; k++)
+		{
+			assertEquals (k, Pblk [k]) ;
+		}
+
+		/* and its factors are smaller than those of AMD */
+		KLU_common Common = common () ;
+		KLU_symbolic Amd = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric NAmd = klu_factor (A.Ap, A.Ai, A.Ax, Amd, Common) ;
+		Common.ordering = 4 ;
+		KLU_symbolic Auto = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric NAuto = klu_factor (A.Ap, A.Ai, A.Ax, Auto, Common) ;
+		assertTrue (NAuto.lnz + NAuto.unz < NAmd.lnz + NAmd.unz) ;
+	}
+
+	/**
+	 * The factors of ordering 4 are no larger than those of AMD, and the
+	 * solutions agree.
+	 */
+	public void test_solve() {
+		check (nearly_triangular (60, 6, 2)) ;
+		check (btf (5, 20, 0.1, 3)) ;
+		check (grid (12, 12, 1)) ;
+		check (load ("impcol_a")) ;
+	}
+
+	private static void check (Dmatrix A)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Amd = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric NAmd = klu_factor (A.Ap, A.Ai, A.Ax, Amd, Common) ;
+		Common.ordering = 4 ;
+		KLU_symbolic Auto = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		assertNotNull (Auto) ;
+		KLU_numeric NAuto = klu_factor (A.Ap, A.Ai, A.Ax, Auto, Common) ;
+		assertNotNull (NAuto) ;
+		assertTrue (NAuto.lnz + NAuto.unz <= NAmd.lnz + NAmd.unz) ;
+
+		double[] B = rhs (A.n, 2, 1) ;
+		double[] X = B.clone () ;
+		double[] Y = B.clone () ;
+		klu_solve (Amd, NAmd, A.n, 2, X, 0, Common) ;
+		klu_solve (Auto, NAuto, A.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-8) ;
+		X = B.clone () ;
+		Y = B.clone () ;
+		klu_tsolve (Amd, NAmd, A.n, 2, X, 0, Common) ;
+		klu_tsolve (Auto, NAuto, A.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-8) ;
+	}
+
+	/**
+	 * The choice is the same when the blocks are ordered in parallel.
+	 */
+	public void test_parallel() {
+		Dmatrix A = btf (8, 30, 0.05, 4) ;
+		KLU_common Common = common () ;
+		Common.ordering = 4 ;
+		KLU_symbolic Serial = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			Common.executor = executor ;
+			Common.nthreads = 4 ;
+			assertSymbolic (Serial, klu_analyze (A.n, A.Ap, A.Ai, Common)) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+}
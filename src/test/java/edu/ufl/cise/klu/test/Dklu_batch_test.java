@@ -0,0 +1,179 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_batch.klu_batch_groups;
+import static edu.ufl.cise.klu.tdouble.Dklu_batch.klu_solve_batch;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_INVALID;
+
+/**
+ * Batched solves over Numeric objects of one Symbolic object
+ * (klu_solve_batch), compared bit for bit with klu_solve.
+ */
+public class Dklu_batch_test extends Dklu_problem {
+
+	/**
+	 * Solves with klu_solve_batch, with and without groups, and compares
+	 * with klu_solve of each Numeric object.
+	 */
+	private static void solve (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric[] Numerics, int[] Group, int count, KLU_common Common)
+	{
+		double[][] B = new double [count][] ;
+		double[][] X = new double [count][] ;
+		for (int j = 0 ; j < count ; j++)
+		{
+			B [j] = rhs (A.n, 1, j) ;
+			X [j] = B [j].clone () ;
+			klu_solve (Symbolic, Numerics [j], A.n, 1, X [j], 0, Common) ;
+		}
+		assertEquals (1, klu_solve_batch (Symbolic, Numerics, Group, count, B,
+				Common)) ;
+		for (int j = 0 ; j < count ; j++)
+		{
+			assertBitwise (X [j], B [j]) ;
+		}
+
+		/* without groups, each Numeric object is solved on its own */
+		for (int j = 0 ; j < count ; j++)
+		{
+			B [j] = rhs (A.n, 1, j) ;
+		}
+		assertEquals (1, klu_solve_batch (Symbolic, Numerics, null, count, B,
+				Common)) ;
+		for (int j = 0 ; j < count ; j++)
+		{
+			assertBitwise (X [j], B [j]) ;
+		}
+	}
+
+	/**
+	 * count refactorizations of one factorization of A, with different
+	 * values, all in one group.
+	 */
+	private static void check (Dmatrix A, int count, int scale,
+			ExecutorService executor)
+	{
+		KLU_common Common = common () ;
+		Common.scale = scale ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric[] Numerics = new KLU_numeric [count] ;
+		double[] Ax = new double [A.Ap [A.n]] ;
+
+		for (int j = 0 ; j < count ; j++)
+		{
+			for (int p = 0 ; p < Ax.length ; p++)
+			{
+				Ax [p] = A.Ax [p] * (1 + 0.05 * ((p + j) % 4)) ;
+			}
+			Numerics [j] = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+			assertEquals (1, klu_refactor (A.Ap, A.Ai, Ax, Symbolic,
+					Numerics [j], Common)) ;
+		}
+
+		int[] Group = klu_batch_groups (Symbolic, Numerics, count, Common) ;
+		assertNotNull (Group) ;
+		for (int j = 0 ; j < count ; j++)
+		{
+			assertEquals (0, Group [j]) ;
+		}
+		Common.executor = executor ;
+		solve (A, Symbolic, Numerics, Group, count, Common) ;
+	}
+
+	/**
+	 * Groups of 1 to 9, so every chunk size from 1 to 4 is solved, with row
+	 * interchanges, singletons and each row scaling.
+	 */
+	public void test_serial() {
+		Dmatrix A = weak (btf (5, 8, 0.2, 1), 1e-6) ;
+		for (int count = 1 ; count <= 9 ; count++)
+		{
+			check (A, count, 2, null) ;
+		}
+		check (A, 6, 0, null) ;
+		check (triangular (30), 5, 0, null) ;
+		check (triangular (30), 7, 1, null) ;
+		check (load ("impcol_a"), 6, 1, null) ;
+	}
+
+	public void test_parallel() {
+		ExecutorService executor = Executors.newFixedThreadPool (3) ;
+		try
+		{
+			check (weak (btf (5, 8, 0.2, 1), 1e-6), 11, 2, executor) ;
+			check (grid (12, 12, 1), 11, 2, executor) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * Numeric objects with two different pivot orders, interleaved: they
+	 * form two groups, and each is solved with its own factors.
+	 */
+	public void test_groups() {
+		Dmatrix A = weak (btf (4, 10, 0.2, 2), 1e-6) ;
+		Dmatrix S = btf (4, 10, 0.2, 2) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+
+		int count = 7 ;
+		KLU_numeric[] Numerics = new KLU_numeric [count] ;
+		for (int j = 0 ; j < count ; j++)
+		{
+			Dmatrix M = (j % 3 == 1) ? S : A ;
+			Numerics [j] = klu_factor (M.Ap, M.Ai, M.Ax, Symbolic, Common) ;
+		}
+		assertTrue (pivots (Symbolic, Numerics [0]) > 0) ;
+		assertEquals (0, pivots (Symbolic, Numerics [1])) ;
+
+		int[] Group = klu_batch_groups (Symbolic, Numerics, count, Common) ;
+		for (int j = 0 ; j < count ; j++)
+		{
+			assertEquals ((j % 3 == 1) ? 1 : 0, Group [j]) ;
+		}
+		solve (A, Symbolic, Numerics, Group, count, Common) ;
+
+		/* no Numeric objects */
+		assertEquals (1, klu_solve_batch (Symbolic, Numerics, Group, 0,
+				new double [0][], Common)) ;
+	}
+
+	/**
+	 * A group that names a later Numeric object, and a Numeric object of a
+	 * different Symbolic object.
+	 */
+	public void test_invalid() {
+		Dmatrix A = weak (btf (4, 10, 0.2, 2), 1e-6) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric[] Numerics = new KLU_numeric [2] ;
+		Numerics [0] = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		Numerics [1] = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[][] B = { rhs (A.n, 1, 0), rhs (A.n, 1, 1) } ;
+
+		assertEquals (0, klu_solve_batch (Symbolic, Numerics, new int[] { 1, 1 },
+				2, B, Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+
+		Dmatrix T = triangular (A.n) ;
+		KLU_symbolic Tsym = klu_analyze (T.n, T.Ap, T.Ai, Common) ;
+		Numerics [1] = klu_factor (T.Ap, T.Ai, T.Ax, Tsym, Common) ;
+		assertEquals (0, klu_solve_batch (Symbolic, Numerics, null, 2, B,
+				Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+	}
+
+}
@@ -0,0 +1,78 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_sort.klu_sort;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+/**
+ * Solves with matrices whose BTF form has several blocks, so that the
+ * triangular solves work at a nonzero offset in the solution.
+ */
+public class Dklu_blocks extends Dklu_problem {
+
+	private static final double TOL = 1e-13 ;
+
+	/**
+	 * klu_solve with 1 to 5 right-hand-sides; each width uses its own
+	 * variant of klu_lsolve and klu_usolve.
+	 */
+	public void test_solve_nrhs() {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (5, 8, 0.2, 1) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (5, Symbolic.nblocks) ;
+
+		for (int nrhs = 1 ; nrhs <= 5 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			assertEquals (1, klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common)) ;
+			assertTrue ("nrhs " + nrhs, resid (A, nrhs, X, B, false) < TOL) ;
+		}
+	}
+
+	/**
+	 * klu_tsolve with 1 to 5 right-hand-sides.
+	 */
+	public void test_tsolve_nrhs() {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (5, 8, 0.2, 2) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (5, Symbolic.nblocks) ;
+
+		for (int nrhs = 1 ; nrhs <= 5 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			assertEquals (1, klu_tsolve (Symbolic, Numeric, A.n, nrhs, X, 0, Common)) ;
+			assertTrue ("nrhs " + nrhs, resid (A, nrhs, X, B, true) < TOL) ;
+		}
+	}
+
+	/**
+	 * klu_sort leaves the solution unchanged.
+	 */
+	public void test_sort() {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (5, 8, 0.3, 3) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] B = rhs (A.n, 2, 4) ;
+		double[] X = B.clone () ;
+		double[] Y = B.clone () ;
+
+		klu_solve (Symbolic, Numeric, A.n, 2, X, 0, Common) ;
+		assertEquals (1, klu_sort (Symbolic, Numeric, Common)) ;
+		klu_solve (Symbolic, Numeric, A.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, TOL) ;
+	}
+
+}
@@ -0,0 +1,192 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.klu.common.KLU_border;
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_border.klu_border;
+import static edu.ufl.cise.klu.tdouble.Dklu_border.klu_border_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_INVALID;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_SINGULAR;
+
+/**
+ * Solves with a bordered matrix [A B ; C D] (klu_border), compared with
+ * klu_solve on a factorization of the whole matrix.
+ */
+public class Dklu_border_test extends Dklu_problem {
+
+	private static final double TOL = 1e-10 ;
+
+	/**
+	 * @return a copy of the rows-by-cols matrix M with leading dimension
+	 * ld >= rows, padded with NaN
+	 */
+	private static double[] padded (double[] M, int rows, int cols, int ld)
+	{
+		double[] P = new double [ld*cols] ;
+		Arrays.fill (P, Double.NaN) ;
+		for (int j = 0 ; j < cols ; j++)
+		{
+			System.arraycopy (M, rows*j, P, ld*j, rows) ;
+		}
+		return (P) ;
+	}
+
+	/**
+	 * Borders A with m rows and columns, passed with leading dimensions pad
+	 * larger than needed, and solves with the right-hand-sides at offset
+	 * pad.  The padding is NaN, so reading it spoils the solution.
+	 */
+	private static void check (Dmatrix A, int m, boolean zeroD, int pad)
+	{
+		int n = A.n, N = n + m ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+
+		/* sparse-ish borders, as in added probes and constraints */
+		double[] B = rhs (n, m, 3) ;
+		double[] C = rhs (m, n, 4) ;
+		double[] D = zeroD ? null : rhs (m, m, 5) ;
+		for (int i = 0 ; i < n*m ; i++)
+		{
+			if (i % 5 != 0) B [i] = 0 ;
+			if (i % 4 != 0) C [i] = 0 ;
+		}
+
+		/* the whole matrix, and its factorization */
+		double[] F = new double [N*N] ;
+		double[] Ad = dense (A) ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			for (int i = 0 ; i < n ; i++) F [i + j*N] = Ad [i + j*n] ;
+			for (int i = 0 ; i < m ; i++) F [n + i + j*N] = C [i + j*m] ;
+		}
+		for (int j = 0 ; j < m ; j++)
+		{
+			for (int i = 0 ; i < n ; i++) F [i + (n+j)*N] = B [i + j*n] ;
+			for (int i = 0 ; i < m && !zeroD ; i++) F [n + i + (n+j)*N] = D [i + j*m] ;
+		}
+		Dmatrix G = sparse (N, F) ;
+		KLU_symbolic Symbolic2 = klu_analyze (N, G.Ap, G.Ai, Common) ;
+		KLU_numeric Numeric2 = klu_factor (G.Ap, G.Ai, G.Ax, Symbolic2, Common) ;
+		assertNotNull (Numeric2) ;
+
+		KLU_border Border = klu_border (Symbolic, Numeric, m,
+				padded (B, n, m, n + pad), n + pad, padded (C, m, n, m + pad),
+				m + pad, zeroD ? null : padded (D, m, m, m + pad), m + pad,
+				Common) ;
+		assertNotNull (Border) ;
+		int d = N + pad ;
+		for (int nrhs = 1 ; nrhs <= 5 ; nrhs++)
+		{
+			double[] Y = rhs (N, nrhs, nrhs) ;
+			double[] X = new double [pad + d*nrhs] ;
+			for (int c = 0 ; c < nrhs ; c++)
+			{
+				System.arraycopy (Y, N*c, X, pad + d*c, N) ;
+			}
+			assertEquals (1, klu_border_solve (Symbolic, Numeric, Border, d,
+					nrhs, X, pad, Common)) ;
+			klu_solve (Symbolic2, Numeric2, N, nrhs, Y, 0, Common) ;
+			double[] Xn = new double [N*nrhs] ;
+			for (int c = 0 ; c < nrhs ; c++)
+			{
+				System.arraycopy (X, pad + d*c, Xn, N*c, N) ;
+			}
+			assertClose (Y, Xn, TOL) ;
+		}
+	}
+
+	/**
+	 * Row interchanges in A, a zero D (so that S = -C*W), singletons, and
+	 * an unsymmetric matrix.
+	 */
+	public void test_border() {
+		Dmatrix A = weak (btf (5, 8, 0.2, 3), 0) ;
+		check (A, 3, false, 0) ;
+		check (A, 3, true, 0) ;
+		check (triangular (30), 2, false, 0) ;
+		check (load ("impcol_a"), 4, false, 0) ;
+	}
+
+	/**
+	 * Leading dimensions larger than needed, and an offset into X.
+	 */
+	public void test_leading() {
+		Dmatrix A = weak (btf (5, 8, 0.2, 3), 0) ;
+		check (A, 3, false, 2) ;
+		check (A, 1, true, 5) ;
+	}
+
+	/**
+	 * No rows or columns added: the solve is that of A.
+	 */
+	public void test_empty() {
+		Dmatrix A = weak (btf (5, 8, 0.2, 3), 0) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		KLU_border Border = klu_border (Symbolic, Numeric, 0, null, 0, null, 0,
+				null, 0, Common) ;
+		assertNotNull (Border) ;
+		double[] X = rhs (A.n, 2, 6) ;
+		double[] Y = X.clone () ;
+		assertEquals (1, klu_border_solve (Symbolic, Numeric, Border, A.n, 2, X,
+				0, Common)) ;
+		klu_solve (Symbolic, Numeric, A.n, 2, Y, 0, Common) ;
+		assertBitwise (Y, X) ;
+	}
+
+	/**
+	 * An added column that is zero in B and D: the bordered matrix is
+	 * singular, and the solve is refused.
+	 */
+	public void test_singular() {
+		Dmatrix A = triangular (30) ;
+		int n = A.n, m = 2 ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] B = rhs (n, m, 3) ;
+		double[] C = rhs (m, n, 4) ;
+		Arrays.fill (B, n, 2*n, 0) ;
+		KLU_border Border = klu_border (Symbolic, Numeric, m, B, n, C, m, null,
+				m, Common) ;
+		assertNotNull (Border) ;
+		assertEquals (KLU_SINGULAR, Common.status) ;
+		assertEquals (0, klu_border_solve (Symbolic, Numeric, Border, n + m, 1,
+				rhs (n + m, 1, 7), 0, Common)) ;
+		assertEquals (KLU_SINGULAR, Common.status) ;
+	}
+
+	/**
+	 * Leading dimensions too small for C, and for X.
+	 */
+	public void test_invalid() {
+		Dmatrix A = triangular (30) ;
+		int n = A.n, m = 2 ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] B = rhs (n, m, 3) ;
+		double[] C = rhs (m, n, 4) ;
+		assertNull (klu_border (Symbolic, Numeric, m, B, n, C, m - 1, null, m,
+				Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+
+		KLU_border Border = klu_border (Symbolic, Numeric, m, B, n, C, m, null,
+				m, Common) ;
+		assertNotNull (Border) ;
+		assertEquals (0, klu_border_solve (Symbolic, Numeric, Border, n + m - 1,
+				1, rhs (n + m, 1, 7), 0, Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+	}
+
+}
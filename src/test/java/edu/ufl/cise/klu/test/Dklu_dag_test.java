@@ -0,0 +1,182 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_levels;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * Solves of independent BTF blocks as a task graph, compared with the serial
+ * block back-substitution of klu_solve.
+ */
+public class Dklu_dag_test extends Dklu_problem {
+
+	/**
+	 * A block upper triangular matrix with irreducible blocks of the given
+	 * sizes.  If dep [b] is not -1, the rows of block b have one entry in
+	 * the columns of block dep [b] > b, so block b has to wait for it;
+	 * otherwise block b is independent of all later blocks.
+	 */
+	private static Dmatrix blocks (int[] size, int[] dep, long seed)
+	{
+		Random rand = new Random (seed) ;
+		int nb = size.length ;
+		int[] R = new int [nb+1] ;
+		for (int b = 0 ; b < nb ; b++) R [b+1] = R [b] + size [b] ;
+		int n = R [nb] ;
+		double[] D = new double [n*n] ;
+		for (int b = 0 ; b < nb ; b++)
+		{
+			for (int j = R [b] ; j < R [b+1] ; j++)
+			{
+				D [j + j*n] = 2 + rand.nextDouble () ;
+				if (size [b] > 1)
+				{
+					D [((j + 1 < R [b+1]) ? j + 1 : R [b]) + j*n] = 1 ;
+				}
+				for (int i = R [b] ; i < R [b+1] ; i++)
+				{
+					if (D [i + j*n] == 0 && rand.nextDouble () < 0.3)
+					{
+						D [i + j*n] = rand.nextDouble () - 0.5 ;
+					}
+				}
+			}
+			if (dep [b] != -1)
+			{
+				D [R [b] + R [dep [b]]*n] = rand.nextDouble () - 0.5 ;
+			}
+		}
+		return (sparse (n, D)) ;
+	}
+
+	private static KLU_numeric check (Dmatrix A, ExecutorService executor)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+
+		for (int nrhs = 1 ; nrhs <= 6 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			Common.executor = null ;
+			klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+
+			double[] Y = B.clone () ;
+			Common.executor = executor ;
+			assertEquals (1, klu_solve (Symbolic, Numeric, A.n, nrhs, Y, 0, Common)) ;
+			assertBitwise (X, Y) ;
+			assertTrue (resid (A, nrhs, Y, B, false) < 1e-14) ;
+			Common.executor = null ;
+		}
+		return (Numeric) ;
+	}
+
+	public void test_dag() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			assertTrue (check (btf (20, 6, 0.01, 1), executor).nblevels < 20) ;
+			assertTrue (check (btf (12, 10, 0.005, 2), executor).nblevels < 12) ;
+			check (load ("impcol_a"), executor) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * No block depends on another: one level of the graph.
+	 */
+	public void test_independent() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			int[] size = { 5, 3, 7, 5, 4, 6, 2, 5 } ;
+			int[] dep = { -1, -1, -1, -1, -1, -1, -1, -1 } ;
+			assertEquals (1, check (blocks (size, dep, 1), executor).nblevels) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * Each block depends on the next: the graph is a path, and klu_solve
+	 * uses the serial back-substitution.
+	 */
+	public void test_chain() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			int[] size = { 4, 4, 4, 4, 4, 4 } ;
+			int[] dep = { 1, 2, 3, 4, 5, -1 } ;
+			assertEquals (6, check (blocks (size, dep, 2), executor).nblevels) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * A binary tree of blocks, with row interchanges in the blocks, a run
+	 * of singletons, blocks with dense inverses, and a level-scheduled
+	 * block, so each kind of block solve runs as a task.
+	 */
+	public void test_kinds() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			int[] size = { 6, 3, 1, 1, 1, 60, 2, 4, 5, 3, 7, 1, 8, 4, 6 } ;
+			int[] dep = new int [15] ;
+			for (int b = 0 ; b < 15 ; b++)
+			{
+				dep [b] = (b < 14) ? 7 + (b + 1) / 2 : -1 ;
+			}
+			dep [2] = 3 ;
+			dep [3] = 4 ;
+			Dmatrix A = weak (blocks (size, dep, 3), 1e-6) ;
+
+			KLU_common Common = common () ;
+			Common.dense_maxblock = 4 ;
+			KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+			KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+			assertTrue (pivots (Symbolic, Numeric) > 0) ;
+			assertNotNull (Numeric.Dinv) ;
+			Common.par_minblock = 50 ;
+			Common.par_minlevel = 4 ;
+			Common.nthreads = 4 ;
+			assertEquals (1, klu_levels (Symbolic, Numeric, Common)) ;
+			for (int nrhs = 1 ; nrhs <= 6 ; nrhs++)
+			{
+				double[] B = rhs (A.n, nrhs, nrhs) ;
+				double[] X = B.clone () ;
+				klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+				double[] Y = B.clone () ;
+				Common.executor = executor ;
+				assertEquals (1, klu_solve (Symbolic, Numeric, A.n, nrhs, Y, 0, Common)) ;
+				Common.executor = null ;
+				assertBitwise (X, Y) ;
+				assertTrue (resid (A, nrhs, Y, B, false) < 1e-12) ;
+			}
+			assertTrue (Numeric.nblevels < Symbolic.nblocks) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+}
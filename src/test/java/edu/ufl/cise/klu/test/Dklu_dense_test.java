@@ -0,0 +1,134 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve_factored.klu_permute_in;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve_factored.klu_permute_out;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve_factored.klu_solve_factored;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+/**
+ * Dense factorization of small blocks (Common.dense_maxblock), compared with
+ * the sparse kernel.
+ */
+public class Dklu_dense_test extends Dklu_problem {
+
+	private static final double TOL = 1e-12 ;
+
+	/**
+	 * Solve with the sparse and the dense factors, by klu_solve, klu_tsolve
+	 * and klu_solve_factored.
+	 */
+	private static void compare (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Sparse, KLU_numeric Dense, KLU_common Common)
+	{
+		for (int nrhs = 1 ; nrhs <= 4 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			double[] Y = B.clone () ;
+			klu_solve (Symbolic, Sparse, A.n, nrhs, X, 0, Common) ;
+			klu_solve (Symbolic, Dense, A.n, nrhs, Y, 0, Common) ;
+			assertClose (X, Y, TOL) ;
+
+			double[] Z = new double [A.n*nrhs] ;
+			double[] W = new double [A.n*nrhs] ;
+			klu_permute_in (Symbolic, Dense, A.n, nrhs, B, 0, Z, 0, Common) ;
+			klu_solve_factored (Symbolic, Dense, A.n, nrhs, Z, 0, Common) ;
+			klu_permute_out (Symbolic, Dense, A.n, nrhs, Z, 0, W, 0, Common) ;
+			assertClose (X, W, TOL) ;
+
+			X = B.clone () ;
+			Y = B.clone () ;
+			klu_tsolve (Symbolic, Sparse, A.n, nrhs, X, 0, Common) ;
+			klu_tsolve (Symbolic, Dense, A.n, nrhs, Y, 0, Common) ;
+			assertClose (X, Y, TOL) ;
+		}
+	}
+
+	/**
+	 * Blocks of every size from 1 to 10, so that some are dense and some
+	 * are too large to be.
+	 */
+	public void test_sizes() {
+		for (int bsize = 1 ; bsize <= 10 ; bsize++)
+		{
+			Dmatrix A = btf (6, bsize, 0.2, bsize) ;
+			KLU_common Common = common () ;
+			KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+			KLU_numeric Sparse = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic,
+					Common) ;
+			Common.dense_maxblock = 8 ;
+			KLU_numeric Dense = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic,
+					Common) ;
+			assertNotNull (Dense) ;
+			assertEquals (bsize >= 2 && bsize <= 8, Dense.Dinv != null) ;
+			compare (A, Symbolic, Sparse, Dense, Common) ;
+		}
+	}
+
+	/**
+	 * klu_refactor updates the dense factors and their inverses.
+	 */
+	public void test_refactor() {
+		Dmatrix A = btf (10, 4, 0.2, 3) ;
+		KLU_common Common = common () ;
+		Common.dense_maxblock = 4 ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Dense = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 1e-2 * ((p % 3) - 1) ;
+		}
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Dense,
+				Common)) ;
+		Common.dense_maxblock = 0 ;
+		KLU_numeric Sparse = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		compare (A, Symbolic, Sparse, Dense, Common) ;
+	}
+
+	/**
+	 * Weak and zero diagonals force row interchanges in the dense blocks,
+	 * so that their factors and inverses hold swapped rows, in klu_factor
+	 * and in klu_refactor.
+	 */
+	public void test_pivoting() {
+		double[] weight = { 1e-6, 0 } ;
+		for (int bsize = 2 ; bsize <= 8 ; bsize++)
+		{
+			for (int w = 0 ; w < weight.length ; w++)
+			{
+				Dmatrix A = weak (btf (6, bsize, 0.4, bsize), weight [w]) ;
+				KLU_common Common = common () ;
+				KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+				KLU_numeric Sparse = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic,
+						Common) ;
+				Common.dense_maxblock = 8 ;
+				KLU_numeric Dense = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic,
+						Common) ;
+				assertNotNull (Dense) ;
+				assertNotNull (Dense.Dinv) ;
+				assertTrue (pivots (Symbolic, Dense) > 0) ;
+				compare (A, Symbolic, Sparse, Dense, Common) ;
+
+				/* new values, with the pivot order of the first ones */
+				for (int p = 0 ; p < A.Ap [A.n] ; p++)
+				{
+					A.Ax [p] *= 1 + 1e-2 * ((p % 3) - 1) ;
+				}
+				assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic,
+						Dense, Common)) ;
+				Common.dense_maxblock = 0 ;
+				Sparse = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+				compare (A, Symbolic, Sparse, Dense, Common) ;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_INVALID;
+
+/**
+ * klu_factor with the pivot order of a previous factorization as a hint,
+ * compared with klu_factor without one.
+ */
+public class Dklu_hint_test extends Dklu_problem {
+
+	/**
+	 * Factorize B with the pivot order of a factorization of A as a hint,
+	 * and without it.  A and B have the same pattern.  Compares the
+	 * solutions, and returns the hinted factorization.
+	 */
+	private static KLU_numeric check (KLU_symbolic Symbolic, KLU_numeric Old,
+			Dmatrix B, KLU_common Common)
+	{
+		KLU_numeric Hinted = klu_factor (B.Ap, B.Ai, B.Ax, Symbolic, Old,
+				Common) ;
+		KLU_numeric Fresh = klu_factor (B.Ap, B.Ai, B.Ax, Symbolic, Common) ;
+		assertNotNull (Hinted) ;
+		assertNotNull (Fresh) ;
+
+		double[] R = rhs (B.n, 2, 1) ;
+		double[] X = R.clone () ;
+		double[] Y = R.clone () ;
+		klu_solve (Symbolic, Fresh, B.n, 2, X, 0, Common) ;
+		klu_solve (Symbolic, Hinted, B.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-8) ;
+		assertTrue (resid (B, 2, Y, R, false) < 1e-12) ;
+		X = R.clone () ;
+		Y = R.clone () ;
+		klu_tsolve (Symbolic, Fresh, B.n, 2, X, 0, Common) ;
+		klu_tsolve (Symbolic, Hinted, B.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-8) ;
+		return (Hinted) ;
+	}
+
+	/**
+	 * The old values have weak diagonals, so the old factorization takes
+	 * off-diagonal pivots.  The new values have strong diagonals, which a
+	 * fresh factorization takes, but the old pivots still pass the
+	 * threshold test, so the hinted factorization keeps them.
+	 */
+	public void test_keep() {
+		Dmatrix B = btf (4, 25, 0.1, 1) ;
+		Dmatrix A = weak (B, 1e-6) ;
+		KLU_common Common = common () ;
+		/* a low threshold, so that the old pivots pass it in the new values
+		 * even where elimination made them small */
+		Common.tol = 1e-8 ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Old = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertTrue (pivots (Symbolic, Old) > 0) ;
+
+		KLU_numeric Hinted = check (Symbolic, Old, B, Common) ;
+		KLU_numeric Fresh = klu_factor (B.Ap, B.Ai, B.Ax, Symbolic, Common) ;
+		assertEquals (0, pivots (Symbolic, Fresh)) ;
+		assertTrue (Arrays.equals (Old.Pnum, Hinted.Pnum)) ;
+	}
+
+	/**
+	 * The other way around: the old pivots are the diagonal, which is too
+	 * weak in the new values, so the hinted factorization has to leave the
+	 * hint where it fails the threshold test.
+	 */
+	public void test_reject() {
+		Dmatrix A = btf (4, 25, 0.1, 1) ;
+		Dmatrix B = weak (A, 1e-6) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Old = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (0, pivots (Symbolic, Old)) ;
+
+		KLU_numeric Hinted = check (Symbolic, Old, B, Common) ;
+		assertTrue (pivots (Symbolic, Hinted) > 0) ;
+	}
+
+	/**
+	 * Small changes to the values of impcol_a: the hint is kept, with the
+	 * same fill.
+	 */
+	public void test_impcol_a() {
+		Dmatrix A = load ("impcol_a") ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Old = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		Dmatrix B = weak (A, 1) ;   /* a copy of A */
+		for (int p = 0 ; p < B.Ap [B.n] ; p++)
+		{
+			B.Ax [p] *= 1 + 1e-3 * ((p % 3) - 1) ;
+		}
+		KLU_numeric Hinted = check (Symbolic, Old, B, Common) ;
+		assertTrue (Arrays.equals (Old.Pnum, Hinted.Pnum)) ;
+		assertEquals (Old.lnz, Hinted.lnz) ;
+		assertEquals (Old.unz, Hinted.unz) ;
+	}
+
+	/**
+	 * A hint from a different Symbolic object is rejected.
+	 */
+	public void test_invalid() {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (2, 10, 0.1, 2) ;
+		Dmatrix C = btf (3, 10, 0.1, 3) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_symbolic Other = klu_analyze (C.n, C.Ap, C.Ai, Common) ;
+		KLU_numeric Hint = klu_factor (C.Ap, C.Ai, C.Ax, Other, Common) ;
+		assertNull (klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Hint, Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+	}
+
+}
@@ -0,0 +1,94 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_ilu.klu_ilu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_krylov.klu_gmres;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+/**
+ * Incomplete factorization (klu_ilu_factor).  Where nothing is dropped, the
+ * result is compared with klu_solve and klu_tsolve on the exact factors;
+ * otherwise it is used to precondition GMRES.
+ */
+public class Dklu_ilu_test extends Dklu_problem {
+
+	/**
+	 * Solve with the incomplete factors and with the exact ones, with and
+	 * without the transpose.
+	 */
+	private static void check_exact (Dmatrix A, KLU_common Common)
+	{
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		KLU_numeric Ilu = klu_ilu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertNotNull (Ilu) ;
+		double[] B = rhs (A.n, 2, 1) ;
+		double[] X = B.clone () ;
+		double[] Y = B.clone () ;
+
+		klu_solve (Symbolic, Numeric, A.n, 2, X, 0, Common) ;
+		klu_solve (Symbolic, Ilu, A.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-10) ;
+
+		X = B.clone () ;
+		Y = B.clone () ;
+		klu_tsolve (Symbolic, Numeric, A.n, 2, X, 0, Common) ;
+		klu_tsolve (Symbolic, Ilu, A.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-10) ;
+	}
+
+	/**
+	 * A tridiagonal matrix has no fill-in, so ILU(0) is the exact LU.
+	 */
+	public void test_ilu0_tridiagonal() {
+		KLU_common Common = common () ;
+		Common.ilu = 0 ;
+		check_exact (grid (200, 1, 1), Common) ;
+	}
+
+	/**
+	 * ILUT with no dropping and no fill cap is the exact LU.
+	 */
+	public void test_ilut_nodrop() {
+		KLU_common Common = common () ;
+		Common.ilu = 1 ;
+		Common.ilu_droptol = 0 ;
+		Common.ilu_fill = 1e6 ;
+		check_exact (btf (3, 30, 0.15, 2), Common) ;
+		check_exact (load ("impcol_a"), Common) ;
+	}
+
+	/**
+	 * ILU(0) and ILUT precondition GMRES well enough to converge on a 2D
+	 * Laplacian, to the solution of klu_solve on the exact factors.
+	 */
+	public void test_preconditioner() {
+		Dmatrix A = grid (30, 30, 1) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] B = rhs (A.n, 1, 3) ;
+		double[] Xref = B.clone () ;
+
+		klu_solve (Symbolic, Numeric, A.n, 1, Xref, 0, Common) ;
+		for (int ilu = 0 ; ilu <= 1 ; ilu++)
+		{
+			Common.ilu = ilu ;
+			KLU_numeric Ilu = klu_ilu_factor (A.Ap, A.Ai, A.Ax, Symbolic,
+					Common) ;
+			assertTrue (Ilu.lnz + Ilu.unz < Numeric.lnz + Numeric.unz) ;
+			double[] X = new double [A.n] ;
+			assertEquals (1, klu_gmres (A.Ap, A.Ai, A.Ax, Symbolic, Ilu,
+					B, 0, X, 0, Common)) ;
+			assertTrue (Common.krylov_iter > 1) ;
+			assertClose (Xref, X, 1e-8) ;
+		}
+	}
+
+}
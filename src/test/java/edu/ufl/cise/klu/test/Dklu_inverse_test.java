@@ -0,0 +1,161 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Random;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_inverse.klu_inverse_diag;
+import static edu.ufl.cise.klu.tdouble.Dklu_inverse.klu_sel_inverse;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_INVALID;
+
+/**
+ * Selected entries of inv(A), compared with the inverse computed column by
+ * column with klu_solve.
+ */
+public class Dklu_inverse_test extends Dklu_problem {
+
+	private static final double TOL = 1e-11 ;
+
+	/**
+	 * @return inv(A) by n solves, stored by columns
+	 */
+	private static double[] inverse (int n, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_common Common)
+	{
+		double[] Z = new double [n*n] ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			Z [j + j*n] = 1 ;
+		}
+		assertEquals (1, klu_solve (Symbolic, Numeric, n, n, Z, 0, Common)) ;
+		return (Z) ;
+	}
+
+	private static void check (Dmatrix A, int scale)
+	{
+		KLU_common Common = common () ;
+		Common.scale = scale ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		int n = A.n ;
+		double[] Z = inverse (n, Symbolic, Numeric, Common) ;
+
+		/* the diagonal */
+		double[] D = new double [n] ;
+		double[] Dref = new double [n] ;
+		assertEquals (1, klu_inverse_diag (Symbolic, Numeric, D, Common)) ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			Dref [j] = Z [j + j*n] ;
+		}
+		assertClose (Dref, D, TOL) ;
+
+		/* the pattern of A, its transpose, and random entries */
+		Random rand = new Random (n) ;
+		int nz = A.Ap [n] ;
+		int[] Ri = new int [2*nz + 50] ;
+		int[] Ci = new int [2*nz + 50] ;
+		int k = 0 ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			for (int p = A.Ap [j] ; p < A.Ap [j+1] ; p++)
+			{
+				Ri [k] = A.Ai [p] ; Ci [k++] = j ;
+				Ri [k] = j ; Ci [k++] = A.Ai [p] ;
+			}
+		}
+		while (k < Ri.length)
+		{
+			Ri [k] = rand.nextInt (n) ; Ci [k++] = rand.nextInt (n) ;
+		}
+		double[] Zx = new double [k] ;
+		double[] Zref = new double [k] ;
+		assertEquals (1, klu_sel_inverse (Symbolic, Numeric, k, Ri, Ci, Zx, Common)) ;
+		for (int p = 0 ; p < k ; p++)
+		{
+			Zref [p] = Z [Ri [p] + Ci [p]*n] ;
+		}
+		assertClose (Zref, Zx, TOL) ;
+	}
+
+	/**
+	 * Row interchanges, singletons (where every entry above the diagonal
+	 * couples two blocks through Off), a single irreducible block, and an
+	 * unsymmetric matrix, with each row scaling.
+	 */
+	public void test_inverse() {
+		Dmatrix A = weak (btf (5, 8, 0.2, 1), 1e-6) ;
+		for (int scale = 0 ; scale <= 2 ; scale++)
+		{
+			check (A, scale) ;
+			check (triangular (30), scale) ;
+			check (load ("impcol_a"), scale) ;
+		}
+		check (grid (10, 10, 1), 2) ;
+	}
+
+	/**
+	 * Every entry of inv(A), each asked for twice in opposite orders.  The
+	 * entries below the block diagonal are exactly zero.
+	 */
+	public void test_all() {
+		Dmatrix A = weak (btf (4, 6, 0.3, 3), 1e-3) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (4, Symbolic.nblocks) ;
+		assertTrue (pivots (Symbolic, Numeric) > 0) ;
+		int n = A.n ;
+		double[] Z = inverse (n, Symbolic, Numeric, Common) ;
+
+		int nz = 2*n*n ;
+		int[] Ri = new int [nz] ;
+		int[] Ci = new int [nz] ;
+		for (int k = 0 ; k < n*n ; k++)
+		{
+			Ri [k] = k % n ;
+			Ci [k] = k / n ;
+			Ri [nz-1-k] = k % n ;
+			Ci [nz-1-k] = k / n ;
+		}
+		double[] Zx = new double [nz] ;
+		assertEquals (1, klu_sel_inverse (Symbolic, Numeric, nz, Ri, Ci, Zx,
+				Common)) ;
+		double[] Zref = new double [nz] ;
+		int nzero = 0 ;
+		for (int p = 0 ; p < nz ; p++)
+		{
+			Zref [p] = Z [Ri [p] + Ci [p]*n] ;
+			if (Zref [p] == 0)
+			{
+				assertEquals (0, Zx [p], 0) ;
+				nzero++ ;
+			}
+		}
+		assertClose (Zref, Zx, TOL) ;
+		assertTrue (nzero > 0) ;
+	}
+
+	/**
+	 * No entries, and an index out of range.
+	 */
+	public void test_invalid() {
+		Dmatrix A = triangular (30) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (1, klu_sel_inverse (Symbolic, Numeric, 0, null, null,
+				null, Common)) ;
+		int[] Ri = { 0, 30 } ;
+		int[] Ci = { 0, 0 } ;
+		assertEquals (0, klu_sel_inverse (Symbolic, Numeric, 2, Ri, Ci,
+				new double [2], Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+	}
+
+}
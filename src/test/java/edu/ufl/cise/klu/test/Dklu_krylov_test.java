@@ -0,0 +1,104 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_krylov.klu_bicgstab;
+import static edu.ufl.cise.klu.tdouble.Dklu_krylov.klu_gmres;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_NOT_CONVERGED;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_OK;
+
+/**
+ * GMRES and BiCGSTAB preconditioned by a stale factorization, compared with
+ * klu_solve on a fresh factorization.
+ */
+public class Dklu_krylov_test extends Dklu_problem {
+
+	private static final int GMRES = 0 ;
+	private static final int BICGSTAB = 1 ;
+
+	/**
+	 * Factorize A, then perturb its values by a relative amount delta.
+	 */
+	private static KLU_numeric stale (Dmatrix A, KLU_symbolic Symbolic,
+			double delta, KLU_common Common)
+	{
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + delta * ((p % 3) - 1) ;
+		}
+		return (Numeric) ;
+	}
+
+	private static int krylov (int method, Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, double[] B, double[] X, KLU_common Common)
+	{
+		if (method == GMRES)
+		{
+			return (klu_gmres (A.Ap, A.Ai, A.Ax, Symbolic, Numeric, B, 0,
+					X, 0, Common)) ;
+		}
+		return (klu_bicgstab (A.Ap, A.Ai, A.Ax, Symbolic, Numeric, B, 0,
+				X, 0, Common)) ;
+	}
+
+	private void check_converged (int method) {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (4, 25, 0.1, 4) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = stale (A, Symbolic, 1e-3, Common) ;
+		KLU_numeric Fresh = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] B = rhs (A.n, 1, 5) ;
+		double[] Xref = B.clone () ;
+		double[] X = new double [A.n] ;
+
+		klu_solve (Symbolic, Fresh, A.n, 1, Xref, 0, Common) ;
+		assertEquals (1, krylov (method, A, Symbolic, Numeric, B, X, Common)) ;
+		assertEquals (KLU_OK, Common.status) ;
+		assertTrue (Common.krylov_iter > 0) ;
+		assertTrue (Common.krylov_resid <= Common.krylov_tol) ;
+		assertEquals (0, Common.krylov_refactor) ;
+		assertClose (Xref, X, 1e-8) ;
+	}
+
+	private void check_not_converged (int method) {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (4, 25, 0.1, 6) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = stale (A, Symbolic, 0.3, Common) ;
+		double[] B = rhs (A.n, 1, 7) ;
+		double[] X = new double [A.n] ;
+
+		Common.krylov_maxit = 1 ;
+		assertEquals (0, krylov (method, A, Symbolic, Numeric, B, X, Common)) ;
+		assertEquals (KLU_NOT_CONVERGED, Common.status) ;
+		assertEquals (1, Common.krylov_iter) ;
+		assertTrue (Common.krylov_resid > Common.krylov_tol) ;
+		assertEquals (1, Common.krylov_refactor) ;
+	}
+
+	public void test_gmres() {
+		check_converged (GMRES) ;
+	}
+
+	public void test_bicgstab() {
+		check_converged (BICGSTAB) ;
+	}
+
+	/**
+	 * Hitting the iteration limit is reported, not silently accepted.
+	 */
+	public void test_gmres_not_converged() {
+		check_not_converged (GMRES) ;
+	}
+
+	public void test_bicgstab_not_converged() {
+		check_not_converged (BICGSTAB) ;
+	}
+
+}
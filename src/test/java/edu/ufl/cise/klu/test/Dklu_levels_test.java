@@ -0,0 +1,175 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_levels;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * Level-scheduled solves (klu_levels), compared with the column-oriented
+ * klu_solve.
+ */
+public class Dklu_levels_test extends Dklu_problem {
+
+	private static final double TOL = 1e-12 ;
+
+	/**
+	 * An arrow matrix: a diagonal plus a full first row and column.  AMD
+	 * orders the hub last, so all other rows of L and U form one level.
+	 */
+	private static Dmatrix arrow (int n)
+	{
+		double[] D = new double [n*n] ;
+		for (int i = 0 ; i < n ; i++)
+		{
+			D [i + i*n] = 4 ;
+			if (i > 0)
+			{
+				D [i] = -1 ;
+				D [i*n] = -1 ;
+			}
+		}
+		return (sparse (n, D)) ;
+	}
+
+	private static KLU_numeric check (Dmatrix A, ExecutorService executor)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+
+		for (int nrhs = 1 ; nrhs <= 5 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+
+			Common.par_minblock = 50 ;
+			Common.par_minlevel = 4 ;
+			Common.nthreads = 4 ;
+			Common.executor = executor ;
+			assertEquals (1, klu_levels (Symbolic, Numeric, Common)) ;
+			assertNotNull (Numeric.Lrp) ;
+			double[] Y = B.clone () ;
+			assertEquals (1, klu_solve (Symbolic, Numeric, A.n, nrhs, Y, 0, Common)) ;
+			assertClose (X, Y, TOL) ;
+			assertTrue (resid (A, nrhs, Y, B, false) < TOL) ;
+			Common.executor = null ;
+		}
+		return (Numeric) ;
+	}
+
+	/**
+	 * The row copy follows the row interchanges of partial pivoting.
+	 */
+	public void test_pivoting() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			Dmatrix A = weak (btf (2, 90, 0.05, 5), 1e-6) ;
+			KLU_common Common = common () ;
+			KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+			KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+			assertTrue (pivots (Symbolic, Numeric) > 0) ;
+			check (A, null) ;
+			check (A, executor) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * A tridiagonal matrix: each level of L and U holds at most two rows,
+	 * so every level is solved serially.
+	 */
+	public void test_chain() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			Dmatrix A = grid (200, 1, 1) ;
+			KLU_numeric Numeric = check (A, executor) ;
+			for (int[] Levp : new int[][] { Numeric.Llevp [0], Numeric.Ulevp [0] })
+			{
+				for (int lev = 0 ; lev < Levp.length - 1 ; lev++)
+				{
+					assertTrue (Levp [lev+1] - Levp [lev] <= 2) ;
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * An arrow matrix: one level of n-1 rows, which does not divide evenly
+	 * among the tasks.
+	 */
+	public void test_wide() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			KLU_numeric Numeric = check (arrow (103), executor) ;
+			assertEquals (3, Numeric.Llevp [0].length) ;
+			assertEquals (102, Numeric.Llevp [0] [1]) ;
+			assertEquals (3, Numeric.Ulevp [0].length) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	public void test_serial() {
+		check (grid (20, 20, 1), null) ;
+		check (btf (3, 80, 0.02, 1), null) ;
+	}
+
+	public void test_parallel() {
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			check (grid (20, 20, 1), executor) ;
+			check (btf (3, 80, 0.02, 1), executor) ;
+			check (load ("impcol_a"), executor) ;
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * klu_refactor updates the row copy with the new values.
+	 */
+	public void test_refactor() {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (2, 100, 0.03, 2) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		Common.par_minblock = 50 ;
+		assertEquals (1, klu_levels (Symbolic, Numeric, Common)) ;
+
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 0.01 * (p % 7) ;
+		}
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Numeric, Common)) ;
+		double[] B = rhs (A.n, 2, 3) ;
+		double[] X = B.clone () ;
+		klu_solve (Symbolic, Numeric, A.n, 2, X, 0, Common) ;
+		assertTrue (resid (A, 2, X, B, false) < TOL) ;
+	}
+
+}
@@ -0,0 +1,100 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+/**
+ * Merging of small BTF blocks (Common.merge_maxblock), compared with the
+ * solution without merging.
+ */
+public class Dklu_merge_test extends Dklu_problem {
+
+	private static final double TOL = 1e-12 ;
+
+	private static KLU_symbolic analyze (Dmatrix A, int merge_maxblock,
+			KLU_common Common)
+	{
+		Common.merge_maxblock = merge_maxblock ;
+		Common.merge_coupling = 100 ;
+		return (klu_analyze (A.n, A.Ap, A.Ai, Common)) ;
+	}
+
+	private static void check (Dmatrix A, int merge_maxblock)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = analyze (A, 0, Common) ;
+		KLU_symbolic Merged = analyze (A, merge_maxblock, Common) ;
+		assertTrue (Merged.nblocks < Symbolic.nblocks) ;
+		for (int b = 0 ; b < Merged.nblocks ; b++)
+		{
+			assertTrue (Merged.R [b+1] - Merged.R [b] <= Math.max (
+					merge_maxblock, Symbolic.maxblock)) ;
+		}
+
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		KLU_numeric MNumeric = klu_factor (A.Ap, A.Ai, A.Ax, Merged, Common) ;
+		assertNotNull (MNumeric) ;
+		compare (A, Symbolic, Numeric, Merged, MNumeric, Common) ;
+
+		/* refactor with new values */
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 1e-2 * ((p % 3) - 1) ;
+		}
+		Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Merged, MNumeric,
+				Common)) ;
+		compare (A, Symbolic, Numeric, Merged, MNumeric, Common) ;
+	}
+
+	private static void compare (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_symbolic Merged, KLU_numeric MNumeric,
+			KLU_common Common)
+	{
+		for (int nrhs = 1 ; nrhs <= 3 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			double[] Y = B.clone () ;
+			klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+			klu_solve (Merged, MNumeric, A.n, nrhs, Y, 0, Common) ;
+			assertClose (X, Y, TOL) ;
+
+			X = B.clone () ;
+			Y = B.clone () ;
+			klu_tsolve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+			klu_tsolve (Merged, MNumeric, A.n, nrhs, Y, 0, Common) ;
+			assertClose (X, Y, TOL) ;
+		}
+	}
+
+	public void test_small_blocks() {
+		check (btf (20, 3, 0.05, 1), 12) ;
+	}
+
+	/**
+	 * Zero diagonals, so the merged blocks are factorized with row
+	 * interchanges.
+	 */
+	public void test_pivoting() {
+		Dmatrix A = weak (btf (20, 3, 0.05, 4), 0) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Merged = analyze (A, 12, Common) ;
+		KLU_numeric MNumeric = klu_factor (A.Ap, A.Ai, A.Ax, Merged, Common) ;
+		assertTrue (pivots (Merged, MNumeric) > 0) ;
+		check (A, 12) ;
+	}
+
+	public void test_mixed_blocks() {
+		check (btf (8, 10, 0.02, 2), 40) ;
+		check (btf (30, 2, 0.01, 3), 8) ;
+	}
+
+}
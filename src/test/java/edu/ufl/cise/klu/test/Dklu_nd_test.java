@@ -0,0 +1,230 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+import static edu.ufl.cise.klu.test.Dklu_analyze_parallel_test.assertSymbolic;
+
+/**
+ * Nested dissection (ordering 5): the permutation, the separator tree, and
+ * the solution, compared with klu_solve and klu_tsolve on the AMD
+ * factorization.
+ */
+public class Dklu_nd_test extends Dklu_problem {
+
+	private static KLU_symbolic analyze (Dmatrix A, int ordering,
+			KLU_common Common)
+	{
+		Common.ordering = ordering ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		assertNotNull (Symbolic) ;
+		return (Symbolic) ;
+	}
+
+	/**
+	 * Check that P is a permutation of 0..n-1, and return its inverse.
+	 */
+	private static int[] inverse (int[] P, int n)
+	{
+		int[] Pinv = new int [n] ;
+		Arrays.fill (Pinv, -1) ;
+		for (int k = 0 ; k < n ; k++)
+		{
+			assertTrue (P [k] >= 0 && P [k] < n) ;
+			assertEquals (-1, Pinv [P [k]]) ;
+			Pinv [P [k]] = k ;
+		}
+		return (Pinv) ;
+	}
+
+	/**
+	 * Check the separator tree: it is in postorder, each subtree is a
+	 * contiguous range of columns ending with the columns of its root and
+	 * nested in the range of its parent, the nodes cover all columns, and
+	 * every entry of a diagonal block of A (P,Q) is between a node and one
+	 * of its ancestors.
+	 */
+	private static void check_tree (Dmatrix A, KLU_symbolic Symbolic)
+	{
+		int n = A.n ;
+		int nsep = Symbolic.nsep ;
+		int[] Start = Symbolic.Sep_start ;
+		int[] First = Symbolic.Sep_first ;
+		int[] Parent = Symbolic.Sep_parent ;
+		int[] Pinv = inverse (Symbolic.P, n) ;
+		int[] Qinv = inverse (Symbolic.Q, n) ;
+		int[] Node = new int [n] ;
+		int[] Block = new int [n] ;
+
+		assertTrue (nsep > 1) ;
+		assertEquals (0, Start [0]) ;
+		assertEquals (n, Start [nsep]) ;
+		for (int t = 0 ; t < nsep ; t++)
+		{
+			assertTrue (Start [t] < Start [t+1]) ;
+			assertTrue (First [t] <= Start [t]) ;
+			for (int k = Start [t] ; k < Start [t+1] ; k++)
+			{
+				Node [k] = t ;
+			}
+			int p = Parent [t] ;
+			if (p != -1)
+			{
+				assertTrue (p > t) ;
+				assertTrue (First [p] <= First [t]) ;
+				assertTrue (Start [t+1] <= Start [p]) ;
+			}
+		}
+
+		for (int b = 0 ; b < Symbolic.nblocks ; b++)
+		{
+			for (int k = Symbolic.R [b] ; k < Symbolic.R [b+1] ; k++)
+			{
+				Block [k] = b ;
+			}
+		}
+		for (int j = 0 ; j < n ; j++)
+		{
+			for (int q = A.Ap [j] ; q < A.Ap [j+1] ; q++)
+			{
+				if (Block [Pinv [A.Ai [q]]] != Block [Qinv [j]]) continue ;
+				int ti = Node [Pinv [A.Ai [q]]] ;
+				int tj = Node [Qinv [j]] ;
+				assertTrue (ancestor (Parent, ti, tj) || ancestor (Parent, tj, ti)) ;
+			}
+		}
+	}
+
+	/**
+	 * @return true if a is t or an ancestor of t
+	 */
+	private static boolean ancestor (int[] Parent, int a, int t)
+	{
+		for ( ; t != -1 ; t = Parent [t])
+		{
+			if (t == a) return (true) ;
+		}
+		return (false) ;
+	}
+
+	private static void check (Dmatrix A)
+	{
+		KLU_common Common = common () ;
+		Common.nd_leafsize = 16 ;
+		/* keep the dissection even where AMD gives less fill */
+		Common.nd_amd = 0 ;
+		KLU_symbolic Nd = analyze (A, 5, Common) ;
+		check_tree (A, Nd) ;
+		KLU_numeric NNd = klu_factor (A.Ap, A.Ai, A.Ax, Nd, Common) ;
+		assertNotNull (NNd) ;
+		KLU_symbolic Amd = analyze (A, 0, Common) ;
+		KLU_numeric NAmd = klu_factor (A.Ap, A.Ai, A.Ax, Amd, Common) ;
+
+		double[] B = rhs (A.n, 2, 1) ;
+		double[] X = B.clone () ;
+		double[] Y = B.clone () ;
+		klu_solve (Amd, NAmd, A.n, 2, X, 0, Common) ;
+		klu_solve (Nd, NNd, A.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-10) ;
+		assertTrue (resid (A, 2, Y, B, false) < 1e-14) ;
+		X = B.clone () ;
+		Y = B.clone () ;
+		klu_tsolve (Amd, NAmd, A.n, 2, X, 0, Common) ;
+		klu_tsolve (Nd, NNd, A.n, 2, Y, 0, Common) ;
+		assertClose (X, Y, 1e-10) ;
+	}
+
+	public void test_grid2() {
+		check (grid (30, 20, 1)) ;
+	}
+
+	public void test_grid3() {
+		check (grid (8, 8, 8)) ;
+	}
+
+	/**
+	 * Several blocks, each with its own tree.
+	 */
+	public void test_blocks() {
+		check (btf (4, 40, 0.05, 1)) ;
+	}
+
+	/**
+	 * On a large enough 3D mesh, nested dissection needs fewer flops than
+	 * AMD.
+	 */
+	public void test_flops() {
+		Dmatrix A = grid (20, 20, 20) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Nd = analyze (A, 5, Common) ;
+		KLU_symbolic Amd = analyze (A, 0, Common) ;
+		assertTrue (Nd.est_flops < Amd.est_flops) ;
+		assertTrue (Nd.nsep > 1) ;
+	}
+
+	/**
+	 * On 2D meshes, and on small 3D ones, AMD gives less fill than the
+	 * dissection, so ordering 5 keeps AMD and is never worse than it.
+	 */
+	public void test_amd() {
+		Dmatrix[] A = { grid (100, 100, 1), grid (200, 200, 1),
+			grid (12, 12, 12) } ;
+		for (int i = 0 ; i < A.length ; i++)
+		{
+			KLU_common Common = common () ;
+			KLU_symbolic Nd = analyze (A [i], 5, Common) ;
+			KLU_symbolic Amd = analyze (A [i], 0, Common) ;
+			assertEquals (Amd.lnz, Nd.lnz, 0) ;
+			assertEquals (1, Nd.nsep) ;
+			assertEquals (A [i].n, Nd.Sep_start [1]) ;
+
+			/* the dissection alone is worse */
+			Common.nd_amd = 0 ;
+			assertTrue (analyze (A [i], 5, Common).lnz > Amd.lnz) ;
+		}
+	}
+
+	/**
+	 * The tree is the same when the blocks are ordered in parallel.
+	 */
+	public void test_parallel() {
+		Dmatrix A = btf (6, 60, 0.03, 2) ;
+		KLU_common Common = common () ;
+		Common.nd_leafsize = 16 ;
+		Common.nd_amd = 0 ;
+		KLU_symbolic Serial = analyze (A, 5, Common) ;
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			Common.executor = executor ;
+			Common.nthreads = 4 ;
+			KLU_symbolic Parallel = analyze (A, 5, Common) ;
+			assertSymbolic (Serial, Parallel) ;
+			assertEquals (Serial.nsep, Parallel.nsep) ;
+			for (int t = 0 ; t <= Serial.nsep ; t++)
+			{
+				assertEquals (Serial.Sep_start [t], Parallel.Sep_start [t]) ;
+			}
+			for (int t = 0 ; t < Serial.nsep ; t++)
+			{
+				assertEquals (Serial.Sep_first [t], Parallel.Sep_first [t]) ;
+				assertEquals (Serial.Sep_parent [t], Parallel.Sep_parent [t]) ;
+			}
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_free_pack;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+/**
+ * Solves with the packed copy of L and U (klu_pack), compared with the
+ * solves on LUbx.
+ */
+public class Dklu_pack_test extends Dklu_problem {
+
+	private static final double TOL = 1e-12 ;
+
+	private static void check (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_common Common)
+	{
+		for (int nrhs = 1 ; nrhs <= 5 ; nrhs++)
+		{
+			for (int transpose = 0 ; transpose <= 1 ; transpose++)
+			{
+				double[] B = rhs (A.n, nrhs, nrhs) ;
+				double[] X = B.clone () ;
+				if (transpose == 0)
+				{
+					klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+				}
+				else
+				{
+					klu_tsolve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+				}
+				assertTrue (resid (A, nrhs, X, B, transpose == 1) < TOL) ;
+			}
+		}
+	}
+
+	private static double[] solve (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_common Common, int transpose)
+	{
+		double[] X = rhs (A.n, 3, 7) ;
+		if (transpose == 0)
+		{
+			klu_solve (Symbolic, Numeric, A.n, 3, X, 0, Common) ;
+		}
+		else
+		{
+			klu_tsolve (Symbolic, Numeric, A.n, 3, X, 0, Common) ;
+		}
+		return (X) ;
+	}
+
+	/**
+	 * Factors with row interchanges (so the row indices of L are in the
+	 * pivotal order), a 2D mesh and impcol_a, each with every kind of
+	 * scaling.  Packing twice replaces the first copy.
+	 */
+	public void test_pack() {
+		Dmatrix[] As = { weak (btf (5, 8, 0.2, 1), 1e-6), grid (15, 15, 1),
+			load ("impcol_a") } ;
+		for (Dmatrix A : As)
+		{
+			for (int scale = -1 ; scale <= 2 ; scale++)
+			{
+				KLU_common Common = common () ;
+				Common.scale = scale ;
+				KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+				KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic,
+						Common) ;
+				double[] X = solve (A, Symbolic, Numeric, Common, 0) ;
+				double[] Y = solve (A, Symbolic, Numeric, Common, 1) ;
+
+				assertEquals (1, klu_pack (Symbolic, Numeric, Common)) ;
+				assertEquals (1, klu_pack (Symbolic, Numeric, Common)) ;
+				assertNotNull (Numeric.Lp) ;
+				assertEquals (Numeric.lnz, Numeric.Lp [A.n] + A.n, 0) ;
+				assertClose (X, solve (A, Symbolic, Numeric, Common, 0), TOL) ;
+				assertClose (Y, solve (A, Symbolic, Numeric, Common, 1), TOL) ;
+				check (A, Symbolic, Numeric, Common) ;
+			}
+		}
+	}
+
+	/**
+	 * A triangular matrix is all singletons: the arenas are empty, and the
+	 * solves only use the inverse of the diagonal.
+	 */
+	public void test_singletons() {
+		int n = 30 ;
+		double[] D = new double [n*n] ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			D [j + j*n] = 1 + j ;
+			for (int i = 0 ; i < j ; i += 3)
+			{
+				D [i + j*n] = 0.5 ;
+			}
+		}
+		Dmatrix A = sparse (n, D) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (n, Symbolic.nblocks) ;
+		assertEquals (1, klu_pack (Symbolic, Numeric, Common)) ;
+		assertEquals (0, Numeric.Lp [n]) ;
+		assertEquals (0, Numeric.Up [n]) ;
+		check (A, Symbolic, Numeric, Common) ;
+	}
+
+	/**
+	 * klu_refactor updates the packed values, with the row interchanges of
+	 * the first factorization.
+	 */
+	public void test_refactor() {
+		KLU_common Common = common () ;
+		Dmatrix A = weak (btf (4, 10, 0.2, 2), 0) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertTrue (pivots (Symbolic, Numeric) > 0) ;
+		assertEquals (1, klu_pack (Symbolic, Numeric, Common)) ;
+
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 0.01 * (p % 5) ;
+		}
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Numeric, Common)) ;
+		double[] X = solve (A, Symbolic, Numeric, Common, 0) ;
+		double[] Y = solve (A, Symbolic, Numeric, Common, 1) ;
+
+		/* the same solves on LUbx */
+		klu_free_pack (Numeric) ;
+		assertClose (X, solve (A, Symbolic, Numeric, Common, 0), TOL) ;
+		assertClose (Y, solve (A, Symbolic, Numeric, Common, 1), TOL) ;
+	}
+
+}
@@ -0,0 +1,215 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_packed.klu_packed_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_packed.klu_packed_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_packed.klu_packed_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_SINGULAR;
+
+/**
+ * The packed engine for many small systems, compared with klu_solve on the
+ * same objects, and serial with parallel solves.
+ */
+public class Dklu_packed_test extends Dklu_problem {
+
+	private static final int NSYS = 3000 ;
+
+	/**
+	 * @return a block diagonal matrix of NSYS random irreducible systems of
+	 * size 1 to 10; Sn is set to the start of each system
+	 */
+	private static Dmatrix systems (int[] Sn)
+	{
+		Random rand = new Random (1) ;
+		Dmatrix[] S = new Dmatrix [NSYS] ;
+		Dmatrix A = new Dmatrix () ;
+		int n = 0, nz = 0 ;
+		for (int s = 0 ; s < NSYS ; s++)
+		{
+			S [s] = btf (1, 1 + rand.nextInt (10), 0.3, s) ;
+			Sn [s] = n ;
+			n += S [s].n ;
+			nz += S [s].Ap [S [s].n] ;
+		}
+		Sn [NSYS] = n ;
+		A.n = n ;
+		A.Ap = new int [n+1] ;
+		A.Ai = new int [nz] ;
+		A.Ax = new double [nz] ;
+		nz = 0 ;
+		for (int s = 0 ; s < NSYS ; s++)
+		{
+			for (int j = 0 ; j < S [s].n ; j++)
+			{
+				A.Ap [Sn [s] + j] = nz ;
+				for (int p = S [s].Ap [j] ; p < S [s].Ap [j+1] ; p++)
+				{
+					A.Ai [nz] = Sn [s] + S [s].Ai [p] ;
+					A.Ax [nz++] = S [s].Ax [p] ;
+				}
+			}
+		}
+		A.Ap [n] = nz ;
+		return (A) ;
+	}
+
+	/**
+	 * klu_packed_solve with a thread pool and more than four right-hand-sides
+	 * (so chunks of different widths share Numeric.Xwork) gives the same
+	 * bits as the serial solve, and as klu_solve.
+	 */
+	public void test_packed() {
+		int[] Sn = new int [NSYS+1] ;
+		Dmatrix A = systems (Sn) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_packed_analyze (NSYS, Sn, A.Ap, A.Ai, Common) ;
+		assertNotNull (Symbolic) ;
+		KLU_numeric Numeric = klu_packed_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertNotNull (Numeric) ;
+
+		ExecutorService executor = Executors.newFixedThreadPool (4) ;
+		try
+		{
+			for (int nrhs = 1 ; nrhs <= 10 ; nrhs++)
+			{
+				double[] B = rhs (A.n, nrhs, nrhs) ;
+				double[] X = B.clone () ;
+				double[] Y = B.clone () ;
+
+				Common.executor = null ;
+				assertEquals (1, klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common)) ;
+				assertEquals (1, klu_packed_solve (Symbolic, Numeric, A.n, nrhs, Y, 0,
+						Common)) ;
+				Common.executor = executor ;
+				for (int nthreads = 2 ; nthreads <= 16 ; nthreads *= 2)
+				{
+					double[] Z = B.clone () ;
+					Common.nthreads = nthreads ;
+					assertEquals (1, klu_packed_solve (Symbolic, Numeric, A.n, nrhs,
+							Z, 0, Common)) ;
+					assertBitwise (Y, Z) ;
+				}
+
+				assertTrue (resid (A, nrhs, Y, B, false) < 1e-13) ;
+				assertBitwise (X, Y) ;
+			}
+		}
+		finally
+		{
+			executor.shutdown () ;
+		}
+	}
+
+	/**
+	 * Weak diagonals force row interchanges in the systems.
+	 */
+	public void test_pivoting() {
+		int[] Sn = new int [NSYS+1] ;
+		Dmatrix A = weak (systems (Sn), 1e-6) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_packed_analyze (NSYS, Sn, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_packed_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertNotNull (Numeric) ;
+		assertTrue (pivots (Symbolic, Numeric) > 0) ;
+
+		for (int nrhs = 1 ; nrhs <= 5 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			double[] Y = B.clone () ;
+			assertEquals (1, klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common)) ;
+			assertEquals (1, klu_packed_solve (Symbolic, Numeric, A.n, nrhs, Y, 0,
+					Common)) ;
+			assertBitwise (X, Y) ;
+			assertTrue (resid (A, nrhs, Y, B, false) < 1e-10) ;
+		}
+	}
+
+	/**
+	 * Arrow systems in the natural ordering fill in completely, far beyond
+	 * the estimate from the nonzeros of A, so LU is grown while the systems
+	 * are factorized one after the other into it.
+	 */
+	public void test_grow() {
+		int nsys = 40, m = 20 ;
+		int n = nsys * m ;
+		int[] Sn = new int [nsys+1] ;
+		double[] D = new double [n*n] ;
+		Random rand = new Random (2) ;
+		for (int s = 0 ; s <= nsys ; s++)
+		{
+			Sn [s] = s * m ;
+		}
+		for (int s = 0 ; s < nsys ; s++)
+		{
+			int k1 = Sn [s] ;
+			for (int j = k1 ; j < k1 + m ; j++)
+			{
+				D [j + j*n] = m + rand.nextDouble () ;
+				D [k1 + j*n] += rand.nextDouble () - 0.5 ;
+				D [j + k1*n] += rand.nextDouble () - 0.5 ;
+			}
+		}
+		Dmatrix A = sparse (n, D) ;
+
+		KLU_common Common = common () ;
+		Common.ordering = 2 ;
+		Common.initmem = 1 ;
+		KLU_symbolic Symbolic = klu_packed_analyze (nsys, Sn, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_packed_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertNotNull (Numeric) ;
+		assertTrue (Common.nrealloc > 0) ;
+		assertEquals (1.0 * nsys * m * (m+1), Numeric.lnz + Numeric.unz, 0) ;
+
+		double[] B = rhs (n, 3, 3) ;
+		double[] X = B.clone () ;
+		assertEquals (1, klu_packed_solve (Symbolic, Numeric, n, 3, X, 0, Common)) ;
+		assertTrue (resid (A, 3, X, B, false) < 1e-13) ;
+	}
+
+	/**
+	 * A zero column in one system: the factorization stops there if
+	 * halt_if_singular is set, and otherwise goes on to the later systems
+	 * with a zero pivot, as klu_factor does.
+	 */
+	public void test_singular() {
+		int[] Sn = new int [NSYS+1] ;
+		Dmatrix A = systems (Sn) ;
+		int s = 7 ;
+		while (Sn [s+1] - Sn [s] < 3) s++ ;
+		int j = Sn [s] + 1 ;
+		for (int p = A.Ap [j] ; p < A.Ap [j+1] ; p++)
+		{
+			A.Ax [p] = 0 ;
+		}
+
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_packed_analyze (NSYS, Sn, A.Ap, A.Ai, Common) ;
+		assertNull (klu_packed_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common)) ;
+		assertEquals (KLU_SINGULAR, Common.status) ;
+		assertEquals (j, Common.singular_col) ;
+
+		Common.halt_if_singular = 0 ;
+		KLU_numeric Numeric = klu_packed_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertNotNull (Numeric) ;
+		int nzero = 0 ;
+		for (int k = Sn [s] ; k < Sn [s+1] ; k++)
+		{
+			if (Numeric.Udiag [k] == 0) nzero++ ;
+		}
+		assertEquals (1, nzero) ;
+		for (int k = Sn [s+1] ; k < Sn [NSYS] ; k++)
+		{
+			assertTrue (Numeric.Udiag [k] != 0) ;
+		}
+	}
+
+}
@@ -0,0 +1,416 @@
+package edu.ufl.cise.klu.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import edu.emory.mathcs.csparsej.tdouble.Dcs_common.Dcs;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.emory.mathcs.csparsej.tdouble.Dcs_compress.cs_compress;
+import static edu.emory.mathcs.csparsej.tdouble.Dcs_load.cs_load;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_defaults.klu_defaults;
+
+/**
+ * Test matrices and checks shared by the tests of the solvers.  A matrix is
+ * held in compressed-column form; right-hand-sides and solutions are stored
+ * column by column, with leading dimension n.
+ */
+public abstract class Dklu_problem extends TestCase {
+
+	/**
+	 * A sparse matrix in compressed-column form.
+	 */
+	public static class Dmatrix {
+
+		public int n ;
+		public int[] Ap ;
+		public int[] Ai ;
+		public double[] Ax ;
+
+	}
+
+	/**
+	 * @return a Common object with the default parameters
+	 */
+	protected static KLU_common common ()
+	{
+		KLU_common Common = new KLU_common () ;
+		klu_defaults (Common) ;
+		return (Common) ;
+	}
+
+	/**
+	 * Load one of the test matrices (a file of "row col value" triplets,
+	 * with 1-based indices).
+	 *
+	 * @param name name of the file in the matrix directory
+	 * @return the matrix
+	 */
+	protected static Dmatrix load (String name)
+	{
+		InputStream in ;
+		Dcs T, A ;
+		Dmatrix M ;
+
+		try
+		{
+			in = Dklu_problem.class.getResource ("matrix/" + name).openStream () ;
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException (e) ;
+		}
+		T = cs_load (in, 1) ;
+		A = cs_compress (T) ;
+		M = new Dmatrix () ;
+		M.n = A.n ;
+		M.Ap = A.p ;
+		M.Ai = A.i ;
+		M.Ax = A.x ;
+		return (M) ;
+	}
+
+	/**
+	 * Create a sparse matrix from a dense one, dropping the zero entries.
+	 *
+	 * @param n A is n-by-n
+	 * @param D size n*n, stored by columns
+	 * @return the matrix
+	 */
+	protected static Dmatrix sparse (int n, double[] D)
+	{
+		Dmatrix M ;
+		int i, j, nz ;
+
+		nz = 0 ;
+		for (i = 0 ; i < n*n ; i++)
+		{
+			if (D [i] != 0) nz++ ;
+		}
+		M = new Dmatrix () ;
+		M.n = n ;
+		M.Ap = new int [n+1] ;
+		M.Ai = new int [nz] ;
+		M.Ax = new double [nz] ;
+		nz = 0 ;
+		for (j = 0 ; j < n ; j++)
+		{
+			M.Ap [j] = nz ;
+			for (i = 0 ; i < n ; i++)
+			{
+				if (D [i + j*n] != 0)
+				{
+					M.Ai [nz] = i ;
+					M.Ax [nz++] = D [i + j*n] ;
+				}
+			}
+		}
+		M.Ap [n] = nz ;
+		return (M) ;
+	}
+
+	/**
+	 * @return A as a dense n-by-n matrix, stored by columns
+	 */
+	protected static double[] dense (Dmatrix A)
+	{
+		double[] D ;
+		int j, p, n ;
+
+		n = A.n ;
+		D = new double [n*n] ;
+		for (j = 0 ; j < n ; j++)
+		{
+			for (p = A.Ap [j] ; p < A.Ap [j+1] ; p++)
+			{
+				D [A.Ai [p] + j*n] += A.Ax [p] ;
+			}
+		}
+		return (D) ;
+	}
+
+	/**
+	 * A random block upper triangular matrix with nblocks diagonal blocks of
+	 * size bsize.  Each diagonal block contains its diagonal and a cycle
+	 * through all of its rows, so it is irreducible and the BTF form of the
+	 * matrix has exactly nblocks blocks.  density is the fraction of the
+	 * remaining entries of the upper block triangle that are nonzero.
+	 *
+	 * @param nblocks number of diagonal blocks
+	 * @param bsize size of each block
+	 * @param density fraction of random entries
+	 * @param seed random seed
+	 * @return the matrix
+	 */
+	protected static Dmatrix btf (int nblocks, int bsize, double density,
+			long seed)
+	{
+		Random rand = new Random (seed) ;
+		double[] D ;
+		int n, i, j, b, k1 ;
+
+		n = nblocks * bsize ;
+		D = new double [n*n] ;
+		for (b = 0 ; b < nblocks ; b++)
+		{
+			k1 = b * bsize ;
+			for (j = k1 ; j < k1 + bsize ; j++)
+			{
+				D [j + j*n] = 2 + rand.nextDouble () ;
+				if (bsize > 1)
+				{
+					i = (j + 1 < k1 + bsize) ? j + 1 : k1 ;
+					D [i + j*n] = rand.nextDouble () - 0.5 ;
+				}
+				for (i = 0 ; i < k1 + bsize ; i++)
+				{
+					if (D [i + j*n] == 0 && rand.nextDouble () < density)
+					{
+						D [i + j*n] = rand.nextDouble () - 0.5 ;
+					}
+				}
+			}
+		}
+		return (sparse (n, D)) ;
+	}
+
+	/**
+	 * An upper triangular matrix, with diagonal 1 to n and 0.5 in every
+	 * third row above it.  Its BTF form is n singletons, with all of the
+	 * rest of the matrix in the off-diagonal part.
+	 *
+	 * @param n size of the matrix
+	 * @return the matrix
+	 */
+	protected static Dmatrix triangular (int n)
+	{
+		double[] D ;
+		int i, j ;
+
+		D = new double [n*n] ;
+		for (j = 0 ; j < n ; j++)
+		{
+			D [j + j*n] = 1 + j ;
+			for (i = 0 ; i < j ; i += 3)
+			{
+				D [i + j*n] = 0.5 ;
+			}
+		}
+		return (sparse (n, D)) ;
+	}
+
+	/**
+	 * A copy of A with its diagonal scaled by s.  With s small (or zero),
+	 * the diagonal fails the threshold test of partial pivoting and the
+	 * factorization has to choose off-diagonal pivots.
+	 *
+	 * @param A the matrix
+	 * @param s scale factor of the diagonal
+	 * @return the scaled copy
+	 */
+	protected static Dmatrix weak (Dmatrix A, double s)
+	{
+		Dmatrix M ;
+		int j, p ;
+
+		M = new Dmatrix () ;
+		M.n = A.n ;
+		M.Ap = A.Ap.clone () ;
+		M.Ai = A.Ai.clone () ;
+		M.Ax = A.Ax.clone () ;
+		for (j = 0 ; j < M.n ; j++)
+		{
+			for (p = M.Ap [j] ; p < M.Ap [j+1] ; p++)
+			{
+				if (M.Ai [p] == j) M.Ax [p] *= s ;
+			}
+		}
+		return (M) ;
+	}
+
+	/**
+	 * @return the number of pivots that differ from the diagonal of the
+	 * ordered matrix, that is, the number of row interchanges made by
+	 * partial pivoting
+	 */
+	protected static int pivots (KLU_symbolic Symbolic, KLU_numeric Numeric)
+	{
+		int k, npiv ;
+
+		npiv = 0 ;
+		for (k = 0 ; k < Symbolic.n ; k++)
+		{
+			if (Numeric.Pnum [k] != Symbolic.P [k]) npiv++ ;
+		}
+		return (npiv) ;
+	}
+
+	/**
+	 * The 5-point (nz = 1) or 7-point Laplacian on an nx-by-ny-by-nz grid.
+	 *
+	 * @return the matrix
+	 */
+	protected static Dmatrix grid (int nx, int ny, int nz)
+	{
+		Dmatrix M ;
+		int n, i, j, k, c, p ;
+
+		n = nx * ny * nz ;
+		M = new Dmatrix () ;
+		M.n = n ;
+		M.Ap = new int [n+1] ;
+		M.Ai = new int [7*n] ;
+		M.Ax = new double [7*n] ;
+		p = 0 ;
+		for (k = 0 ; k < nz ; k++)
+		{
+			for (j = 0 ; j < ny ; j++)
+			{
+				for (i = 0 ; i < nx ; i++)
+				{
+					c = i + nx * (j + ny * k) ;
+					M.Ap [c] = p ;
+					if (k > 0)      { M.Ai [p] = c - nx*ny ; M.Ax [p++] = -1 ; }
+					if (j > 0)      { M.Ai [p] = c - nx ;    M.Ax [p++] = -1 ; }
+					if (i > 0)      { M.Ai [p] = c - 1 ;     M.Ax [p++] = -1 ; }
+					M.Ai [p] = c ;
+					M.Ax [p++] = (nz > 1) ? 6 : 4 ;
+					if (i < nx - 1) { M.Ai [p] = c + 1 ;     M.Ax [p++] = -1 ; }
+					if (j < ny - 1) { M.Ai [p] = c + nx ;    M.Ax [p++] = -1 ; }
+					if (k < nz - 1) { M.Ai [p] = c + nx*ny ; M.Ax [p++] = -1 ; }
+				}
+			}
+		}
+		M.Ap [n] = p ;
+		return (M) ;
+	}
+
+	/**
+	 * @return nrhs random right-hand-sides of size n, stored by columns
+	 */
+	protected static double[] rhs (int n, int nrhs, long seed)
+	{
+		Random rand = new Random (seed) ;
+		double[] B ;
+		int i ;
+
+		B = new double [n*nrhs] ;
+		for (i = 0 ; i < n*nrhs ; i++)
+		{
+			B [i] = rand.nextDouble () - 0.5 ;
+		}
+		return (B) ;
+	}
+
+	/**
+	 * Y = A*X or Y = A'*X, for nrhs columns.
+	 */
+	protected static double[] matvec (Dmatrix A, int nrhs, double[] X,
+			boolean transpose)
+	{
+		double[] Y ;
+		int n, j, p, k ;
+
+		n = A.n ;
+		Y = new double [n*nrhs] ;
+		for (k = 0 ; k < nrhs ; k++)
+		{
+			for (j = 0 ; j < n ; j++)
+			{
+				for (p = A.Ap [j] ; p < A.Ap [j+1] ; p++)
+				{
+					if (transpose)
+					{
+						Y [j + k*n] += A.Ax [p] * X [A.Ai [p] + k*n] ;
+					}
+					else
+					{
+						Y [A.Ai [p] + k*n] += A.Ax [p] * X [j + k*n] ;
+					}
+				}
+			}
+		}
+		return (Y) ;
+	}
+
+	/**
+	 * The largest relative residual norm (b-A*x,inf) / (norm(A,1) *
+	 * norm(x,inf) + norm(b,inf)) over all nrhs columns, for A*X=B or, if
+	 * transpose is true, for A'*X=B.
+	 */
+	protected static double resid (Dmatrix A, int nrhs, double[] X,
+			double[] B, boolean transpose)
+	{
+		double[] Y ;
+		double anorm, asum, rnorm, xnorm, bnorm, r ;
+		int n, j, p, k, i ;
+
+		n = A.n ;
+		anorm = 0 ;
+		for (j = 0 ; j < n ; j++)
+		{
+			asum = 0 ;
+			for (p = A.Ap [j] ; p < A.Ap [j+1] ; p++)
+			{
+				asum += Math.abs (A.Ax [p]) ;
+			}
+			anorm = Math.max (anorm, asum) ;
+		}
+		Y = matvec (A, nrhs, X, transpose) ;
+		r = 0 ;
+		for (k = 0 ; k < nrhs ; k++)
+		{
+			rnorm = xnorm = bnorm = 0 ;
+			for (i = k*n ; i < (k+1)*n ; i++)
+			{
+				rnorm = Math.max (rnorm, Math.abs (B [i] - Y [i])) ;
+				xnorm = Math.max (xnorm, Math.abs (X [i])) ;
+				bnorm = Math.max (bnorm, Math.abs (B [i])) ;
+			}
+			r = Math.max (r, rnorm / (anorm * xnorm + bnorm)) ;
+		}
+		return (r) ;
+	}
+
+	/**
+	 * Check that norm (X-Xref,inf) <= tol * norm (Xref,inf).
+	 */
+	protected static void assertClose (double[] Xref, double[] X, double tol)
+	{
+		double err, xnorm ;
+		int i ;
+
+		assertEquals (Xref.length, X.length) ;
+		err = xnorm = 0 ;
+		for (i = 0 ; i < X.length ; i++)
+		{
+			err = Math.max (err, Math.abs (X [i] - Xref [i])) ;
+			xnorm = Math.max (xnorm, Math.abs (Xref [i])) ;
+		}
+		assertTrue ("error " + err + " relative to " + xnorm,
+				err <= tol * xnorm) ;
+	}
+
+	/**
+	 * Check that X and Xref are identical, bit for bit.
+	 */
+	protected static void assertBitwise (double[] Xref, double[] X)
+	{
+		int i ;
+
+		assertEquals (Xref.length, X.length) ;
+		for (i = 0 ; i < X.length ; i++)
+		{
+			assertEquals ("entry " + i, Double.doubleToLongBits (Xref [i]),
+					Double.doubleToLongBits (X [i])) ;
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refine.klu_solve_refine;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * Iterative refinement (klu_solve_refine), compared with klu_solve.
+ */
+public class Dklu_refine_test extends Dklu_problem {
+
+	/**
+	 * With the factorization of A itself, refinement agrees with klu_solve
+	 * and reaches a backward error near machine precision.
+	 */
+	public void test_exact() {
+		KLU_common Common = common () ;
+		Dmatrix A = load ("impcol_a") ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] B = rhs (A.n, 3, 1) ;
+		double[] X = B.clone () ;
+		double[] Y = B.clone () ;
+
+		klu_solve (Symbolic, Numeric, A.n, 3, X, 0, Common) ;
+		assertEquals (1, klu_solve_refine (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				A.n, 3, Y, 0, Common)) ;
+		assertClose (X, Y, 1e-6) ;
+		assertTrue (Common.berr < 1e-14) ;
+		assertTrue (resid (A, 3, Y, B, false) <= resid (A, 3, X, B, false)) ;
+	}
+
+	/**
+	 * With the factorization of a nearby matrix, refinement recovers the
+	 * solution that klu_solve alone misses.
+	 */
+	public void test_nearby() {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (4, 25, 0.1, 2) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 1e-4 * ((p % 3) - 1) ;
+		}
+		Common.irstep = 10 ;
+		double[] B = rhs (A.n, 2, 3) ;
+		double[] X = B.clone () ;
+		double[] Y = B.clone () ;
+
+		klu_solve (Symbolic, Numeric, A.n, 2, X, 0, Common) ;
+		assertTrue (resid (A, 2, X, B, false) > 1e-8) ;
+		assertEquals (1, klu_solve_refine (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				A.n, 2, Y, 0, Common)) ;
+		assertTrue (resid (A, 2, Y, B, false) < 1e-14) ;
+		assertTrue (Common.nrefine > 0) ;
+	}
+
+	/**
+	 * Common.irstep caps the number of steps.  With no steps, the result is
+	 * that of klu_solve, and ferr is still estimated from the correction.
+	 */
+	public void test_irstep() {
+		KLU_common Common = common () ;
+		Dmatrix A = btf (4, 25, 0.1, 2) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 1e-4 * ((p % 3) - 1) ;
+		}
+		double[] B = rhs (A.n, 2, 3) ;
+		double[] X = B.clone () ;
+		klu_solve (Symbolic, Numeric, A.n, 2, X, 0, Common) ;
+
+		Common.irstep = 0 ;
+		double[] Y = B.clone () ;
+		assertEquals (1, klu_solve_refine (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				A.n, 2, Y, 0, Common)) ;
+		assertEquals (0, Common.nrefine) ;
+		assertBitwise (X, Y) ;
+		assertTrue (Common.ferr > 0) ;
+
+		Common.irstep = 1 ;
+		Y = B.clone () ;
+		assertEquals (1, klu_solve_refine (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				A.n, 2, Y, 0, Common)) ;
+		assertEquals (1, Common.nrefine) ;
+		assertTrue (resid (A, 2, Y, B, false) < resid (A, 2, X, B, false)) ;
+	}
+
+	/**
+	 * Weak diagonals: the factors have row interchanges and small pivots,
+	 * and refinement with the factors of A itself still reaches a backward
+	 * error near machine precision.  B has a leading dimension larger than
+	 * n, and the rows past n are left alone.
+	 */
+	public void test_pivoting() {
+		KLU_common Common = common () ;
+		Dmatrix A = weak (btf (3, 30, 0.2, 4), 1e-6) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertTrue (pivots (Symbolic, Numeric) > 0) ;
+
+		int n = A.n, d = n + 3 ;
+		double[] B = rhs (n, 3, 5) ;
+		double[] Y = new double [d*3] ;
+		for (int j = 0 ; j < 3 ; j++)
+		{
+			System.arraycopy (B, j*n, Y, j*d, n) ;
+			for (int i = n ; i < d ; i++) Y [i + j*d] = -1 ;
+		}
+		assertEquals (1, klu_solve_refine (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				d, 3, Y, 0, Common)) ;
+		assertTrue (Common.berr < 1e-14) ;
+		double[] X = new double [n*3] ;
+		for (int j = 0 ; j < 3 ; j++)
+		{
+			System.arraycopy (Y, j*d, X, j*n, n) ;
+			for (int i = n ; i < d ; i++) assertEquals (-1.0, Y [i + j*d], 0) ;
+		}
+		assertTrue (resid (A, 3, X, B, false) < 1e-14) ;
+	}
+
+}
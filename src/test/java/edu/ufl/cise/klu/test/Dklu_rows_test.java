@@ -0,0 +1,109 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_sort.klu_sort;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+/**
+ * klu_tsolve with the row-oriented copy of the factors (Common.tsolve_rows),
+ * compared with klu_tsolve on the column-oriented factors.
+ */
+public class Dklu_rows_test extends Dklu_problem {
+
+	private static final double TOL = 1e-12 ;
+
+	private static void check (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_common Common)
+	{
+		for (int nrhs = 1 ; nrhs <= 5 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			Common.tsolve_rows = 0 ;
+			klu_tsolve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+
+			double[] Y = B.clone () ;
+			Common.tsolve_rows = 1 ;
+			assertEquals (1, klu_tsolve (Symbolic, Numeric, A.n, nrhs, Y, 0, Common)) ;
+			assertClose (X, Y, TOL) ;
+			assertTrue (resid (A, nrhs, Y, B, true) < TOL) ;
+		}
+	}
+
+	public void test_tsolve_rows() {
+		Dmatrix[] As = { btf (5, 8, 0.2, 1), grid (15, 15, 1), load ("impcol_a") } ;
+		for (Dmatrix A : As)
+		{
+			KLU_common Common = common () ;
+			KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+			KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+			check (A, Symbolic, Numeric, Common) ;
+		}
+	}
+
+	/**
+	 * Row interchanges in the blocks: the row copy is in the pivotal order.
+	 */
+	public void test_pivoting() {
+		Dmatrix[] As = { weak (btf (5, 8, 0.2, 1), 1e-6),
+			weak (btf (2, 40, 0.1, 4), 0) } ;
+		for (Dmatrix A : As)
+		{
+			KLU_common Common = common () ;
+			KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+			KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+			assertTrue (pivots (Symbolic, Numeric) > 0) ;
+			check (A, Symbolic, Numeric, Common) ;
+		}
+	}
+
+	/**
+	 * An upper triangular matrix: all blocks are singletons, so the solve
+	 * uses only the row form of Off.
+	 */
+	public void test_triangular() {
+		int n = 40 ;
+		double[] D = new double [n*n] ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			D [j + j*n] = 1 + j ;
+			for (int i = 0 ; i < j ; i += 1 + (i + j) % 3)
+			{
+				D [i + j*n] = 0.5 - ((i * 7 + j) % 5) * 0.25 ;
+			}
+		}
+		Dmatrix A = sparse (n, D) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		assertEquals (n, Symbolic.nblocks) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		check (A, Symbolic, Numeric, Common) ;
+	}
+
+	/**
+	 * The row copy follows klu_refactor and klu_sort.
+	 */
+	public void test_refactor_sort() {
+		KLU_common Common = common () ;
+		Dmatrix A = weak (btf (4, 10, 0.2, 2), 1e-6) ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		check (A, Symbolic, Numeric, Common) ;
+
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 0.01 * (p % 5) ;
+		}
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Numeric, Common)) ;
+		check (A, Symbolic, Numeric, Common) ;
+		assertEquals (1, klu_sort (Symbolic, Numeric, Common)) ;
+		check (A, Symbolic, Numeric, Common) ;
+	}
+
+}
@@ -0,0 +1,219 @@
+package edu.ufl.cise.klu.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import edu.ufl.cise.klu.tdouble.Dklu_simd;
+
+/**
+ * The Vector API kernels of the multi-release jar, compared with the scalar
+ * kernels.  Both versions are loaded from the class directory or jar that
+ * holds Dklu_simd: the scalar one from its root, the Java 21 one from
+ * META-INF/versions/21.
+ * On Java 21 or later, where the java21 profile builds that version and
+ * resolves jdk.incubator.vector, a missing version or module is a failure.
+ * On older releases the suite is empty.
+ */
+public class Dklu_simd_test extends Dklu_problem {
+
+	private static final String NAME = "edu.ufl.cise.klu.tdouble.Dklu_simd" ;
+
+	private static final String VERSIONED = "META-INF/versions/21/" ;
+
+	/**
+	 * @return the test, or an empty suite before Java 21
+	 */
+	public static Test suite ()
+	{
+		String version = System.getProperty ("java.specification.version") ;
+		if (version.startsWith ("1.") || Integer.parseInt (version) < 21)
+		{
+			return (new TestSuite ("Dklu_simd_test (needs Java 21)")) ;
+		}
+		return (new TestSuite (Dklu_simd_test.class)) ;
+	}
+
+	/**
+	 * Loads classes from a class directory or a jar, trying the given
+	 * prefixes in order.  A JarFile opened this way reads the base entries,
+	 * so there is no multi-release resolution except through the prefixes.
+	 * The parent is the platform class loader, so that the incubator module
+	 * is visible but the classes of the test class path are not.
+	 */
+	private static class Loader extends ClassLoader {
+
+		private final File file ;
+		private final String[] prefixes ;
+
+		Loader (File file, String... prefixes)
+		{
+			super (ClassLoader.getSystemClassLoader ().getParent ()) ;
+			this.file = file ;
+			this.prefixes = prefixes ;
+		}
+
+		protected Class<?> findClass (String name) throws ClassNotFoundException
+		{
+			String path = name.replace ('.', '/') + ".class" ;
+			try
+			{
+				for (String prefix : prefixes)
+				{
+					byte[] b = read (prefix + path) ;
+					if (b != null) return (defineClass (name, b, 0, b.length)) ;
+				}
+			}
+			catch (IOException e)
+			{
+				throw new ClassNotFoundException (name, e) ;
+			}
+			throw new ClassNotFoundException (name) ;
+		}
+
+		/**
+		 * @return the contents of the entry, or null if there is none
+		 */
+		byte[] read (String path) throws IOException
+		{
+			if (file.isDirectory ())
+			{
+				File f = new File (file, path) ;
+				return (f.exists () ? read (new FileInputStream (f)) : null) ;
+			}
+			JarFile jar = new JarFile (file) ;
+			try
+			{
+				ZipEntry e = jar.getEntry (path) ;
+				return (e != null ? read (jar.getInputStream (e)) : null) ;
+			}
+			finally
+			{
+				jar.close () ;
+			}
+		}
+
+		private static byte[] read (InputStream in) throws IOException
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream () ;
+			byte[] buf = new byte [4096] ;
+			try
+			{
+				for (int len ; (len = in.read (buf)) > 0 ; )
+				{
+					out.write (buf, 0, len) ;
+				}
+			}
+			finally
+			{
+				in.close () ;
+			}
+			return (out.toByteArray ()) ;
+		}
+
+	}
+
+	private static Method[] kernels (Class<?> C) throws Exception
+	{
+		return (new Method[] {
+			C.getMethod ("klu_vsub", int.class, double.class, double[].class,
+					int.class, double[].class, int.class),
+			C.getMethod ("klu_vsub4", double.class, double[].class, int.class,
+					double[].class, int.class),
+			C.getMethod ("klu_vdot", int.class, double[].class, int.class,
+					double[].class, int.class),
+			C.getMethod ("klu_vrownorm", int.class, int[].class,
+					double[].class, int.class, int.class, double[].class) }) ;
+	}
+
+	public void test_vector() throws Exception {
+		File root = new File (Dklu_simd.class.getProtectionDomain ()
+				.getCodeSource ().getLocation ().toURI ()) ;
+		Loader base = new Loader (root, "") ;
+		assertNotNull ("no META-INF/versions/21; build with the java21 profile",
+				base.read (VERSIONED + NAME.replace ('.', '/') + ".class")) ;
+		Class<?> S = Class.forName (NAME, true, base) ;
+		Class<?> V = Class.forName (NAME, true, new Loader (root, VERSIONED, "")) ;
+		assertFalse (S.getField ("VECTOR").getBoolean (null)) ;
+		assertTrue ("Vector API not used; run with --add-modules jdk.incubator.vector",
+				V.getField ("VECTOR").getBoolean (null)) ;
+
+		Method[] s = kernels (S) ;
+		Method[] v = kernels (V) ;
+
+		Random rand = new Random (1) ;
+		for (int n = 0 ; n <= 40 ; n++)
+		{
+			for (int off = 0 ; off <= 3 ; off++)
+			{
+				double a = rand.nextDouble () - 0.5 ;
+				double[] x = rhs (n + 10, 1, rand.nextLong ()) ;
+				double[] y = rhs (n + 10, 1, rand.nextLong ()) ;
+
+				/* klu_vsub: identical */
+				double[] y1 = y.clone () ;
+				double[] y2 = y.clone () ;
+				s [0].invoke (null, n, a, x, off, y1, off + 1) ;
+				v [0].invoke (null, n, a, x, off, y2, off + 1) ;
+				assertBitwise (y1, y2) ;
+
+				/* klu_vsub4: identical */
+				y1 = y.clone () ;
+				y2 = y.clone () ;
+				s [1].invoke (null, a, x, off, y1, off + 2) ;
+				v [1].invoke (null, a, x, off, y2, off + 2) ;
+				assertBitwise (y1, y2) ;
+
+				/* klu_vdot: same up to the order of the sum */
+				double s1 = (Double) s [2].invoke (null, n, x, off, y, off + 1) ;
+				double s2 = (Double) v [2].invoke (null, n, x, off, y, off + 1) ;
+				double bound = 0 ;
+				for (int i = 0 ; i < n ; i++)
+				{
+					bound += Math.abs (x [off + i] * y [off + 1 + i]) ;
+				}
+				assertEquals (s1, s2, 2 * n * 1.2e-16 * bound) ;
+
+				/* klu_vrownorm: identical, with distinct rows in any order,
+				 * and signed zeros */
+				int m = n + 5 ;
+				int[] Ai = new int [n + off] ;
+				double[] Ax = new double [n + off] ;
+				int[] perm = new int [m] ;
+				for (int i = 0 ; i < m ; i++)
+				{
+					perm [i] = i ;
+				}
+				for (int i = m - 1 ; i > 0 ; i--)
+				{
+					int j = rand.nextInt (i + 1) ;
+					int t = perm [i] ; perm [i] = perm [j] ; perm [j] = t ;
+				}
+				for (int p = 0 ; p < n + off ; p++)
+				{
+					Ai [p] = perm [p % m] ;
+					Ax [p] = (p % 7 == 3) ? -0.0 : rand.nextDouble () - 0.5 ;
+				}
+				for (int scale = 1 ; scale <= 2 ; scale++)
+				{
+					double[] R1 = rhs (m, 1, 5) ;
+					R1 [0] = -0.0 ;
+					double[] R2 = R1.clone () ;
+					s [3].invoke (null, scale, Ai, Ax, off, n + off, R1) ;
+					v [3].invoke (null, scale, Ai, Ax, off, n + off, R2) ;
+					assertBitwise (R1, R2) ;
+				}
+			}
+		}
+	}
+
+}
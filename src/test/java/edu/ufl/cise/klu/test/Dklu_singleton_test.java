@@ -0,0 +1,126 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Random;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_tsolve.klu_tsolve;
+
+/**
+ * Runs of singleton blocks (Symbolic.Srun).  The sweeps over a run do the
+ * same operations as the loops over its blocks, so the results are compared
+ * bit for bit with those of the same Symbolic object without Srun.
+ */
+public class Dklu_singleton_test extends Dklu_problem {
+
+	/**
+	 * A block upper triangular matrix with blocks of the given sizes, each
+	 * irreducible, and random entries above the diagonal blocks.
+	 */
+	private static Dmatrix blocks (int[] size, double density, long seed)
+	{
+		Random rand = new Random (seed) ;
+		int n = 0 ;
+		for (int b = 0 ; b < size.length ; b++) n += size [b] ;
+		double[] D = new double [n*n] ;
+		int k1 = 0 ;
+		for (int b = 0 ; b < size.length ; b++)
+		{
+			int k2 = k1 + size [b] ;
+			for (int j = k1 ; j < k2 ; j++)
+			{
+				D [j + j*n] = 2 + rand.nextDouble () ;
+				if (size [b] > 1)
+				{
+					D [((j + 1 < k2) ? j + 1 : k1) + j*n] = 1 ;
+				}
+				for (int i = 0 ; i < k1 ; i++)
+				{
+					if (rand.nextDouble () < density)
+					{
+						D [i + j*n] = rand.nextDouble () - 0.5 ;
+					}
+				}
+			}
+			k1 = k2 ;
+		}
+		return (sparse (n, D)) ;
+	}
+
+	private static void check (Dmatrix A)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		assertNotNull (Symbolic.Srun) ;
+		int runs = 0 ;
+		for (int b = 0 ; b < Symbolic.nblocks ; b++)
+		{
+			if (Symbolic.Srun [b] > b) runs++ ;
+		}
+		assertTrue (runs > 0) ;
+
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		int[] Srun = Symbolic.Srun ;
+		Symbolic.Srun = null ;
+		KLU_numeric Blocks = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertBitwise (Blocks.Udiag, Numeric.Udiag) ;
+		assertBitwise (Blocks.Offx, Numeric.Offx) ;
+
+		for (int nrhs = 1 ; nrhs <= 4 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			double[] Y = B.clone () ;
+			Symbolic.Srun = null ;
+			klu_solve (Symbolic, Blocks, A.n, nrhs, X, 0, Common) ;
+			Symbolic.Srun = Srun ;
+			klu_solve (Symbolic, Numeric, A.n, nrhs, Y, 0, Common) ;
+			assertBitwise (X, Y) ;
+			assertTrue (resid (A, nrhs, Y, B, false) < 1e-14) ;
+
+			X = B.clone () ;
+			Y = B.clone () ;
+			Symbolic.Srun = null ;
+			klu_tsolve (Symbolic, Blocks, A.n, nrhs, X, 0, Common) ;
+			Symbolic.Srun = Srun ;
+			klu_tsolve (Symbolic, Numeric, A.n, nrhs, Y, 0, Common) ;
+			assertBitwise (X, Y) ;
+			assertTrue (resid (A, nrhs, Y, B, true) < 1e-14) ;
+		}
+
+		/* refactor with new values, with and without the runs */
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 1e-2 * ((p % 3) - 1) ;
+		}
+		Symbolic.Srun = null ;
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Blocks,
+				Common)) ;
+		Symbolic.Srun = Srun ;
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				Common)) ;
+		assertBitwise (Blocks.Udiag, Numeric.Udiag) ;
+		assertBitwise (Blocks.Offx, Numeric.Offx) ;
+	}
+
+	public void test_runs() {
+		check (blocks (new int [] {1, 1, 1, 3, 1, 1, 4, 1, 1, 1, 1, 2, 1},
+				0.3, 1)) ;
+	}
+
+	/**
+	 * An upper triangular matrix is one run of singletons.
+	 */
+	public void test_triangular() {
+		int[] size = new int [60] ;
+		for (int b = 0 ; b < 60 ; b++) size [b] = 1 ;
+		check (blocks (size, 0.1, 2)) ;
+	}
+
+}
@@ -0,0 +1,195 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_levels.klu_levels;
+import static edu.ufl.cise.klu.tdouble.Dklu_pack.klu_pack;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve_factored.klu_permute_in;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve_factored.klu_permute_out;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve_factored.klu_solve_factored;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_supernodes;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_INVALID;
+
+/**
+ * The solve in the ordering of the factors (klu_permute_in,
+ * klu_solve_factored and klu_permute_out), compared with klu_solve.
+ */
+public class Dklu_solve_factored_test extends Dklu_problem {
+
+	private static final double TOL = 1e-12 ;
+
+	/**
+	 * Solves with leading dimension d >= n and the vectors at offset d in
+	 * their arrays.  The rows n to d-1 of each column, and the first d
+	 * entries, are NaN and must be neither read nor written.
+	 */
+	private static void check (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, int d, KLU_common Common)
+	{
+		int n = A.n ;
+		for (int nrhs = 1 ; nrhs <= 6 ; nrhs++)
+		{
+			double[] B = rhs (n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			assertEquals (1, klu_solve (Symbolic, Numeric, n, nrhs, X, 0,
+					Common)) ;
+			assertTrue (resid (A, nrhs, X, B, false) < 1e-10) ;
+
+			double[] Bd = new double [d + d*nrhs] ;
+			Arrays.fill (Bd, Double.NaN) ;
+			for (int c = 0 ; c < nrhs ; c++)
+			{
+				System.arraycopy (B, n*c, Bd, d + d*c, n) ;
+			}
+			double[] Y = new double [d + d*nrhs] ;
+			Arrays.fill (Y, Double.NaN) ;
+			assertEquals (1, klu_permute_in (Symbolic, Numeric, d, nrhs, Bd, d,
+					Y, d, Common)) ;
+			assertEquals (1, klu_solve_factored (Symbolic, Numeric, d, nrhs,
+					Y, d, Common)) ;
+			double[] Z = new double [d + d*nrhs] ;
+			Arrays.fill (Z, Double.NaN) ;
+			assertEquals (1, klu_permute_out (Symbolic, Numeric, d, nrhs, Y, d,
+					Z, d, Common)) ;
+
+			double[] Zn = new double [n*nrhs] ;
+			for (int c = 0 ; c < nrhs ; c++)
+			{
+				System.arraycopy (Z, d + d*c, Zn, n*c, n) ;
+				for (int i = n ; i < d ; i++)
+				{
+					assertTrue (Double.isNaN (Y [d + i + d*c])) ;
+					assertTrue (Double.isNaN (Z [d + i + d*c])) ;
+				}
+			}
+			for (int i = 0 ; i < d ; i++)
+			{
+				assertTrue (Double.isNaN (Y [i])) ;
+				assertTrue (Double.isNaN (Z [i])) ;
+			}
+			assertClose (X, Zn, TOL) ;
+		}
+	}
+
+	private static void check (Dmatrix A, int scale, int d)
+	{
+		KLU_common Common = common () ;
+		Common.scale = scale ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		check (A, Symbolic, Numeric, d, Common) ;
+	}
+
+	/**
+	 * Row interchanges, singletons and an unsymmetric matrix, with each
+	 * kind of row scaling.
+	 */
+	public void test_factored() {
+		Dmatrix A = weak (btf (5, 8, 0.2, 1), 1e-6) ;
+		for (int scale = 0 ; scale <= 2 ; scale++)
+		{
+			check (A, scale, A.n) ;
+			check (triangular (30), scale, 30) ;
+			check (load ("impcol_a"), scale, 207) ;
+		}
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertTrue (pivots (Symbolic, Numeric) > 0) ;
+	}
+
+	/**
+	 * A leading dimension larger than n.
+	 */
+	public void test_leading() {
+		check (weak (btf (5, 8, 0.2, 1), 1e-6), 2, 47) ;
+		check (triangular (30), 1, 31) ;
+	}
+
+	/**
+	 * Each copy of the factors that klu_solve would use: dense inverses,
+	 * packed factors, supernodes and level schedules.
+	 */
+	public void test_copies() {
+		Dmatrix A = weak (btf (4, 30, 0.1, 3), 0) ;
+
+		KLU_common Common = common () ;
+		Common.dense_maxblock = 8 ;
+		Dmatrix S = weak (btf (6, 5, 0.5, 4), 1e-3) ;
+		KLU_symbolic Symbolic = klu_analyze (S.n, S.Ap, S.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (S.Ap, S.Ai, S.Ax, Symbolic, Common) ;
+		assertNotNull (Numeric.Dinv) ;
+		check (S, Symbolic, Numeric, S.n + 1, Common) ;
+
+		Common = common () ;
+		Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertTrue (pivots (Symbolic, Numeric) > 0) ;
+		assertEquals (1, klu_pack (Symbolic, Numeric, Common)) ;
+		check (A, Symbolic, Numeric, A.n + 1, Common) ;
+
+		Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (1, klu_supernodes (Symbolic, Numeric, Common)) ;
+		assertNotNull (Numeric.Lsb) ;
+		check (A, Symbolic, Numeric, A.n + 1, Common) ;
+
+		Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		Common.par_minblock = 10 ;
+		Common.par_minlevel = 1 ;
+		assertEquals (1, klu_levels (Symbolic, Numeric, Common)) ;
+		assertNotNull (Numeric.Llevp) ;
+		check (A, Symbolic, Numeric, A.n + 1, Common) ;
+	}
+
+	/**
+	 * klu_refactor changes the row scale factors, and so the 1/Rs that
+	 * klu_permute_in keeps from an earlier call.
+	 */
+	public void test_refactor() {
+		Dmatrix A = weak (btf (4, 10, 0.2, 2), 1e-6) ;
+		KLU_common Common = common () ;
+		Common.scale = 2 ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		check (A, Symbolic, Numeric, A.n, Common) ;
+		assertNotNull (Numeric.Rsinv) ;
+
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + (p % 7) ;
+		}
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				Common)) ;
+		check (A, Symbolic, Numeric, A.n, Common) ;
+	}
+
+	/**
+	 * A leading dimension less than n.
+	 */
+	public void test_invalid() {
+		Dmatrix A = triangular (30) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] X = new double [A.n] ;
+		double[] Y = new double [A.n] ;
+		assertEquals (0, klu_permute_in (Symbolic, Numeric, A.n - 1, 1, X, 0,
+				Y, 0, Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+		assertEquals (0, klu_solve_factored (Symbolic, Numeric, A.n - 1, 1, Y, 0,
+				Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+		assertEquals (0, klu_permute_out (Symbolic, Numeric, A.n - 1, 1, Y, 0,
+				X, 0, Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+	}
+
+}
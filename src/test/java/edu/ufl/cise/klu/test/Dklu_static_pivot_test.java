@@ -0,0 +1,123 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refine.klu_solve_refine;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * Static pivoting (Common.static_pivot), compared with klu_solve on a
+ * factorization with partial pivoting.
+ */
+public class Dklu_static_pivot_test extends Dklu_problem {
+
+	/**
+	 * A block upper triangular matrix whose 2-by-2 diagonal blocks
+	 * [tiny 1 ; 1 2] are well conditioned but have a tiny leading entry,
+	 * which partial pivoting avoids and static pivoting has to perturb.
+	 */
+	private static Dmatrix tiny_diagonal (int n)
+	{
+		double[] D = new double [n*n] ;
+		for (int j = 0 ; j < n ; j += 2)
+		{
+			D [j + j*n] = 1e-14 ;
+			D [j+1 + j*n] = 1 ;
+			D [j + (j+1)*n] = 1 ;
+			D [j+1 + (j+1)*n] = 2 ;
+			if (j > 0) D [j-1 + (j+1)*n] = 0.5 ;
+		}
+		return (sparse (n, D)) ;
+	}
+
+	/**
+	 * Solve A*X=B with partial pivoting and klu_solve.
+	 */
+	private static double[] reference (Dmatrix A, double[] B)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] X = B.clone () ;
+		klu_solve (Symbolic, Numeric, A.n, B.length / A.n, X, 0, Common) ;
+		return (X) ;
+	}
+
+	/**
+	 * Tiny pivots are perturbed and counted, and refinement recovers the
+	 * solution of the partial pivoting factorization.
+	 */
+	public void test_perturbed() {
+		Dmatrix A = tiny_diagonal (50) ;
+		KLU_common Common = common () ;
+		Common.static_pivot = 1 ;
+		Common.ordering = 2 ;
+		Common.irstep = 10 ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertNotNull (Numeric) ;
+		assertTrue (Common.npert > 0) ;
+		assertTrue (Common.pert > 0) ;
+
+		double[] B = rhs (A.n, 2, 1) ;
+		double[] X = B.clone () ;
+		assertEquals (1, klu_solve_refine (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				A.n, 2, X, 0, Common)) ;
+		assertTrue (resid (A, 2, X, B, false) < 1e-14) ;
+		assertClose (reference (A, B), X, 1e-10) ;
+	}
+
+	/**
+	 * Without tiny pivots nothing is perturbed, and the diagonal pivots give
+	 * the same solution as partial pivoting.
+	 */
+	public void test_unperturbed() {
+		Dmatrix A = btf (3, 20, 0.1, 2) ;
+		KLU_common Common = common () ;
+		Common.static_pivot = 1 ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (0, Common.npert) ;
+
+		double[] B = rhs (A.n, 1, 2) ;
+		double[] X = B.clone () ;
+		klu_solve (Symbolic, Numeric, A.n, 1, X, 0, Common) ;
+		assertClose (reference (A, B), X, 1e-10) ;
+	}
+
+	/**
+	 * The pattern depends on A only, so klu_refactor can be used after new
+	 * values make a diagonal pivot tiny.
+	 */
+	public void test_refactor() {
+		Dmatrix A = grid (10, 10, 1) ;
+		KLU_common Common = common () ;
+		Common.static_pivot = 1 ;
+		Common.irstep = 10 ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertEquals (0, Common.npert) ;
+
+		for (int j = 0 ; j < A.n ; j++)
+		{
+			for (int p = A.Ap [j] ; p < A.Ap [j+1] ; p++)
+			{
+				if (A.Ai [p] == j && j % 7 == 3) A.Ax [p] = 1e-14 ;
+			}
+		}
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				Common)) ;
+		double[] B = rhs (A.n, 1, 3) ;
+		double[] X = B.clone () ;
+		assertEquals (1, klu_solve_refine (A.Ap, A.Ai, A.Ax, Symbolic, Numeric,
+				A.n, 1, X, 0, Common)) ;
+		assertTrue (resid (A, 1, X, B, false) < 1e-14) ;
+		assertClose (reference (A, B), X, 1e-8) ;
+	}
+
+}
@@ -0,0 +1,105 @@
+package edu.ufl.cise.klu.test;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+
+/**
+ * The supernodal kernel (Common.supernodal), compared with the
+ * column-at-a-time kernel.
+ */
+public class Dklu_super_kernel_test extends Dklu_problem {
+
+	private static final double TOL = 1e-12 ;
+
+	private static void check (Dmatrix A)
+	{
+		check (A, 10, TOL) ;
+	}
+
+	/**
+	 * Compare the two kernels on A, with the supernodal one for blocks of
+	 * size minblock or more.  The solutions must agree to within tol.
+	 *
+	 * @return the supernodal factorization
+	 */
+	private static KLU_numeric check (Dmatrix A, int minblock, double tol)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+
+		Common.supernodal = 1 ;
+		Common.super_minblock = minblock ;
+		KLU_numeric Super = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertNotNull (Super) ;
+		assertEquals (Numeric.lnz, Super.lnz) ;
+		assertEquals (Numeric.unz, Super.unz) ;
+
+		for (int nrhs = 1 ; nrhs <= 4 ; nrhs++)
+		{
+			double[] B = rhs (A.n, nrhs, nrhs) ;
+			double[] X = B.clone () ;
+			double[] Y = B.clone () ;
+			klu_solve (Symbolic, Numeric, A.n, nrhs, X, 0, Common) ;
+			klu_solve (Symbolic, Super, A.n, nrhs, Y, 0, Common) ;
+			assertClose (X, Y, tol) ;
+			assertTrue (resid (A, nrhs, Y, B, false) < TOL) ;
+		}
+		assertTrue (Arrays.equals (Numeric.Pnum, Super.Pnum)) ;
+		return (Super) ;
+	}
+
+	public void test_supernodal() {
+		check (grid (20, 20, 1)) ;
+		check (grid (7, 7, 7)) ;
+		check (load ("impcol_a")) ;
+	}
+
+	/**
+	 * Weak and zero diagonals: the pivots are chosen off the diagonal while
+	 * the supernodes are built, and both kernels choose the same ones.  The
+	 * small pivots amplify the rounding differences between the kernels,
+	 * so the solutions agree less closely.
+	 */
+	public void test_pivoting() {
+		Dmatrix A = btf (3, 40, 0.2, 1) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		double[] weight = { 1e-6, 0 } ;
+		for (int w = 0 ; w < weight.length ; w++)
+		{
+			KLU_numeric Super = check (weak (A, weight [w]), 10, 1e-9) ;
+			assertTrue (pivots (Symbolic, Super) > 0) ;
+		}
+	}
+
+	/**
+	 * Dense blocks, where every column of L joins the supernode of the
+	 * column before it, with and without interchanges.
+	 */
+	public void test_dense() {
+		check (btf (2, 30, 1, 3)) ;
+		check (weak (btf (2, 30, 1, 4), 1e-3)) ;
+	}
+
+	/**
+	 * Blocks smaller than super_minblock use the column kernel, so a
+	 * threshold above all blocks gives the same factors bit for bit.
+	 */
+	public void test_minblock() {
+		Dmatrix A = btf (4, 12, 0.3, 5) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		KLU_numeric Super = check (A, 13, 0) ;
+		assertBitwise (Numeric.Udiag, Super.Udiag) ;
+	}
+
+}
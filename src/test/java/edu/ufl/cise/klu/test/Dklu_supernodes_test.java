@@ -0,0 +1,106 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_refactor.klu_refactor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_supernodes.klu_supernodes;
+
+/**
+ * Supernodal solves (klu_supernodes), compared bit for bit with klu_solve.
+ */
+public class Dklu_supernodes_test extends Dklu_problem {
+
+	private static double[][] solve (Dmatrix A, KLU_symbolic Symbolic,
+			KLU_numeric Numeric, KLU_common Common)
+	{
+		double[][] X = new double [6][] ;
+		for (int nrhs = 1 ; nrhs <= 6 ; nrhs++)
+		{
+			X [nrhs-1] = rhs (A.n, nrhs, nrhs) ;
+			klu_solve (Symbolic, Numeric, A.n, nrhs, X [nrhs-1], 0, Common) ;
+		}
+		return (X) ;
+	}
+
+	private static KLU_numeric check (Dmatrix A)
+	{
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[][] X = solve (A, Symbolic, Numeric, Common) ;
+
+		assertEquals (1, klu_supernodes (Symbolic, Numeric, Common)) ;
+		double[][] Y = solve (A, Symbolic, Numeric, Common) ;
+		for (int k = 0 ; k < X.length ; k++)
+		{
+			assertBitwise (X [k], Y [k]) ;
+		}
+
+		/* klu_refactor updates the panels */
+		for (int p = 0 ; p < A.Ap [A.n] ; p++)
+		{
+			A.Ax [p] *= 1 + 0.01 * (p % 5) ;
+		}
+		assertEquals (1, klu_refactor (A.Ap, A.Ai, A.Ax, Symbolic, Numeric, Common)) ;
+		Y = solve (A, Symbolic, Numeric, Common) ;
+		for (int k = 0 ; k < Y.length ; k++)
+		{
+			assertTrue (resid (A, k+1, Y [k], rhs (A.n, k+1, k+1), false) < 1e-12) ;
+		}
+		return (Numeric) ;
+	}
+
+	public void test_supernodes() {
+		assertTrue (check (grid (20, 20, 1)).Lsb [1] > 0) ;
+		assertTrue (check (grid (6, 6, 6)).Lsb [1] > 0) ;
+	}
+
+	/**
+	 * Weak diagonals: the rows of L are in the pivotal order, and the
+	 * supernodes are found on that order.
+	 */
+	public void test_pivoting() {
+		Dmatrix A = weak (btf (3, 30, 0.3, 1), 1e-6) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (A.n, A.Ap, A.Ai, Common) ;
+		assertTrue (pivots (Symbolic, klu_factor (A.Ap, A.Ai, A.Ax, Symbolic,
+				Common)) > 0) ;
+		assertTrue (check (A).Lsb [3] > 0) ;
+	}
+
+	/**
+	 * A dense block: L and U are each one supernode of all columns.
+	 */
+	public void test_dense() {
+		KLU_numeric Numeric = check (btf (1, 12, 1, 2)) ;
+		assertEquals (1, Numeric.Lsb [1]) ;
+		assertEquals (12, Numeric.Lsn [0]) ;
+		assertEquals (1, Numeric.Usb [1]) ;
+		assertEquals (12, Numeric.Usn [0]) ;
+	}
+
+	/**
+	 * A triangular matrix is all singletons, which have no supernodes.
+	 */
+	public void test_singletons() {
+		int n = 30 ;
+		double[] D = new double [n*n] ;
+		for (int j = 0 ; j < n ; j++)
+		{
+			D [j + j*n] = 1 + j ;
+			for (int i = 0 ; i < j ; i += 3)
+			{
+				D [i + j*n] = 0.5 ;
+			}
+		}
+		KLU_numeric Numeric = check (sparse (n, D)) ;
+		assertEquals (0, Numeric.Lsb [n]) ;
+		assertEquals (0, Numeric.Usb [n]) ;
+	}
+
+}
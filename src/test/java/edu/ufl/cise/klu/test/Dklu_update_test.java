@@ -0,0 +1,245 @@
+package edu.ufl.cise.klu.test;
+
+import edu.ufl.cise.klu.common.KLU_common;
+import edu.ufl.cise.klu.common.KLU_numeric;
+import edu.ufl.cise.klu.common.KLU_symbolic;
+import edu.ufl.cise.klu.common.KLU_update;
+
+import static edu.ufl.cise.klu.tdouble.Dklu_analyze.klu_analyze;
+import static edu.ufl.cise.klu.tdouble.Dklu_factor.klu_factor;
+import static edu.ufl.cise.klu.tdouble.Dklu_solve.klu_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_update.klu_update_add;
+import static edu.ufl.cise.klu.tdouble.Dklu_update.klu_update_clear;
+import static edu.ufl.cise.klu.tdouble.Dklu_update.klu_update_solve;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_INVALID;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_OK;
+import static edu.ufl.cise.klu.tdouble.Dklu_version.KLU_SINGULAR;
+
+/**
+ * Solves with a low-rank update of A (klu_update_add and klu_update_solve),
+ * compared with klu_solve on a factorization of A + U*V'.
+ */
+public class Dklu_update_test extends Dklu_problem {
+
+	private static final double TOL = 1e-10 ;
+
+	/**
+	 * @return x = (A + U*V') \ b, from a new factorization
+	 */
+	private static double[] reference (Dmatrix A, int k, double[] U,
+			double[] V, int nrhs, double[] B)
+	{
+		int n = A.n ;
+		double[] D = dense (A) ;
+		for (int c = 0 ; c < k ; c++)
+		{
+			for (int j = 0 ; j < n ; j++)
+			{
+				for (int i = 0 ; i < n ; i++)
+				{
+					D [i + j*n] += U [i + c*n] * V [j + c*n] ;
+				}
+			}
+		}
+		Dmatrix A2 = sparse (n, D) ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (n, A2.Ap, A2.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A2.Ap, A2.Ai, A2.Ax, Symbolic, Common) ;
+		double[] X = B.clone () ;
+		klu_solve (Symbolic, Numeric, n, nrhs, X, 0, Common) ;
+		return (X) ;
+	}
+
+	private static void check (Dmatrix A)
+	{
+		int n = A.n ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+
+		/* a change of one entry (a switch), then a rank-2 update */
+		double[] U = new double [3*n] ;
+		double[] V = new double [3*n] ;
+		U [n-1] = 0.75 ;
+		V [0] = 1 ;
+		double[] W = rhs (n, 2, 9) ;
+		for (int i = 0 ; i < 2*n ; i++)
+		{
+			U [n + i] = 0.1 * W [i] ;
+			V [n + i] = 0.1 * W [(i + 7) % (2*n)] ;
+		}
+
+		KLU_update Update = klu_update_add (Symbolic, Numeric, null, 1, U, V, n,
+				Common) ;
+		assertNotNull (Update) ;
+		double[] B = rhs (n, 3, 1) ;
+		double[] X = B.clone () ;
+		assertEquals (1, klu_update_solve (Symbolic, Numeric, Update, n, 3, X, 0,
+				Common)) ;
+		assertClose (reference (A, 1, U, V, 3, B), X, TOL) ;
+
+		double[] U2 = new double [2*n] ;
+		double[] V2 = new double [2*n] ;
+		System.arraycopy (U, n, U2, 0, 2*n) ;
+		System.arraycopy (V, n, V2, 0, 2*n) ;
+		assertNotNull (klu_update_add (Symbolic, Numeric, Update, 2, U2, V2, n,
+				Common)) ;
+		X = B.clone () ;
+		assertEquals (1, klu_update_solve (Symbolic, Numeric, Update, n, 3, X, 0,
+				Common)) ;
+		assertClose (reference (A, 3, U, V, 3, B), X, TOL) ;
+
+		/* after klu_update_clear, the solves are with A again */
+		assertEquals (1, klu_update_clear (Update)) ;
+		X = B.clone () ;
+		double[] Y = B.clone () ;
+		assertEquals (1, klu_update_solve (Symbolic, Numeric, Update, n, 3, X, 0,
+				Common)) ;
+		klu_solve (Symbolic, Numeric, n, 3, Y, 0, Common) ;
+		assertClose (Y, X, TOL) ;
+	}
+
+	/**
+	 * Row interchanges on every zero diagonal, singletons, and an
+	 * unsymmetric matrix.
+	 */
+	public void test_update() {
+		check (weak (btf (5, 8, 0.2, 3), 0)) ;
+		check (triangular (30)) ;
+		check (load ("impcol_a")) ;
+	}
+
+	/**
+	 * A sequence of switches, added one at a time to an update of A, which
+	 * needs row interchanges.  U, V and B have a leading dimension larger
+	 * than n.  Update.refactor is set once the rank passes update_maxrank,
+	 * and after klu_update_clear the space is reused.
+	 */
+	public void test_switches() {
+		Dmatrix A = weak (btf (4, 10, 0.2, 2), 1e-6) ;
+		int n = A.n ;
+		int d = n + 3 ;
+		int nswitch = 20 ;
+		KLU_common Common = common () ;
+		Common.update_maxrank = 16 ;
+		KLU_symbolic Symbolic = klu_analyze (n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		assertTrue (pivots (Symbolic, Numeric) > 0) ;
+
+		double[] U = new double [n*nswitch] ;
+		double[] V = new double [n*nswitch] ;
+		double[] B = rhs (n, 2, 3) ;
+		KLU_update Update = null ;
+		for (int k = 0 ; k < nswitch ; k++)
+		{
+			int i = (7 * k + 3) % n ;
+			int j = (11 * k + 5) % n ;
+			U [i + k*n] = 0.25 - 0.05 * (k % 3) ;
+			V [j + k*n] = 1 ;
+
+			double[] Ud = new double [d] ;
+			double[] Vd = new double [d] ;
+			System.arraycopy (U, k*n, Ud, 0, n) ;
+			System.arraycopy (V, k*n, Vd, 0, n) ;
+			Update = klu_update_add (Symbolic, Numeric, Update, 1, Ud, Vd, d,
+					Common) ;
+			assertNotNull (Update) ;
+			assertEquals (k + 1, Update.k) ;
+			assertTrue (Update.kmax >= Update.k) ;
+			assertEquals ((k + 1 > 16) ? 1 : 0, Update.refactor) ;
+
+			double[] X = new double [2*d] ;
+			System.arraycopy (B, 0, X, 0, n) ;
+			System.arraycopy (B, n, X, d, n) ;
+			assertEquals (1, klu_update_solve (Symbolic, Numeric, Update, d, 2,
+					X, 0, Common)) ;
+			double[] Xn = new double [2*n] ;
+			System.arraycopy (X, 0, Xn, 0, n) ;
+			System.arraycopy (X, d, Xn, n, n) ;
+			assertClose (reference (A, k + 1, U, V, 2, B), Xn, TOL) ;
+		}
+
+		/* start again from A, in the same space */
+		int kmax = Update.kmax ;
+		double[] S = Update.S ;
+		assertEquals (1, klu_update_clear (Update)) ;
+		assertEquals (0, Update.k) ;
+		assertNotNull (klu_update_add (Symbolic, Numeric, Update, 1, U, V, n,
+				Common)) ;
+		assertEquals (kmax, Update.kmax) ;
+		assertSame (S, Update.S) ;
+		double[] X = B.clone () ;
+		assertEquals (1, klu_update_solve (Symbolic, Numeric, Update, n, 2, X, 0,
+				Common)) ;
+		assertClose (reference (A, 1, U, V, 2, B), X, TOL) ;
+	}
+
+	/**
+	 * An update that zeroes a column of A: A + U*V' is singular, and the
+	 * solve is refused until the update is cleared.
+	 */
+	public void test_singular() {
+		Dmatrix A = triangular (30) ;
+		int n = A.n ;
+		int j = 12 ;
+		KLU_common Common = common () ;
+		Common.scale = 0 ;
+		KLU_symbolic Symbolic = klu_analyze (n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+
+		double[] D = dense (A) ;
+		double[] U = new double [n] ;
+		double[] V = new double [n] ;
+		for (int i = 0 ; i < n ; i++)
+		{
+			U [i] = -D [i + j*n] ;
+		}
+		V [j] = 1 ;
+		KLU_update Update = klu_update_add (Symbolic, Numeric, null, 1, U, V, n,
+				Common) ;
+		assertNotNull (Update) ;
+		assertEquals (KLU_SINGULAR, Common.status) ;
+		assertEquals (1, Update.refactor) ;
+
+		double[] X = rhs (n, 1, 4) ;
+		assertEquals (0, klu_update_solve (Symbolic, Numeric, Update, n, 1, X, 0,
+				Common)) ;
+		assertEquals (KLU_SINGULAR, Common.status) ;
+
+		assertEquals (1, klu_update_clear (Update)) ;
+		assertEquals (1, klu_update_solve (Symbolic, Numeric, Update, n, 1, X, 0,
+				Common)) ;
+		assertEquals (KLU_OK, Common.status) ;
+	}
+
+	/**
+	 * A leading dimension less than n, and an update of a matrix of another
+	 * size.
+	 */
+	public void test_invalid() {
+		Dmatrix A = triangular (30) ;
+		int n = A.n ;
+		KLU_common Common = common () ;
+		KLU_symbolic Symbolic = klu_analyze (n, A.Ap, A.Ai, Common) ;
+		KLU_numeric Numeric = klu_factor (A.Ap, A.Ai, A.Ax, Symbolic, Common) ;
+		double[] U = new double [n] ;
+		double[] V = new double [n] ;
+		assertNull (klu_update_add (Symbolic, Numeric, null, 1, U, V, n - 1,
+				Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+
+		Dmatrix T = triangular (20) ;
+		KLU_symbolic Tsym = klu_analyze (T.n, T.Ap, T.Ai, Common) ;
+		KLU_numeric Tnum = klu_factor (T.Ap, T.Ai, T.Ax, Tsym, Common) ;
+		KLU_update Update = klu_update_add (Tsym, Tnum, null, 1, U, V, n,
+				Common) ;
+		assertNotNull (Update) ;
+		assertNull (klu_update_add (Symbolic, Numeric, Update, 1, U, V, n,
+				Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+		assertEquals (0, klu_update_solve (Symbolic, Numeric, Update, n, 1,
+				new double [n], 0, Common)) ;
+		assertEquals (KLU_INVALID, Common.status) ;
+	}
+
+}